@@ -0,0 +1,149 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.NasaSpaceAppApplication;
+import it.polimi.nasa.nasabackend.dto.CorrelationParams;
+import it.polimi.nasa.nasabackend.repository.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Benchmark delle correlazioni verified e manual di AnalysisService su H2 in memoria,
+ * popolato con DonkiEventGenerator (eventsPerType eventi per ciascun tipo).
+ *
+ * - recompute: aggregato e cache scartati, calcolo completo dallo snapshot corrente
+ * - maintainedRead: solo la cache e' scartata, lettura dall'aggregato mantenuto
+ *
+ * Oltre a ops/s, il contatore "queries" riporta le istruzioni JDBC preparate
+ * (statistiche Hibernate); l'allocation rate arriva da -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dspring.devtools.restart.enabled=false"})
+public class CorrelationBenchmark {
+
+    private static final long SEED = 42;
+    private static final int SAVE_BATCH = 5000;
+
+    // Nome della correlazione mantenuta (= cache) -> endpoint corrispondente
+    private static final Map<String, Function<AnalysisService, Map<String, Object>>> ANALYSES = Map.of(
+            "flare-cme-verified", AnalysisService::analyzeFlareToCorrelation,
+            "cme-ips-verified", AnalysisService::analyzeCmeToIpsCorrelation,
+            "ips-storm-verified", AnalysisService::analyzeIpsToStormCorrelation,
+            "complete-chain-verified", AnalysisService::analyzeCompleteChainWithIps,
+            "cme-storm-verified", AnalysisService::analyzeCmeToStormCorrelation,
+            "complete-chain-legacy", AnalysisService::analyzeCompleteChain,
+            "flare-cme-manual", s -> s.analyzeFlareToCorrelationManual(CorrelationParams.FLARE_CME_DEFAULTS),
+            "cme-ips-manual", s -> s.analyzeCmeToIpsCorrelationManual(CorrelationParams.CME_IPS_DEFAULTS),
+            "ips-storm-manual", s -> s.analyzeIpsToStormCorrelationManual(CorrelationParams.IPS_STORM_DEFAULTS),
+            "complete-chain-manual", s -> s.analyzeCompleteChainManual(CorrelationParams.COMPLETE_CHAIN_DEFAULTS));
+
+    @Param({"1000", "10000", "100000"})
+    public int eventsPerType;
+
+    @Param({"flare-cme-verified", "cme-ips-verified", "ips-storm-verified", "complete-chain-verified",
+            "cme-storm-verified", "complete-chain-legacy",
+            "flare-cme-manual", "cme-ips-manual", "ips-storm-manual", "complete-chain-manual"})
+    public String analysis;
+
+    private ConfigurableApplicationContext context;
+    private AnalysisService analysisService;
+    private Function<AnalysisService, Map<String, Object>> endpoint;
+    private Cache cache;
+    private Statistics statistics;
+
+    /**
+     * Istruzioni JDBC preparate durante la misura (sommate su tutte le invocazioni).
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class QueryCounter {
+        public long queries;
+    }
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(NasaSpaceAppApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.properties.hibernate.generate_statistics=true",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.sql.init.mode=never",
+                        "--logging.level.org.hibernate=WARN",
+                        "--nasa.api.key=BENCHMARK",
+                        "--nasa.data-loader.enabled=false",
+                        "--nasa.sync.schedule.enabled=false");
+
+        loadEvents(DonkiEventGenerator.generate(eventsPerType, SEED));
+
+        // Eventi salvati direttamente (senza EventsIngestedEvent): indici ricostruiti dal DB
+        context.getBean(LinkedEventService.class).backfillMissingLinks();
+        context.getBean(ColumnarEventStore.class).rebuild();
+        context.getBean(LinkedEventIndex.class).rebuild();
+
+        analysisService = context.getBean(AnalysisService.class);
+        endpoint = ANALYSES.get(analysis);
+        cache = context.getBean(CacheManager.class).getCache(analysis);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        // L'aggregato costruito all'avvio (DB vuoto) e' superato
+        analysisService.invalidateCorrelation(analysis);
+        endpoint.apply(analysisService);
+    }
+
+    private void loadEvents(DonkiEventGenerator.Events events) {
+        saveInBatches(context.getBean(SolarFlareRepository.class), events.flares());
+        saveInBatches(context.getBean(CoronalMassEjectionRepository.class), events.cmes());
+        saveInBatches(context.getBean(InterplanetaryShockRepository.class), events.shocks());
+        saveInBatches(context.getBean(GeomagneticStormRepository.class), events.storms());
+    }
+
+    private static <T> void saveInBatches(JpaRepository<T, Long> repository, List<T> events) {
+        for (int from = 0; from < events.size(); from += SAVE_BATCH) {
+            repository.saveAll(events.subList(from, Math.min(from + SAVE_BATCH, events.size())));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> recompute(QueryCounter counter) {
+        long before = statistics.getPrepareStatementCount();
+        analysisService.invalidateCorrelation(analysis);
+        Map<String, Object> result = endpoint.apply(analysisService);
+        counter.queries += statistics.getPrepareStatementCount() - before;
+        return result;
+    }
+
+    @Benchmark
+    public Map<String, Object> maintainedRead(QueryCounter counter) {
+        long before = statistics.getPrepareStatementCount();
+        cache.clear();
+        Map<String, Object> result = endpoint.apply(analysisService);
+        counter.queries += statistics.getPrepareStatementCount() - before;
+        return result;
+    }
+}
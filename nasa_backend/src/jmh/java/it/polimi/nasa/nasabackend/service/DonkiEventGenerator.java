@@ -0,0 +1,195 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Generatore deterministico di eventi DONKI sintetici (FLR, CME, IPS, GST) per i benchmark.
+ *
+ * Riproduce la forma dei dati NASA: activityID nel formato "yyyy-MM-ddTHH:mm:ss-TYPE-NNN",
+ * densita' costante nel tempo (un flare ogni ~4 ore, quindi le finestre temporali
+ * contengono lo stesso numero di candidati a qualsiasi scala) e catene fisicamente
+ * plausibili FLR -> CME -> IPS -> GST con linkedEvents bidirezionali, come nelle
+ * risposte DONKI. Gli eventi non coinvolti in una catena sono sparsi a caso.
+ */
+final class DonkiEventGenerator {
+
+    private static final DateTimeFormatter ACTIVITY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2010, 1, 1, 0, 0);
+    private static final int MINUTES_PER_FLARE = 240;
+
+    // Frazioni osservate su DONKI (ordine di grandezza)
+    private static final double FLARE_WITH_CME = 0.40;
+    private static final double CME_WITH_SHOCK = 0.35;
+    private static final double SHOCK_AT_EARTH = 0.80;
+    private static final double EARTH_SHOCK_WITH_STORM = 0.50;
+
+    // Distanza Sole-Terra per il tempo di transito CME -> IPS
+    private static final double SUN_EARTH_KM = 1.496e8;
+
+    record Events(List<SolarFlare> flares, List<CoronalMassEjection> cmes,
+                  List<InterplanetaryShock> shocks, List<GeomagneticStorm> storms) {
+    }
+
+    private final Random random;
+    private final int perType;
+    private final long spanMinutes;
+
+    private final List<SolarFlare> flares = new ArrayList<>();
+    private final List<CoronalMassEjection> cmes = new ArrayList<>();
+    private final List<InterplanetaryShock> shocks = new ArrayList<>();
+    private final List<GeomagneticStorm> storms = new ArrayList<>();
+    private final Map<String, List<String>> links = new HashMap<>();
+
+    private DonkiEventGenerator(int perType, long seed) {
+        this.random = new Random(seed);
+        this.perType = perType;
+        this.spanMinutes = (long) perType * MINUTES_PER_FLARE;
+    }
+
+    /**
+     * Esattamente perType eventi per tipo; stesso seed, stessi eventi.
+     */
+    static Events generate(int perType, long seed) {
+        return new DonkiEventGenerator(perType, seed).generate();
+    }
+
+    private Events generate() {
+        for (int i = 0; i < perType; i++) {
+            SolarFlare flare = flare(EPOCH.plusMinutes((long) i * MINUTES_PER_FLARE + random.nextInt(MINUTES_PER_FLARE)));
+            if (random.nextDouble() < FLARE_WITH_CME && cmes.size() < perType) {
+                CoronalMassEjection cme = cme(flare.getPeakTime().plusMinutes(10 + random.nextInt(110)));
+                link(flare.getActivityId(), cme.getActivityId());
+                chainFrom(cme);
+            }
+        }
+        while (cmes.size() < perType) {
+            chainFrom(cme(randomTime()));
+        }
+        while (shocks.size() < perType) {
+            shock(randomTime());
+        }
+        while (storms.size() < perType) {
+            storm(randomTime());
+        }
+
+        flares.forEach(f -> f.setLinkedEvents(linkedEventsJson(f.getActivityId())));
+        cmes.forEach(c -> c.setLinkedEvents(linkedEventsJson(c.getActivityId())));
+        shocks.forEach(s -> s.setLinkedEvents(linkedEventsJson(s.getActivityId())));
+        storms.forEach(g -> g.setLinkedEvents(linkedEventsJson(g.getActivityId())));
+        return new Events(flares, cmes, shocks, storms);
+    }
+
+    // CME -> IPS (tempo di transito dalla velocita') -> GST
+    private void chainFrom(CoronalMassEjection cme) {
+        if (random.nextDouble() >= CME_WITH_SHOCK || shocks.size() >= perType) {
+            return;
+        }
+        double transitHours = SUN_EARTH_KM / cme.getSpeedKmS().doubleValue() / 3600;
+        InterplanetaryShock shock = shock(cme.getStartTime().plusMinutes((long) (transitHours * 60)));
+        link(cme.getActivityId(), shock.getActivityId());
+
+        if (shock.getLocation().equals("Earth") && random.nextDouble() < EARTH_SHOCK_WITH_STORM
+                && storms.size() < perType) {
+            GeomagneticStorm storm = storm(shock.getActivityTime().plusMinutes(15 + random.nextInt(12 * 60)));
+            link(shock.getActivityId(), storm.getActivityId());
+            link(cme.getActivityId(), storm.getActivityId());
+        }
+    }
+
+    // ============================================
+    // EVENTI
+    // ============================================
+
+    private SolarFlare flare(LocalDateTime peakTime) {
+        SolarFlare flare = new SolarFlare();
+        flare.setActivityId(activityId(peakTime, EventType.FLR, flares.size()));
+        flare.setBeginTime(peakTime.minusMinutes(5 + random.nextInt(20)));
+        flare.setPeakTime(peakTime);
+        flare.setEndTime(peakTime.plusMinutes(10 + random.nextInt(60)));
+
+        double p = random.nextDouble();
+        String classType = p < 0.05 ? "X" : p < 0.35 ? "M" : p < 0.95 ? "C" : "B";
+        BigDecimal intensity = BigDecimal.valueOf(1 + random.nextDouble() * 8.9).setScale(1, RoundingMode.HALF_UP);
+        flare.setClassType(classType);
+        flare.setClassIntensity(intensity);
+        flare.setFullClass(classType + intensity);
+        flare.setSourceLocation("S" + random.nextInt(40) + "W" + random.nextInt(90));
+        flare.setActiveRegionNum(13000 + random.nextInt(1000));
+        flare.setInstruments("GOES-P: EXIS 1.0-8.0");
+        flares.add(flare);
+        return flare;
+    }
+
+    private CoronalMassEjection cme(LocalDateTime startTime) {
+        CoronalMassEjection cme = new CoronalMassEjection();
+        cme.setActivityId(activityId(startTime, EventType.CME, cmes.size()));
+        cme.setStartTime(startTime);
+        // Velocita' log-normale centrata su ~450 km/s, come nel catalogo CCMC
+        double speed = Math.min(3000, Math.max(100, Math.exp(6.1 + 0.45 * random.nextGaussian())));
+        cme.setSpeedKmS(BigDecimal.valueOf(speed).setScale(2, RoundingMode.HALF_UP));
+        cme.setHalfAngleDeg(BigDecimal.valueOf(10 + random.nextInt(50)));
+        cme.setType(speed >= 1000 ? "O" : speed >= 500 ? "C" : "S");
+        cme.setIsMostAccurate(true);
+        cme.setInstruments("SOHO: LASCO/C2, SOHO: LASCO/C3");
+        cmes.add(cme);
+        return cme;
+    }
+
+    private InterplanetaryShock shock(LocalDateTime activityTime) {
+        InterplanetaryShock shock = new InterplanetaryShock();
+        shock.setActivityId(activityId(activityTime, EventType.IPS, shocks.size()));
+        shock.setCatalog("M2M_CATALOG");
+        shock.setActivityTime(activityTime);
+        shock.setLocation(random.nextDouble() < SHOCK_AT_EARTH ? "Earth" : "STEREO A");
+        shock.setInstruments("DSCOVR: PLASMAG");
+        shocks.add(shock);
+        return shock;
+    }
+
+    private GeomagneticStorm storm(LocalDateTime startTime) {
+        GeomagneticStorm storm = new GeomagneticStorm();
+        storm.setActivityId(activityId(startTime, EventType.GST, storms.size()));
+        storm.setStartTime(startTime);
+        BigDecimal kp = BigDecimal.valueOf(5 + random.nextDouble() * 4).setScale(1, RoundingMode.HALF_UP);
+        storm.setKpIndex(kp);
+        storm.setGScale(Math.min(5, kp.intValue() - 4));
+        storms.add(storm);
+        return storm;
+    }
+
+    // ============================================
+    // HELPER
+    // ============================================
+
+    private LocalDateTime randomTime() {
+        return EPOCH.plusMinutes((long) (random.nextDouble() * spanMinutes));
+    }
+
+    private static String activityId(LocalDateTime time, EventType type, int sequence) {
+        return time.format(ACTIVITY_TIME) + "-" + type.name() + "-" + String.format("%03d", sequence + 1);
+    }
+
+    // DONKI riporta il link su entrambi gli eventi
+    private void link(String a, String b) {
+        links.computeIfAbsent(a, id -> new ArrayList<>()).add(b);
+        links.computeIfAbsent(b, id -> new ArrayList<>()).add(a);
+    }
+
+    private String linkedEventsJson(String activityId) {
+        List<String> linked = links.get(activityId);
+        if (linked == null) {
+            return null;
+        }
+        StringJoiner json = new StringJoiner(",", "[", "]");
+        for (String id : linked) {
+            json.add("{\"activityID\":\"" + id + "\"}");
+        }
+        return json.toString();
+    }
+}
@@ -1,6 +1,9 @@
 package it.polimi.nasa.nasabackend.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import it.polimi.nasa.nasabackend.dto.CorrelationParams;
+import it.polimi.nasa.nasabackend.service.AnalysisService;
+import it.polimi.nasa.nasabackend.service.EventStatsService;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -20,11 +23,15 @@ import java.util.concurrent.TimeUnit;
  * - Correlation results cached for 5 minutes
  * - Automatically evicts old entries
  * - Uses Caffeine for high-performance in-memory caching
+ * - Manual analyses are keyed by CorrelationParams: parameter sweeps are
+ *   bounded by weight, while the default entries weigh 0 and are never evicted
  */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    private static final long MAX_CUSTOM_ENTRIES = 100;
+
     /**
      * Configure Caffeine-based cache manager
      *
@@ -37,6 +44,10 @@ public class CacheConfig {
      * - "cme-ips-manual" - Manual temporal CME → IPS
      * - "ips-storm-manual" - Manual temporal IPS → Storm
      * - "complete-chain-manual" - Manual temporal chains
+     * - "cme-storm-verified" - Legacy CME → Storm (direct)
+     * - "complete-chain-legacy" - Legacy Flare → CME → Storm chains
+     * - "dashboard-overview" - Dashboard counts (complete responses only)
+     * - "event-stats" - /stats counts per sync source (EventStatsService)
      */
     @Bean
     public CacheManager cacheManager() {
@@ -48,7 +59,11 @@ public class CacheConfig {
                 "flare-cme-manual",
                 "cme-ips-manual",
                 "ips-storm-manual",
-                "complete-chain-manual"
+                "complete-chain-manual",
+                "cme-storm-verified",
+                "complete-chain-legacy",
+                AnalysisService.DASHBOARD_CACHE,
+                EventStatsService.CACHE
         );
 
         cacheManager.setCaffeine(caffeineCacheBuilder());
@@ -61,13 +76,22 @@ public class CacheConfig {
      *
      * Settings:
      * - expireAfterWrite: 5 minutes (data doesn't change frequently)
-     * - maximumSize: 100 entries per cache
+     * - maximumWeight: 100 custom parameter sets per cache
+     * - weigher: 'all' and default CorrelationParams keys weigh 0 (never evicted by size)
      * - recordStats: Enable cache statistics for monitoring
      */
     private Caffeine<Object, Object> caffeineCacheBuilder() {
         return Caffeine.newBuilder()
                 .expireAfterWrite(5, TimeUnit.MINUTES)  // Cache expires after 5 minutes
-                .maximumSize(100)                        // Max 100 entries per cache
+                .maximumWeight(MAX_CUSTOM_ENTRIES)      // Max 100 custom entries per cache
+                .weigher(CacheConfig::weigh)
                 .recordStats();                          // Enable statistics
     }
+
+    private static int weigh(Object key, Object value) {
+        if (key instanceof CorrelationParams params) {
+            return params.isDefault() ? 0 : 1;
+        }
+        return "all".equals(key) ? 0 : 1;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package it.polimi.nasa.nasabackend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor condiviso per le operazioni indipendenti eseguite in parallelo
+ * (query della dashboard, chiamate verso API esterne).
+ *
+ * Usa i virtual thread di Java 21: un thread per task, adatto a chiamate
+ * bloccanti JDBC/HTTP. Il parallelismo reale verso il DB resta limitato
+ * dalla dimensione del connection pool.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService virtualThreadExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Executor limitato della sincronizzazione con le API NASA: al massimo
+     * nasa.sync.threads sorgenti scaricate insieme, per non saturare il rate limit
+     * della API key. Allo shutdown le sincronizzazioni in corso vengono interrotte.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService syncExecutor(@Value("${nasa.sync.threads:3}") int threads) {
+        AtomicInteger created = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "nasa-sync-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
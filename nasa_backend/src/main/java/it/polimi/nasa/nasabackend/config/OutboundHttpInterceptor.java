@@ -0,0 +1,183 @@
+package it.polimi.nasa.nasabackend.config;
+
+import it.polimi.nasa.nasabackend.service.OutboundHttpMetrics;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Interceptor delle chiamate in uscita:
+ * - al massimo maxPerHost richieste contemporanee per host; il permesso e' tenuto
+ *   finche' la risposta non viene chiusa (i body sono letti in streaming)
+ * - Accept-Encoding: gzip e decompressione del body (l'HttpClient del JDK non lo fa)
+ * - latenza, errori e richieste in corso registrati in OutboundHttpMetrics
+ */
+final class OutboundHttpInterceptor implements ClientHttpRequestInterceptor {
+
+    private final int maxPerHost;
+    private final OutboundHttpMetrics metrics;
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    OutboundHttpInterceptor(int maxPerHost, OutboundHttpMetrics metrics) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("nasa.http.max-requests-per-host must be at least 1");
+        }
+        this.maxPerHost = maxPerHost;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String host = request.getURI().getHost();
+        Semaphore hostPermits = permits.computeIfAbsent(String.valueOf(host), h -> new Semaphore(maxPerHost, true));
+
+        long waitStart = System.nanoTime();
+        try {
+            hostPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+        }
+        long started = System.nanoTime();
+        metrics.requestStarted(host, started - waitStart);
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                hostPermits.release();
+                metrics.requestFinished(host);
+            }
+        };
+
+        try {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+            ClientHttpResponse response = execution.execute(request, body);
+            boolean gzip = "gzip".equalsIgnoreCase(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+            metrics.responseReceived(host, System.nanoTime() - started, gzip);
+            return new TrackedResponse(response, gzip, release);
+        } catch (IOException | RuntimeException e) {
+            metrics.requestFailed(host);
+            release.run();
+            throw e;
+        }
+    }
+
+    /**
+     * Risposta che decomprime il body gzip e rilascia il permesso dell'host alla chiusura.
+     */
+    private static final class TrackedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final boolean gzip;
+        private final Runnable release;
+        private HttpHeaders headers;
+        private InputStream body;
+
+        private TrackedResponse(ClientHttpResponse delegate, boolean gzip, Runnable release) {
+            this.delegate = delegate;
+            this.gzip = gzip;
+            this.release = release;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        // Dopo la decompressione Content-Encoding e Content-Length non descrivono piu' il body
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                if (gzip) {
+                    HttpHeaders copy = new HttpHeaders();
+                    copy.putAll(delegate.getHeaders());
+                    copy.remove(HttpHeaders.CONTENT_ENCODING);
+                    copy.remove(HttpHeaders.CONTENT_LENGTH);
+                    headers = HttpHeaders.readOnlyHttpHeaders(copy);
+                } else {
+                    headers = delegate.getHeaders();
+                }
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream raw = delegate.getBody();
+                body = gzip ? new LazyGzipInputStream(raw) : raw;
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * GZIPInputStream creato alla prima lettura: un body vuoto (es. 204, errori senza
+     * contenuto) restituisce subito EOF invece di fallire sulla lettura dell'header gzip.
+     */
+    private static final class LazyGzipInputStream extends InputStream {
+
+        private final InputStream raw;
+        private InputStream gunzip;
+
+        private LazyGzipInputStream(InputStream raw) {
+            this.raw = raw.markSupported() ? raw : new BufferedInputStream(raw);
+        }
+
+        private InputStream stream() throws IOException {
+            if (gunzip == null) {
+                raw.mark(1);
+                if (raw.read() == -1) {
+                    gunzip = InputStream.nullInputStream();
+                } else {
+                    raw.reset();
+                    gunzip = new GZIPInputStream(raw, 8192);
+                }
+            }
+            return gunzip;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return stream().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return stream().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            raw.close();
+        }
+    }
+}
@@ -1,14 +1,57 @@
 package it.polimi.nasa.nasabackend.config;
 
+import it.polimi.nasa.nasabackend.service.OutboundHttpMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import javax.net.ssl.SSLContext;
+import java.net.http.HttpClient;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+/**
+ * Client HTTP verso le API NASA/JPL.
+ *
+ * HttpClient del JDK al posto della SimpleClientHttpRequestFactory (una connessione
+ * nuova per ogni richiesta): connessioni keep-alive riusate, HTTP/2 quando il server
+ * lo negozia (piu' richieste sulla stessa connessione), timeout di connessione e di
+ * risposta. Gzip, limite per host e metriche sono in OutboundHttpInterceptor;
+ * riuso delle connessioni e latenze si leggono su /api/sync/http.
+ */
 @Configuration
 public class RestTemplateConfig {
 
+    @Autowired
+    private OutboundHttpMetrics outboundHttpMetrics;
+
+    @Value("${nasa.http.connect-timeout:10s}")
+    private Duration connectTimeout;
+
+    // Tempo massimo fino agli header della risposta (il body e' letto in streaming)
+    @Value("${nasa.http.read-timeout:60s}")
+    private Duration readTimeout;
+
+    @Value("${nasa.http.max-requests-per-host:6}")
+    private int maxRequestsPerHost;
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate() throws NoSuchAlgorithmException {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .sslContext(outboundHttpMetrics.countingSslContext(SSLContext.getDefault()))
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(new OutboundHttpInterceptor(maxRequestsPerHost, outboundHttpMetrics));
+        return restTemplate;
     }
-}
\ No newline at end of file
+}
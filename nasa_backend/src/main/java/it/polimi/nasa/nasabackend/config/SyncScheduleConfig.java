@@ -0,0 +1,43 @@
+package it.polimi.nasa.nasabackend.config;
+
+import it.polimi.nasa.nasabackend.service.DataSyncService;
+import it.polimi.nasa.nasabackend.service.DeltaSyncService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.FixedDelayTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import java.time.Duration;
+
+/**
+ * Polling periodico delle sorgenti NASA: ogni sorgente ha la propria cadenza
+ * (nasa.sync.interval.<sorgente>) e scarica solo il delta dal suo watermark.
+ *
+ * Il primo run parte dopo un intervallo (la sync all'avvio copre il primo giro);
+ * il thread dello scheduler accoda solo il task sul syncExecutor, quindi le
+ * sorgenti lente non ritardano le altre.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "nasa.sync.schedule.enabled", havingValue = "true", matchIfMissing = true)
+public class SyncScheduleConfig implements SchedulingConfigurer {
+
+    @Autowired
+    private DataSyncService dataSyncService;
+
+    @Autowired
+    private DeltaSyncService deltaSyncService;
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        for (String source : deltaSyncService.sourceNames()) {
+            Duration interval = deltaSyncService.interval(source);
+            registrar.addFixedDelayTask(new FixedDelayTask(
+                    () -> dataSyncService.runOnce(deltaSyncService.task(source)), interval, interval));
+            System.out.println("⏰ [SYNC] " + source + " scheduled every " + interval);
+        }
+    }
+}
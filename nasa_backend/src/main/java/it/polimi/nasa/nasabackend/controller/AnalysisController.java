@@ -1,12 +1,16 @@
 package it.polimi.nasa.nasabackend.controller;
 
+import it.polimi.nasa.nasabackend.dto.CorrelationParams;
 import it.polimi.nasa.nasabackend.service.AnalysisService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -55,24 +59,83 @@ public class AnalysisController {
     // MANUAL TEMPORAL CORRELATIONS
     // ============================================
 
+    // Tutti i parametri sono opzionali: quelli assenti prendono i valori di
+    // CorrelationParams.*_DEFAULTS. Finestre in minuti (CME → IPS in ore).
+
     @GetMapping("/manual/flare-cme")
-    public ResponseEntity<Map<String, Object>> analyzeFlareToCorrelationManual() {
-        return ResponseEntity.ok(analysisService.analyzeFlareToCorrelationManual());
+    public ResponseEntity<Map<String, Object>> analyzeFlareToCorrelationManual(
+            @RequestParam(required = false) Long minDelayMinutes,
+            @RequestParam(required = false) Long maxDelayMinutes,
+            @RequestParam(required = false) List<String> flareClasses,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        CorrelationParams params = CorrelationParams.FLARE_CME_DEFAULTS
+                .withFlareToCme(minDelayMinutes, maxDelayMinutes)
+                .withFlareClasses(flareClasses)
+                .withDateRange(from, to);
+        return ResponseEntity.ok(analysisService.analyzeFlareToCorrelationManual(params));
     }
 
     @GetMapping("/manual/cme-ips")
-    public ResponseEntity<Map<String, Object>> analyzeCmeToIpsCorrelationManual() {
-        return ResponseEntity.ok(analysisService.analyzeCmeToIpsCorrelationManual());
+    public ResponseEntity<Map<String, Object>> analyzeCmeToIpsCorrelationManual(
+            @RequestParam(required = false) Long minDelayHours,
+            @RequestParam(required = false) Long maxDelayHours,
+            @RequestParam(required = false) BigDecimal minSpeed,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        CorrelationParams params = CorrelationParams.CME_IPS_DEFAULTS
+                .withCmeToIps(hoursToMinutes(minDelayHours), hoursToMinutes(maxDelayHours))
+                .withMinCmeSpeed(minSpeed)
+                .withDateRange(from, to);
+        return ResponseEntity.ok(analysisService.analyzeCmeToIpsCorrelationManual(params));
     }
 
     @GetMapping("/manual/ips-storm")
-    public ResponseEntity<Map<String, Object>> analyzeIpsToStormCorrelationManual() {
-        return ResponseEntity.ok(analysisService.analyzeIpsToStormCorrelationManual());
+    public ResponseEntity<Map<String, Object>> analyzeIpsToStormCorrelationManual(
+            @RequestParam(required = false) Long minDelayMinutes,
+            @RequestParam(required = false) Long maxDelayMinutes,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        CorrelationParams params = CorrelationParams.IPS_STORM_DEFAULTS
+                .withIpsToStorm(minDelayMinutes, maxDelayMinutes)
+                .withDateRange(from, to);
+        return ResponseEntity.ok(analysisService.analyzeIpsToStormCorrelationManual(params));
     }
 
     @GetMapping("/manual/complete-chain")
-    public ResponseEntity<Map<String, Object>> analyzeCompleteChainManual() {
-        return ResponseEntity.ok(analysisService.analyzeCompleteChainManual());
+    public ResponseEntity<Map<String, Object>> analyzeCompleteChainManual(
+            @RequestParam(required = false) Long flareCmeMinMinutes,
+            @RequestParam(required = false) Long flareCmeMaxMinutes,
+            @RequestParam(required = false) Long cmeIpsMinHours,
+            @RequestParam(required = false) Long cmeIpsMaxHours,
+            @RequestParam(required = false) Long ipsStormMinMinutes,
+            @RequestParam(required = false) Long ipsStormMaxMinutes,
+            @RequestParam(required = false) BigDecimal minSpeed,
+            @RequestParam(required = false) List<String> flareClasses,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        CorrelationParams params = CorrelationParams.COMPLETE_CHAIN_DEFAULTS
+                .withFlareToCme(flareCmeMinMinutes, flareCmeMaxMinutes)
+                .withCmeToIps(hoursToMinutes(cmeIpsMinHours), hoursToMinutes(cmeIpsMaxHours))
+                .withIpsToStorm(ipsStormMinMinutes, ipsStormMaxMinutes)
+                .withMinCmeSpeed(minSpeed)
+                .withFlareClasses(flareClasses)
+                .withDateRange(from, to);
+        return ResponseEntity.ok(analysisService.analyzeCompleteChainManual(params));
+    }
+
+    private static Long hoursToMinutes(Long hours) {
+        return hours == null ? null : hours * 60;
+    }
+
+    // Parametri non validi (finestra invertita, classe sconosciuta, from > to)
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidParameters(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
     }
 
     // ============================================
@@ -91,4 +154,11 @@ public class AnalysisController {
     public ResponseEntity<Map<String, Object>> getDashboardOverview() {
         return ResponseEntity.ok(analysisService.getDashboardOverview());
     }
+
+    // Piu' analisi in una richiesta, es. /batch?analyses=flare-cme,cme-ips,manual/ips-storm,dashboard
+    // (parametri di default per le manuali; nome sconosciuto → 400)
+    @GetMapping("/batch")
+    public ResponseEntity<Map<String, Object>> analyzeBatch(@RequestParam List<String> analyses) {
+        return ResponseEntity.ok(analysisService.analyzeBatch(analyses));
+    }
 }
\ No newline at end of file
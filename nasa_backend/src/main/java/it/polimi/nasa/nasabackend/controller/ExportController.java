@@ -0,0 +1,73 @@
+package it.polimi.nasa.nasabackend.controller;
+
+import it.polimi.nasa.nasabackend.service.EventExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/export")
+@CrossOrigin(origins = "*")
+public class ExportController {
+
+    @Autowired
+    private EventExportService eventExportService;
+
+    /**
+     * Dataset esportabili e relative colonne.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getDatasets() {
+        Map<String, Object> datasets = new LinkedHashMap<>();
+        for (String dataset : eventExportService.datasetNames()) {
+            datasets.put(dataset, eventExportService.columnNames(dataset));
+        }
+        return ResponseEntity.ok(datasets);
+    }
+
+    /**
+     * GET /api/export/cme?format=csv&from=2020-01-01&to=2024-12-31&columns=startTime,speedKmS
+     * Tutte le righe del dataset (in ordine di tempo) scritte in streaming, NDJSON di default.
+     */
+    @GetMapping("/{dataset}")
+    public ResponseEntity<StreamingResponseBody> export(
+            @PathVariable String dataset,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<String> columns) {
+        EventExportService.Format exportFormat = parseFormat(format);
+        EventExportService.Export export = eventExportService.prepare(dataset, exportFormat, from, to, columns);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.mediaType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(export.filename()).build().toString())
+                .body(export::writeTo);
+    }
+
+    private static EventExportService.Format parseFormat(String format) {
+        try {
+            return EventExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format '" + format + "', use ndjson or csv");
+        }
+    }
+
+    // Dataset, colonna, formato o intervallo non validi
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidParameters(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
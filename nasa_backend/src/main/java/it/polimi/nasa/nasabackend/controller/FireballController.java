@@ -1,34 +1,50 @@
 package it.polimi.nasa.nasabackend.controller;
 
+import it.polimi.nasa.nasabackend.dto.EventCursor;
 import it.polimi.nasa.nasabackend.dto.FireballDto;
 import it.polimi.nasa.nasabackend.entity.Fireball;
 import it.polimi.nasa.nasabackend.repository.FireballRepository;
+import it.polimi.nasa.nasabackend.service.EventStatsService;
+import it.polimi.nasa.nasabackend.service.FireballService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/fireballs")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {HttpHeaders.LINK, KeysetPagination.NEXT_CURSOR_HEADER})
 public class FireballController {
 
     @Autowired
     private FireballRepository fireballRepository;
 
+    @Autowired
+    private FireballService fireballService;
+
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    @Autowired
+    private EventStatsService eventStatsService;
+
+    /**
+     * Fireball dal piu' recente (eventDate), letti direttamente come FireballDto e paginati a cursore.
+     */
     @GetMapping
-    public ResponseEntity<List<FireballDto>> getAllFireballs() {
-        List<Fireball> fireballs = fireballRepository.findAll();
-        List<FireballDto> dtos = fireballs.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<List<FireballDto>> getAllFireballs(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                fireballRepository::findSummaries,
+                (after, page) -> fireballRepository.findSummariesBefore(after.time(), after.id(), page),
+                fireball -> new EventCursor(fireball.getEventDate(), fireball.getId()));
     }
 
     @GetMapping("/{id}")
@@ -59,29 +75,23 @@ public class FireballController {
         return ResponseEntity.ok(dtos);
     }
 
+    // Solo i fireball con energia nota, dal piu' energetico
     @GetMapping("/top-energy")
     public ResponseEntity<List<FireballDto>> getTopEnergyFireballs(
             @RequestParam(defaultValue = "10") int limit) {
 
-        List<Fireball> fireballs = fireballRepository.findTopByEnergyDesc();
-        List<FireballDto> dtos = fireballs.stream()
-                .limit(limit)
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(fireballRepository.findTopByEnergyDesc(keysetPagination.top(limit)));
     }
 
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getFireballStats() {
-        long total = fireballRepository.count();
-        long withLocation = fireballRepository.findAllWithLocation().size();
-
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("total", total);
-        stats.put("withLocation", withLocation);
-        stats.put("withoutLocation", total - withLocation);
+        return ResponseEntity.ok(eventStatsService.fireballStats());
+    }
 
-        return ResponseEntity.ok(stats);
+    // Riconciliazione: rimuove i duplicati lasciati dalle sync precedenti
+    @PostMapping("/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileFireballs() {
+        return ResponseEntity.ok(fireballService.reconcileDuplicates());
     }
 
     // Helper method
@@ -98,4 +108,10 @@ public class FireballController {
                 fireball.getVelocityKmS()
         );
     }
-}
\ No newline at end of file
+
+    // Cursore di paginazione non valido
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidParameters(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
@@ -1,8 +1,14 @@
 package it.polimi.nasa.nasabackend.controller;
 
+import it.polimi.nasa.nasabackend.dto.EventCursor;
+import it.polimi.nasa.nasabackend.dto.InterplanetaryShockSummary;
 import it.polimi.nasa.nasabackend.entity.InterplanetaryShock;
+import it.polimi.nasa.nasabackend.repository.InterplanetaryShockRepository;
+import it.polimi.nasa.nasabackend.service.EventStatsService;
 import it.polimi.nasa.nasabackend.service.InterplanetaryShockService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -12,32 +18,56 @@ import java.util.Map;
 
 @RestController
 @RequestMapping("/api/ips")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {HttpHeaders.LINK, KeysetPagination.NEXT_CURSOR_HEADER})
 public class InterplanetaryShockController {
 
     @Autowired
     private InterplanetaryShockService ipsService;
 
+    @Autowired
+    private InterplanetaryShockRepository ipsRepository;
+
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    @Autowired
+    private EventStatsService eventStatsService;
+
     @PostMapping("/fetch")
     public ResponseEntity<Map<String, Object>> fetchIpsData(
             @RequestParam String startDate,
             @RequestParam String endDate) {
 
         // Ora il service usa il parsing date robusto, quindi non rischiamo crash
-        List<InterplanetaryShock> ipsList = ipsService.fetchAndSaveIps(startDate, endDate);
-
+        // I record vengono scritti a blocchi mentre arrivano: si riporta solo il conteggio
         Map<String, Object> response = new HashMap<>();
+        int recordsFetched;
+        try {
+            recordsFetched = ipsService.fetchAndSaveIps(startDate, endDate);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(response);
+        }
+
         response.put("success", true);
-        response.put("recordsFetched", ipsList.size());
+        response.put("recordsFetched", recordsFetched);
         response.put("message", "Data fetched successfully using flexible date parser");
-        response.put("data", ipsList);
 
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Riepiloghi degli shock dal piu' recente (activityTime), paginati a cursore.
+     */
     @GetMapping
-    public ResponseEntity<List<InterplanetaryShock>> getAllIps() {
-        return ResponseEntity.ok(ipsService.getAllIps());
+    public ResponseEntity<List<InterplanetaryShockSummary>> getAllIps(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                ipsRepository::findSummaries,
+                (after, page) -> ipsRepository.findSummariesBefore(after.time(), after.id(), page),
+                ips -> new EventCursor(ips.getActivityTime(), ips.getId()));
     }
 
     @GetMapping("/earth")
@@ -48,9 +78,12 @@ public class InterplanetaryShockController {
 
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getIpsStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalShocks", ipsService.getIpsCount());
-        stats.put("earthShocks", ipsService.getEarthShocks().size());
-        return ResponseEntity.ok(stats);
+        return ResponseEntity.ok(eventStatsService.ipsStats());
+    }
+
+    // Cursore di paginazione non valido
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidParameters(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package it.polimi.nasa.nasabackend.controller;
+
+import it.polimi.nasa.nasabackend.dto.EventCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Liste paginate a cursore (keyset) sull'indice (tempo, id) di ogni tabella.
+ *
+ * La pagina successiva parte da "tempo/id < ultimo restituito", quindi costa come la
+ * prima anche con milioni di righe (niente OFFSET). Il body resta un array JSON; il
+ * cursore della pagina successiva e' nell'header Link (rel="next") e in X-Next-Cursor,
+ * assenti sull'ultima pagina. top() applica gli stessi limiti alle classifiche top-N.
+ */
+@Component
+class KeysetPagination {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    @Value("${nasa.api.page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${nasa.api.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * first: prima pagina; after: pagina dopo il cursore; cursorOf: cursore di una riga.
+     * Si legge una riga in piu' del limite per sapere se esiste una pagina successiva.
+     */
+    <T> ResponseEntity<List<T>> page(String cursor, Integer limit,
+                                     Function<Limit, List<T>> first,
+                                     BiFunction<EventCursor, Limit, List<T>> after,
+                                     Function<T, EventCursor> cursorOf) {
+        int size = limit == null ? defaultPageSize : Math.clamp(limit, 1, maxPageSize);
+        Limit fetch = Limit.of(size + 1);
+        List<T> rows = cursor == null || cursor.isBlank()
+                ? first.apply(fetch)
+                : after.apply(EventCursor.decode(cursor), fetch);
+
+        if (rows.size() <= size) {
+            return ResponseEntity.ok(rows);
+        }
+        List<T> page = rows.subList(0, size);
+        String next = cursorOf.apply(page.get(size - 1)).encode();
+        String nextUrl = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", next)
+                .replaceQueryParam("limit", size)
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + nextUrl + ">; rel=\"next\"")
+                .header(NEXT_CURSOR_HEADER, next)
+                .body(page);
+    }
+
+    /**
+     * LIMIT di una classifica top-N (nessun cursore): richiesta limitata a [1, max-page-size].
+     */
+    Limit top(int limit) {
+        return Limit.of(Math.clamp(limit, 1, maxPageSize));
+    }
+}
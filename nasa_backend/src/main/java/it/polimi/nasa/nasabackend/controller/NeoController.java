@@ -1,22 +1,27 @@
 package it.polimi.nasa.nasabackend.controller;
 
+import it.polimi.nasa.nasabackend.dto.EventCursor;
+import it.polimi.nasa.nasabackend.dto.NeoAsteroidSummary;
+import it.polimi.nasa.nasabackend.dto.NeoCloseApproachSummary;
 import it.polimi.nasa.nasabackend.entity.NeoAsteroid;
 import it.polimi.nasa.nasabackend.entity.NeoCloseApproach;
 import it.polimi.nasa.nasabackend.repository.NeoAsteroidRepository;
 import it.polimi.nasa.nasabackend.repository.NeoCloseApproachRepository;
+import it.polimi.nasa.nasabackend.service.EventStatsService;
+import it.polimi.nasa.nasabackend.service.NeoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/neo")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {HttpHeaders.LINK, KeysetPagination.NEXT_CURSOR_HEADER})
 public class NeoController {
 
     @Autowired
@@ -25,9 +30,26 @@ public class NeoController {
     @Autowired
     private NeoCloseApproachRepository neoCloseApproachRepository;
 
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    @Autowired
+    private EventStatsService eventStatsService;
+
+    @Autowired
+    private NeoService neoService;
+
+    /**
+     * Riepiloghi degli asteroidi dall'ultimo salvato (id), paginati a cursore.
+     */
     @GetMapping("/asteroids")
-    public ResponseEntity<List<NeoAsteroid>> getAllAsteroids() {
-        return ResponseEntity.ok(neoAsteroidRepository.findAll());
+    public ResponseEntity<List<NeoAsteroidSummary>> getAllAsteroids(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                neoAsteroidRepository::findSummaries,
+                (after, page) -> neoAsteroidRepository.findSummariesBefore(after.id(), page),
+                asteroid -> new EventCursor(null, asteroid.getId()));
     }
 
     @GetMapping("/asteroids/{id}")
@@ -42,9 +64,31 @@ public class NeoController {
         return ResponseEntity.ok(neoAsteroidRepository.findByIsPotentiallyHazardous(true));
     }
 
+    // Asteroidi pericolosi dal piu' grande (diametro massimo stimato)
+    @GetMapping("/asteroids/hazardous/largest")
+    public ResponseEntity<List<NeoAsteroidSummary>> getLargestHazardousAsteroids(
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(neoAsteroidRepository.findHazardousAsteroidsBySize(keysetPagination.top(limit)));
+    }
+
+    // Asteroidi piu' luminosi (magnitudine assoluta H minore)
+    @GetMapping("/asteroids/brightest")
+    public ResponseEntity<List<NeoAsteroidSummary>> getBrightestAsteroids(
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(neoAsteroidRepository.findBrightestAsteroids(keysetPagination.top(limit)));
+    }
+
+    /**
+     * Passaggi ravvicinati dal piu' recente (approachDate), con nome e pericolosita' dell'asteroide in riga.
+     */
     @GetMapping("/approaches")
-    public ResponseEntity<List<NeoCloseApproach>> getAllApproaches() {
-        return ResponseEntity.ok(neoCloseApproachRepository.findAll());
+    public ResponseEntity<List<NeoCloseApproachSummary>> getAllApproaches(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                neoCloseApproachRepository::findSummaries,
+                (after, page) -> neoCloseApproachRepository.findSummariesBefore(after.time(), after.id(), page),
+                approach -> new EventCursor(approach.getApproachDate(), approach.getId()));
     }
 
     @GetMapping("/approaches/date-range")
@@ -61,27 +105,25 @@ public class NeoController {
     }
 
     @GetMapping("/approaches/closest")
-    public ResponseEntity<List<NeoCloseApproach>> getClosestApproaches(
+    public ResponseEntity<List<NeoCloseApproachSummary>> getClosestApproaches(
             @RequestParam(defaultValue = "10") int limit) {
-
-        return ResponseEntity.ok(neoCloseApproachRepository.findClosestApproaches()
-                .stream()
-                .limit(limit)
-                .toList());
+        return ResponseEntity.ok(neoCloseApproachRepository.findClosestApproaches(keysetPagination.top(limit)));
     }
 
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getNeoStats() {
-        long totalAsteroids = neoAsteroidRepository.count();
-        long hazardous = neoAsteroidRepository.findByIsPotentiallyHazardous(true).size();
-        long totalApproaches = neoCloseApproachRepository.count();
+        return ResponseEntity.ok(eventStatsService.neoStats());
+    }
 
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalAsteroids", totalAsteroids);
-        stats.put("hazardousAsteroids", hazardous);
-        stats.put("safeAsteroids", totalAsteroids - hazardous);
-        stats.put("totalApproaches", totalApproaches);
+    // Riconciliazione: rimuove i passaggi duplicati salvati prima di uk_approach_natural
+    @PostMapping("/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileApproaches() {
+        return ResponseEntity.ok(neoService.reconcileDuplicateApproaches());
+    }
 
-        return ResponseEntity.ok(stats);
+    // Cursore di paginazione non valido
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidParameters(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,27 @@
 package it.polimi.nasa.nasabackend.controller;
 
+import it.polimi.nasa.nasabackend.dto.CoronalMassEjectionSummary;
+import it.polimi.nasa.nasabackend.dto.EventCursor;
+import it.polimi.nasa.nasabackend.dto.GeomagneticStormSummary;
+import it.polimi.nasa.nasabackend.dto.StormFilter;
 import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
-import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
 import it.polimi.nasa.nasabackend.repository.CoronalMassEjectionRepository;
 import it.polimi.nasa.nasabackend.repository.GeomagneticStormRepository;
+import it.polimi.nasa.nasabackend.service.EventStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/solar-events")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {HttpHeaders.LINK, KeysetPagination.NEXT_CURSOR_HEADER})
 public class SolarEventsController {
 
     @Autowired
@@ -26,11 +30,25 @@ public class SolarEventsController {
     @Autowired
     private GeomagneticStormRepository geomagneticStormRepository;
 
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    @Autowired
+    private EventStatsService eventStatsService;
+
     // ========== CME ENDPOINTS ==========
 
+    /**
+     * Riepiloghi CME dal piu' recente (startTime), paginati a cursore come /api/solar-flares.
+     */
     @GetMapping("/cme")
-    public ResponseEntity<List<CoronalMassEjection>> getAllCme() {
-        return ResponseEntity.ok(cmeRepository.findAll());
+    public ResponseEntity<List<CoronalMassEjectionSummary>> getAllCme(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                cmeRepository::findSummaries,
+                (after, page) -> cmeRepository.findSummariesBefore(after.time(), after.id(), page),
+                cme -> new EventCursor(cme.getStartTime(), cme.getId()));
     }
 
     @GetMapping("/cme/date-range")
@@ -49,49 +67,90 @@ public class SolarEventsController {
 
     // ========== GEOMAGNETIC STORM ENDPOINTS ==========
 
+    /**
+     * Riepiloghi delle tempeste dalla piu' recente (startTime), senza allKpIndex e rawData.
+     */
     @GetMapping("/storms")
-    public ResponseEntity<List<GeomagneticStorm>> getAllStorms() {
-        return ResponseEntity.ok(geomagneticStormRepository.findAll());
+    public ResponseEntity<List<GeomagneticStormSummary>> getAllStorms(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                geomagneticStormRepository::findSummaries,
+                (after, page) -> geomagneticStormRepository.findSummariesBefore(after.time(), after.id(), page),
+                storm -> new EventCursor(storm.getStartTime(), storm.getId()));
     }
 
+    /**
+     * Tempeste con start <= startTime <= end, riepiloghi paginati a cursore come /storms.
+     */
     @GetMapping("/storms/date-range")
-    public ResponseEntity<List<GeomagneticStorm>> getStormsByDateRange(
+    public ResponseEntity<List<GeomagneticStormSummary>> getStormsByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
-        return ResponseEntity.ok(geomagneticStormRepository.findByStartTimeBetween(start, end));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return searchPage(StormFilter.startBetween(start, end), cursor, limit);
     }
 
+    /**
+     * Tempeste con Kp >= minKp, dalla piu' recente, paginate a cursore come /storms.
+     */
     @GetMapping("/storms/major")
-    public ResponseEntity<List<GeomagneticStorm>> getMajorStorms(
-            @RequestParam(defaultValue = "5.0") double minKp) {
-        return ResponseEntity.ok(geomagneticStormRepository.findMajorStorms(BigDecimal.valueOf(minKp)));
+    public ResponseEntity<List<GeomagneticStormSummary>> getMajorStorms(
+            @RequestParam(defaultValue = "5.0") BigDecimal minKp,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return searchPage(StormFilter.minKp(minKp), cursor, limit);
     }
 
     /**
-     * NUOVO ENDPOINT: Filtra per Scala G (G1, G2, G3, G4, G5)
-     * Richiede che nel Repository esista: List<GeomagneticStorm> findByGScaleGreaterThanEqual(Integer gScale);
+     * Filtra per Scala G (G1, G2, G3, G4, G5), filtro applicato nel database
      */
     @GetMapping("/storms/scale")
-    public ResponseEntity<List<GeomagneticStorm>> getStormsByScale(
-            @RequestParam(defaultValue = "1") int minGScale) {
-        // Se non hai ancora il metodo nel repository, usa findAll e stream filter
-        return ResponseEntity.ok(geomagneticStormRepository.findAll().stream()
-                .filter(s -> s.getGScale() != null && s.getGScale() >= minGScale)
-                .toList());
+    public ResponseEntity<List<GeomagneticStormSummary>> getStormsByScale(
+            @RequestParam(defaultValue = "1") int minGScale,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return searchPage(StormFilter.minGScale(minGScale), cursor, limit);
     }
 
-    @GetMapping("/stats")
-    public ResponseEntity<Map<String, Object>> getSolarEventsStats() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalCme", cmeRepository.count());
-        stats.put("totalStorms", geomagneticStormRepository.count());
+    /**
+     * GET /api/solar-events/storms/search?minGScale=3&minKp=7&maxDst=-100&start=2015-01-01T00:00:00
+     * Filtri opzionali e combinabili su scala G, Kp, Dst e startTime (start incluso, end escluso),
+     * applicati nella query; riepiloghi dalla piu' recente, paginati a cursore come /storms.
+     */
+    @GetMapping("/storms/search")
+    public ResponseEntity<List<GeomagneticStormSummary>> searchStorms(
+            @RequestParam(required = false) Integer minGScale,
+            @RequestParam(required = false) Integer maxGScale,
+            @RequestParam(required = false) BigDecimal minKp,
+            @RequestParam(required = false) BigDecimal maxKp,
+            @RequestParam(required = false) Integer minDst,
+            @RequestParam(required = false) Integer maxDst,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return searchPage(new StormFilter(minGScale, maxGScale, minKp, maxKp, minDst, maxDst, start, end, false),
+                cursor, limit);
+    }
 
-        // Count Fast CMEs (>1000 km/s)
-        stats.put("fastCme", cmeRepository.findFastCme(BigDecimal.valueOf(1000)).size());
+    private ResponseEntity<List<GeomagneticStormSummary>> searchPage(StormFilter filter, String cursor, Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                page -> geomagneticStormRepository.search(filter, null, page),
+                (after, page) -> geomagneticStormRepository.search(filter, after, page),
+                storm -> new EventCursor(storm.getStartTime(), storm.getId()));
+    }
 
-        // Count Major Storms (Kp >= 6, circa G2)
-        stats.put("majorStorms", geomagneticStormRepository.findMajorStorms(BigDecimal.valueOf(6)).size());
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getSolarEventsStats() {
+        // Fast CME (>1000 km/s) e Major Storms (Kp >= 6, circa G2) contati nel DB
+        return ResponseEntity.ok(eventStatsService.solarEventStats());
+    }
 
-        return ResponseEntity.ok(stats);
+    // Cursore di paginazione o intervallo di ricerca non validi
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidParameters(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
     }
-}
\ No newline at end of file
+}
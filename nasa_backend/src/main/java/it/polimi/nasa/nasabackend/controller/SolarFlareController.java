@@ -1,28 +1,47 @@
 package it.polimi.nasa.nasabackend.controller;
 
+import it.polimi.nasa.nasabackend.dto.EventCursor;
+import it.polimi.nasa.nasabackend.dto.SolarFlareSummary;
 import it.polimi.nasa.nasabackend.entity.SolarFlare;
 import it.polimi.nasa.nasabackend.repository.SolarFlareRepository;
+import it.polimi.nasa.nasabackend.service.EventStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/solar-flares")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {HttpHeaders.LINK, KeysetPagination.NEXT_CURSOR_HEADER})
 public class SolarFlareController {
 
     @Autowired
     private SolarFlareRepository solarFlareRepository;
 
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    @Autowired
+    private EventStatsService eventStatsService;
+
+    /**
+     * GET /api/solar-flares?limit=50&cursor=...
+     * Riepiloghi dal piu' recente (peakTime), a pagine di limit righe; il flare completo e' su /{id}.
+     * La pagina successiva e' nell'header Link (paginazione a cursore, vedi KeysetPagination).
+     */
     @GetMapping
-    public ResponseEntity<List<SolarFlare>> getAllFlares() {
-        return ResponseEntity.ok(solarFlareRepository.findAll());
+    public ResponseEntity<List<SolarFlareSummary>> getAllFlares(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return keysetPagination.page(cursor, limit,
+                solarFlareRepository::findSummaries,
+                (after, page) -> solarFlareRepository.findSummariesBefore(after.time(), after.id(), page),
+                flare -> new EventCursor(flare.getPeakTime(), flare.getId()));
     }
 
     @GetMapping("/{id}")
@@ -54,22 +73,15 @@ public class SolarFlareController {
         return ResponseEntity.ok(solarFlareRepository.findMajorFlares());
     }
 
+    // Conteggi per classe con una GROUP BY, in cache fino al prossimo ingest
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getFlareStats() {
-        long total = solarFlareRepository.count();
-        // Queste query contano basandosi sul campo classType (es. 'X') che abbiamo parsato
-        long classX = solarFlareRepository.findByClassType("X").size();
-        long classM = solarFlareRepository.findByClassType("M").size();
-        long classC = solarFlareRepository.findByClassType("C").size();
-        long classB = solarFlareRepository.findByClassType("B").size();
-
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("total", total);
-        stats.put("classX", classX);
-        stats.put("classM", classM);
-        stats.put("classC", classC);
-        stats.put("classB", classB);
+        return ResponseEntity.ok(eventStatsService.flareStats());
+    }
 
-        return ResponseEntity.ok(stats);
+    // Cursore di paginazione non valido
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidParameters(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
     }
-}
\ No newline at end of file
+}
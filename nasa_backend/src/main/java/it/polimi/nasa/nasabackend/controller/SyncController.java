@@ -0,0 +1,70 @@
+package it.polimi.nasa.nasabackend.controller;
+
+import it.polimi.nasa.nasabackend.service.DataSyncService;
+import it.polimi.nasa.nasabackend.service.DeltaSyncService;
+import it.polimi.nasa.nasabackend.service.OutboundHttpMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/sync")
+@CrossOrigin(origins = "*")
+public class SyncController {
+
+    @Autowired
+    private DataSyncService dataSyncService;
+
+    @Autowired
+    private DeltaSyncService deltaSyncService;
+
+    @Autowired
+    private OutboundHttpMetrics outboundHttpMetrics;
+
+    /**
+     * Avanzamento della sincronizzazione in background con le API NASA, per sorgente.
+     */
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> getSyncStatus() {
+        return ResponseEntity.ok(dataSyncService.status());
+    }
+
+    /**
+     * Watermark e cadenza del polling di ogni sorgente.
+     */
+    @GetMapping("/watermarks")
+    public ResponseEntity<Map<String, Object>> getWatermarks() {
+        return ResponseEntity.ok(deltaSyncService.watermarks());
+    }
+
+    /**
+     * Chiamate HTTP verso le API NASA per host: richieste, riuso delle connessioni, latenze.
+     */
+    @GetMapping("/http")
+    public ResponseEntity<Map<String, Object>> getHttpMetrics() {
+        return ResponseEntity.ok(outboundHttpMetrics.snapshot());
+    }
+
+    /**
+     * Scarica in background un intervallo storico di una sorgente DONKI, a finestre mensili.
+     * L'avanzamento e' in /status sotto "backfill:<sorgente>".
+     */
+    @PostMapping("/backfill/{source}")
+    public ResponseEntity<Map<String, Object>> backfill(
+            @PathVariable String source,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        DataSyncService.SyncTask task;
+        try {
+            task = deltaSyncService.backfillTask(source, startDate, endDate != null ? endDate : LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        dataSyncService.runOnce(task);
+        return ResponseEntity.accepted().body(Map.of("task", task.source(), "status", "started"));
+    }
+}
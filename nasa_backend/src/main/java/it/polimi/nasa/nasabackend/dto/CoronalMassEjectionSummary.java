@@ -0,0 +1,25 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoronalMassEjectionSummary {
+    private Long id;
+    private String activityId;
+    private LocalDateTime startTime;
+    private BigDecimal speedKmS;
+    private BigDecimal halfAngleDeg;
+    private String type;
+    private String sourceLocation;
+    private BigDecimal latitude;
+    private BigDecimal longitude;
+    private Boolean isMostAccurate;
+    private String note;
+}
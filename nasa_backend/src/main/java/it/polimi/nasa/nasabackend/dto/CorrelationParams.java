@@ -0,0 +1,174 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Parametri delle correlazioni temporali manuali (finestre, soglia di velocita' CME,
+ * classi di flare, intervallo di date).
+ *
+ * Il record e' normalizzato nel costruttore (classi in maiuscolo, ordinate e senza
+ * duplicati, velocita' senza zeri finali) e viene usato direttamente come chiave di
+ * cache: due richieste equivalenti producono la stessa chiave. I campi non usati da
+ * un'analisi restano null.
+ */
+public record CorrelationParams(
+        DelayWindow flareToCme,
+        DelayWindow cmeToIps,
+        DelayWindow ipsToStorm,
+        BigDecimal minCmeSpeed,
+        List<String> flareClasses,
+        LocalDate from,
+        LocalDate to) {
+
+    private static final Set<String> FLARE_CLASSES = Set.of("A", "B", "C", "M", "X");
+
+    // Valori storici degli endpoint /api/analysis/manual/*
+    public static final CorrelationParams FLARE_CME_DEFAULTS = new CorrelationParams(
+            DelayWindow.ofMinutes(24, 120), null, null, null, List.of("M", "X"), null, null);
+
+    public static final CorrelationParams CME_IPS_DEFAULTS = new CorrelationParams(
+            null, DelayWindow.ofHours(15, 120), null, BigDecimal.valueOf(500), null, null, null);
+
+    public static final CorrelationParams IPS_STORM_DEFAULTS = new CorrelationParams(
+            null, null, DelayWindow.ofMinutes(15, 120), null, null, null, null);
+
+    public static final CorrelationParams COMPLETE_CHAIN_DEFAULTS = new CorrelationParams(
+            DelayWindow.ofMinutes(24, 60), DelayWindow.ofHours(15, 120), DelayWindow.ofMinutes(15, 60),
+            BigDecimal.valueOf(500), List.of("X"), null, null);
+
+    private static final Set<CorrelationParams> DEFAULTS = Set.of(
+            FLARE_CME_DEFAULTS, CME_IPS_DEFAULTS, IPS_STORM_DEFAULTS, COMPLETE_CHAIN_DEFAULTS);
+
+    public CorrelationParams {
+        if (flareClasses != null) {
+            flareClasses = flareClasses.stream()
+                    .map(c -> c.trim().toUpperCase(Locale.ROOT))
+                    .filter(c -> !c.isEmpty())
+                    .distinct()
+                    .sorted()
+                    .toList();
+            for (String flareClass : flareClasses) {
+                if (!FLARE_CLASSES.contains(flareClass)) {
+                    throw new IllegalArgumentException("Unknown flare class: " + flareClass);
+                }
+            }
+            if (flareClasses.isEmpty()) {
+                throw new IllegalArgumentException("At least one flare class is required");
+            }
+        }
+        if (minCmeSpeed != null) {
+            if (minCmeSpeed.signum() < 0) {
+                throw new IllegalArgumentException("minSpeed must not be negative");
+            }
+            minCmeSpeed = minCmeSpeed.stripTrailingZeros();
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+    }
+
+    /**
+     * True per i parametri di default di uno degli endpoint: queste entry di cache
+     * sono le piu' richieste e non devono essere espulse dalle ricerche parametriche.
+     */
+    public boolean isDefault() {
+        return DEFAULTS.contains(this);
+    }
+
+    public boolean inDateRange(LocalDateTime time) {
+        if (time == null) {
+            return from == null && to == null;
+        }
+        LocalDate date = time.toLocalDate();
+        return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+
+    // ============================================
+    // OVERRIDE (null = mantieni il valore corrente)
+    // ============================================
+
+    public CorrelationParams withFlareToCme(Long minMinutes, Long maxMinutes) {
+        return new CorrelationParams(flareToCme.override(minMinutes, maxMinutes), cmeToIps, ipsToStorm,
+                minCmeSpeed, flareClasses, from, to);
+    }
+
+    public CorrelationParams withCmeToIps(Long minMinutes, Long maxMinutes) {
+        return new CorrelationParams(flareToCme, cmeToIps.override(minMinutes, maxMinutes), ipsToStorm,
+                minCmeSpeed, flareClasses, from, to);
+    }
+
+    public CorrelationParams withIpsToStorm(Long minMinutes, Long maxMinutes) {
+        return new CorrelationParams(flareToCme, cmeToIps, ipsToStorm.override(minMinutes, maxMinutes),
+                minCmeSpeed, flareClasses, from, to);
+    }
+
+    public CorrelationParams withMinCmeSpeed(BigDecimal speed) {
+        return speed == null ? this : new CorrelationParams(flareToCme, cmeToIps, ipsToStorm,
+                speed, flareClasses, from, to);
+    }
+
+    public CorrelationParams withFlareClasses(List<String> classes) {
+        return classes == null ? this : new CorrelationParams(flareToCme, cmeToIps, ipsToStorm,
+                minCmeSpeed, classes, from, to);
+    }
+
+    public CorrelationParams withDateRange(LocalDate rangeFrom, LocalDate rangeTo) {
+        return new CorrelationParams(flareToCme, cmeToIps, ipsToStorm,
+                minCmeSpeed, flareClasses, rangeFrom, rangeTo);
+    }
+
+    /**
+     * Finestra di ritardo [min, max] in minuti (estremi inclusi).
+     */
+    public record DelayWindow(long minMinutes, long maxMinutes) {
+
+        public DelayWindow {
+            if (minMinutes < 0 || minMinutes > maxMinutes) {
+                throw new IllegalArgumentException(
+                        "Invalid delay window: " + minMinutes + "-" + maxMinutes + " minutes");
+            }
+        }
+
+        public static DelayWindow ofMinutes(long min, long max) {
+            return new DelayWindow(min, max);
+        }
+
+        public static DelayWindow ofHours(long min, long max) {
+            return new DelayWindow(min * 60, max * 60);
+        }
+
+        public Duration min() {
+            return Duration.ofMinutes(minMinutes);
+        }
+
+        public Duration max() {
+            return Duration.ofMinutes(maxMinutes);
+        }
+
+        public DelayWindow override(Long min, Long max) {
+            if (min == null && max == null) {
+                return this;
+            }
+            return new DelayWindow(min != null ? min : minMinutes, max != null ? max : maxMinutes);
+        }
+
+        // Etichette usate nelle risposte ("24-120", "15-120")
+        public String minutesLabel() {
+            return minMinutes + "-" + maxMinutes;
+        }
+
+        public String hoursLabel() {
+            return formatHours(minMinutes) + "-" + formatHours(maxMinutes);
+        }
+
+        private static String formatHours(long minutes) {
+            return minutes % 60 == 0 ? String.valueOf(minutes / 60) : String.valueOf(minutes / 60.0);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Posizione di una pagina keyset: ultimo (tempo, id) restituito, in ordine decrescente.
+ * time e' null per le liste ordinate solo per id (asteroidi).
+ * Il client la riceve e la rimanda come stringa opaca (Base64 URL-safe).
+ */
+public record EventCursor(LocalDateTime time, long id) {
+
+    public String encode() {
+        String value = time == null ? Long.toString(id) : time + "~" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static EventCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('~');
+            if (separator < 0) {
+                return new EventCursor(null, Long.parseLong(value));
+            }
+            return new EventCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeomagneticStormSummary {
+    private Long id;
+    private String activityId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private BigDecimal kpIndex;
+    private Integer dstIndex;
+    private Integer gScale;
+}
@@ -0,0 +1,19 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InterplanetaryShockSummary {
+    private Long id;
+    private String activityId;
+    private String catalog;
+    private LocalDateTime activityTime;
+    private String location;
+    private String instruments;
+}
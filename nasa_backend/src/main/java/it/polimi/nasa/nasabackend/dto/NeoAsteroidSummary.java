@@ -0,0 +1,20 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NeoAsteroidSummary {
+    private Long id;
+    private String neoReferenceId;
+    private String name;
+    private Boolean isPotentiallyHazardous;
+    private BigDecimal absoluteMagnitudeH;
+    private BigDecimal estimatedDiameterKmMin;
+    private BigDecimal estimatedDiameterKmMax;
+}
@@ -0,0 +1,23 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Passaggio ravvicinato con i dati dell'asteroide gia' in riga (nessun caricamento lazy di neo)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NeoCloseApproachSummary {
+    private Long id;
+    private LocalDateTime approachDate;
+    private String neoReferenceId;
+    private String name;
+    private Boolean isPotentiallyHazardous;
+    private BigDecimal missDistanceKm;
+    private BigDecimal missDistanceLunar;
+    private BigDecimal relativeVelocityKmS;
+}
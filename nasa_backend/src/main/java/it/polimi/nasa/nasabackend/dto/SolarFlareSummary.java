@@ -0,0 +1,24 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Riga delle liste paginate: senza linkedEvents e rawData (dettaglio su /{id}); note serve al dialog del client
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SolarFlareSummary {
+    private Long id;
+    private String activityId;
+    private LocalDateTime beginTime;
+    private LocalDateTime peakTime;
+    private LocalDateTime endTime;
+    private String classType;
+    private String fullClass;
+    private String sourceLocation;
+    private Integer activeRegionNum;
+    private String note;
+}
@@ -0,0 +1,43 @@
+package it.polimi.nasa.nasabackend.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Filtri della ricerca tempeste, tutti opzionali e combinabili (null = nessun limite).
+ * Estremi inclusi, tranne end (startTime < end) se endInclusive e' false.
+ * Un intervallo rovesciato e' un errore.
+ */
+public record StormFilter(Integer minGScale, Integer maxGScale,
+                          BigDecimal minKp, BigDecimal maxKp,
+                          Integer minDst, Integer maxDst,
+                          LocalDateTime start, LocalDateTime end, boolean endInclusive) {
+
+    public StormFilter {
+        checkRange("gScale", minGScale, maxGScale);
+        checkRange("kp", minKp, maxKp);
+        checkRange("dst", minDst, maxDst);
+        checkRange("start/end", start, end);
+    }
+
+    // Filtri degli endpoint a criterio singolo (/storms/scale, /storms/major, /storms/date-range)
+
+    public static StormFilter minGScale(int minGScale) {
+        return new StormFilter(minGScale, null, null, null, null, null, null, null, false);
+    }
+
+    public static StormFilter minKp(BigDecimal minKp) {
+        return new StormFilter(null, null, minKp, null, null, null, null, null, false);
+    }
+
+    // start <= startTime <= end, come il BETWEEN della vecchia query
+    public static StormFilter startBetween(LocalDateTime start, LocalDateTime end) {
+        return new StormFilter(null, null, null, null, null, null, start, end, true);
+    }
+
+    private static <T extends Comparable<? super T>> void checkRange(String name, T min, T max) {
+        if (min != null && max != null && min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Invalid " + name + " range: " + min + " > " + max);
+        }
+    }
+}
@@ -32,6 +32,9 @@ public class ApiSource {
     @Column(columnDefinition = "INTEGER DEFAULT 0")
     private Integer totalRecords;
 
+    // High-water mark della sync delta: dati completi fino a questo istante
+    private LocalDateTime watermark;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
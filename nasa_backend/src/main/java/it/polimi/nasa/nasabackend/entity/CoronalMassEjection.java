@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "coronal_mass_ejection", indexes = {
-        @Index(name = "idx_cme_time", columnList = "startTime"),
+        @Index(name = "idx_cme_time_id", columnList = "startTime,id"),
         @Index(name = "idx_cme_speed", columnList = "speedKmS")
 })
 @Data
@@ -0,0 +1,29 @@
+package it.polimi.nasa.nasabackend.entity;
+
+/**
+ * Tipi di evento DONKI che partecipano alle catene di correlazione.
+ * Il codice coincide con il segmento usato negli activityID NASA
+ * (es. "2024-05-10T06:54:00-FLR-001", "2024-05-10T07:12:00-CME-001").
+ */
+public enum EventType {
+    FLR,
+    CME,
+    IPS,
+    GST;
+
+    /**
+     * Ricava il tipo dall'activityID NASA. Ritorna null per eventi
+     * non gestiti (SEP, MPC, RBE, ...).
+     */
+    public static EventType fromActivityId(String activityId) {
+        if (activityId == null) {
+            return null;
+        }
+        for (EventType type : values()) {
+            if (activityId.contains("-" + type.name() + "-")) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
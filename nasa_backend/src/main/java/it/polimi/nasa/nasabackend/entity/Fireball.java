@@ -9,10 +9,14 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "fireball", indexes = {
-        @Index(name = "idx_fireball_date", columnList = "eventDate"),
-        @Index(name = "idx_fireball_location", columnList = "latitude,longitude")
-})
+@Table(name = "fireball",
+        uniqueConstraints = @UniqueConstraint(name = "uk_fireball_natural",
+                columnNames = {"eventDate", "latitude", "longitude"}),
+        indexes = {
+                @Index(name = "idx_fireball_date_id", columnList = "eventDate,id"),
+                @Index(name = "idx_fireball_location", columnList = "latitude,longitude"),
+                @Index(name = "idx_fireball_energy_id", columnList = "totalImpactEnergyKt,id")
+        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -10,8 +10,10 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "geomagnetic_storm", indexes = {
-        @Index(name = "idx_gst_start", columnList = "startTime"),
-        @Index(name = "idx_gst_kp", columnList = "kpIndex")
+        @Index(name = "idx_gst_start_id", columnList = "startTime,id"),
+        @Index(name = "idx_gst_kp_start", columnList = "kpIndex,startTime,id"),
+        @Index(name = "idx_gst_gscale_start", columnList = "gScale,startTime,id"),
+        @Index(name = "idx_gst_dst_start", columnList = "dstIndex,startTime,id")
 })
 @Data
 @NoArgsConstructor
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "interplanetary_shock", indexes = {
-        @Index(name = "idx_ips_time", columnList = "activityTime"),
+        @Index(name = "idx_ips_time_id", columnList = "activityTime,id"),
         @Index(name = "idx_ips_location", columnList = "location")
 })
 @Data
@@ -0,0 +1,54 @@
+package it.polimi.nasa.nasabackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Arco del grafo dei linkedEvents DONKI: l'evento sorgente cita il target nel proprio
+ * campo linkedEvents. Scritto all'ingest (una riga per link verso FLR/CME/IPS/GST),
+ * cosi' il JSON viene letto una sola volta. position conserva l'ordine NASA.
+ */
+@Entity
+@Table(name = "linked_event",
+        uniqueConstraints = @UniqueConstraint(name = "uk_linked_source_position",
+                columnNames = {"sourceActivityId", "position"}),
+        indexes = {
+                @Index(name = "idx_linked_target", columnList = "targetActivityId, sourceType")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LinkedEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String sourceActivityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 3)
+    private EventType sourceType;
+
+    @Column(nullable = false, length = 100)
+    private String targetActivityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 3)
+    private EventType targetType;
+
+    @Column(nullable = false)
+    private Integer position;
+
+    public LinkedEvent(String sourceActivityId, EventType sourceType,
+                       String targetActivityId, EventType targetType, int position) {
+        this.sourceActivityId = sourceActivityId;
+        this.sourceType = sourceType;
+        this.targetActivityId = targetActivityId;
+        this.targetType = targetType;
+        this.position = position;
+    }
+}
@@ -11,8 +11,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "neo_asteroid", indexes = {
-        @Index(name = "idx_neo_hazardous", columnList = "isPotentiallyHazardous"),
-        @Index(name = "idx_neo_magnitude", columnList = "absoluteMagnitudeH")
+        @Index(name = "idx_neo_hazardous_size", columnList = "isPotentiallyHazardous,estimatedDiameterKmMax,id"),
+        @Index(name = "idx_neo_magnitude_id", columnList = "absoluteMagnitudeH,id")
 })
 @Data
 @NoArgsConstructor
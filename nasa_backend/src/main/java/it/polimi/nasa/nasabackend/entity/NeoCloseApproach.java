@@ -9,10 +9,14 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "neo_close_approach", indexes = {
-        @Index(name = "idx_approach_date", columnList = "approachDate"),
-        @Index(name = "idx_approach_neo", columnList = "neo_id")
-})
+@Table(name = "neo_close_approach",
+        uniqueConstraints = @UniqueConstraint(name = "uk_approach_natural",
+                columnNames = {"neo_id", "approachDate", "orbitingBody"}),
+        indexes = {
+                @Index(name = "idx_approach_date_id", columnList = "approachDate,id"),
+                @Index(name = "idx_approach_neo", columnList = "neo_id"),
+                @Index(name = "idx_approach_miss_id", columnList = "missDistanceKm,id")
+        })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,56 @@
+package it.polimi.nasa.nasabackend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Finestra di al massimo 8 giorni del feed NeoWs e stato del suo download.
+ *
+ * Le finestre sono allineate a una griglia fissa (startDate e' la chiave), cosi' una
+ * sync interrotta riprende dalle stesse finestre indipendentemente dalla data richiesta.
+ * endDate e' l'ultimo giorno gia' coperto: la finestra corrente si allunga giorno per giorno.
+ */
+@Entity
+@Table(name = "neo_fetch_window", indexes = {
+        @Index(name = "idx_neo_window_status", columnList = "status")
+})
+@Data
+@NoArgsConstructor
+public class NeoFetchWindow {
+
+    public enum Status { PENDING, COMPLETED, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private LocalDate startDate;
+
+    @Column(nullable = false)
+    private LocalDate endDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Status status = Status.PENDING;
+
+    private Integer attempts = 0;
+
+    private Integer asteroids = 0;
+
+    private Integer approaches = 0;
+
+    @Column(length = 500)
+    private String lastError;
+
+    private LocalDateTime completedAt;
+
+    public NeoFetchWindow(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+}
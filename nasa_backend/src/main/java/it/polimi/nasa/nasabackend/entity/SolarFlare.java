@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "solar_flare", indexes = {
-        @Index(name = "idx_flare_peak", columnList = "peakTime"),
+        @Index(name = "idx_flare_peak_id", columnList = "peakTime,id"),
         @Index(name = "idx_flare_class", columnList = "classType,classIntensity")
 })
 @Data
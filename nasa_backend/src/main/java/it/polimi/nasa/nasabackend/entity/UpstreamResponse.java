@@ -0,0 +1,52 @@
+package it.polimi.nasa.nasabackend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ultimo fetch completato di un URL upstream (DONKI, NeoWs, JPL), per le richieste
+ * condizionali: validator HTTP (ETag, Last-Modified) e SHA-256 del body gia' ingerito.
+ *
+ * La chiave e' l'URL normalizzato senza api_key. Il body non e' conservato: un payload
+ * identico e' gia' nel DB, quindi basta riconoscerlo per saltarne parsing e salvataggio.
+ */
+@Entity
+@Table(name = "upstream_response", indexes = {
+        @Index(name = "idx_upstream_checked", columnList = "lastCheckedAt")
+})
+@Data
+@NoArgsConstructor
+public class UpstreamResponse {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 dell'URL normalizzato
+    @Column(nullable = false, unique = true, length = 64)
+    private String cacheKey;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String url;
+
+    @Column(length = 255)
+    private String etag;
+
+    @Column(length = 100)
+    private String lastModified;
+
+    @Column(nullable = false, length = 64)
+    private String bodySha256;
+
+    private Long bodyBytes;
+
+    private LocalDateTime fetchedAt;
+
+    private LocalDateTime lastCheckedAt;
+
+    // Fetch successivi saltati (304 o body identico)
+    private Integer unchangedHits = 0;
+}
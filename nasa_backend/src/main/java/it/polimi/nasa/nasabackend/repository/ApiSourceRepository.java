@@ -2,8 +2,12 @@ package it.polimi.nasa.nasabackend.repository;
 
 import it.polimi.nasa.nasabackend.entity.ApiSource;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,18 @@ public interface ApiSourceRepository extends JpaRepository<ApiSource, Long> {
     Optional<ApiSource> findByApiName(String apiName);
 
     boolean existsByApiName(String apiName);
-}
\ No newline at end of file
+
+    // Incremento atomico: le finestre DONKI in parallelo aggiornano la stessa riga
+    @Modifying
+    @Transactional
+    @Query("UPDATE ApiSource s SET s.totalRecords = COALESCE(s.totalRecords, 0) + :recordsAdded, " +
+            "s.lastUpdate = :now WHERE s.apiName = :apiName")
+    int incrementStats(String apiName, int recordsAdded, LocalDateTime now);
+
+    // Solo in avanti: una sync o un backfill concorrente non puo' riportarlo indietro
+    @Modifying
+    @Transactional
+    @Query("UPDATE ApiSource s SET s.watermark = :watermark WHERE s.apiName = :apiName " +
+            "AND (s.watermark IS NULL OR s.watermark < :watermark)")
+    int advanceWatermark(String apiName, LocalDateTime watermark);
+}
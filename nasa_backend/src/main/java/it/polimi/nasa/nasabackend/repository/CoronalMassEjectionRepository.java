@@ -1,14 +1,21 @@
 package it.polimi.nasa.nasabackend.repository;
 
+import it.polimi.nasa.nasabackend.dto.CoronalMassEjectionSummary;
 import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CoronalMassEjectionRepository extends JpaRepository<CoronalMassEjection, Long> {
@@ -17,11 +24,23 @@ public interface CoronalMassEjectionRepository extends JpaRepository<CoronalMass
 
     boolean existsByActivityId(String activityId);
 
+    // Prefetch degli activityId gia' salvati per un batch di ingest (una query IN)
+    @Query("SELECT c.activityId FROM CoronalMassEjection c WHERE c.activityId IN :activityIds")
+    List<String> findExistingActivityIds(Collection<String> activityIds);
+
     List<CoronalMassEjection> findByStartTimeBetween(LocalDateTime start, LocalDateTime end);
 
     @Query("SELECT c FROM CoronalMassEjection c WHERE c.speedKmS >= :minSpeed ORDER BY c.speedKmS DESC")
     List<CoronalMassEjection> findFastCme(BigDecimal minSpeed);
 
+    // Solo il conteggio (dashboard), senza caricare le entita'
+    @Query("SELECT COUNT(c) FROM CoronalMassEjection c WHERE c.speedKmS >= :minSpeed")
+    long countFastCme(BigDecimal minSpeed);
+
+    // Statistiche (EventStatsService): totale e CME veloci in una sola query
+    @Query("SELECT COUNT(c), SUM(CASE WHEN c.speedKmS >= :minSpeed THEN 1 ELSE 0 END) FROM CoronalMassEjection c")
+    List<Object[]> countTotalAndFast(BigDecimal minSpeed);
+
 
     @Query("SELECT c.startTime FROM CoronalMassEjection c ORDER BY c.startTime DESC LIMIT 1")
     LocalDateTime findLastEventDate();
@@ -29,4 +48,31 @@ public interface CoronalMassEjectionRepository extends JpaRepository<CoronalMass
     // Utile per l'algoritmo di correlazione (Cercare CME scaturiti subito dopo un Flare)
     @Query("SELECT c FROM CoronalMassEjection c WHERE c.startTime BETWEEN :flareTime AND :flareTimePlus72h")
     List<CoronalMassEjection> findCmeAfterFlare(LocalDateTime flareTime, LocalDateTime flareTimePlus72h);
-}
\ No newline at end of file
+
+    // Eventi con linkedEvents ma senza righe in linked_event (dati salvati prima della tabella)
+    @Query("SELECT c FROM CoronalMassEjection c WHERE c.linkedEvents IS NOT NULL AND c.linkedEvents <> '[]' " +
+            "AND NOT EXISTS (SELECT 1 FROM LinkedEvent l WHERE l.sourceActivityId = c.activityId)")
+    List<CoronalMassEjection> findWithoutLinkRows();
+
+    // Solo le colonne usate dalle analisi (ColumnarEventStore), senza rawData/note/linkedEvents
+    @Query("SELECT c.id, c.activityId, c.startTime, c.speedKmS FROM CoronalMassEjection c")
+    List<Object[]> findAnalyticsColumns();
+
+    // Liste paginate (KeysetPagination): ordine (startTime, id) decrescente sull'indice composito
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.CoronalMassEjectionSummary(" +
+            "c.id, c.activityId, c.startTime, c.speedKmS, c.halfAngleDeg, c.type, c.sourceLocation, c.latitude, c.longitude, c.isMostAccurate, c.note) " +
+            "FROM CoronalMassEjection c ORDER BY c.startTime DESC, c.id DESC")
+    List<CoronalMassEjectionSummary> findSummaries(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.CoronalMassEjectionSummary(" +
+            "c.id, c.activityId, c.startTime, c.speedKmS, c.halfAngleDeg, c.type, c.sourceLocation, c.latitude, c.longitude, c.isMostAccurate, c.note) " +
+            "FROM CoronalMassEjection c WHERE (c.startTime, c.id) < (:time, :id) ORDER BY c.startTime DESC, c.id DESC")
+    List<CoronalMassEjectionSummary> findSummariesBefore(LocalDateTime time, Long id, Limit limit);
+
+    // Export in streaming (EventExportService), in ordine crescente
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.CoronalMassEjectionSummary(" +
+            "c.id, c.activityId, c.startTime, c.speedKmS, c.halfAngleDeg, c.type, c.sourceLocation, c.latitude, c.longitude, c.isMostAccurate, c.note) " +
+            "FROM CoronalMassEjection c WHERE c.startTime >= :from AND c.startTime < :to ORDER BY c.startTime, c.id")
+    Stream<CoronalMassEjectionSummary> streamSummaries(LocalDateTime from, LocalDateTime to);
+}
@@ -1,27 +1,69 @@
 package it.polimi.nasa.nasabackend.repository;
 
+import it.polimi.nasa.nasabackend.dto.FireballDto;
 import it.polimi.nasa.nasabackend.entity.Fireball;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface FireballRepository extends JpaRepository<Fireball, Long> {
 
     List<Fireball> findByEventDateBetween(LocalDateTime start, LocalDateTime end);
 
-    @Query("SELECT f FROM Fireball f ORDER BY f.totalImpactEnergyKt DESC")
-    List<Fireball> findTopByEnergyDesc();
+    // Top-N per energia: LIMIT nella query, scansione ordinata dell'indice (energia, id)
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.FireballDto(" +
+            "f.id, f.eventDate, f.latitude, f.longitude, f.altitudeKm, f.totalImpactEnergyKt, f.velocityKmS) " +
+            "FROM Fireball f WHERE f.totalImpactEnergyKt IS NOT NULL ORDER BY f.totalImpactEnergyKt DESC, f.id DESC")
+    List<FireballDto> findTopByEnergyDesc(Limit limit);
 
     @Query("SELECT f.eventDate FROM Fireball f ORDER BY f.eventDate DESC LIMIT 1")
     LocalDateTime findLastEventDate();
 
+    // Eventi gia' salvati nell'intervallo di una sync incrementale
+    List<Fireball> findByEventDateGreaterThanEqual(LocalDateTime from);
+
+    // Riconciliazione: per ogni chiave naturale (data, lat, lon) resta la riga con id minimo
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Fireball f WHERE f.id NOT IN " +
+            "(SELECT MIN(g.id) FROM Fireball g GROUP BY g.eventDate, g.latitude, g.longitude)")
+    int deleteDuplicates();
+
     @Query("SELECT COUNT(f) FROM Fireball f WHERE f.eventDate BETWEEN :start AND :end")
     Long countByDateRange(LocalDateTime start, LocalDateTime end);
 
     @Query("SELECT f FROM Fireball f WHERE f.latitude IS NOT NULL AND f.longitude IS NOT NULL")
     List<Fireball> findAllWithLocation();
-}
\ No newline at end of file
+
+    @Query("SELECT COUNT(f), SUM(CASE WHEN f.latitude IS NOT NULL AND f.longitude IS NOT NULL THEN 1 ELSE 0 END) FROM Fireball f")
+    List<Object[]> countTotalAndWithLocation();
+
+    // Liste paginate (KeysetPagination): ordine (eventDate, id) decrescente sull'indice composito
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.FireballDto(" +
+            "f.id, f.eventDate, f.latitude, f.longitude, f.altitudeKm, f.totalImpactEnergyKt, f.velocityKmS) " +
+            "FROM Fireball f ORDER BY f.eventDate DESC, f.id DESC")
+    List<FireballDto> findSummaries(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.FireballDto(" +
+            "f.id, f.eventDate, f.latitude, f.longitude, f.altitudeKm, f.totalImpactEnergyKt, f.velocityKmS) " +
+            "FROM Fireball f WHERE (f.eventDate, f.id) < (:time, :id) ORDER BY f.eventDate DESC, f.id DESC")
+    List<FireballDto> findSummariesBefore(LocalDateTime time, Long id, Limit limit);
+
+    // Export in streaming (EventExportService), in ordine crescente
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.FireballDto(" +
+            "f.id, f.eventDate, f.latitude, f.longitude, f.altitudeKm, f.totalImpactEnergyKt, f.velocityKmS) " +
+            "FROM Fireball f WHERE f.eventDate >= :from AND f.eventDate < :to ORDER BY f.eventDate, f.id")
+    Stream<FireballDto> streamSummaries(LocalDateTime from, LocalDateTime to);
+}
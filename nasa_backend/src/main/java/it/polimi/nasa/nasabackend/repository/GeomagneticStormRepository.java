@@ -1,36 +1,71 @@
 package it.polimi.nasa.nasabackend.repository;
 
+import it.polimi.nasa.nasabackend.dto.GeomagneticStormSummary;
 import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface GeomagneticStormRepository extends JpaRepository<GeomagneticStorm, Long> {
+public interface GeomagneticStormRepository extends JpaRepository<GeomagneticStorm, Long>, GeomagneticStormSearch {
 
     Optional<GeomagneticStorm> findByActivityId(String activityId);
 
     boolean existsByActivityId(String activityId);
 
-    List<GeomagneticStorm> findByStartTimeBetween(LocalDateTime start, LocalDateTime end);
+    // Prefetch degli activityId gia' salvati per un batch di ingest (una query IN)
+    @Query("SELECT g.activityId FROM GeomagneticStorm g WHERE g.activityId IN :activityIds")
+    List<String> findExistingActivityIds(Collection<String> activityIds);
 
-    // Corretto per usare BigDecimal come da Entity
-    @Query("SELECT g FROM GeomagneticStorm g WHERE g.kpIndex >= :minKp ORDER BY g.kpIndex DESC")
-    List<GeomagneticStorm> findMajorStorms(BigDecimal minKp);
+    // Solo il conteggio (dashboard), senza caricare le entita'
+    @Query("SELECT COUNT(g) FROM GeomagneticStorm g WHERE g.kpIndex >= :minKp")
+    long countMajorStorms(BigDecimal minKp);
+
+    @Query("SELECT COUNT(g), SUM(CASE WHEN g.kpIndex >= :minKp THEN 1 ELSE 0 END) FROM GeomagneticStorm g")
+    List<Object[]> countTotalAndMajor(BigDecimal minKp);
 
     @Query("SELECT g.startTime FROM GeomagneticStorm g ORDER BY g.startTime DESC LIMIT 1")
     LocalDateTime findLastEventDate();
 
-    // Filtro per scala G (G1...G5)
-    @Query("SELECT g FROM GeomagneticStorm g WHERE g.gScale >= :minGScale")
-    List<GeomagneticStorm> findByGScale(Integer minGScale);
-
     // Utile per l'algoritmo di correlazione
     @Query("SELECT g FROM GeomagneticStorm g WHERE g.startTime BETWEEN :cmeTime AND :cmeTimePlus96h")
     List<GeomagneticStorm> findStormAfterCme(LocalDateTime cmeTime, LocalDateTime cmeTimePlus96h);
-}
\ No newline at end of file
+
+    // Eventi con linkedEvents ma senza righe in linked_event (dati salvati prima della tabella)
+    @Query("SELECT g FROM GeomagneticStorm g WHERE g.linkedEvents IS NOT NULL AND g.linkedEvents <> '[]' " +
+            "AND NOT EXISTS (SELECT 1 FROM LinkedEvent l WHERE l.sourceActivityId = g.activityId)")
+    List<GeomagneticStorm> findWithoutLinkRows();
+
+    // Solo le colonne usate dalle analisi (ColumnarEventStore), senza rawData/note/linkedEvents
+    @Query("SELECT g.id, g.activityId, g.startTime, g.kpIndex FROM GeomagneticStorm g")
+    List<Object[]> findAnalyticsColumns();
+
+    // Liste paginate (KeysetPagination): ordine (startTime, id) decrescente sull'indice composito
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.GeomagneticStormSummary(" +
+            "g.id, g.activityId, g.startTime, g.endTime, g.kpIndex, g.dstIndex, g.gScale) " +
+            "FROM GeomagneticStorm g ORDER BY g.startTime DESC, g.id DESC")
+    List<GeomagneticStormSummary> findSummaries(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.GeomagneticStormSummary(" +
+            "g.id, g.activityId, g.startTime, g.endTime, g.kpIndex, g.dstIndex, g.gScale) " +
+            "FROM GeomagneticStorm g WHERE (g.startTime, g.id) < (:time, :id) ORDER BY g.startTime DESC, g.id DESC")
+    List<GeomagneticStormSummary> findSummariesBefore(LocalDateTime time, Long id, Limit limit);
+
+    // Export in streaming (EventExportService), in ordine crescente
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.GeomagneticStormSummary(" +
+            "g.id, g.activityId, g.startTime, g.endTime, g.kpIndex, g.dstIndex, g.gScale) " +
+            "FROM GeomagneticStorm g WHERE g.startTime >= :from AND g.startTime < :to ORDER BY g.startTime, g.id")
+    Stream<GeomagneticStormSummary> streamSummaries(LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,20 @@
+package it.polimi.nasa.nasabackend.repository;
+
+import it.polimi.nasa.nasabackend.dto.EventCursor;
+import it.polimi.nasa.nasabackend.dto.GeomagneticStormSummary;
+import it.polimi.nasa.nasabackend.dto.StormFilter;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+
+/**
+ * Ricerca tempeste con filtri combinabili (implementata in GeomagneticStormSearchImpl).
+ */
+public interface GeomagneticStormSearch {
+
+    /**
+     * Riepiloghi che rispettano il filtro, in ordine (startTime, id) decrescente;
+     * after = cursore keyset (null per la prima pagina).
+     */
+    List<GeomagneticStormSummary> search(StormFilter filter, EventCursor after, Limit limit);
+}
@@ -0,0 +1,85 @@
+package it.polimi.nasa.nasabackend.repository;
+
+import it.polimi.nasa.nasabackend.dto.EventCursor;
+import it.polimi.nasa.nasabackend.dto.GeomagneticStormSummary;
+import it.polimi.nasa.nasabackend.dto.StormFilter;
+import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query costruita con la Criteria API: nella WHERE finiscono solo i filtri presenti,
+ * quindi ogni combinazione e' una query diversa che il database pianifica sugli indici
+ * (startTime,id), (gScale,startTime,id), (kpIndex,startTime,id), (dstIndex,startTime,id),
+ * invece di una query unica con "(:x IS NULL OR ...)" per ogni parametro.
+ */
+class GeomagneticStormSearchImpl implements GeomagneticStormSearch {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<GeomagneticStormSummary> search(StormFilter filter, EventCursor after, Limit limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<GeomagneticStormSummary> query = cb.createQuery(GeomagneticStormSummary.class);
+        Root<GeomagneticStorm> storm = query.from(GeomagneticStorm.class);
+        Path<LocalDateTime> startTime = storm.get("startTime");
+        Path<Long> id = storm.get("id");
+
+        List<Predicate> where = new ArrayList<>();
+        range(cb, where, storm.get("gScale"), filter.minGScale(), filter.maxGScale());
+        range(cb, where, storm.get("kpIndex"), filter.minKp(), filter.maxKp());
+        range(cb, where, storm.get("dstIndex"), filter.minDst(), filter.maxDst());
+        if (filter.start() != null) {
+            where.add(cb.greaterThanOrEqualTo(startTime, filter.start()));
+        }
+        if (filter.end() != null) {
+            where.add(filter.endInclusive()
+                    ? cb.lessThanOrEqualTo(startTime, filter.end())
+                    : cb.lessThan(startTime, filter.end()));
+        }
+
+        // Keyset: (startTime, id) < cursore; il "<=" su startTime resta un range sull'indice
+        if (after != null) {
+            if (after.time() == null) {
+                throw new IllegalArgumentException("Invalid cursor for storm search");
+            }
+            where.add(cb.lessThanOrEqualTo(startTime, after.time()));
+            where.add(cb.or(cb.lessThan(startTime, after.time()), cb.lessThan(id, after.id())));
+        }
+
+        query.select(cb.construct(GeomagneticStormSummary.class,
+                        id, storm.get("activityId"), startTime, storm.get("endTime"),
+                        storm.get("kpIndex"), storm.get("dstIndex"), storm.get("gScale")))
+                .where(where.toArray(Predicate[]::new))
+                .orderBy(cb.desc(startTime), cb.desc(id));
+
+        TypedQuery<GeomagneticStormSummary> typed = entityManager.createQuery(query);
+        if (limit.isLimited()) {
+            typed.setMaxResults(limit.max());
+        }
+        return typed.getResultList();
+    }
+
+    // min <= valore <= max, solo per gli estremi presenti
+    private static <T extends Comparable<? super T>> void range(CriteriaBuilder cb, List<Predicate> where,
+                                                               Path<T> path, T min, T max) {
+        if (min != null) {
+            where.add(cb.greaterThanOrEqualTo(path, min));
+        }
+        if (max != null) {
+            where.add(cb.lessThanOrEqualTo(path, max));
+        }
+    }
+}
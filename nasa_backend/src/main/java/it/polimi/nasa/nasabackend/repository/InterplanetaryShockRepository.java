@@ -1,20 +1,31 @@
 package it.polimi.nasa.nasabackend.repository;
 
+import it.polimi.nasa.nasabackend.dto.InterplanetaryShockSummary;
 import it.polimi.nasa.nasabackend.entity.InterplanetaryShock;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface InterplanetaryShockRepository extends JpaRepository<InterplanetaryShock, Long> {
 
     boolean existsByActivityId(String activityId);
 
+    // Prefetch degli activityId gia' salvati per un batch di ingest (una query IN)
+    @Query("SELECT i.activityId FROM InterplanetaryShock i WHERE i.activityId IN :activityIds")
+    List<String> findExistingActivityIds(Collection<String> activityIds);
+
     Optional<InterplanetaryShock> findByActivityId(String activityId);
 
     // Metodo standard JPA per ottenere tutti gli shock ordinati per data (Spring lo implementa da solo)
@@ -27,6 +38,13 @@ public interface InterplanetaryShockRepository extends JpaRepository<Interplanet
     @Query("SELECT ips FROM InterplanetaryShock ips WHERE ips.location LIKE '%Earth%' ORDER BY ips.activityTime DESC")
     List<InterplanetaryShock> findEarthShocks();
 
+    // Solo il conteggio (dashboard), senza caricare le entita'
+    @Query("SELECT COUNT(ips) FROM InterplanetaryShock ips WHERE ips.location LIKE '%Earth%'")
+    long countEarthShocks();
+
+    @Query("SELECT COUNT(i), SUM(CASE WHEN i.location LIKE '%Earth%' THEN 1 ELSE 0 END) FROM InterplanetaryShock i")
+    List<Object[]> countTotalAndEarth();
+
     @Query("SELECT i.activityTime FROM InterplanetaryShock i ORDER BY i.activityTime DESC LIMIT 1")
     LocalDateTime findLastEventDate();
 
@@ -38,4 +56,31 @@ public interface InterplanetaryShockRepository extends JpaRepository<Interplanet
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime
     );
-}
\ No newline at end of file
+
+    // Eventi con linkedEvents ma senza righe in linked_event (dati salvati prima della tabella)
+    @Query("SELECT i FROM InterplanetaryShock i WHERE i.linkedEvents IS NOT NULL AND i.linkedEvents <> '[]' " +
+            "AND NOT EXISTS (SELECT 1 FROM LinkedEvent l WHERE l.sourceActivityId = i.activityId)")
+    List<InterplanetaryShock> findWithoutLinkRows();
+
+    // Solo le colonne usate dalle analisi (ColumnarEventStore), senza rawData/note/linkedEvents
+    @Query("SELECT i.id, i.activityId, i.activityTime, i.location FROM InterplanetaryShock i")
+    List<Object[]> findAnalyticsColumns();
+
+    // Liste paginate (KeysetPagination): ordine (activityTime, id) decrescente sull'indice composito
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.InterplanetaryShockSummary(" +
+            "i.id, i.activityId, i.catalog, i.activityTime, i.location, i.instruments) " +
+            "FROM InterplanetaryShock i ORDER BY i.activityTime DESC, i.id DESC")
+    List<InterplanetaryShockSummary> findSummaries(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.InterplanetaryShockSummary(" +
+            "i.id, i.activityId, i.catalog, i.activityTime, i.location, i.instruments) " +
+            "FROM InterplanetaryShock i WHERE (i.activityTime, i.id) < (:time, :id) ORDER BY i.activityTime DESC, i.id DESC")
+    List<InterplanetaryShockSummary> findSummariesBefore(LocalDateTime time, Long id, Limit limit);
+
+    // Export in streaming (EventExportService), in ordine crescente
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.InterplanetaryShockSummary(" +
+            "i.id, i.activityId, i.catalog, i.activityTime, i.location, i.instruments) " +
+            "FROM InterplanetaryShock i WHERE i.activityTime >= :from AND i.activityTime < :to ORDER BY i.activityTime, i.id")
+    Stream<InterplanetaryShockSummary> streamSummaries(LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,15 @@
+package it.polimi.nasa.nasabackend.repository;
+
+import it.polimi.nasa.nasabackend.entity.LinkedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LinkedEventRepository extends JpaRepository<LinkedEvent, Long> {
+
+    // Archi uscenti di un batch di eventi appena salvati (uk_linked_source_position, sourceActivityId in testa)
+    List<LinkedEvent> findBySourceActivityIdIn(Collection<String> sourceActivityIds);
+}
@@ -1,11 +1,14 @@
 package it.polimi.nasa.nasabackend.repository;
 
+import it.polimi.nasa.nasabackend.dto.NeoAsteroidSummary;
 import it.polimi.nasa.nasabackend.entity.NeoAsteroid;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,11 +19,32 @@ public interface NeoAsteroidRepository extends JpaRepository<NeoAsteroid, Long>
 
     boolean existsByNeoReferenceId(String neoReferenceId);
 
-    List<NeoAsteroid> findByIsPotentiallyHazardous(Boolean isHazardous);
+    // Lookup degli asteroidi di un blocco del feed NEO (una query IN)
+    List<NeoAsteroid> findByNeoReferenceIdIn(Collection<String> neoReferenceIds);
 
-    @Query("SELECT n FROM NeoAsteroid n WHERE n.isPotentiallyHazardous = true ORDER BY n.estimatedDiameterKmMax DESC")
-    List<NeoAsteroid> findHazardousAsteroidsBySize();
+    List<NeoAsteroid> findByIsPotentiallyHazardous(Boolean isHazardous);
 
-    @Query("SELECT n FROM NeoAsteroid n ORDER BY n.absoluteMagnitudeH ASC")
-    List<NeoAsteroid> findBrightestAsteroids();
-}
\ No newline at end of file
+    @Query("SELECT n.isPotentiallyHazardous, COUNT(n) FROM NeoAsteroid n GROUP BY n.isPotentiallyHazardous")
+    List<Object[]> countGroupByHazardous();
+
+    // Top-N (LIMIT nella query) sugli indici (pericoloso, diametro, id) e (magnitudine, id)
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoAsteroidSummary(n.id, n.neoReferenceId, n.name, n.isPotentiallyHazardous, " +
+            "n.absoluteMagnitudeH, n.estimatedDiameterKmMin, n.estimatedDiameterKmMax) FROM NeoAsteroid n " +
+            "WHERE n.isPotentiallyHazardous = true AND n.estimatedDiameterKmMax IS NOT NULL " +
+            "ORDER BY n.estimatedDiameterKmMax DESC, n.id DESC")
+    List<NeoAsteroidSummary> findHazardousAsteroidsBySize(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoAsteroidSummary(n.id, n.neoReferenceId, n.name, n.isPotentiallyHazardous, " +
+            "n.absoluteMagnitudeH, n.estimatedDiameterKmMin, n.estimatedDiameterKmMax) FROM NeoAsteroid n " +
+            "WHERE n.absoluteMagnitudeH IS NOT NULL ORDER BY n.absoluteMagnitudeH, n.id")
+    List<NeoAsteroidSummary> findBrightestAsteroids(Limit limit);
+
+    // Liste paginate (KeysetPagination): nessun tempo evento, ordine per id decrescente (chiave primaria)
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoAsteroidSummary(n.id, n.neoReferenceId, n.name, n.isPotentiallyHazardous, " +
+            "n.absoluteMagnitudeH, n.estimatedDiameterKmMin, n.estimatedDiameterKmMax) FROM NeoAsteroid n ORDER BY n.id DESC")
+    List<NeoAsteroidSummary> findSummaries(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoAsteroidSummary(n.id, n.neoReferenceId, n.name, n.isPotentiallyHazardous, " +
+            "n.absoluteMagnitudeH, n.estimatedDiameterKmMin, n.estimatedDiameterKmMax) FROM NeoAsteroid n WHERE n.id < :id ORDER BY n.id DESC")
+    List<NeoAsteroidSummary> findSummariesBefore(Long id, Limit limit);
+}
@@ -1,12 +1,21 @@
 package it.polimi.nasa.nasabackend.repository;
 
+import it.polimi.nasa.nasabackend.dto.NeoCloseApproachSummary;
 import it.polimi.nasa.nasabackend.entity.NeoCloseApproach;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface NeoCloseApproachRepository extends JpaRepository<NeoCloseApproach, Long> {
@@ -17,12 +26,45 @@ public interface NeoCloseApproachRepository extends JpaRepository<NeoCloseApproa
     @Query("SELECT nca FROM NeoCloseApproach nca JOIN FETCH nca.neo WHERE nca.approachDate BETWEEN :start AND :end")
     List<NeoCloseApproach> findApproachesWithNeoByDateRange(LocalDateTime start, LocalDateTime end);
 
-    @Query("SELECT nca FROM NeoCloseApproach nca ORDER BY nca.missDistanceKm ASC")
-    List<NeoCloseApproach> findClosestApproaches();
+    // Top-N per distanza minima: LIMIT nella query, scansione ordinata dell'indice (distanza, id)
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoCloseApproachSummary(" +
+            "a.id, a.approachDate, n.neoReferenceId, n.name, n.isPotentiallyHazardous, a.missDistanceKm, a.missDistanceLunar, a.relativeVelocityKmS) " +
+            "FROM NeoCloseApproach a JOIN a.neo n WHERE a.missDistanceKm IS NOT NULL ORDER BY a.missDistanceKm, a.id")
+    List<NeoCloseApproachSummary> findClosestApproaches(Limit limit);
+
+    // Chiavi naturali (neo, approachDate, orbitingBody) gia' salvate per gli asteroidi di un blocco
+    @Query("SELECT nca.neo.id, nca.approachDate, nca.orbitingBody FROM NeoCloseApproach nca WHERE nca.neo.id IN :neoIds")
+    List<Object[]> findNaturalKeysByNeoIdIn(Collection<Long> neoIds);
+
+    // Riconciliazione: per ogni chiave naturale (neo, approachDate, orbitingBody) resta la riga con id minimo,
+    // cosi' uk_approach_natural si puo' aggiungere anche su database popolati prima del vincolo
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM NeoCloseApproach a WHERE a.id NOT IN " +
+            "(SELECT MIN(b.id) FROM NeoCloseApproach b GROUP BY b.neo, b.approachDate, b.orbitingBody)")
+    int deleteDuplicates();
 
     @Query("SELECT n.approachDate FROM NeoCloseApproach n ORDER BY n.approachDate DESC LIMIT 1")
     LocalDateTime findLastEventDate();
 
     @Query("SELECT nca FROM NeoCloseApproach nca WHERE nca.neo.isPotentiallyHazardous = true AND nca.approachDate >= :now")
     List<NeoCloseApproach> findUpcomingHazardousApproaches(LocalDateTime now);
-}
\ No newline at end of file
+
+    // Liste paginate (KeysetPagination): ordine (approachDate, id) decrescente sull'indice composito
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoCloseApproachSummary(" +
+            "a.id, a.approachDate, n.neoReferenceId, n.name, n.isPotentiallyHazardous, a.missDistanceKm, a.missDistanceLunar, a.relativeVelocityKmS) " +
+            "FROM NeoCloseApproach a JOIN a.neo n ORDER BY a.approachDate DESC, a.id DESC")
+    List<NeoCloseApproachSummary> findSummaries(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoCloseApproachSummary(" +
+            "a.id, a.approachDate, n.neoReferenceId, n.name, n.isPotentiallyHazardous, a.missDistanceKm, a.missDistanceLunar, a.relativeVelocityKmS) " +
+            "FROM NeoCloseApproach a JOIN a.neo n WHERE (a.approachDate, a.id) < (:time, :id) ORDER BY a.approachDate DESC, a.id DESC")
+    List<NeoCloseApproachSummary> findSummariesBefore(LocalDateTime time, Long id, Limit limit);
+
+    // Export in streaming (EventExportService), in ordine crescente
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.NeoCloseApproachSummary(" +
+            "a.id, a.approachDate, n.neoReferenceId, n.name, n.isPotentiallyHazardous, a.missDistanceKm, a.missDistanceLunar, a.relativeVelocityKmS) " +
+            "FROM NeoCloseApproach a JOIN a.neo n WHERE a.approachDate >= :from AND a.approachDate < :to ORDER BY a.approachDate, a.id")
+    Stream<NeoCloseApproachSummary> streamSummaries(LocalDateTime from, LocalDateTime to);
+}
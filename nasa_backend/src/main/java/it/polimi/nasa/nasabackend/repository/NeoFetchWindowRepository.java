@@ -0,0 +1,19 @@
+package it.polimi.nasa.nasabackend.repository;
+
+import it.polimi.nasa.nasabackend.entity.NeoFetchWindow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface NeoFetchWindowRepository extends JpaRepository<NeoFetchWindow, Long> {
+
+    List<NeoFetchWindow> findByStartDateBetween(LocalDate from, LocalDate to);
+
+    // Prima finestra non completata (sync interrotta o fallita): da li' riparte il backfill
+    @Query("SELECT MIN(w.startDate) FROM NeoFetchWindow w WHERE w.status <> 'COMPLETED'")
+    LocalDate findFirstPendingStart();
+}
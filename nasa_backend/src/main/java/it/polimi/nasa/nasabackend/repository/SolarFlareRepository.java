@@ -1,13 +1,20 @@
 package it.polimi.nasa.nasabackend.repository;
 
+import it.polimi.nasa.nasabackend.dto.SolarFlareSummary;
 import it.polimi.nasa.nasabackend.entity.SolarFlare;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface SolarFlareRepository extends JpaRepository<SolarFlare, Long> {
@@ -16,10 +23,20 @@ public interface SolarFlareRepository extends JpaRepository<SolarFlare, Long> {
 
     boolean existsByActivityId(String activityId);
 
+    // Prefetch degli activityId gia' salvati per un batch di ingest (una query IN)
+    @Query("SELECT f.activityId FROM SolarFlare f WHERE f.activityId IN :activityIds")
+    List<String> findExistingActivityIds(Collection<String> activityIds);
+
     List<SolarFlare> findByPeakTimeBetween(LocalDateTime start, LocalDateTime end);
 
     List<SolarFlare> findByClassType(String classType);
 
+    long countByClassType(String classType);
+
+    // Statistiche (EventStatsService): una riga (classType, conteggio) per classe
+    @Query("SELECT f.classType, COUNT(f) FROM SolarFlare f GROUP BY f.classType")
+    List<Object[]> countGroupByClassType();
+
     @Query("SELECT f FROM SolarFlare f WHERE f.classType IN ('M', 'X') ORDER BY f.peakTime DESC")
     List<SolarFlare> findMajorFlares();
 
@@ -27,4 +44,32 @@ public interface SolarFlareRepository extends JpaRepository<SolarFlare, Long> {
     LocalDateTime findLastEventDate();
     @Query("SELECT f FROM SolarFlare f WHERE f.classType = :classType AND f.peakTime BETWEEN :start AND :end")
     List<SolarFlare> findByClassTypeAndDateRange(String classType, LocalDateTime start, LocalDateTime end);
-}
\ No newline at end of file
+
+    // Eventi con linkedEvents ma senza righe in linked_event (dati salvati prima della tabella)
+    @Query("SELECT f FROM SolarFlare f WHERE f.linkedEvents IS NOT NULL AND f.linkedEvents <> '[]' " +
+            "AND NOT EXISTS (SELECT 1 FROM LinkedEvent l WHERE l.sourceActivityId = f.activityId)")
+    List<SolarFlare> findWithoutLinkRows();
+
+    // Solo le colonne usate dalle analisi (ColumnarEventStore), senza rawData/note/linkedEvents
+    @Query("SELECT f.id, f.activityId, f.peakTime, f.classType, f.fullClass FROM SolarFlare f")
+    List<Object[]> findAnalyticsColumns();
+
+    // Liste paginate (KeysetPagination): ordine (peakTime, id) decrescente sull'indice composito
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.SolarFlareSummary(" +
+            "f.id, f.activityId, f.beginTime, f.peakTime, f.endTime, f.classType, f.fullClass, f.sourceLocation, f.activeRegionNum, f.note) " +
+            "FROM SolarFlare f ORDER BY f.peakTime DESC, f.id DESC")
+    List<SolarFlareSummary> findSummaries(Limit limit);
+
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.SolarFlareSummary(" +
+            "f.id, f.activityId, f.beginTime, f.peakTime, f.endTime, f.classType, f.fullClass, f.sourceLocation, f.activeRegionNum, f.note) " +
+            "FROM SolarFlare f WHERE (f.peakTime, f.id) < (:time, :id) ORDER BY f.peakTime DESC, f.id DESC")
+    List<SolarFlareSummary> findSummariesBefore(LocalDateTime time, Long id, Limit limit);
+
+    // Export in streaming (EventExportService): righe lette a blocchi di fetch size dal cursore
+    // JDBC, in ordine crescente; il chiamante chiude lo Stream dentro una transazione
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new it.polimi.nasa.nasabackend.dto.SolarFlareSummary(" +
+            "f.id, f.activityId, f.beginTime, f.peakTime, f.endTime, f.classType, f.fullClass, f.sourceLocation, f.activeRegionNum, f.note) " +
+            "FROM SolarFlare f WHERE f.peakTime >= :from AND f.peakTime < :to ORDER BY f.peakTime, f.id")
+    Stream<SolarFlareSummary> streamSummaries(LocalDateTime from, LocalDateTime to);
+}
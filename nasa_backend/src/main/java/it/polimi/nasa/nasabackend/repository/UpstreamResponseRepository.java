@@ -0,0 +1,23 @@
+package it.polimi.nasa.nasabackend.repository;
+
+import it.polimi.nasa.nasabackend.entity.UpstreamResponse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface UpstreamResponseRepository extends JpaRepository<UpstreamResponse, Long> {
+
+    Optional<UpstreamResponse> findByCacheKey(String cacheKey);
+
+    // Intervalli di date non piu' richiesti (la sync delta sposta startDate ogni giorno)
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UpstreamResponse r WHERE r.lastCheckedAt < :cutoff")
+    int deleteCheckedBefore(LocalDateTime cutoff);
+}
@@ -1,18 +1,35 @@
 package it.polimi.nasa.nasabackend.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
+import it.polimi.nasa.nasabackend.dto.CorrelationParams;
+import it.polimi.nasa.nasabackend.dto.CorrelationParams.DelayWindow;
 import it.polimi.nasa.nasabackend.entity.*;
 import it.polimi.nasa.nasabackend.repository.*;
+import it.polimi.nasa.nasabackend.service.CorrelationAggregate.Contribution;
+import it.polimi.nasa.nasabackend.service.CorrelationAggregate.Snapshot;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,33 +47,170 @@ public class AnalysisService {
     @Autowired
     private InterplanetaryShockRepository interplanetaryShockRepository;
 
+    @Autowired
+    private ColumnarEventStore columnarEventStore;
+
+    @Autowired
+    private LinkedEventIndex linkedEventIndex;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ExecutorService virtualThreadExecutor;
+
+    // Proxy di questo service: le analisi del batch passano dalle cache @Cacheable
+    @Lazy
+    @Autowired
+    private AnalysisService self;
+
+    @Value("${nasa.dashboard.query-timeout-ms:2000}")
+    private long dashboardQueryTimeoutMs;
+
+    @Value("${nasa.analysis.batch-timeout-ms:30000}")
+    private long batchTimeoutMs;
+
+    public static final String DASHBOARD_CACHE = "dashboard-overview";
+
+    private static final int TOP_N = 10;
+    private static final List<String> MAJOR_FLARE_CLASSES = List.of("M", "X");
+    private static final List<String> X_FLARE_CLASS = List.of("X");
+    private static final BigDecimal FAST_CME_SPEED = new BigDecimal(500);
+
+    // Finestre degli endpoint legacy
+    private static final DelayWindow LEGACY_FLARE_TO_CME = DelayWindow.ofHours(0, 72);
+    private static final DelayWindow LEGACY_CME_TO_STORM = DelayWindow.ofHours(0, 96);
+
+    // Ordine di presentazione delle righe (lo stesso delle query sorgente)
+    private static final Comparator<SolarFlare> FLARE_BY_ID = Comparator.comparing(SolarFlare::getId);
+    private static final Comparator<SolarFlare> FLARE_BY_PEAK_TIME_DESC = Comparator
+            .comparing(SolarFlare::getPeakTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(SolarFlare::getId);
+    private static final Comparator<CoronalMassEjection> CME_BY_ID = Comparator.comparing(CoronalMassEjection::getId);
+    private static final Comparator<CoronalMassEjection> CME_BY_SPEED_DESC = Comparator
+            .comparing(CoronalMassEjection::getSpeedKmS, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(CoronalMassEjection::getId);
+    private static final Comparator<InterplanetaryShock> SHOCK_BY_TIME_DESC = Comparator
+            .comparing(InterplanetaryShock::getActivityTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(InterplanetaryShock::getId);
+
+    // Correlazioni mantenute incrementalmente, indicizzate per nome della cache
+    private final Map<String, MaintainedCorrelation<?>> maintained = new LinkedHashMap<>();
+
+    // Incrementato ad ogni batch di ingest: uno snapshot caricato prima e' superato
+    private final AtomicLong ingestGeneration = new AtomicLong();
+
     // ============================================
-    // HELPER METHODS - Parse linkedEvents JSON
+    // INCREMENTAL MAINTENANCE
     // ============================================
+    // Ogni analisi (verified, manual con parametri di default, legacy) e' un
+    // CorrelationAggregate costruito una volta e aggiornato ad ogni batch di ingest.
+    // Le richieste leggono solo totali e top-10 dall'aggregato.
+
+    @PostConstruct
+    void registerMaintainedCorrelations() {
+        maintained.put("flare-cme-verified", flareCmeVerified());
+        maintained.put("cme-ips-verified", cmeIpsVerified());
+        maintained.put("ips-storm-verified", ipsStormVerified());
+        maintained.put("complete-chain-verified", completeChainVerified());
+        maintained.put("flare-cme-manual", flareCmeManual(CorrelationParams.FLARE_CME_DEFAULTS));
+        maintained.put("cme-ips-manual", cmeIpsManual(CorrelationParams.CME_IPS_DEFAULTS));
+        maintained.put("ips-storm-manual", ipsStormManual(CorrelationParams.IPS_STORM_DEFAULTS));
+        maintained.put("complete-chain-manual", completeChainManual(CorrelationParams.COMPLETE_CHAIN_DEFAULTS));
+        maintained.put("cme-storm-verified", cmeStormLegacy());
+        maintained.put("complete-chain-legacy", completeChainLegacy());
+    }
+
+    /**
+     * Costruisce gli aggregati dopo il caricamento iniziale dei dati,
+     * cosi' nessuna richiesta paga il calcolo completo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildCorrelationAggregates() {
+        System.out.println("📊 Building correlation aggregates...");
+        buildFromSnapshot(maintained.values());
+    }
 
-    private List<String> parseLinkedEventIds(String linkedEventsJson) {
-        List<String> ids = new ArrayList<>();
-        if (linkedEventsJson == null || linkedEventsJson.trim().isEmpty()) {
-            return ids;
+    /**
+     * Costruisce in parallelo le correlazioni indicate, tutte sullo stesso EventSnapshot.
+     * Se nel frattempo arriva un batch di ingest, gli aggregati costruiti dallo
+     * snapshot (ormai superato) vengono scartati e ricostruiti alla prima lettura.
+     */
+    private void buildFromSnapshot(Collection<MaintainedCorrelation<?>> correlations) {
+        List<MaintainedCorrelation<?>> cold = correlations.stream()
+                .filter(correlation -> !correlation.isBuilt())
+                .collect(Collectors.toList());
+        if (cold.isEmpty()) {
+            return;
         }
+
+        long generation = ingestGeneration.get();
+        EventSnapshot snapshot = events();
+
+        List<Callable<Object>> builds = cold.stream()
+                .map(correlation -> (Callable<Object>) () -> correlation.aggregate(snapshot))
+                .collect(Collectors.toList());
         try {
-            JsonArray jsonArray = JsonParser.parseString(linkedEventsJson).getAsJsonArray();
-            for (JsonElement element : jsonArray) {
-                if (element.isJsonObject()) {
-                    String activityId = element.getAsJsonObject().get("activityID").getAsString();
-                    ids.add(activityId);
-                }
+            for (Future<Object> build : virtualThreadExecutor.invokeAll(builds)) {
+                build.get();
             }
-        } catch (Exception e) {
-            System.err.println("⚠️ Error parsing linkedEvents: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building correlation aggregates", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error building correlation aggregates: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        if (ingestGeneration.get() != generation) {
+            System.out.println("📊 New events ingested while building, aggregates will be rebuilt from DB");
+            cold.forEach(MaintainedCorrelation::reset);
         }
-        return ids;
     }
 
-    private List<String> filterLinkedEventsByType(String linkedEventsJson, String type) {
-        return parseLinkedEventIds(linkedEventsJson).stream()
-                .filter(id -> id.contains("-" + type + "-"))
-                .collect(Collectors.toList());
+    /**
+     * Integra un nuovo batch DONKI negli aggregati. Il LinkedEventIndex e' gia'
+     * aggiornato (listener con precedenza piu' alta).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsIngested(EventsIngestedEvent event) {
+        if (event.events().isEmpty()) {
+            return;
+        }
+        ingestGeneration.incrementAndGet();
+        maintained.values().forEach(correlation -> correlation.onIngest(event));
+
+        // Le entry in cache sono superate: i default si rileggono dagli aggregati,
+        // i set di parametri personalizzati vengono ricalcolati alla prossima richiesta
+        for (String cacheName : maintained.keySet()) {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+        Cache dashboard = cacheManager.getCache(DASHBOARD_CACHE);
+        if (dashboard != null) {
+            dashboard.clear();
+        }
+    }
+
+    /**
+     * Scarta aggregato e cache di una correlazione: la prossima richiesta la
+     * ricalcola per intero dallo snapshot corrente (usato dai benchmark).
+     */
+    void invalidateCorrelation(String name) {
+        maintained.get(name).reset();
+        Cache cache = cacheManager.getCache(name);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private EventSnapshot events() {
+        return columnarEventStore.snapshot();
+    }
+
+    private Snapshot snapshotOf(String name) {
+        return maintained.get(name).aggregate().snapshot(TOP_N);
     }
 
     // ============================================
@@ -67,50 +221,19 @@ public class AnalysisService {
     public Map<String, Object> analyzeFlareToCorrelation() {
         System.out.println("🔍 [NASA VERIFIED] Analyzing Flare → CME correlation (using linkedEvents)...");
 
-        List<SolarFlare> majorFlares = solarFlareRepository.findMajorFlares();
-        int totalFlares = majorFlares.size();
-        int flaresWithCme = 0;
-        List<Double> delays = new ArrayList<>();
-        List<Map<String, Object>> correlations = new ArrayList<>();
-
-        for (SolarFlare flare : majorFlares) {
-            List<String> linkedCmeIds = filterLinkedEventsByType(flare.getLinkedEvents(), "CME");
-
-            if (!linkedCmeIds.isEmpty()) {
-                flaresWithCme++;
-                for (String cmeId : linkedCmeIds) {
-                    Optional<CoronalMassEjection> cmeOpt = cmeRepository.findByActivityId(cmeId);
-                    if (cmeOpt.isPresent()) {
-                        CoronalMassEjection cme = cmeOpt.get();
-                        Duration delay = Duration.between(flare.getPeakTime(), cme.getStartTime());
-                        double delayHours = delay.toMinutes() / 60.0;
-                        delays.add(delayHours);
-
-                        Map<String, Object> correlation = new HashMap<>();
-                        correlation.put("flareId", flare.getActivityId());
-                        correlation.put("flareClass", flare.getFullClass());
-                        correlation.put("flareTime", flare.getPeakTime());
-                        correlation.put("cmeId", cme.getActivityId());
-                        correlation.put("cmeTime", cme.getStartTime());
-                        correlation.put("cmeSpeed", cme.getSpeedKmS());
-                        correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
-                        correlation.put("linkSource", "NASA_DONKI");
-                        correlations.add(correlation);
-                        break;
-                    }
-                }
-            }
-        }
+        Snapshot snapshot = snapshotOf("flare-cme-verified");
+        int totalFlares = snapshot.sources();
+        int flaresWithCme = snapshot.matched();
 
         double percentage = totalFlares > 0 ? (flaresWithCme * 100.0 / totalFlares) : 0;
-        double avgDelay = delays.isEmpty() ? 0 : delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
 
         Map<String, Object> result = new HashMap<>();
         result.put("totalMajorFlares", totalFlares);
         result.put("flaresWithCme", flaresWithCme);
         result.put("correlationPercentage", Math.round(percentage * 100.0) / 100.0);
-        result.put("averageDelayHours", Math.round(avgDelay * 100.0) / 100.0);
-        result.put("correlations", correlations.stream().limit(10).collect(Collectors.toList()));
+        result.put("averageDelayHours", Math.round(snapshot.averageDelayHours() * 100.0) / 100.0);
+        result.put("delayDistribution", delayDistribution(snapshot.delays()));
+        result.put("correlations", snapshot.topRows());
         result.put("dataSource", "NASA linkedEvents (verified)");
 
         System.out.println("✅ Flare→CME (verified): " + flaresWithCme + "/" + totalFlares);
@@ -121,52 +244,19 @@ public class AnalysisService {
     public Map<String, Object> analyzeCmeToIpsCorrelation() {
         System.out.println("🔍 [NASA VERIFIED] Analyzing CME → IPS correlation (using linkedEvents)...");
 
-        List<CoronalMassEjection> allCmes = cmeRepository.findAll();
-        int totalCmes = 0;
-        int cmesWithIps = 0;
-        List<Double> delays = new ArrayList<>();
-        List<Map<String, Object>> correlations = new ArrayList<>();
-
-        for (CoronalMassEjection cme : allCmes) {
-            if (cme.getSpeedKmS() == null || cme.getSpeedKmS().doubleValue() < 500) continue;
-            totalCmes++;
-
-            List<String> linkedIpsIds = filterLinkedEventsByType(cme.getLinkedEvents(), "IPS");
-            if (!linkedIpsIds.isEmpty()) {
-                cmesWithIps++;
-                for (String ipsId : linkedIpsIds) {
-                    Optional<InterplanetaryShock> ipsOpt = interplanetaryShockRepository.findByActivityId(ipsId);
-                    if (ipsOpt.isPresent()) {
-                        InterplanetaryShock ips = ipsOpt.get();
-                        Duration delay = Duration.between(cme.getStartTime(), ips.getActivityTime());
-                        double delayHours = delay.toMinutes() / 60.0;
-                        delays.add(delayHours);
-
-                        Map<String, Object> correlation = new HashMap<>();
-                        correlation.put("cmeId", cme.getActivityId());
-                        correlation.put("cmeTime", cme.getStartTime());
-                        correlation.put("cmeSpeed", cme.getSpeedKmS());
-                        correlation.put("ipsId", ips.getActivityId());
-                        correlation.put("ipsTime", ips.getActivityTime());
-                        correlation.put("ipsLocation", ips.getLocation());
-                        correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
-                        correlation.put("linkSource", "NASA_DONKI");
-                        correlations.add(correlation);
-                        break;
-                    }
-                }
-            }
-        }
+        Snapshot snapshot = snapshotOf("cme-ips-verified");
+        int totalCmes = snapshot.sources();
+        int cmesWithIps = snapshot.matched();
 
         double percentage = totalCmes > 0 ? (cmesWithIps * 100.0 / totalCmes) : 0;
-        double avgDelay = delays.isEmpty() ? 0 : delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
 
         Map<String, Object> result = new HashMap<>();
         result.put("totalFastCmes", totalCmes);
         result.put("cmesWithIps", cmesWithIps);
         result.put("correlationPercentage", Math.round(percentage * 100.0) / 100.0);
-        result.put("averageDelayHours", Math.round(avgDelay * 100.0) / 100.0);
-        result.put("correlations", correlations.stream().limit(10).collect(Collectors.toList()));
+        result.put("averageDelayHours", Math.round(snapshot.averageDelayHours() * 100.0) / 100.0);
+        result.put("delayDistribution", delayDistribution(snapshot.delays()));
+        result.put("correlations", snapshot.topRows());
         result.put("dataSource", "NASA linkedEvents (verified)");
 
         System.out.println("✅ CME→IPS (verified): " + cmesWithIps + "/" + totalCmes);
@@ -177,49 +267,19 @@ public class AnalysisService {
     public Map<String, Object> analyzeIpsToStormCorrelation() {
         System.out.println("🔍 [NASA VERIFIED] Analyzing IPS → Storm correlation (using linkedEvents)...");
 
-        List<InterplanetaryShock> earthShocks = interplanetaryShockRepository.findEarthShocks();
-        int totalShocks = earthShocks.size();
-        int shocksWithStorm = 0;
-        List<Double> delays = new ArrayList<>();
-        List<Map<String, Object>> correlations = new ArrayList<>();
-
-        for (InterplanetaryShock shock : earthShocks) {
-            List<String> linkedGstIds = filterLinkedEventsByType(shock.getLinkedEvents(), "GST");
-            if (!linkedGstIds.isEmpty()) {
-                shocksWithStorm++;
-                for (String gstId : linkedGstIds) {
-                    Optional<GeomagneticStorm> stormOpt = geomagneticStormRepository.findByActivityId(gstId);
-                    if (stormOpt.isPresent()) {
-                        GeomagneticStorm storm = stormOpt.get();
-                        Duration delay = Duration.between(shock.getActivityTime(), storm.getStartTime());
-                        double delayHours = delay.toMinutes() / 60.0;
-                        delays.add(delayHours);
-
-                        Map<String, Object> correlation = new HashMap<>();
-                        correlation.put("ipsId", shock.getActivityId());
-                        correlation.put("ipsTime", shock.getActivityTime());
-                        correlation.put("ipsLocation", shock.getLocation());
-                        correlation.put("stormId", storm.getActivityId());
-                        correlation.put("stormTime", storm.getStartTime());
-                        correlation.put("stormKpIndex", storm.getKpIndex());
-                        correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
-                        correlation.put("linkSource", "NASA_DONKI");
-                        correlations.add(correlation);
-                        break;
-                    }
-                }
-            }
-        }
+        Snapshot snapshot = snapshotOf("ips-storm-verified");
+        int totalShocks = snapshot.sources();
+        int shocksWithStorm = snapshot.matched();
 
         double percentage = totalShocks > 0 ? (shocksWithStorm * 100.0 / totalShocks) : 0;
-        double avgDelay = delays.isEmpty() ? 0 : delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
 
         Map<String, Object> result = new HashMap<>();
         result.put("totalEarthShocks", totalShocks);
         result.put("shocksWithStorm", shocksWithStorm);
         result.put("correlationPercentage", Math.round(percentage * 100.0) / 100.0);
-        result.put("averageDelayHours", Math.round(avgDelay * 100.0) / 100.0);
-        result.put("correlations", correlations.stream().limit(10).collect(Collectors.toList()));
+        result.put("averageDelayHours", Math.round(snapshot.averageDelayHours() * 100.0) / 100.0);
+        result.put("delayDistribution", delayDistribution(snapshot.delays()));
+        result.put("correlations", snapshot.topRows());
         result.put("dataSource", "NASA linkedEvents (verified)");
 
         System.out.println("✅ IPS→Storm (verified): " + shocksWithStorm + "/" + totalShocks);
@@ -230,264 +290,295 @@ public class AnalysisService {
     public Map<String, Object> analyzeCompleteChainWithIps() {
         System.out.println("🔍 [NASA VERIFIED] Analyzing complete Flare → CME → IPS → Storm chain...");
 
-        List<SolarFlare> xFlares = solarFlareRepository.findByClassType("X");
+        Snapshot snapshot = snapshotOf("complete-chain-verified");
+        int totalXFlares = snapshot.sources();
+        int completeChains = snapshot.rows();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalXFlares", totalXFlares);
+        result.put("completeChains", completeChains);
+        result.put("chainPercentage", totalXFlares > 0 ?
+                Math.round((completeChains * 100.0 / totalXFlares) * 100.0) / 100.0 : 0);
+        result.put("chains", snapshot.topRows());
+        result.put("dataSource", "NASA linkedEvents (verified)");
+
+        System.out.println("✅ Complete chains (verified): " + completeChains + "/" + totalXFlares);
+        return result;
+    }
+
+    private MaintainedCorrelation<SolarFlare> flareCmeVerified() {
+        return new MaintainedCorrelation<>("flare-cme-verified", FLARE_BY_PEAK_TIME_DESC, SolarFlare::getId, this::events,
+                events -> events.flaresOfClasses(MAJOR_FLARE_CLASSES),
+                (events, flares) -> flares.stream().map(this::flareCmeVerifiedContribution).collect(Collectors.toList()))
+                .on(EventType.FLR, event -> withClass(ingestedFlares(event), MAJOR_FLARE_CLASSES))
+                .on(EventType.CME, event -> withClass(flaresLinkingTo(
+                        activityIds(event.eventsAs(CoronalMassEjection.class), CoronalMassEjection::getActivityId)),
+                        MAJOR_FLARE_CLASSES));
+    }
+
+    private Contribution<SolarFlare> flareCmeVerifiedContribution(SolarFlare flare) {
+        List<String> linkedCmeIds = linkedEventIndex.linkedIds(flare.getActivityId(), EventType.CME);
+
+        for (String cmeId : linkedCmeIds) {
+            Optional<CoronalMassEjection> cmeOpt = linkedEventIndex.findCme(cmeId);
+            if (cmeOpt.isPresent()) {
+                CoronalMassEjection cme = cmeOpt.get();
+                Duration delay = Duration.between(flare.getPeakTime(), cme.getStartTime());
+                double delayHours = delay.toMinutes() / 60.0;
+
+                Map<String, Object> correlation = new HashMap<>();
+                correlation.put("flareId", flare.getActivityId());
+                correlation.put("flareClass", flare.getFullClass());
+                correlation.put("flareTime", flare.getPeakTime());
+                correlation.put("cmeId", cme.getActivityId());
+                correlation.put("cmeTime", cme.getStartTime());
+                correlation.put("cmeSpeed", cme.getSpeedKmS());
+                correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+                correlation.put("linkSource", "NASA_DONKI");
+                return Contribution.matched(flare, delay.toMinutes(), correlation);
+            }
+        }
+        // Collegata a CME non presenti nel DB: conta come correlata ma senza ritardo
+        return new Contribution<>(flare, !linkedCmeIds.isEmpty(), null, List.of());
+    }
+
+    private MaintainedCorrelation<CoronalMassEjection> cmeIpsVerified() {
+        return new MaintainedCorrelation<>("cme-ips-verified", CME_BY_ID, CoronalMassEjection::getId, this::events,
+                events -> events.fastCmes(FAST_CME_SPEED),
+                (events, cmes) -> cmes.stream().map(this::cmeIpsVerifiedContribution).collect(Collectors.toList()))
+                .on(EventType.CME, event -> fastVerified(ingestedCmes(event)))
+                .on(EventType.IPS, event -> fastVerified(cmesLinkingTo(
+                        activityIds(event.eventsAs(InterplanetaryShock.class), InterplanetaryShock::getActivityId))));
+    }
+
+    private Contribution<CoronalMassEjection> cmeIpsVerifiedContribution(CoronalMassEjection cme) {
+        List<String> linkedIpsIds = linkedEventIndex.linkedIds(cme.getActivityId(), EventType.IPS);
+
+        for (String ipsId : linkedIpsIds) {
+            Optional<InterplanetaryShock> ipsOpt = linkedEventIndex.findShock(ipsId);
+            if (ipsOpt.isPresent()) {
+                InterplanetaryShock ips = ipsOpt.get();
+                Duration delay = Duration.between(cme.getStartTime(), ips.getActivityTime());
+                double delayHours = delay.toMinutes() / 60.0;
+
+                Map<String, Object> correlation = new HashMap<>();
+                correlation.put("cmeId", cme.getActivityId());
+                correlation.put("cmeTime", cme.getStartTime());
+                correlation.put("cmeSpeed", cme.getSpeedKmS());
+                correlation.put("ipsId", ips.getActivityId());
+                correlation.put("ipsTime", ips.getActivityTime());
+                correlation.put("ipsLocation", ips.getLocation());
+                correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+                correlation.put("linkSource", "NASA_DONKI");
+                return Contribution.matched(cme, delay.toMinutes(), correlation);
+            }
+        }
+        return new Contribution<>(cme, !linkedIpsIds.isEmpty(), null, List.of());
+    }
+
+    private MaintainedCorrelation<InterplanetaryShock> ipsStormVerified() {
+        return new MaintainedCorrelation<>("ips-storm-verified", SHOCK_BY_TIME_DESC, InterplanetaryShock::getId, this::events,
+                EventSource::earthShocks,
+                (events, shocks) -> shocks.stream().map(this::ipsStormVerifiedContribution).collect(Collectors.toList()))
+                .on(EventType.IPS, event -> earthShocks(ingestedShocks(event)))
+                .on(EventType.GST, event -> earthShocks(shocksLinkingTo(
+                        activityIds(event.eventsAs(GeomagneticStorm.class), GeomagneticStorm::getActivityId))));
+    }
+
+    private Contribution<InterplanetaryShock> ipsStormVerifiedContribution(InterplanetaryShock shock) {
+        List<String> linkedGstIds = linkedEventIndex.linkedIds(shock.getActivityId(), EventType.GST);
+
+        for (String gstId : linkedGstIds) {
+            Optional<GeomagneticStorm> stormOpt = linkedEventIndex.findStorm(gstId);
+            if (stormOpt.isPresent()) {
+                GeomagneticStorm storm = stormOpt.get();
+                Duration delay = Duration.between(shock.getActivityTime(), storm.getStartTime());
+                double delayHours = delay.toMinutes() / 60.0;
+
+                Map<String, Object> correlation = new HashMap<>();
+                correlation.put("ipsId", shock.getActivityId());
+                correlation.put("ipsTime", shock.getActivityTime());
+                correlation.put("ipsLocation", shock.getLocation());
+                correlation.put("stormId", storm.getActivityId());
+                correlation.put("stormTime", storm.getStartTime());
+                correlation.put("stormKpIndex", storm.getKpIndex());
+                correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+                correlation.put("linkSource", "NASA_DONKI");
+                return Contribution.matched(shock, delay.toMinutes(), correlation);
+            }
+        }
+        return new Contribution<>(shock, !linkedGstIds.isEmpty(), null, List.of());
+    }
+
+    private MaintainedCorrelation<SolarFlare> completeChainVerified() {
+        return new MaintainedCorrelation<>("complete-chain-verified", FLARE_BY_ID, SolarFlare::getId, this::events,
+                events -> events.flaresOfClasses(X_FLARE_CLASS),
+                (events, flares) -> flares.stream().map(this::completeChainVerifiedContribution).collect(Collectors.toList()))
+                .on(EventType.FLR, event -> withClass(ingestedFlares(event), X_FLARE_CLASS))
+                .on(EventType.CME, event -> withClass(flaresLinkingTo(
+                        activityIds(event.eventsAs(CoronalMassEjection.class), CoronalMassEjection::getActivityId)),
+                        X_FLARE_CLASS))
+                .on(EventType.IPS, event -> withClass(flaresLinkingTo(linkedEventIndex.linkingIds(
+                        activityIds(event.eventsAs(InterplanetaryShock.class), InterplanetaryShock::getActivityId),
+                        EventType.CME)), X_FLARE_CLASS))
+                .on(EventType.GST, event -> withClass(flaresLinkingTo(linkedEventIndex.linkingIds(
+                        linkedEventIndex.linkingIds(
+                                activityIds(event.eventsAs(GeomagneticStorm.class), GeomagneticStorm::getActivityId),
+                                EventType.IPS),
+                        EventType.CME)), X_FLARE_CLASS));
+    }
+
+    private Contribution<SolarFlare> completeChainVerifiedContribution(SolarFlare flare) {
         List<Map<String, Object>> completeChains = new ArrayList<>();
 
-        for (SolarFlare flare : xFlares) {
-            List<String> linkedCmeIds = filterLinkedEventsByType(flare.getLinkedEvents(), "CME");
-            for (String cmeId : linkedCmeIds) {
-                Optional<CoronalMassEjection> cmeOpt = cmeRepository.findByActivityId(cmeId);
-                if (cmeOpt.isPresent()) {
-                    CoronalMassEjection cme = cmeOpt.get();
-                    List<String> linkedIpsIds = filterLinkedEventsByType(cme.getLinkedEvents(), "IPS");
-                    for (String ipsId : linkedIpsIds) {
-                        Optional<InterplanetaryShock> ipsOpt = interplanetaryShockRepository.findByActivityId(ipsId);
-                        if (ipsOpt.isPresent()) {
-                            InterplanetaryShock ips = ipsOpt.get();
-                            List<String> linkedGstIds = filterLinkedEventsByType(ips.getLinkedEvents(), "GST");
-                            for (String gstId : linkedGstIds) {
-                                Optional<GeomagneticStorm> stormOpt = geomagneticStormRepository.findByActivityId(gstId);
-                                if (stormOpt.isPresent()) {
-                                    GeomagneticStorm storm = stormOpt.get();
-                                    Duration flareToStorm = Duration.between(flare.getPeakTime(), storm.getStartTime());
-
-                                    Map<String, Object> chain = new HashMap<>();
-                                    chain.put("flareId", flare.getActivityId());
-                                    chain.put("flareClass", flare.getFullClass());
-                                    chain.put("flareTime", flare.getPeakTime());
-                                    chain.put("cmeId", cme.getActivityId());
-                                    chain.put("cmeTime", cme.getStartTime());
-                                    chain.put("cmeSpeed", cme.getSpeedKmS());
-                                    chain.put("ipsId", ips.getActivityId());
-                                    chain.put("ipsTime", ips.getActivityTime());
-                                    chain.put("ipsLocation", ips.getLocation());
-                                    chain.put("stormId", storm.getActivityId());
-                                    chain.put("stormTime", storm.getStartTime());
-                                    chain.put("stormKpIndex", storm.getKpIndex());
-                                    chain.put("totalDelayHours", flareToStorm.toHours());
-                                    chain.put("linkSource", "NASA_DONKI_verified");
-                                    completeChains.add(chain);
-                                }
+        List<String> linkedCmeIds = linkedEventIndex.linkedIds(flare.getActivityId(), EventType.CME);
+        for (String cmeId : linkedCmeIds) {
+            Optional<CoronalMassEjection> cmeOpt = linkedEventIndex.findCme(cmeId);
+            if (cmeOpt.isPresent()) {
+                CoronalMassEjection cme = cmeOpt.get();
+                List<String> linkedIpsIds = linkedEventIndex.linkedIds(cme.getActivityId(), EventType.IPS);
+                for (String ipsId : linkedIpsIds) {
+                    Optional<InterplanetaryShock> ipsOpt = linkedEventIndex.findShock(ipsId);
+                    if (ipsOpt.isPresent()) {
+                        InterplanetaryShock ips = ipsOpt.get();
+                        List<String> linkedGstIds = linkedEventIndex.linkedIds(ips.getActivityId(), EventType.GST);
+                        for (String gstId : linkedGstIds) {
+                            Optional<GeomagneticStorm> stormOpt = linkedEventIndex.findStorm(gstId);
+                            if (stormOpt.isPresent()) {
+                                GeomagneticStorm storm = stormOpt.get();
+                                Duration flareToStorm = Duration.between(flare.getPeakTime(), storm.getStartTime());
+
+                                Map<String, Object> chain = new HashMap<>();
+                                chain.put("flareId", flare.getActivityId());
+                                chain.put("flareClass", flare.getFullClass());
+                                chain.put("flareTime", flare.getPeakTime());
+                                chain.put("cmeId", cme.getActivityId());
+                                chain.put("cmeTime", cme.getStartTime());
+                                chain.put("cmeSpeed", cme.getSpeedKmS());
+                                chain.put("ipsId", ips.getActivityId());
+                                chain.put("ipsTime", ips.getActivityTime());
+                                chain.put("ipsLocation", ips.getLocation());
+                                chain.put("stormId", storm.getActivityId());
+                                chain.put("stormTime", storm.getStartTime());
+                                chain.put("stormKpIndex", storm.getKpIndex());
+                                chain.put("totalDelayHours", flareToStorm.toHours());
+                                chain.put("linkSource", "NASA_DONKI_verified");
+                                completeChains.add(chain);
                             }
                         }
                     }
                 }
             }
         }
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("totalXFlares", xFlares.size());
-        result.put("completeChains", completeChains.size());
-        result.put("chainPercentage", xFlares.size() > 0 ?
-                Math.round((completeChains.size() * 100.0 / xFlares.size()) * 100.0) / 100.0 : 0);
-        result.put("chains", completeChains.stream().limit(10).collect(Collectors.toList()));
-        result.put("dataSource", "NASA linkedEvents (verified)");
-
-        System.out.println("✅ Complete chains (verified): " + completeChains.size() + "/" + xFlares.size());
-        return result;
+        return Contribution.rows(flare, completeChains);
     }
 
     // ============================================
-    // MANUAL TEMPORAL - FAST VERSION (Same logic as old code!)
+    // MANUAL TEMPORAL - SWEEP-LINE VERSION
     // ============================================
+    // Le finestre [t+min, t+max] sono risolte in memoria da TemporalJoin, caricando
+    // solo la porzione di timeline raggiungibile dalle sorgenti da (ri)calcolare.
+    // I parametri di default usano l'aggregato mantenuto; un set personalizzato
+    // costruisce un aggregato temporaneo (poi messo in cache per quella chiave).
 
     /**
-     * Manual Flare → CME correlation using temporal window (24-60 minutes)
-     * FAST VERSION: Uses same query approach as old code
+     * Manual Flare → CME correlation using temporal window
+     * (default: M/X flares, 24-120 minutes, see CorrelationParams.FLARE_CME_DEFAULTS)
      */
-    @Cacheable(value = "flare-cme-manual", key = "'all'")
-    public Map<String, Object> analyzeFlareToCorrelationManual() {
-        System.out.println("🔍 [TEMPORAL MANUAL] Analyzing Flare → CME correlation (24-60 min window)...");
-
-        List<SolarFlare> majorFlares = solarFlareRepository.findMajorFlares();
-        int totalFlares = majorFlares.size();
-        int flaresWithCme = 0;
-        List<Double> delays = new ArrayList<>();
-        List<Map<String, Object>> correlations = new ArrayList<>();
-
-        for (SolarFlare flare : majorFlares) {
-            LocalDateTime windowStart = flare.getPeakTime().plusMinutes(24);
-            LocalDateTime windowEnd = flare.getPeakTime().plusMinutes(120);
-
-            // ✅ FAST: Query filtered in database (like old code!)
-            List<CoronalMassEjection> cmes = cmeRepository.findCmeAfterFlare(windowStart, windowEnd);
-
-            if (!cmes.isEmpty()) {
-                flaresWithCme++;
-                CoronalMassEjection closestCme = cmes.stream()
-                        .min(Comparator.comparing(CoronalMassEjection::getStartTime))
-                        .orElse(null);
-
-                if (closestCme != null) {
-                    Duration delay = Duration.between(flare.getPeakTime(), closestCme.getStartTime());
-                    double delayHours = delay.toMinutes() / 60.0;
-                    delays.add(delayHours);
-
-                    Map<String, Object> correlation = new HashMap<>();
-                    correlation.put("flareId", flare.getActivityId());
-                    correlation.put("flareClass", flare.getFullClass());
-                    correlation.put("flareTime", flare.getPeakTime());
-                    correlation.put("cmeId", closestCme.getActivityId());
-                    correlation.put("cmeTime", closestCme.getStartTime());
-                    correlation.put("cmeSpeed", closestCme.getSpeedKmS());
-                    correlation.put("delayMinutes", delay.toMinutes());
-                    correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
-                    correlation.put("linkSource", "Temporal_Analysis");
-                    correlations.add(correlation);
-                }
-            }
-        }
+    @Cacheable(value = "flare-cme-manual", key = "#params")
+    public Map<String, Object> analyzeFlareToCorrelationManual(CorrelationParams params) {
+        DelayWindow window = params.flareToCme();
+        System.out.println("🔍 [TEMPORAL MANUAL] Analyzing Flare → CME correlation ("
+                + window.minutesLabel() + " min window)...");
+
+        Snapshot snapshot = params.equals(CorrelationParams.FLARE_CME_DEFAULTS)
+                ? snapshotOf("flare-cme-manual")
+                : flareCmeManual(params).aggregate().snapshot(TOP_N);
+        int totalFlares = snapshot.sources();
+        int flaresWithCme = snapshot.matched();
 
         double percentage = totalFlares > 0 ? (flaresWithCme * 100.0 / totalFlares) : 0;
-        double avgDelay = delays.isEmpty() ? 0 : delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
 
         Map<String, Object> result = new HashMap<>();
         result.put("totalMajorFlares", totalFlares);
         result.put("flaresWithCme", flaresWithCme);
         result.put("correlationPercentage", Math.round(percentage * 100.0) / 100.0);
-        result.put("averageDelayHours", Math.round(avgDelay * 100.0) / 100.0);
-        result.put("correlations", correlations.stream().limit(10).collect(Collectors.toList()));
-        result.put("dataSource", "Temporal window analysis (24-60 min)");
+        result.put("averageDelayHours", Math.round(snapshot.averageDelayHours() * 100.0) / 100.0);
+        result.put("delayDistribution", delayDistribution(snapshot.delays()));
+        result.put("correlations", snapshot.topRows());
+        result.put("dataSource", "Temporal window analysis (" + window.minutesLabel() + " min)");
         result.put("method", "Manual temporal correlation");
-        result.put("windowMinutes", "24-60");
+        result.put("windowMinutes", window.minutesLabel());
+        result.put("parameters", params);
 
         System.out.println("✅ Flare→CME (manual): " + flaresWithCme + "/" + totalFlares);
         return result;
     }
 
     /**
-     * Manual CME → IPS correlation using temporal window (15-120 hours)
-     * FAST VERSION: Uses filtered query like old code
+     * Manual CME → IPS correlation using temporal window
+     * (default: CME >= 500 km/s, 15-120 hours, see CorrelationParams.CME_IPS_DEFAULTS)
      */
-    @Cacheable(value = "cme-ips-manual", key = "'all'")
-    public Map<String, Object> analyzeCmeToIpsCorrelationManual() {
-        System.out.println("🔍 [TEMPORAL MANUAL] Analyzing CME → IPS correlation (15-120h window)...");
-
-        // ✅ FAST: Filter in database (like old code!)
-        List<CoronalMassEjection> fastCmes = cmeRepository.findFastCme(new BigDecimal(500));
-
-        int totalCmes = fastCmes.size();
-        int cmesWithIps = 0;
-        List<Double> delays = new ArrayList<>();
-        List<Map<String, Object>> correlations = new ArrayList<>();
-
-        for (CoronalMassEjection cme : fastCmes) {
-            LocalDateTime windowStart = cme.getStartTime().plusHours(15);
-            LocalDateTime windowEnd = cme.getStartTime().plusHours(120);
-
-            // ✅ FAST: Query filtered in database (like old code!)
-            List<InterplanetaryShock> shocks = interplanetaryShockRepository.findShockAfterCme(windowStart, windowEnd);
-
-            // Filter only Earth-directed shocks
-            List<InterplanetaryShock> earthShocks = shocks.stream()
-                    .filter(ips -> ips.getLocation() != null &&
-                            ips.getLocation().toLowerCase().contains("earth"))
-                    .collect(Collectors.toList());
-
-            if (!earthShocks.isEmpty()) {
-                cmesWithIps++;
-                InterplanetaryShock closestShock = earthShocks.stream()
-                        .min(Comparator.comparing(InterplanetaryShock::getActivityTime))
-                        .orElse(null);
-
-                if (closestShock != null) {
-                    Duration delay = Duration.between(cme.getStartTime(), closestShock.getActivityTime());
-                    double delayHours = delay.toMinutes() / 60.0;
-                    delays.add(delayHours);
-
-                    Map<String, Object> correlation = new HashMap<>();
-                    correlation.put("cmeId", cme.getActivityId());
-                    correlation.put("cmeTime", cme.getStartTime());
-                    correlation.put("cmeSpeed", cme.getSpeedKmS());
-                    correlation.put("ipsId", closestShock.getActivityId());
-                    correlation.put("ipsTime", closestShock.getActivityTime());
-                    correlation.put("ipsLocation", closestShock.getLocation());
-                    correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
-                    correlation.put("linkSource", "Temporal_Analysis");
-                    correlations.add(correlation);
-                }
-            }
-        }
+    @Cacheable(value = "cme-ips-manual", key = "#params")
+    public Map<String, Object> analyzeCmeToIpsCorrelationManual(CorrelationParams params) {
+        DelayWindow window = params.cmeToIps();
+        System.out.println("🔍 [TEMPORAL MANUAL] Analyzing CME → IPS correlation ("
+                + window.hoursLabel() + "h window)...");
+
+        Snapshot snapshot = params.equals(CorrelationParams.CME_IPS_DEFAULTS)
+                ? snapshotOf("cme-ips-manual")
+                : cmeIpsManual(params).aggregate().snapshot(TOP_N);
+        int totalCmes = snapshot.sources();
+        int cmesWithIps = snapshot.matched();
 
         double percentage = totalCmes > 0 ? (cmesWithIps * 100.0 / totalCmes) : 0;
-        double avgDelay = delays.isEmpty() ? 0 : delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
 
         Map<String, Object> result = new HashMap<>();
         result.put("totalFastCmes", totalCmes);
         result.put("cmesWithIps", cmesWithIps);
         result.put("correlationPercentage", Math.round(percentage * 100.0) / 100.0);
-        result.put("averageDelayHours", Math.round(avgDelay * 100.0) / 100.0);
-        result.put("correlations", correlations.stream().limit(10).collect(Collectors.toList()));
-        result.put("dataSource", "Temporal window analysis (15h-120h)");
+        result.put("averageDelayHours", Math.round(snapshot.averageDelayHours() * 100.0) / 100.0);
+        result.put("delayDistribution", delayDistribution(snapshot.delays()));
+        result.put("correlations", snapshot.topRows());
+        result.put("dataSource", "Temporal window analysis (" + window.hoursLabel().replace("-", "h-") + "h)");
         result.put("method", "Manual temporal correlation");
-        result.put("windowHours", "15-120");
-        result.put("speedFilter", ">500 km/s");
+        result.put("windowHours", window.hoursLabel());
+        result.put("speedFilter", ">" + params.minCmeSpeed().toPlainString() + " km/s");
+        result.put("parameters", params);
 
         System.out.println("✅ CME→IPS (manual): " + cmesWithIps + "/" + totalCmes);
         return result;
     }
 
     /**
-     * Manual IPS → Storm correlation using temporal window (15-60 minutes)
-     * FAST VERSION: Uses filtered query like old code
+     * Manual IPS → Storm correlation using temporal window
+     * (default: 15-120 minutes, see CorrelationParams.IPS_STORM_DEFAULTS)
      */
-    @Cacheable(value = "ips-storm-manual", key = "'all'")
-    public Map<String, Object> analyzeIpsToStormCorrelationManual() {
-        System.out.println("🔍 [TEMPORAL MANUAL] Analyzing IPS → Storm correlation (15-60 min window)...");
-
-        // ✅ FAST: Use filtered query (like old code!)
-        List<InterplanetaryShock> earthShocks = interplanetaryShockRepository.findEarthShocks();
-
-        int totalShocks = earthShocks.size();
-        int shocksWithStorm = 0;
-        List<Double> delays = new ArrayList<>();
-        List<Map<String, Object>> correlations = new ArrayList<>();
-
-        for (InterplanetaryShock shock : earthShocks) {
-            LocalDateTime windowStart = shock.getActivityTime().plusMinutes(15);
-            LocalDateTime windowEnd = shock.getActivityTime().plusMinutes(120);
-
-            // ✅ FAST: Query filtered in database (like old code!)
-            List<GeomagneticStorm> storms = geomagneticStormRepository.findStormAfterCme(windowStart, windowEnd);
-
-            if (!storms.isEmpty()) {
-                shocksWithStorm++;
-                GeomagneticStorm closestStorm = storms.stream()
-                        .min(Comparator.comparing(GeomagneticStorm::getStartTime))
-                        .orElse(null);
-
-                if (closestStorm != null) {
-                    Duration delay = Duration.between(shock.getActivityTime(), closestStorm.getStartTime());
-                    double delayHours = delay.toMinutes() / 60.0;
-                    delays.add(delayHours);
-
-                    Map<String, Object> correlation = new HashMap<>();
-                    correlation.put("ipsId", shock.getActivityId());
-                    correlation.put("ipsTime", shock.getActivityTime());
-                    correlation.put("ipsLocation", shock.getLocation());
-                    correlation.put("stormId", closestStorm.getActivityId());
-                    correlation.put("stormTime", closestStorm.getStartTime());
-                    correlation.put("stormKpIndex", closestStorm.getKpIndex());
-                    correlation.put("delayMinutes", delay.toMinutes());
-                    correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
-                    correlation.put("linkSource", "Temporal_Analysis");
-                    correlations.add(correlation);
-                }
-            }
-        }
+    @Cacheable(value = "ips-storm-manual", key = "#params")
+    public Map<String, Object> analyzeIpsToStormCorrelationManual(CorrelationParams params) {
+        DelayWindow window = params.ipsToStorm();
+        System.out.println("🔍 [TEMPORAL MANUAL] Analyzing IPS → Storm correlation ("
+                + window.minutesLabel() + " min window)...");
+
+        Snapshot snapshot = params.equals(CorrelationParams.IPS_STORM_DEFAULTS)
+                ? snapshotOf("ips-storm-manual")
+                : ipsStormManual(params).aggregate().snapshot(TOP_N);
+        int totalShocks = snapshot.sources();
+        int shocksWithStorm = snapshot.matched();
 
         double percentage = totalShocks > 0 ? (shocksWithStorm * 100.0 / totalShocks) : 0;
-        double avgDelay = delays.isEmpty() ? 0 : delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
 
         Map<String, Object> result = new HashMap<>();
         result.put("totalEarthShocks", totalShocks);
         result.put("shocksWithStorm", shocksWithStorm);
         result.put("correlationPercentage", Math.round(percentage * 100.0) / 100.0);
-        result.put("averageDelayHours", Math.round(avgDelay * 100.0) / 100.0);
-        result.put("correlations", correlations.stream().limit(10).collect(Collectors.toList()));
-        result.put("dataSource", "Temporal window analysis (15-60 min)");
+        result.put("averageDelayHours", Math.round(snapshot.averageDelayHours() * 100.0) / 100.0);
+        result.put("delayDistribution", delayDistribution(snapshot.delays()));
+        result.put("correlations", snapshot.topRows());
+        result.put("dataSource", "Temporal window analysis (" + window.minutesLabel() + " min)");
         result.put("method", "Manual temporal correlation");
-        result.put("windowMinutes", "15-60");
+        result.put("windowMinutes", window.minutesLabel());
+        result.put("parameters", params);
 
         System.out.println("✅ IPS→Storm (manual): " + shocksWithStorm + "/" + totalShocks);
         return result;
@@ -495,54 +586,216 @@ public class AnalysisService {
 
     /**
      * Complete chain: Flare → CME → IPS → Storm (temporal analysis)
-     * FAST VERSION: Uses filtered queries at each step (like old code!)
+     * (default: X flares, CME >500 km/s, see CorrelationParams.COMPLETE_CHAIN_DEFAULTS)
      */
-    @Cacheable(value = "complete-chain-manual", key = "'all'")
-    public Map<String, Object> analyzeCompleteChainManual() {
+    @Cacheable(value = "complete-chain-manual", key = "#params")
+    public Map<String, Object> analyzeCompleteChainManual(CorrelationParams params) {
         System.out.println("🔍 [TEMPORAL MANUAL] Analyzing complete chain (manual temporal)...");
 
-        List<SolarFlare> xFlares = solarFlareRepository.findByClassType("X");
-        List<Map<String, Object>> completeChains = new ArrayList<>();
+        Snapshot snapshot = params.equals(CorrelationParams.COMPLETE_CHAIN_DEFAULTS)
+                ? snapshotOf("complete-chain-manual")
+                : completeChainManual(params).aggregate().snapshot(TOP_N);
+        int totalXFlares = snapshot.sources();
+        int completeChains = snapshot.rows();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalXFlares", totalXFlares);
+        result.put("completeChains", completeChains);
+        result.put("chainPercentage", totalXFlares > 0 ?
+                Math.round((completeChains * 100.0 / totalXFlares) * 100.0) / 100.0 : 0);
+        result.put("chains", snapshot.topRows());
+        result.put("dataSource", "Manual temporal correlation");
+        result.put("method", "Temporal window analysis");
+        result.put("windows", Map.of(
+                "flareToCme", params.flareToCme().minutesLabel() + " min",
+                "cmeToIps", params.cmeToIps().hoursLabel() + " hours",
+                "ipsToStorm", params.ipsToStorm().minutesLabel() + " min"
+        ));
+        result.put("parameters", params);
+
+        System.out.println("✅ Complete chains (manual): " + completeChains + "/" + totalXFlares);
+        return result;
+    }
+
+    private MaintainedCorrelation<SolarFlare> flareCmeManual(CorrelationParams params) {
+        DelayWindow window = params.flareToCme();
+        return new MaintainedCorrelation<>("flare-cme-manual", FLARE_BY_PEAK_TIME_DESC, SolarFlare::getId, this::events,
+                events -> inDateRange(events.flaresOfClasses(params.flareClasses()), SolarFlare::getPeakTime, params),
+                (events, flares) -> firstMatchContributions(
+                        flares, SolarFlare::getPeakTime,
+                        events::cmesBetween, CoronalMassEjection::getStartTime,
+                        window, cme -> true, this::flareCmeManualRow))
+                .on(EventType.FLR, event -> flaresMatching(ingestedFlares(event), params))
+                .on(EventType.CME, event -> sourcesReaching(
+                        event.eventsAs(CoronalMassEjection.class), CoronalMassEjection::getStartTime, cme -> true,
+                        window, (start, end) -> flaresBetween(start, end, params), SolarFlare::getPeakTime));
+    }
+
+    private Map<String, Object> flareCmeManualRow(SolarFlare flare, CoronalMassEjection cme, Duration delay) {
+        double delayHours = delay.toMinutes() / 60.0;
+
+        Map<String, Object> correlation = new HashMap<>();
+        correlation.put("flareId", flare.getActivityId());
+        correlation.put("flareClass", flare.getFullClass());
+        correlation.put("flareTime", flare.getPeakTime());
+        correlation.put("cmeId", cme.getActivityId());
+        correlation.put("cmeTime", cme.getStartTime());
+        correlation.put("cmeSpeed", cme.getSpeedKmS());
+        correlation.put("delayMinutes", delay.toMinutes());
+        correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+        correlation.put("linkSource", "Temporal_Analysis");
+        return correlation;
+    }
 
-        for (SolarFlare flare : xFlares) {
-            // Step 1: Flare → CME (24-60 min window)
-            LocalDateTime cmeWindowStart = flare.getPeakTime().plusMinutes(24);
-            LocalDateTime cmeWindowEnd = flare.getPeakTime().plusMinutes(60);
-
-            // ✅ FAST: Query filtered in database
-            List<CoronalMassEjection> cmes = cmeRepository.findCmeAfterFlare(cmeWindowStart, cmeWindowEnd);
-
-            // Filter fast CMEs (>500 km/s)
-            List<CoronalMassEjection> fastCmes = cmes.stream()
-                    .filter(cme -> cme.getSpeedKmS() != null &&
-                            cme.getSpeedKmS().compareTo(new BigDecimal(500)) > 0)
-                    .collect(Collectors.toList());
-
-            for (CoronalMassEjection cme : fastCmes) {
-                // Step 2: CME → IPS (15-120 hours window)
-                LocalDateTime ipsWindowStart = cme.getStartTime().plusHours(15);
-                LocalDateTime ipsWindowEnd = cme.getStartTime().plusHours(120);
-
-                // ✅ FAST: Query filtered in database
-                List<InterplanetaryShock> shocks = interplanetaryShockRepository
-                        .findShockAfterCme(ipsWindowStart, ipsWindowEnd);
-
-                // Filter Earth-directed
-                List<InterplanetaryShock> earthShocks = shocks.stream()
-                        .filter(ips -> ips.getLocation() != null &&
-                                ips.getLocation().toLowerCase().contains("earth"))
-                        .collect(Collectors.toList());
-
-                for (InterplanetaryShock shock : earthShocks) {
-                    // Step 3: IPS → Storm (15-60 min window)
-                    LocalDateTime stormWindowStart = shock.getActivityTime().plusMinutes(15);
-                    LocalDateTime stormWindowEnd = shock.getActivityTime().plusMinutes(60);
-
-                    // ✅ FAST: Query filtered in database
-                    List<GeomagneticStorm> storms = geomagneticStormRepository
-                            .findStormAfterCme(stormWindowStart, stormWindowEnd);
-
-                    for (GeomagneticStorm storm : storms) {
+    private MaintainedCorrelation<CoronalMassEjection> cmeIpsManual(CorrelationParams params) {
+        DelayWindow window = params.cmeToIps();
+        Predicate<CoronalMassEjection> fast = cme -> isAtLeast(cme, params.minCmeSpeed())
+                && params.inDateRange(cme.getStartTime());
+        return new MaintainedCorrelation<>("cme-ips-manual", CME_BY_SPEED_DESC, CoronalMassEjection::getId, this::events,
+                events -> inDateRange(events.fastCmes(params.minCmeSpeed()), CoronalMassEjection::getStartTime, params),
+                (events, cmes) -> firstMatchContributions(
+                        cmes, CoronalMassEjection::getStartTime,
+                        events::shocksBetween, InterplanetaryShock::getActivityTime,
+                        window, AnalysisService::isEarthDirected, this::cmeIpsManualRow))
+                .on(EventType.CME, event -> filter(ingestedCmes(event), fast))
+                .on(EventType.IPS, event -> sourcesReaching(
+                        event.eventsAs(InterplanetaryShock.class), InterplanetaryShock::getActivityTime,
+                        AnalysisService::isEarthDirected,
+                        window, (start, end) -> filter(events().cmesBetween(start, end), fast),
+                        CoronalMassEjection::getStartTime));
+    }
+
+    private Map<String, Object> cmeIpsManualRow(CoronalMassEjection cme, InterplanetaryShock shock, Duration delay) {
+        double delayHours = delay.toMinutes() / 60.0;
+
+        Map<String, Object> correlation = new HashMap<>();
+        correlation.put("cmeId", cme.getActivityId());
+        correlation.put("cmeTime", cme.getStartTime());
+        correlation.put("cmeSpeed", cme.getSpeedKmS());
+        correlation.put("ipsId", shock.getActivityId());
+        correlation.put("ipsTime", shock.getActivityTime());
+        correlation.put("ipsLocation", shock.getLocation());
+        correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+        correlation.put("linkSource", "Temporal_Analysis");
+        return correlation;
+    }
+
+    private MaintainedCorrelation<InterplanetaryShock> ipsStormManual(CorrelationParams params) {
+        DelayWindow window = params.ipsToStorm();
+        Predicate<InterplanetaryShock> earthShock = shock -> isEarthShock(shock)
+                && params.inDateRange(shock.getActivityTime());
+        return new MaintainedCorrelation<>("ips-storm-manual", SHOCK_BY_TIME_DESC, InterplanetaryShock::getId, this::events,
+                events -> inDateRange(events.earthShocks(), InterplanetaryShock::getActivityTime, params),
+                (events, shocks) -> firstMatchContributions(
+                        shocks, InterplanetaryShock::getActivityTime,
+                        events::stormsBetween, GeomagneticStorm::getStartTime,
+                        window, storm -> true, this::ipsStormManualRow))
+                .on(EventType.IPS, event -> filter(ingestedShocks(event), earthShock))
+                .on(EventType.GST, event -> sourcesReaching(
+                        event.eventsAs(GeomagneticStorm.class), GeomagneticStorm::getStartTime, storm -> true,
+                        window, (start, end) -> filter(events().shocksBetween(start, end), earthShock),
+                        InterplanetaryShock::getActivityTime));
+    }
+
+    private Map<String, Object> ipsStormManualRow(InterplanetaryShock shock, GeomagneticStorm storm, Duration delay) {
+        double delayHours = delay.toMinutes() / 60.0;
+
+        Map<String, Object> correlation = new HashMap<>();
+        correlation.put("ipsId", shock.getActivityId());
+        correlation.put("ipsTime", shock.getActivityTime());
+        correlation.put("ipsLocation", shock.getLocation());
+        correlation.put("stormId", storm.getActivityId());
+        correlation.put("stormTime", storm.getStartTime());
+        correlation.put("stormKpIndex", storm.getKpIndex());
+        correlation.put("delayMinutes", delay.toMinutes());
+        correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+        correlation.put("linkSource", "Temporal_Analysis");
+        return correlation;
+    }
+
+    private MaintainedCorrelation<SolarFlare> completeChainManual(CorrelationParams params) {
+        Predicate<CoronalMassEjection> fast = cme -> cme.getSpeedKmS() != null
+                && cme.getSpeedKmS().compareTo(params.minCmeSpeed()) > 0;
+        BiFunction<LocalDateTime, LocalDateTime, List<SolarFlare>> flaresBetween =
+                (start, end) -> flaresBetween(start, end, params);
+        BiFunction<LocalDateTime, LocalDateTime, List<CoronalMassEjection>> fastCmesBetween =
+                (start, end) -> filter(events().cmesBetween(start, end), fast);
+        BiFunction<LocalDateTime, LocalDateTime, List<InterplanetaryShock>> earthShocksBetween =
+                (start, end) -> filter(events().shocksBetween(start, end), AnalysisService::isEarthDirected);
+
+        // Un nuovo evento a valle risale la catena un passo alla volta fino ai flare
+        return new MaintainedCorrelation<>("complete-chain-manual", FLARE_BY_ID, SolarFlare::getId, this::events,
+                events -> inDateRange(events.flaresOfClasses(params.flareClasses()), SolarFlare::getPeakTime, params),
+                (events, flares) -> completeChainManualContributions(events, flares, params))
+                .on(EventType.FLR, event -> flaresMatching(ingestedFlares(event), params))
+                .on(EventType.CME, event -> sourcesReaching(
+                        event.eventsAs(CoronalMassEjection.class), CoronalMassEjection::getStartTime, fast,
+                        params.flareToCme(), flaresBetween, SolarFlare::getPeakTime))
+                .on(EventType.IPS, event -> {
+                    List<CoronalMassEjection> cmes = sourcesReaching(
+                            event.eventsAs(InterplanetaryShock.class), InterplanetaryShock::getActivityTime,
+                            AnalysisService::isEarthDirected,
+                            params.cmeToIps(), fastCmesBetween, CoronalMassEjection::getStartTime);
+                    return sourcesReaching(cmes, CoronalMassEjection::getStartTime, cme -> true,
+                            params.flareToCme(), flaresBetween, SolarFlare::getPeakTime);
+                })
+                .on(EventType.GST, event -> {
+                    List<InterplanetaryShock> shocks = sourcesReaching(
+                            event.eventsAs(GeomagneticStorm.class), GeomagneticStorm::getStartTime, storm -> true,
+                            params.ipsToStorm(), earthShocksBetween, InterplanetaryShock::getActivityTime);
+                    List<CoronalMassEjection> cmes = sourcesReaching(
+                            shocks, InterplanetaryShock::getActivityTime, shock -> true,
+                            params.cmeToIps(), fastCmesBetween, CoronalMassEjection::getStartTime);
+                    return sourcesReaching(cmes, CoronalMassEjection::getStartTime, cme -> true,
+                            params.flareToCme(), flaresBetween, SolarFlare::getPeakTime);
+                });
+    }
+
+    /**
+     * Un join a finestra per ogni passo della catena, invece di una query per evento.
+     */
+    private static List<Contribution<SolarFlare>> completeChainManualContributions(EventSource events,
+                                                                                  List<SolarFlare> xFlares,
+                                                                                  CorrelationParams params) {
+        BigDecimal minSpeed = params.minCmeSpeed();
+
+        // Step 1: Flare → CME, only fast CMEs (speed > minSpeed)
+        List<List<CoronalMassEjection>> cmesByFlare = TemporalJoin.join(
+                xFlares, SolarFlare::getPeakTime,
+                timelineFor(xFlares, SolarFlare::getPeakTime, params.flareToCme(), events::cmesBetween),
+                CoronalMassEjection::getStartTime,
+                params.flareToCme().min(), params.flareToCme().max(),
+                cme -> cme.getSpeedKmS() != null && cme.getSpeedKmS().compareTo(minSpeed) > 0);
+
+        // Step 2: CME → IPS, only Earth-directed shocks
+        List<CoronalMassEjection> chainCmes = distinctMatches(cmesByFlare);
+        Map<CoronalMassEjection, List<InterplanetaryShock>> shocksByCme = matchesByIdentity(chainCmes,
+                TemporalJoin.join(
+                        chainCmes, CoronalMassEjection::getStartTime,
+                        timelineFor(chainCmes, CoronalMassEjection::getStartTime, params.cmeToIps(), events::shocksBetween),
+                        InterplanetaryShock::getActivityTime,
+                        params.cmeToIps().min(), params.cmeToIps().max(),
+                        AnalysisService::isEarthDirected));
+
+        // Step 3: IPS → Storm
+        List<InterplanetaryShock> chainShocks = distinctMatches(new ArrayList<>(shocksByCme.values()));
+        Map<InterplanetaryShock, List<GeomagneticStorm>> stormsByShock = matchesByIdentity(chainShocks,
+                TemporalJoin.join(
+                        chainShocks, InterplanetaryShock::getActivityTime,
+                        timelineFor(chainShocks, InterplanetaryShock::getActivityTime, params.ipsToStorm(), events::stormsBetween),
+                        GeomagneticStorm::getStartTime,
+                        params.ipsToStorm().min(), params.ipsToStorm().max(),
+                        storm -> true));
+
+        List<Contribution<SolarFlare>> contributions = new ArrayList<>(xFlares.size());
+
+        for (int i = 0; i < xFlares.size(); i++) {
+            SolarFlare flare = xFlares.get(i);
+            List<Map<String, Object>> completeChains = new ArrayList<>();
+
+            for (CoronalMassEjection cme : cmesByFlare.get(i)) {
+                for (InterplanetaryShock shock : shocksByCme.get(cme)) {
+                    for (GeomagneticStorm storm : stormsByShock.get(shock)) {
                         Duration flareToStorm = Duration.between(flare.getPeakTime(), storm.getStartTime());
 
                         Map<String, Object> chain = new HashMap<>();
@@ -564,24 +817,9 @@ public class AnalysisService {
                     }
                 }
             }
+            contributions.add(Contribution.rows(flare, completeChains));
         }
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("totalXFlares", xFlares.size());
-        result.put("completeChains", completeChains.size());
-        result.put("chainPercentage", xFlares.size() > 0 ?
-                Math.round((completeChains.size() * 100.0 / xFlares.size()) * 100.0) / 100.0 : 0);
-        result.put("chains", completeChains.stream().limit(10).collect(Collectors.toList()));
-        result.put("dataSource", "Manual temporal correlation");
-        result.put("method", "Temporal window analysis");
-        result.put("windows", Map.of(
-                "flareToCme", "24-60 min",
-                "cmeToIps", "15-120 hours",
-                "ipsToStorm", "15-60 min"
-        ));
-
-        System.out.println("✅ Complete chains (manual): " + completeChains.size() + "/" + xFlares.size());
-        return result;
+        return contributions;
     }
 
     // ============================================
@@ -596,51 +834,19 @@ public class AnalysisService {
     public Map<String, Object> analyzeCmeToStormCorrelation() {
         System.out.println("🔍 [LEGACY] Analyzing CME → Storm correlation (direct)...");
 
-        List<CoronalMassEjection> fastCmes = cmeRepository.findFastCme(new BigDecimal(500));
-        int totalCmes = fastCmes.size();
-        int cmesWithStorm = 0;
-        List<Double> delays = new ArrayList<>();
-        List<Map<String, Object>> correlations = new ArrayList<>();
-
-        for (CoronalMassEjection cme : fastCmes) {
-            LocalDateTime cmeTime = cme.getStartTime();
-            LocalDateTime windowEnd = cmeTime.plusHours(96);
-
-            List<GeomagneticStorm> storms = geomagneticStormRepository.findStormAfterCme(cmeTime, windowEnd);
-
-            if (!storms.isEmpty()) {
-                cmesWithStorm++;
-                GeomagneticStorm closestStorm = storms.stream()
-                        .min(Comparator.comparing(GeomagneticStorm::getStartTime))
-                        .orElse(null);
-
-                if (closestStorm != null) {
-                    Duration delay = Duration.between(cmeTime, closestStorm.getStartTime());
-                    double delayHours = delay.toMinutes() / 60.0;
-                    delays.add(delayHours);
-
-                    Map<String, Object> correlation = new HashMap<>();
-                    correlation.put("cmeId", cme.getActivityId());
-                    correlation.put("cmeTime", cme.getStartTime());
-                    correlation.put("cmeSpeed", cme.getSpeedKmS());
-                    correlation.put("stormId", closestStorm.getActivityId());
-                    correlation.put("stormTime", closestStorm.getStartTime());
-                    correlation.put("stormKpIndex", closestStorm.getKpIndex());
-                    correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
-                    correlations.add(correlation);
-                }
-            }
-        }
+        Snapshot snapshot = snapshotOf("cme-storm-verified");
+        int totalCmes = snapshot.sources();
+        int cmesWithStorm = snapshot.matched();
 
         double percentage = totalCmes > 0 ? (cmesWithStorm * 100.0 / totalCmes) : 0;
-        double avgDelay = delays.isEmpty() ? 0 : delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
 
         Map<String, Object> result = new HashMap<>();
         result.put("totalFastCmes", totalCmes);
         result.put("cmesWithStorm", cmesWithStorm);
         result.put("correlationPercentage", Math.round(percentage * 100.0) / 100.0);
-        result.put("averageDelayHours", Math.round(avgDelay * 100.0) / 100.0);
-        result.put("correlations", correlations.stream().limit(10).collect(Collectors.toList()));
+        result.put("averageDelayHours", Math.round(snapshot.averageDelayHours() * 100.0) / 100.0);
+        result.put("delayDistribution", delayDistribution(snapshot.delays()));
+        result.put("correlations", snapshot.topRows());
 
         System.out.println("✅ CME→Storm (direct): " + cmesWithStorm + "/" + totalCmes);
         return result;
@@ -654,24 +860,99 @@ public class AnalysisService {
     public Map<String, Object> analyzeCompleteChain() {
         System.out.println("🔍 [LEGACY] Analyzing complete Flare → CME → Storm chain (no IPS)...");
 
-        List<SolarFlare> xFlares = solarFlareRepository.findByClassType("X");
-        List<Map<String, Object>> completeChains = new ArrayList<>();
+        Snapshot snapshot = snapshotOf("complete-chain-legacy");
+        int totalXFlares = snapshot.sources();
+        int completeChains = snapshot.rows();
 
-        for (SolarFlare flare : xFlares) {
-            LocalDateTime flareTime = flare.getPeakTime();
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalXFlares", totalXFlares);
+        result.put("completeChains", completeChains);
+        result.put("chainPercentage", totalXFlares > 0 ?
+                Math.round((completeChains * 100.0 / totalXFlares) * 100.0) / 100.0 : 0);
+        result.put("chains", snapshot.topRows());
 
-            List<CoronalMassEjection> cmes = cmeRepository.findCmeAfterFlare(
-                    flareTime,
-                    flareTime.plusHours(72)
-            );
+        System.out.println("✅ Complete chains (legacy): " + completeChains + "/" + totalXFlares);
+        return result;
+    }
 
-            for (CoronalMassEjection cme : cmes) {
-                List<GeomagneticStorm> storms = geomagneticStormRepository.findStormAfterCme(
-                        cme.getStartTime(),
-                        cme.getStartTime().plusHours(96)
-                );
+    private MaintainedCorrelation<CoronalMassEjection> cmeStormLegacy() {
+        Predicate<CoronalMassEjection> fast = cme -> isAtLeast(cme, FAST_CME_SPEED);
+        return new MaintainedCorrelation<>("cme-storm-verified", CME_BY_SPEED_DESC, CoronalMassEjection::getId, this::events,
+                events -> events.fastCmes(FAST_CME_SPEED),
+                (events, cmes) -> firstMatchContributions(
+                        cmes, CoronalMassEjection::getStartTime,
+                        events::stormsBetween, GeomagneticStorm::getStartTime,
+                        LEGACY_CME_TO_STORM, storm -> true, this::cmeStormLegacyRow))
+                .on(EventType.CME, event -> filter(ingestedCmes(event), fast))
+                .on(EventType.GST, event -> sourcesReaching(
+                        event.eventsAs(GeomagneticStorm.class), GeomagneticStorm::getStartTime, storm -> true,
+                        LEGACY_CME_TO_STORM,
+                        (start, end) -> filter(events().cmesBetween(start, end), fast),
+                        CoronalMassEjection::getStartTime));
+    }
+
+    private Map<String, Object> cmeStormLegacyRow(CoronalMassEjection cme, GeomagneticStorm storm, Duration delay) {
+        double delayHours = delay.toMinutes() / 60.0;
+
+        Map<String, Object> correlation = new HashMap<>();
+        correlation.put("cmeId", cme.getActivityId());
+        correlation.put("cmeTime", cme.getStartTime());
+        correlation.put("cmeSpeed", cme.getSpeedKmS());
+        correlation.put("stormId", storm.getActivityId());
+        correlation.put("stormTime", storm.getStartTime());
+        correlation.put("stormKpIndex", storm.getKpIndex());
+        correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+        return correlation;
+    }
+
+    private MaintainedCorrelation<SolarFlare> completeChainLegacy() {
+        BiFunction<LocalDateTime, LocalDateTime, List<SolarFlare>> xFlaresBetween =
+                (start, end) -> events().flaresBetween(X_FLARE_CLASS, start, end);
+
+        return new MaintainedCorrelation<>("complete-chain-legacy", FLARE_BY_ID, SolarFlare::getId, this::events,
+                events -> events.flaresOfClasses(X_FLARE_CLASS),
+                AnalysisService::completeChainLegacyContributions)
+                .on(EventType.FLR, event -> withClass(ingestedFlares(event), X_FLARE_CLASS))
+                .on(EventType.CME, event -> sourcesReaching(
+                        event.eventsAs(CoronalMassEjection.class), CoronalMassEjection::getStartTime, cme -> true,
+                        LEGACY_FLARE_TO_CME, xFlaresBetween, SolarFlare::getPeakTime))
+                .on(EventType.GST, event -> {
+                    List<CoronalMassEjection> cmes = sourcesReaching(
+                            event.eventsAs(GeomagneticStorm.class), GeomagneticStorm::getStartTime, storm -> true,
+                            LEGACY_CME_TO_STORM, (start, end) -> events().cmesBetween(start, end),
+                            CoronalMassEjection::getStartTime);
+                    return sourcesReaching(cmes, CoronalMassEjection::getStartTime, cme -> true,
+                            LEGACY_FLARE_TO_CME, xFlaresBetween, SolarFlare::getPeakTime);
+                });
+    }
+
+    private static List<Contribution<SolarFlare>> completeChainLegacyContributions(EventSource events,
+                                                                                  List<SolarFlare> xFlares) {
+        List<List<CoronalMassEjection>> cmesByFlare = TemporalJoin.join(
+                xFlares, SolarFlare::getPeakTime,
+                timelineFor(xFlares, SolarFlare::getPeakTime, LEGACY_FLARE_TO_CME, events::cmesBetween),
+                CoronalMassEjection::getStartTime,
+                LEGACY_FLARE_TO_CME.min(), LEGACY_FLARE_TO_CME.max(),
+                cme -> true);
+
+        List<CoronalMassEjection> chainCmes = distinctMatches(cmesByFlare);
+        Map<CoronalMassEjection, List<GeomagneticStorm>> stormsByCme = matchesByIdentity(chainCmes,
+                TemporalJoin.join(
+                        chainCmes, CoronalMassEjection::getStartTime,
+                        timelineFor(chainCmes, CoronalMassEjection::getStartTime, LEGACY_CME_TO_STORM, events::stormsBetween),
+                        GeomagneticStorm::getStartTime,
+                        LEGACY_CME_TO_STORM.min(), LEGACY_CME_TO_STORM.max(),
+                        storm -> true));
+
+        List<Contribution<SolarFlare>> contributions = new ArrayList<>(xFlares.size());
+
+        for (int i = 0; i < xFlares.size(); i++) {
+            SolarFlare flare = xFlares.get(i);
+            LocalDateTime flareTime = flare.getPeakTime();
+            List<Map<String, Object>> completeChains = new ArrayList<>();
 
-                for (GeomagneticStorm storm : storms) {
+            for (CoronalMassEjection cme : cmesByFlare.get(i)) {
+                for (GeomagneticStorm storm : stormsByCme.get(cme)) {
                     Duration flareToStorm = Duration.between(flareTime, storm.getStartTime());
 
                     Map<String, Object> chain = new HashMap<>();
@@ -689,17 +970,9 @@ public class AnalysisService {
                     completeChains.add(chain);
                 }
             }
+            contributions.add(Contribution.rows(flare, completeChains));
         }
-
-        Map<String, Object> result = new HashMap<>();
-        result.put("totalXFlares", xFlares.size());
-        result.put("completeChains", completeChains.size());
-        result.put("chainPercentage", xFlares.size() > 0 ?
-                Math.round((completeChains.size() * 100.0 / xFlares.size()) * 100.0) / 100.0 : 0);
-        result.put("chains", completeChains.stream().limit(10).collect(Collectors.toList()));
-
-        System.out.println("✅ Complete chains (legacy): " + completeChains.size() + "/" + xFlares.size());
-        return result;
+        return contributions;
     }
 
     /**
@@ -723,27 +996,384 @@ public class AnalysisService {
         return result;
     }
 
+    // ============================================
+    // HELPER METHODS - Temporal join
+    // ============================================
+
+    @FunctionalInterface
+    private interface RowBuilder<S, T> {
+        Map<String, Object> build(S source, T target, Duration delay);
+    }
+
+    /**
+     * Contributi "primo target nella finestra" per un gruppo di sorgenti: carica solo
+     * la porzione di timeline raggiungibile e risolve le finestre con TemporalJoin.
+     */
+    private static <S, T> List<Contribution<S>> firstMatchContributions(
+            List<S> sources, Function<S, LocalDateTime> sourceTime,
+            BiFunction<LocalDateTime, LocalDateTime, List<T>> targetsBetween, Function<T, LocalDateTime> targetTime,
+            DelayWindow window, Predicate<T> targetFilter, RowBuilder<S, T> rowBuilder) {
+
+        List<T> closestTargets = TemporalJoin.firstMatches(
+                sources, sourceTime,
+                timelineFor(sources, sourceTime, window, targetsBetween), targetTime,
+                window.min(), window.max(),
+                targetFilter);
+
+        List<Contribution<S>> contributions = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            S source = sources.get(i);
+            T closest = closestTargets.get(i);
+            if (closest == null) {
+                contributions.add(Contribution.unmatched(source));
+            } else {
+                Duration delay = Duration.between(sourceTime.apply(source), targetTime.apply(closest));
+                contributions.add(Contribution.matched(source, delay.toMinutes(), rowBuilder.build(source, closest, delay)));
+            }
+        }
+        return contributions;
+    }
+
+    /**
+     * Target (ordinati per tempo) che cadono in almeno una finestra delle sorgenti:
+     * una sola query sull'intervallo [prima sorgente + min, ultima sorgente + max].
+     */
+    private static <S, T> List<T> timelineFor(List<S> sources, Function<S, LocalDateTime> sourceTime,
+                                              DelayWindow window,
+                                              BiFunction<LocalDateTime, LocalDateTime, List<T>> targetsBetween) {
+        LocalDateTime first = null;
+        LocalDateTime last = null;
+        for (S source : sources) {
+            LocalDateTime time = sourceTime.apply(source);
+            if (time == null) continue;
+            if (first == null || time.isBefore(first)) first = time;
+            if (last == null || time.isAfter(last)) last = time;
+        }
+        if (first == null) {
+            return List.of();
+        }
+        return targetsBetween.apply(first.plus(window.min()), last.plus(window.max()));
+    }
+
+    /**
+     * Sorgenti che hanno almeno uno dei nuovi target nella propria finestra:
+     * sono le uniche il cui risultato puo' cambiare dopo l'ingest dei target.
+     */
+    private static <S, T> List<S> sourcesReaching(List<T> newTargets, Function<T, LocalDateTime> targetTime,
+                                                  Predicate<T> targetFilter, DelayWindow window,
+                                                  BiFunction<LocalDateTime, LocalDateTime, List<S>> sourcesBetween,
+                                                  Function<S, LocalDateTime> sourceTime) {
+        List<T> targets = newTargets.stream()
+                .filter(target -> targetTime.apply(target) != null && targetFilter.test(target))
+                .sorted(Comparator.comparing(targetTime))
+                .collect(Collectors.toList());
+        if (targets.isEmpty()) {
+            return List.of();
+        }
+
+        LocalDateTime first = targetTime.apply(targets.get(0));
+        LocalDateTime last = targetTime.apply(targets.get(targets.size() - 1));
+        List<S> candidates = sourcesBetween.apply(first.minus(window.max()), last.minus(window.min()));
+
+        List<T> reached = TemporalJoin.firstMatches(
+                candidates, sourceTime, targets, targetTime, window.min(), window.max(), target -> true);
+        List<S> affected = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (reached.get(i) != null) {
+                affected.add(candidates.get(i));
+            }
+        }
+        return affected;
+    }
+
+    private static boolean isEarthDirected(InterplanetaryShock ips) {
+        return ips.getLocation() != null && ips.getLocation().toLowerCase().contains("earth");
+    }
+
+    // Stesso criterio di findEarthShocks (LIKE '%Earth%')
+    private static boolean isEarthShock(InterplanetaryShock ips) {
+        return ips.getLocation() != null && ips.getLocation().contains("Earth");
+    }
+
+    private static boolean isAtLeast(CoronalMassEjection cme, BigDecimal minSpeed) {
+        return cme.getSpeedKmS() != null && cme.getSpeedKmS().compareTo(minSpeed) >= 0;
+    }
+
+    private static <T> List<T> filter(List<T> events, Predicate<T> predicate) {
+        return events.stream().filter(predicate).collect(Collectors.toList());
+    }
+
+    private static <T> List<T> inDateRange(List<T> events, Function<T, LocalDateTime> time, CorrelationParams params) {
+        return filter(events, event -> params.inDateRange(time.apply(event)));
+    }
+
+    private static List<SolarFlare> withClass(List<SolarFlare> flares, List<String> classTypes) {
+        return filter(flares, flare -> classTypes.contains(flare.getClassType()));
+    }
+
+    private static List<SolarFlare> flaresMatching(List<SolarFlare> flares, CorrelationParams params) {
+        return inDateRange(withClass(flares, params.flareClasses()), SolarFlare::getPeakTime, params);
+    }
+
+    private List<SolarFlare> flaresBetween(LocalDateTime start, LocalDateTime end, CorrelationParams params) {
+        return inDateRange(events().flaresBetween(params.flareClasses(), start, end),
+                SolarFlare::getPeakTime, params);
+    }
+
+    // Stesso criterio dell'analisi verified CME → IPS (speed >= 500)
+    private static List<CoronalMassEjection> fastVerified(List<CoronalMassEjection> cmes) {
+        return filter(cmes, cme -> cme.getSpeedKmS() != null && cme.getSpeedKmS().doubleValue() >= 500);
+    }
+
+    private static List<InterplanetaryShock> earthShocks(List<InterplanetaryShock> shocks) {
+        return filter(shocks, AnalysisService::isEarthShock);
+    }
+
+    private static <T> List<String> activityIds(List<T> events, Function<T, String> activityId) {
+        return events.stream().map(activityId).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    // Sorgenti appena ingerite, rilette dallo snapshot colonnare: gli aggregati
+    // conservano le entita' leggere e non quelle complete (rawData, note, ...)
+
+    private List<SolarFlare> ingestedFlares(EventsIngestedEvent event) {
+        return fromSnapshot(event.eventsAs(SolarFlare.class), SolarFlare::getActivityId, events()::findFlare);
+    }
+
+    private List<CoronalMassEjection> ingestedCmes(EventsIngestedEvent event) {
+        return fromSnapshot(event.eventsAs(CoronalMassEjection.class), CoronalMassEjection::getActivityId,
+                events()::findCme);
+    }
+
+    private List<InterplanetaryShock> ingestedShocks(EventsIngestedEvent event) {
+        return fromSnapshot(event.eventsAs(InterplanetaryShock.class), InterplanetaryShock::getActivityId,
+                events()::findShock);
+    }
+
+    private static <T> List<T> fromSnapshot(List<T> saved, Function<T, String> activityId,
+                                            Function<String, Optional<T>> find) {
+        return saved.stream()
+                .map(event -> find.apply(activityId.apply(event)).orElse(event))
+                .collect(Collectors.toList());
+    }
+
+    // Risalita dei linkedEvents: eventi sorgente che citano i target indicati
+
+    private List<SolarFlare> flaresLinkingTo(Collection<String> targetIds) {
+        return linkedEventIndex.linkingIds(targetIds, EventType.FLR).stream()
+                .map(linkedEventIndex::findFlare)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+
+    private List<CoronalMassEjection> cmesLinkingTo(Collection<String> targetIds) {
+        return linkedEventIndex.linkingIds(targetIds, EventType.CME).stream()
+                .map(linkedEventIndex::findCme)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+
+    private List<InterplanetaryShock> shocksLinkingTo(Collection<String> targetIds) {
+        return linkedEventIndex.linkingIds(targetIds, EventType.IPS).stream()
+                .map(linkedEventIndex::findShock)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Eventi distinti (per identita') raggiunti da un passo della catena,
+     * da usare come sorgenti del passo successivo.
+     */
+    private static <T> List<T> distinctMatches(Collection<List<T>> matches) {
+        Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<T> distinct = new ArrayList<>();
+        for (List<T> targets : matches) {
+            for (T target : targets) {
+                if (seen.add(target)) {
+                    distinct.add(target);
+                }
+            }
+        }
+        return distinct;
+    }
+
+    private static <S, T> Map<S, List<T>> matchesByIdentity(List<S> sources, List<List<T>> matches) {
+        Map<S, List<T>> bySource = new IdentityHashMap<>();
+        for (int i = 0; i < sources.size(); i++) {
+            bySource.put(sources.get(i), matches.get(i));
+        }
+        return bySource;
+    }
+
+    // ============================================
+    // HELPER METHODS - Delay distribution
+    // ============================================
+
+    /**
+     * Distribuzione dei ritardi in ore: quantili e min/max dallo sketch (errore
+     * relativo <= 1%), media e deviazione standard esatte, istogramma a bucket fissi.
+     */
+    private static Map<String, Object> delayDistribution(DelaySketch delays) {
+        Map<String, Object> distribution = new LinkedHashMap<>();
+        distribution.put("count", delays.count());
+        distribution.put("minHours", hours(delays.min()));
+        distribution.put("p10Hours", hours(delays.quantile(0.10)));
+        distribution.put("p50Hours", hours(delays.quantile(0.50)));
+        distribution.put("p90Hours", hours(delays.quantile(0.90)));
+        distribution.put("p99Hours", hours(delays.quantile(0.99)));
+        distribution.put("maxHours", hours(delays.max()));
+        distribution.put("meanHours", hours(delays.mean()));
+        distribution.put("stddevHours", hours(delays.standardDeviation()));
+
+        List<Map<String, Object>> histogram = new ArrayList<>();
+        for (DelaySketch.Bucket bucket : delays.histogram()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("fromHours", bucket.fromMinutes() == null ? null : hours(bucket.fromMinutes()));
+            entry.put("toHours", bucket.toMinutes() == null ? null : hours(bucket.toMinutes()));
+            entry.put("count", bucket.count());
+            histogram.add(entry);
+        }
+        distribution.put("histogram", histogram);
+        return distribution;
+    }
+
+    private static double hours(double minutes) {
+        return Math.round(minutes / 60.0 * 100.0) / 100.0;
+    }
+
     // ============================================
     // DASHBOARD & STATISTICS
     // ============================================
 
+    /**
+     * Panoramica della dashboard: le 11 query di conteggio sono indipendenti e
+     * girano in parallelo sui virtual thread, ognuna con timeout. Se una query
+     * fallisce o va in timeout il suo valore e' null e la risposta e' parziale
+     * ("partial": true, dettaglio in "errors"). Le risposte parziali non vanno in cache.
+     */
+    @Cacheable(value = DASHBOARD_CACHE, key = "'all'", unless = "#result['partial']")
     public Map<String, Object> getDashboardOverview() {
+        Map<String, Callable<?>> queries = new LinkedHashMap<>();
+        queries.put("totalFlares", () -> solarFlareRepository.count());
+        queries.put("totalCme", () -> cmeRepository.count());
+        queries.put("totalStorms", () -> geomagneticStormRepository.count());
+        queries.put("totalIps", () -> interplanetaryShockRepository.count());
+        queries.put("X-class", () -> solarFlareRepository.countByClassType("X"));
+        queries.put("M-class", () -> solarFlareRepository.countByClassType("M"));
+        queries.put("C-class", () -> solarFlareRepository.countByClassType("C"));
+        queries.put("fastCme", () -> cmeRepository.countFastCme(new BigDecimal("1000")));
+        queries.put("majorStorms", () -> geomagneticStormRepository.countMajorStorms(new BigDecimal(5)));
+        queries.put("earthShocks", () -> interplanetaryShockRepository.countEarthShocks());
+
+        ParallelQueries.Result counts = ParallelQueries.run(
+                virtualThreadExecutor, queries, Duration.ofMillis(dashboardQueryTimeoutMs));
+        Map<String, Object> values = counts.values();
+
         Map<String, Object> overview = new HashMap<>();
-        overview.put("totalFlares", solarFlareRepository.count());
-        overview.put("totalCme", cmeRepository.count());
-        overview.put("totalStorms", geomagneticStormRepository.count());
-        overview.put("totalIps", interplanetaryShockRepository.count());
-
-        Map<String, Long> flareBreakdown = new HashMap<>();
-        flareBreakdown.put("X-class", (long) solarFlareRepository.findByClassType("X").size());
-        flareBreakdown.put("M-class", (long) solarFlareRepository.findByClassType("M").size());
-        flareBreakdown.put("C-class", (long) solarFlareRepository.findByClassType("C").size());
+        overview.put("totalFlares", values.get("totalFlares"));
+        overview.put("totalCme", values.get("totalCme"));
+        overview.put("totalStorms", values.get("totalStorms"));
+        overview.put("totalIps", values.get("totalIps"));
+
+        Map<String, Object> flareBreakdown = new HashMap<>();
+        flareBreakdown.put("X-class", values.get("X-class"));
+        flareBreakdown.put("M-class", values.get("M-class"));
+        flareBreakdown.put("C-class", values.get("C-class"));
         overview.put("flareBreakdown", flareBreakdown);
 
-        overview.put("fastCme", cmeRepository.findFastCme(new BigDecimal("1000")).size());
-        overview.put("majorStorms", geomagneticStormRepository.findMajorStorms(new BigDecimal(5)).size());
-        overview.put("earthShocks", interplanetaryShockRepository.findEarthShocks().size());
+        overview.put("fastCme", values.get("fastCme"));
+        overview.put("majorStorms", values.get("majorStorms"));
+        overview.put("earthShocks", values.get("earthShocks"));
+
+        overview.put("partial", counts.isPartial());
+        if (counts.isPartial()) {
+            overview.put("errors", counts.errors());
+            System.err.println("⚠️ Dashboard overview is partial: " + counts.errors());
+        }
 
         return overview;
     }
-}
\ No newline at end of file
+
+    // ============================================
+    // BATCH
+    // ============================================
+    // Piu' analisi in una sola richiesta: le correlazioni non ancora costruite leggono
+    // le tabelle una volta sola (snapshot condiviso), poi i risultati sono prodotti in parallelo.
+
+    /**
+     * Analisi richiedibili via batch, con lo stesso nome dell'endpoint singolo.
+     * correlation e' il nome dell'aggregato mantenuto da cui dipende (null per la dashboard).
+     * render chiama il proxy (self), cosi' il batch legge e popola le stesse cache degli endpoint.
+     */
+    private record BatchAnalysis(String correlation, Callable<Map<String, Object>> render) {
+    }
+
+    private Map<String, BatchAnalysis> batchAnalyses() {
+        Map<String, BatchAnalysis> analyses = new LinkedHashMap<>();
+        analyses.put("flare-cme", new BatchAnalysis("flare-cme-verified", self::analyzeFlareToCorrelation));
+        analyses.put("cme-ips", new BatchAnalysis("cme-ips-verified", self::analyzeCmeToIpsCorrelation));
+        analyses.put("ips-storm", new BatchAnalysis("ips-storm-verified", self::analyzeIpsToStormCorrelation));
+        analyses.put("complete-chain-ips", new BatchAnalysis("complete-chain-verified", self::analyzeCompleteChainWithIps));
+        analyses.put("cme-storm", new BatchAnalysis("cme-storm-verified", self::analyzeCmeToStormCorrelation));
+        analyses.put("complete-chain", new BatchAnalysis("complete-chain-legacy", self::analyzeCompleteChain));
+        analyses.put("manual/flare-cme", new BatchAnalysis("flare-cme-manual",
+                () -> self.analyzeFlareToCorrelationManual(CorrelationParams.FLARE_CME_DEFAULTS)));
+        analyses.put("manual/cme-ips", new BatchAnalysis("cme-ips-manual",
+                () -> self.analyzeCmeToIpsCorrelationManual(CorrelationParams.CME_IPS_DEFAULTS)));
+        analyses.put("manual/ips-storm", new BatchAnalysis("ips-storm-manual",
+                () -> self.analyzeIpsToStormCorrelationManual(CorrelationParams.IPS_STORM_DEFAULTS)));
+        analyses.put("manual/complete-chain", new BatchAnalysis("complete-chain-manual",
+                () -> self.analyzeCompleteChainManual(CorrelationParams.COMPLETE_CHAIN_DEFAULTS)));
+        analyses.put("dashboard", new BatchAnalysis(null, self::getDashboardOverview));
+        return analyses;
+    }
+
+    /**
+     * Esegue le analisi richieste (nomi come gli endpoint, es. "flare-cme",
+     * "manual/cme-ips", "dashboard") e le restituisce in un'unica risposta.
+     * Un'analisi che fallisce o va in timeout vale null e rende la risposta parziale.
+     */
+    public Map<String, Object> analyzeBatch(List<String> names) {
+        Map<String, BatchAnalysis> available = batchAnalyses();
+        List<String> requested = names == null ? List.of() : names.stream()
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        if (requested.isEmpty()) {
+            throw new IllegalArgumentException("No analyses requested, available: " + available.keySet());
+        }
+        for (String name : requested) {
+            if (!available.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown analysis '" + name + "', available: " + available.keySet());
+            }
+        }
+
+        System.out.println("🔍 [BATCH] Running " + requested.size() + " analyses: " + requested);
+        long start = System.currentTimeMillis();
+
+        buildFromSnapshot(requested.stream()
+                .map(name -> available.get(name).correlation())
+                .filter(Objects::nonNull)
+                .<MaintainedCorrelation<?>>map(maintained::get)
+                .collect(Collectors.toList()));
+
+        Map<String, Callable<?>> renders = new LinkedHashMap<>();
+        for (String name : requested) {
+            renders.put(name, available.get(name).render());
+        }
+        ParallelQueries.Result results = ParallelQueries.run(
+                virtualThreadExecutor, renders, Duration.ofMillis(batchTimeoutMs));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results.values());
+        response.put("partial", results.isPartial());
+        if (results.isPartial()) {
+            response.put("errors", results.errors());
+            System.err.println("⚠️ Batch analysis is partial: " + results.errors());
+        }
+
+        System.out.println("✅ [BATCH] " + requested.size() + " analyses in " + (System.currentTimeMillis() - start) + " ms");
+        return response;
+    }
+}
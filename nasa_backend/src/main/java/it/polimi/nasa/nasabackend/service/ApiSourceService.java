@@ -3,6 +3,7 @@ package it.polimi.nasa.nasabackend.service;
 import it.polimi.nasa.nasabackend.entity.ApiSource;
 import it.polimi.nasa.nasabackend.repository.ApiSourceRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -13,6 +14,11 @@ public class ApiSourceService {
     @Autowired
     private ApiSourceRepository apiSourceRepository;
 
+    /**
+     * Unico punto in cui la riga ApiSource viene salvata per intero (alla creazione):
+     * statistiche e watermark passano da UPDATE mirati, cosi' un'entity letta prima
+     * non puo' sovrascriverli.
+     */
     public ApiSource getOrCreateApiSource(String apiName, String apiUrl, String description) {
         return apiSourceRepository.findByApiName(apiName)
                 .orElseGet(() -> {
@@ -22,15 +28,30 @@ public class ApiSourceService {
                     newSource.setDescription(description);
                     newSource.setLastUpdate(LocalDateTime.now());
                     newSource.setTotalRecords(0);
-                    return apiSourceRepository.save(newSource);
+                    try {
+                        return apiSourceRepository.save(newSource);
+                    } catch (DataIntegrityViolationException e) {
+                        // Creata nel frattempo da una fetch concorrente (apiName e' unique)
+                        return apiSourceRepository.findByApiName(apiName).orElseThrow(() -> e);
+                    }
                 });
     }
 
     public void updateApiSourceStats(String apiName, int recordsAdded) {
-        apiSourceRepository.findByApiName(apiName).ifPresent(source -> {
-            source.setLastUpdate(LocalDateTime.now());
-            source.setTotalRecords(source.getTotalRecords() + recordsAdded);
-            apiSourceRepository.save(source);
-        });
+        apiSourceRepository.incrementStats(apiName, recordsAdded, LocalDateTime.now());
     }
-}
\ No newline at end of file
+
+    public LocalDateTime getWatermark(String apiName) {
+        return apiSourceRepository.findByApiName(apiName)
+                .map(ApiSource::getWatermark)
+                .orElse(null);
+    }
+
+    /**
+     * Sposta in avanti il watermark della sorgente (mai indietro) e ritorna quello corrente.
+     */
+    public LocalDateTime advanceWatermark(String apiName, LocalDateTime watermark) {
+        apiSourceRepository.advanceWatermark(apiName, watermark);
+        return getWatermark(apiName);
+    }
+}
@@ -0,0 +1,242 @@
+package it.polimi.nasa.nasabackend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Scrittura a blocchi degli eventi di un ingest (DONKI, NEO), al posto di exists + save per riga.
+ *
+ * - gli activityId gia' presenti sono letti con una query IN per blocco
+ * - le righe nuove sono scritte con INSERT in batch JDBC (GenerationType.IDENTITY
+ *   impedisce il batching di Hibernate); gli id generati tornano nelle entita'
+ * - su PostgreSQL l'INSERT ha ON CONFLICT DO NOTHING, cosi' un ingest concorrente
+ *   dello stesso evento viene contato come scartato invece di far fallire il batch;
+ *   su H2 basta il prefetch
+ *
+ * Tabella e colonne sono lette dal mapping Hibernate dell'entita'.
+ */
+@Service
+public class BulkEventWriter {
+
+    // Righe per executeBatch e activityId per query IN
+    private static final int BATCH_SIZE = 500;
+    private static final int PREFETCH_SIZE = 1000;
+
+    /**
+     * Esito di un ingest: righe scritte (con id) e righe scartate perche' gia' presenti.
+     */
+    public record BulkInsert<T>(List<T> inserted, int skipped) {
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final Map<Class<?>, InsertStatement> statements = new ConcurrentHashMap<>();
+    private String onConflict;
+
+    @PostConstruct
+    void detectDialect() {
+        try {
+            String product = JdbcUtils.commonDatabaseName(JdbcUtils.extractDatabaseMetaData(
+                    jdbcTemplate.getDataSource(), metaData -> metaData.getDatabaseProductName()));
+            onConflict = "PostgreSQL".equals(product) ? " ON CONFLICT DO NOTHING" : "";
+        } catch (Exception e) {
+            onConflict = "";
+        }
+    }
+
+    /**
+     * Scrive gli eventi non ancora presenti (per activityId) e ne imposta l'id.
+     * Eventi ripetuti nello stesso batch vengono scritti una volta sola.
+     */
+    @Transactional
+    public <T> BulkInsert<T> insertNew(Class<T> type, List<T> events, Function<T, String> activityId,
+                                       Function<Collection<String>, List<String>> findExistingActivityIds) {
+        Map<String, T> candidates = new LinkedHashMap<>();
+        for (T event : events) {
+            candidates.putIfAbsent(activityId.apply(event), event);
+        }
+
+        List<String> activityIds = new ArrayList<>(candidates.keySet());
+        for (int from = 0; from < activityIds.size(); from += PREFETCH_SIZE) {
+            List<String> chunk = activityIds.subList(from, Math.min(from + PREFETCH_SIZE, activityIds.size()));
+            findExistingActivityIds.apply(chunk).forEach(candidates::remove);
+        }
+
+        List<T> inserted = insert(type, new ArrayList<>(candidates.values()), "activityId");
+        return new BulkInsert<>(inserted, events.size() - inserted.size());
+    }
+
+    /**
+     * Scrive righe gia' verificate come assenti dal chiamante e ne imposta l'id; keyProperty
+     * e' la chiave naturale usata per abbinare gli id generati. Su PostgreSQL le righe
+     * inserite nel frattempo da un'altra transazione non compaiono nel risultato.
+     */
+    @Transactional
+    public <T> List<T> insertMissing(Class<T> type, List<T> rows, String keyProperty) {
+        return insert(type, rows, keyProperty);
+    }
+
+    /**
+     * Scrive tutte le righe (senza prefetch); ritorna quante ne sono state scritte.
+     * Gli id sono impostati solo sui blocchi scritti per intero (abbinamento posizionale).
+     */
+    @Transactional
+    public <T> int insertAll(Class<T> type, List<T> rows) {
+        InsertStatement statement = statements.computeIfAbsent(type, this::insertStatement);
+        int[] written = {0};
+        executeBatches(statement, rows, new String[]{statement.idColumn},
+                (batch, keys) -> written[0] += assignIdsByPosition(statement, batch, keys));
+        return written[0];
+    }
+
+    // ============================================
+    // HELPER - JDBC batch
+    // ============================================
+
+    private <T> List<T> insert(Class<T> type, List<T> rows, String naturalKey) {
+        InsertStatement statement = statements.computeIfAbsent(type, this::insertStatement);
+        String keyColumn = statement.persister.getPropertyColumnNames(naturalKey)[0];
+        List<T> inserted = new ArrayList<>(rows.size());
+        executeBatches(statement, rows, new String[]{statement.idColumn, keyColumn},
+                (batch, keys) -> inserted.addAll(assignIdsByKey(statement, batch, keys, naturalKey, keyColumn)));
+        return inserted;
+    }
+
+    // Un executeBatch ogni BATCH_SIZE righe; onBatch riceve le righe e le chiavi generate
+    private <T> void executeBatches(InsertStatement statement, List<T> rows, String[] returned,
+                                    BiConsumer<List<T>, List<Map<String, Object>>> onBatch) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<T> batch = rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()));
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(statement.sql, returned),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            statement.bind(ps, batch.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    }, keys);
+            onBatch.accept(batch, keys.getKeyList());
+        }
+    }
+
+    // Con ON CONFLICT le righe scartate non restituiscono chiavi: l'abbinamento
+    // chiave -> entita' passa dalla chiave naturale restituita insieme all'id
+    private <T> List<T> assignIdsByKey(InsertStatement statement, List<T> batch, List<Map<String, Object>> keys,
+                                       String naturalKey, String keyColumn) {
+        Map<Object, T> byKey = new HashMap<>();
+        for (T row : batch) {
+            byKey.put(statement.persister.getPropertyValue(row, naturalKey), row);
+        }
+        List<T> inserted = new ArrayList<>(keys.size());
+        for (Map<String, Object> key : keys) {
+            T row = byKey.get(value(key, keyColumn));
+            if (row != null) {
+                statement.setId(row, value(key, statement.idColumn));
+                inserted.add(row);
+            }
+        }
+        return inserted;
+    }
+
+    // Senza chiave naturale l'abbinamento e' posizionale, affidabile solo se nessuna riga
+    // del blocco e' stata scartata da ON CONFLICT; altrimenti si contano solo le righe scritte
+    private static <T> int assignIdsByPosition(InsertStatement statement, List<T> batch, List<Map<String, Object>> keys) {
+        if (keys.size() == batch.size()) {
+            for (int i = 0; i < batch.size(); i++) {
+                statement.setId(batch.get(i), value(keys.get(i), statement.idColumn));
+            }
+        }
+        return keys.size();
+    }
+
+    // I driver restituiscono i nomi delle colonne in maiuscolo (H2) o minuscolo (PostgreSQL)
+    private static Object value(Map<String, Object> key, String column) {
+        for (Map.Entry<String, Object> entry : key.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(column)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private InsertStatement insertStatement(Class<?> type) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactory.class)
+                .unwrap(SessionFactoryImplementor.class);
+        AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(type);
+
+        List<Integer> properties = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        boolean[] insertable = persister.getPropertyInsertability();
+        for (int i = 0; i < persister.getPropertyNames().length; i++) {
+            String[] propertyColumns = persister.getPropertyColumnNames(i);
+            if (insertable[i] && propertyColumns.length == 1) {
+                properties.add(i);
+                columns.add(propertyColumns[0]);
+            }
+        }
+
+        String sql = "INSERT INTO " + persister.getTableName() + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")" + onConflict;
+        return new InsertStatement(persister, sessionFactory.getPersistenceUnitUtil(), sql,
+                persister.getIdentifierColumnNames()[0], properties.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * INSERT di un'entita' e binding dei valori dalle sue proprieta'.
+     */
+    private record InsertStatement(AbstractEntityPersister persister, PersistenceUnitUtil units, String sql,
+                                   String idColumn, int[] properties) {
+
+        void bind(PreparedStatement ps, Object entity) throws SQLException {
+            Object[] values = persister.getValues(entity);
+            Type[] types = persister.getPropertyTypes();
+            for (int i = 0; i < properties.length; i++) {
+                Object value = values[properties[i]];
+                if (value != null && types[properties[i]].isEntityType()) {
+                    value = units.getIdentifier(value);     // @ManyToOne -> foreign key
+                } else if (value instanceof Enum<?> constant) {
+                    value = constant.name();                // EnumType.STRING
+                }
+                StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, value);
+            }
+        }
+
+        void setId(Object entity, Object id) {
+            if (id instanceof Number number) {
+                persister.getIdentifierMapping().setIdentifier(entity, number.longValue(), null);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.*;
+import it.polimi.nasa.nasabackend.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Copia colonnare in memoria degli eventi DONKI, su cui girano tutte le analisi.
+ *
+ * Viene caricata una volta con query di proiezione (solo le colonne usate, niente
+ * rawData/note) e aggiornata ad ogni EventsIngestedEvent costruendo un nuovo
+ * EventSnapshot e sostituendo il riferimento: chi sta leggendo continua a vedere
+ * lo snapshot precedente, completo e coerente.
+ */
+@Component
+public class ColumnarEventStore {
+
+    @Autowired
+    private SolarFlareRepository solarFlareRepository;
+
+    @Autowired
+    private CoronalMassEjectionRepository cmeRepository;
+
+    @Autowired
+    private InterplanetaryShockRepository interplanetaryShockRepository;
+
+    @Autowired
+    private GeomagneticStormRepository geomagneticStormRepository;
+
+    private volatile EventSnapshot current;
+
+    /**
+     * Snapshot corrente (caricato dal DB al primo accesso).
+     */
+    public EventSnapshot snapshot() {
+        EventSnapshot snapshot = current;
+        if (snapshot == null) {
+            synchronized (this) {
+                if (current == null) {
+                    rebuild();
+                }
+                snapshot = current;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Ricarica le quattro tabelle (4 query di proiezione).
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+
+        EventColumns.Builder flares = new EventColumns.Builder(0);
+        for (Object[] row : solarFlareRepository.findAnalyticsColumns()) {
+            flares.add((Long) row[0], (LocalDateTime) row[2], Float.NaN,
+                    EventSnapshot.classCode((String) row[3]), (String) row[1], (String) row[4]);
+        }
+        EventColumns.Builder cmes = new EventColumns.Builder(0);
+        for (Object[] row : cmeRepository.findAnalyticsColumns()) {
+            cmes.add((Long) row[0], (LocalDateTime) row[2],
+                    EventSnapshot.floatValue((BigDecimal) row[3]), (byte) 0, (String) row[1], null);
+        }
+        EventColumns.Builder shocks = new EventColumns.Builder(0);
+        for (Object[] row : interplanetaryShockRepository.findAnalyticsColumns()) {
+            shocks.add((Long) row[0], (LocalDateTime) row[2], Float.NaN,
+                    EventSnapshot.locationCode((String) row[3]), (String) row[1], (String) row[3]);
+        }
+        EventColumns.Builder storms = new EventColumns.Builder(0);
+        for (Object[] row : geomagneticStormRepository.findAnalyticsColumns()) {
+            storms.add((Long) row[0], (LocalDateTime) row[2],
+                    EventSnapshot.floatValue((BigDecimal) row[3]), (byte) 0, (String) row[1], null);
+        }
+
+        current = new EventSnapshot(flares.build(), cmes.build(), shocks.build(), storms.build());
+        System.out.println("📸 Columnar event store loaded in " + (System.currentTimeMillis() - start) + " ms: "
+                + current.size(EventType.FLR) + " FLR, " + current.size(EventType.CME) + " CME, "
+                + current.size(EventType.IPS) + " IPS, " + current.size(EventType.GST) + " GST");
+    }
+
+    /**
+     * Integra un batch appena salvato prima dei listener che rileggono gli eventi.
+     * Se lo store non e' ancora caricato non serve: il primo caricamento leggera' il batch dal DB.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void onEventsIngested(EventsIngestedEvent event) {
+        if (current == null || event.events().isEmpty()) {
+            return;
+        }
+        EventColumns added = switch (event.type()) {
+            case FLR -> flareColumns(event.eventsAs(SolarFlare.class));
+            case CME -> cmeColumns(event.eventsAs(CoronalMassEjection.class));
+            case IPS -> shockColumns(event.eventsAs(InterplanetaryShock.class));
+            case GST -> stormColumns(event.eventsAs(GeomagneticStorm.class));
+        };
+        current = current.with(event.type(), current.columns(event.type()).merge(added));
+    }
+
+    // ============================================
+    // HELPER - Entita' -> colonne
+    // ============================================
+
+    private static EventColumns flareColumns(Collection<SolarFlare> saved) {
+        EventColumns.Builder columns = new EventColumns.Builder(saved.size());
+        for (SolarFlare flare : saved) {
+            columns.add(flare.getId(), flare.getPeakTime(), Float.NaN,
+                    EventSnapshot.classCode(flare.getClassType()), flare.getActivityId(), flare.getFullClass());
+        }
+        return columns.build();
+    }
+
+    private static EventColumns cmeColumns(Collection<CoronalMassEjection> saved) {
+        EventColumns.Builder columns = new EventColumns.Builder(saved.size());
+        for (CoronalMassEjection cme : saved) {
+            columns.add(cme.getId(), cme.getStartTime(), EventSnapshot.floatValue(cme.getSpeedKmS()),
+                    (byte) 0, cme.getActivityId(), null);
+        }
+        return columns.build();
+    }
+
+    private static EventColumns shockColumns(Collection<InterplanetaryShock> saved) {
+        EventColumns.Builder columns = new EventColumns.Builder(saved.size());
+        for (InterplanetaryShock shock : saved) {
+            columns.add(shock.getId(), shock.getActivityTime(), Float.NaN,
+                    EventSnapshot.locationCode(shock.getLocation()), shock.getActivityId(), shock.getLocation());
+        }
+        return columns.build();
+    }
+
+    private static EventColumns stormColumns(Collection<GeomagneticStorm> saved) {
+        EventColumns.Builder columns = new EventColumns.Builder(saved.size());
+        for (GeomagneticStorm storm : saved) {
+            columns.add(storm.getId(), storm.getStartTime(), EventSnapshot.floatValue(storm.getKpIndex()),
+                    (byte) 0, storm.getActivityId(), null);
+        }
+        return columns.build();
+    }
+}
@@ -3,15 +3,18 @@ package it.polimi.nasa.nasabackend.service;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import it.polimi.nasa.nasabackend.entity.ApiSource;
+import it.polimi.nasa.nasabackend.entity.EventType;
 import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
 import it.polimi.nasa.nasabackend.repository.CoronalMassEjectionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -19,6 +22,7 @@ import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class CoronalMassEjectionService {
@@ -30,7 +34,19 @@ public class CoronalMassEjectionService {
     private ApiSourceService apiSourceService;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private UpstreamCache upstreamCache;
+
+    @Autowired
+    private LinkedEventService linkedEventService;
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Value("${nasa.api.key}")
     private String apiKey;
@@ -46,61 +62,84 @@ public class CoronalMassEjectionService {
             .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
             .toFormatter();
 
-    public List<CoronalMassEjection> fetchAndSaveCme(String startDate, String endDate) {
+    /**
+     * Riga ApiSource della sorgente, creata se manca. DeltaSyncService la chiama prima di
+     * lanciare le finestre mensili in parallelo, che cosi' la trovano sempre gia' salvata.
+     */
+    public ApiSource getApiSource() {
+        return apiSourceService.getOrCreateApiSource("NASA_DONKI_CME", DONKI_CME_URL, "NASA DONKI Coronal Mass Ejection Events");
+    }
+
+    public int fetchAndSaveCme(String startDate, String endDate) {
         System.out.println("🌊 Fetching CME data from NASA DONKI...");
 
         try {
-            ApiSource apiSource = apiSourceService.getOrCreateApiSource(
-                    "NASA_DONKI_CME",
-                    DONKI_CME_URL,
-                    "NASA DONKI Coronal Mass Ejection Events"
-            );
+            ApiSource apiSource = getApiSource();
 
             // URL corretto
             String url = String.format("%s?startDate=%s&endDate=%s&api_key=%s",
                     DONKI_CME_URL, startDate, endDate, apiKey);
 
-            String response = restTemplate.getForObject(url, String.class);
+            // Record letti dallo stream della risposta e scritti a blocchi, tutti in una transazione:
+            // se la finestra fallisce a meta' non resta nulla di parziale e il retry riparte da zero
+            AtomicInteger newRecords = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
+            UpstreamCache.Result<Integer> fetched = upstreamCache.fetch(url, body ->
+                    transactionTemplate.execute(status -> {
+                        try {
+                            return StreamingJsonReader.readArray(body, json -> toEntity(json, apiSource), chunk -> {
+                                BulkEventWriter.BulkInsert<CoronalMassEjection> result = saveChunk(chunk);
+                                newRecords.addAndGet(result.inserted().size());
+                                skipped.addAndGet(result.skipped());
+                            });
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+
+            // Stesso payload dell'ultimo fetch (304 o body identico): gia' nel DB
+            if (fetched.unchanged()) {
+                System.out.println("ℹ️ CMEs unchanged since the last fetch");
+                return 0;
+            }
 
-            if (response == null || response.equals("[]")) {
+            if (fetched.value() == 0) {
                 System.out.println("ℹ️ No CME events found in date range");
-                return new ArrayList<>();
+                return 0;
             }
 
-            JsonArray jsonArray = JsonParser.parseString(response).getAsJsonArray();
-            List<CoronalMassEjection> cmeList = new ArrayList<>();
-            int newRecords = 0;
-
-            for (JsonElement element : jsonArray) {
-                JsonObject cmeJson = element.getAsJsonObject();
+            apiSourceService.updateApiSourceStats("NASA_DONKI_CME", newRecords.get());
+            System.out.println("✅ Saved " + newRecords + " CME records (" + skipped + " already present)");
 
-                try {
-                    String activityId = cmeJson.get("activityID").getAsString();
+            return newRecords.get();
 
-                    // Skip if already exists
-                    if (cmeRepository.existsByActivityId(activityId)) {
-                        continue;
-                    }
-
-                    CoronalMassEjection cme = parseCmeData(cmeJson, apiSource);
-                    CoronalMassEjection saved = cmeRepository.save(cme);
-                    cmeList.add(saved);
-                    newRecords++;
-
-                } catch (Exception e) {
-                    System.err.println("⚠️ Error parsing CME: " + e.getMessage());
-                }
-            }
-
-            apiSourceService.updateApiSourceStats("NASA_DONKI_CME", newRecords);
-            System.out.println("✅ Saved " + newRecords + " CME records");
+        } catch (Exception e) {
+            System.err.println("❌ Error fetching CME data: " + e.getMessage());
+            // Propagato: la sync non deve far avanzare il watermark su una fetch fallita
+            throw new IllegalStateException("Error fetching CME data: " + e.getMessage(), e);
+        }
+    }
 
-            return cmeList;
+    /**
+     * Skip di quelli gia' presenti con una query IN, insert dei nuovi in batch,
+     * poi linked_event ed EventsIngestedEvent per il blocco.
+     */
+    private BulkEventWriter.BulkInsert<CoronalMassEjection> saveChunk(List<CoronalMassEjection> chunk) {
+        BulkEventWriter.BulkInsert<CoronalMassEjection> result = bulkEventWriter.insertNew(CoronalMassEjection.class, chunk,
+                CoronalMassEjection::getActivityId, cmeRepository::findExistingActivityIds);
+        linkedEventService.saveLinks(EventType.CME, result.inserted(), CoronalMassEjection::getActivityId, CoronalMassEjection::getLinkedEvents);
+        eventPublisher.publishEvent(EventsIngestedEvent.of(EventType.CME, result.inserted()));
+        return result;
+    }
 
+    // null = record scartato
+    private CoronalMassEjection toEntity(JsonObject json, ApiSource apiSource) {
+        try {
+            CoronalMassEjection cme = parseCmeData(json, apiSource);
+            return cme;
         } catch (Exception e) {
-            System.err.println("❌ Error fetching CME data: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
+            System.err.println("⚠️ Error parsing CME: " + e.getMessage());
+            return null;
         }
     }
 
@@ -0,0 +1,103 @@
+package it.polimi.nasa.nasabackend.service;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Risultato aggregato di una correlazione, scomposto per evento sorgente.
+ *
+ * Ogni sorgente contribuisce con: correlata si/no, ritardo in minuti (se c'e' un
+ * target) e le righe di dettaglio. Conteggi, distribuzione dei ritardi (DelaySketch)
+ * e top-N sono aggiornati sostituendo il contributo della singola sorgente, quindi un
+ * batch di ingest costa quanto le sorgenti che tocca e non un ricalcolo completo.
+ */
+public class CorrelationAggregate<S> {
+
+    /**
+     * Contributo di una sorgente. delayMinutes e' null se nessun target e' stato trovato.
+     */
+    public record Contribution<S>(S source, boolean matched, Long delayMinutes, List<Map<String, Object>> rows) {
+
+        public static <S> Contribution<S> unmatched(S source) {
+            return new Contribution<>(source, false, null, List.of());
+        }
+
+        public static <S> Contribution<S> matched(S source, long delayMinutes, Map<String, Object> row) {
+            return new Contribution<>(source, true, delayMinutes, List.of(row));
+        }
+
+        public static <S> Contribution<S> rows(S source, List<Map<String, Object>> rows) {
+            return new Contribution<>(source, !rows.isEmpty(), null, List.copyOf(rows));
+        }
+    }
+
+    /**
+     * Vista consistente dell'aggregato al momento della lettura.
+     */
+    public record Snapshot(int sources, int matched, double averageDelayHours, DelaySketch delays, int rows,
+                           List<Map<String, Object>> topRows) {
+    }
+
+    private final Function<S, Long> idOf;
+    private final Map<Long, Contribution<S>> contributions = new HashMap<>();
+
+    // Solo le sorgenti con righe, nell'ordine di presentazione (per il top-N)
+    private final TreeMap<S, Contribution<S>> withRows;
+
+    private int matched = 0;
+    private int rows = 0;
+    private final DelaySketch delays = new DelaySketch();
+
+    public CorrelationAggregate(Comparator<S> order, Function<S, Long> idOf) {
+        this.idOf = idOf;
+        this.withRows = new TreeMap<>(order);
+    }
+
+    public synchronized void putAll(Collection<Contribution<S>> updated) {
+        for (Contribution<S> contribution : updated) {
+            put(contribution);
+        }
+    }
+
+    private void put(Contribution<S> contribution) {
+        Contribution<S> previous = contributions.put(idOf.apply(contribution.source()), contribution);
+        if (previous != null) {
+            apply(previous, -1);
+            withRows.remove(previous.source());
+        }
+        apply(contribution, 1);
+        if (!contribution.rows().isEmpty()) {
+            withRows.put(contribution.source(), contribution);
+        }
+    }
+
+    private void apply(Contribution<S> contribution, int sign) {
+        if (contribution.matched()) {
+            matched += sign;
+        }
+        if (contribution.delayMinutes() != null) {
+            if (sign > 0) {
+                delays.add(contribution.delayMinutes());
+            } else {
+                delays.remove(contribution.delayMinutes());
+            }
+        }
+        rows += sign * contribution.rows().size();
+    }
+
+    public synchronized Snapshot snapshot(int limit) {
+        List<Map<String, Object>> topRows = new ArrayList<>(limit);
+        for (Contribution<S> contribution : withRows.values()) {
+            for (Map<String, Object> row : contribution.rows()) {
+                if (topRows.size() == limit) {
+                    break;
+                }
+                topRows.add(row);
+            }
+            if (topRows.size() == limit) {
+                break;
+            }
+        }
+        return new Snapshot(contributions.size(), matched, delays.mean() / 60.0, delays.copy(), rows, topRows);
+    }
+}
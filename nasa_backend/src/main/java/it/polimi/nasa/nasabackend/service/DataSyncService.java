@@ -0,0 +1,222 @@
+package it.polimi.nasa.nasabackend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Sincronizzazione in background delle sorgenti NASA.
+ *
+ * Ogni sorgente e' un SyncTask con le proprie dipendenze: i task indipendenti girano
+ * in parallelo sul syncExecutor (limitato), un task parte solo quando tutte le sue
+ * dipendenze sono completate e viene saltato se una di esse fallisce. L'avanzamento
+ * di ogni sorgente e' leggibile in qualsiasi momento con status().
+ *
+ * Fuori dal grafo, runOnce() esegue un singolo task (polling periodico della sync delta).
+ * Una sorgente non gira mai due volte in parallelo: il secondo run viene saltato.
+ */
+@Service
+public class DataSyncService {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED, SKIPPED }
+
+    /**
+     * Lavoro di una sorgente; ritorna il numero di record salvati.
+     */
+    @FunctionalInterface
+    public interface SyncStep {
+        int run(SourceProgress progress) throws Exception;
+    }
+
+    public record SyncTask(String source, List<String> dependsOn, SyncStep step) {
+
+        public static SyncTask of(String source, SyncStep step, String... dependsOn) {
+            return new SyncTask(source, List.of(dependsOn), step);
+        }
+    }
+
+    /**
+     * Stato di una sorgente, aggiornato dal thread di sync e letto dagli endpoint.
+     */
+    public static final class SourceProgress {
+
+        private final String source;
+        private final List<String> dependsOn;
+
+        private volatile Status status = Status.PENDING;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile int records;
+        private volatile int completedSteps;
+        private volatile int totalSteps;
+        private volatile String message;
+
+        private SourceProgress(String source, List<String> dependsOn) {
+            this.source = source;
+            this.dependsOn = dependsOn;
+        }
+
+        /**
+         * Avanzamento delle sorgenti scaricate a blocchi (es. finestre di 7 giorni NEO).
+         */
+        public void steps(int completed, int total) {
+            this.completedSteps = completed;
+            this.totalSteps = total;
+        }
+
+        public void message(String message) {
+            this.message = message;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("source", source);
+            map.put("status", status);
+            map.put("dependsOn", dependsOn);
+            map.put("startedAt", startedAt);
+            map.put("finishedAt", finishedAt);
+            map.put("records", records);
+            if (totalSteps > 0) {
+                map.put("completedSteps", completedSteps);
+                map.put("totalSteps", totalSteps);
+            }
+            map.put("message", message);
+            return map;
+        }
+    }
+
+    @Autowired
+    private ExecutorService syncExecutor;
+
+    private volatile Map<String, SourceProgress> progress = Map.of();
+    private final Map<String, SourceProgress> lastScheduled = new ConcurrentHashMap<>();
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+    private volatile CompletableFuture<Void> running = CompletableFuture.completedFuture(null);
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    /**
+     * Avvia i task e ritorna subito. Le dipendenze devono comparire prima nella lista.
+     */
+    public synchronized CompletableFuture<Void> start(List<SyncTask> tasks) {
+        if (!running.isDone()) {
+            throw new IllegalStateException("A sync is already running");
+        }
+
+        Map<String, SourceProgress> registered = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Boolean>> outcomes = new LinkedHashMap<>();
+        for (SyncTask task : tasks) {
+            if (outcomes.containsKey(task.source())) {
+                throw new IllegalArgumentException("Duplicate sync source: " + task.source());
+            }
+            for (String dependency : task.dependsOn()) {
+                if (!outcomes.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Sync source " + task.source()
+                            + " depends on " + dependency + ", which is not declared before it");
+                }
+            }
+            registered.put(task.source(), new SourceProgress(task.source(), task.dependsOn()));
+            outcomes.put(task.source(), schedule(task, registered.get(task.source()), outcomes));
+        }
+
+        progress = registered;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        System.out.println("🔄 [SYNC] Started " + tasks.size() + " sync tasks in background");
+
+        running = CompletableFuture.allOf(outcomes.values().toArray(CompletableFuture[]::new))
+                .thenRun(() -> {
+                    finishedAt = LocalDateTime.now();
+                    System.out.println("✅ [SYNC] All sync tasks finished");
+                });
+        return running;
+    }
+
+    /**
+     * Esegue un singolo task fuori dal grafo e ritorna subito; l'esito resta in status()
+     * fino al run successivo della stessa sorgente.
+     */
+    public CompletableFuture<Boolean> runOnce(SyncTask task) {
+        SourceProgress source = new SourceProgress(task.source(), task.dependsOn());
+        lastScheduled.put(task.source(), source);
+        return CompletableFuture.supplyAsync(() -> run(task, source), syncExecutor);
+    }
+
+    private CompletableFuture<Boolean> schedule(SyncTask task, SourceProgress source,
+                                                Map<String, CompletableFuture<Boolean>> outcomes) {
+        List<CompletableFuture<Boolean>> dependencies = task.dependsOn().stream()
+                .map(outcomes::get)
+                .toList();
+
+        return CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+                .thenApplyAsync(ignored -> {
+                    for (int i = 0; i < dependencies.size(); i++) {
+                        if (!dependencies.get(i).join()) {
+                            source.status = Status.SKIPPED;
+                            source.message = "Dependency " + task.dependsOn().get(i) + " did not complete";
+                            System.out.println("⏭️ [SYNC] " + task.source() + " skipped: " + source.message);
+                            return false;
+                        }
+                    }
+                    return run(task, source);
+                }, syncExecutor);
+    }
+
+    private boolean run(SyncTask task, SourceProgress source) {
+        if (!active.add(task.source())) {
+            source.status = Status.SKIPPED;
+            source.message = "Already running";
+            System.out.println("⏭️ [SYNC] " + task.source() + " skipped: already running");
+            return false;
+        }
+        source.status = Status.RUNNING;
+        source.startedAt = LocalDateTime.now();
+        try {
+            source.records = task.step().run(source);
+            source.status = Status.COMPLETED;
+            return true;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            source.status = Status.FAILED;
+            source.message = e.getMessage();
+            System.err.println("❌ [SYNC] " + task.source() + " failed: " + e.getMessage());
+            return false;
+        } finally {
+            source.finishedAt = LocalDateTime.now();
+            active.remove(task.source());
+        }
+    }
+
+    // ============================================
+    // STATUS
+    // ============================================
+
+    public boolean isRunning() {
+        return !running.isDone();
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", isRunning());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        List<Map<String, Object>> sources = new ArrayList<>();
+        for (SourceProgress source : progress.values()) {
+            sources.add(source.toMap());
+        }
+        status.put("sources", sources);
+        List<Map<String, Object>> scheduled = new ArrayList<>();
+        for (SourceProgress source : new TreeMap<>(lastScheduled).values()) {
+            scheduled.add(source.toMap());
+        }
+        status.put("scheduled", scheduled);
+        return status;
+    }
+}
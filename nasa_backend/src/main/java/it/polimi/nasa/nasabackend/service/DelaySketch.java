@@ -0,0 +1,236 @@
+package it.polimi.nasa.nasabackend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Distribuzione dei ritardi (minuti) di una correlazione, senza conservare i singoli valori.
+ *
+ * - quantili e min/max: bucket logaritmici (schema DDSketch) con errore relativo
+ *   massimo dell'1%; sotto i ~50 minuti i bucket sono piu' stretti di un minuto
+ *   e i valori interi sono esatti
+ * - count, media e deviazione standard: esatti (somma e somma dei quadrati)
+ * - istogramma a bucket fissi (EDGES_MINUTES), uguale per tutte le correlazioni
+ *
+ * Ogni componente e' un contatore: un valore si puo' togliere (contributo sostituito
+ * in CorrelationAggregate) e due sketch si sommano con merge, quindi risultati
+ * parziali calcolati su partizioni di date o thread diversi si combinano senza
+ * ricalcolo. Non thread-safe: la sincronizzazione e' del chiamante.
+ */
+public final class DelaySketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Limiti dell'istogramma: <0, [0,15m), [15m,30m), ..., [4g,5g), >=5g
+    static final long[] EDGES_MINUTES = {0, 15, 30, 60, 120, 360, 720, 1440, 2880, 4320, 5760, 7200};
+
+    /**
+     * Bucket dell'istogramma; from/to in minuti, null se aperto.
+     */
+    public record Bucket(Long fromMinutes, Long toMinutes, long count) {
+    }
+
+    private final LogBuckets positive = new LogBuckets();
+    private final LogBuckets negative = new LogBuckets();
+    private long zeroCount = 0;
+
+    private long count = 0;
+    private long sum = 0;
+    private double sumOfSquares = 0;
+
+    private final long[] histogram = new long[EDGES_MINUTES.length + 1];
+
+    public void add(long delayMinutes) {
+        update(delayMinutes, 1);
+    }
+
+    public void remove(long delayMinutes) {
+        update(delayMinutes, -1);
+    }
+
+    private void update(long delayMinutes, int sign) {
+        if (delayMinutes > 0) {
+            positive.add(index(delayMinutes), sign);
+        } else if (delayMinutes < 0) {
+            negative.add(index(-delayMinutes), sign);
+        } else {
+            zeroCount += sign;
+        }
+        count += sign;
+        sum += sign * delayMinutes;
+        sumOfSquares += sign * (double) delayMinutes * delayMinutes;
+        histogram[histogramBucket(delayMinutes)] += sign;
+    }
+
+    /**
+     * Aggiunge i valori di other (stesso schema di bucket per costruzione).
+     */
+    public DelaySketch merge(DelaySketch other) {
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        return this;
+    }
+
+    public DelaySketch copy() {
+        return new DelaySketch().merge(this);
+    }
+
+    // ============================================
+    // LETTURA
+    // ============================================
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    public double standardDeviation() {
+        if (count == 0) {
+            return 0;
+        }
+        double mean = mean();
+        return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+    }
+
+    /**
+     * Quantile q (0..1) in minuti, 0 se vuoto.
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.floor(Math.min(1, Math.max(0, q)) * (count - 1));
+
+        // Ordine crescente: negativi dal piu' grande in modulo, zero, positivi
+        long seen = 0;
+        for (int i = negative.maxIndex(); i >= negative.minIndex(); i--) {
+            seen += negative.count(i);
+            if (seen > rank) {
+                return -value(i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = positive.minIndex(); i <= positive.maxIndex(); i++) {
+            seen += positive.count(i);
+            if (seen > rank) {
+                return value(i);
+            }
+        }
+        return value(positive.maxIndex());
+    }
+
+    public double min() {
+        return quantile(0);
+    }
+
+    public double max() {
+        return quantile(1);
+    }
+
+    public List<Bucket> histogram() {
+        List<Bucket> buckets = new ArrayList<>(histogram.length);
+        for (int i = 0; i < histogram.length; i++) {
+            Long from = i == 0 ? null : EDGES_MINUTES[i - 1];
+            Long to = i == EDGES_MINUTES.length ? null : EDGES_MINUTES[i];
+            buckets.add(new Bucket(from, to, histogram[i]));
+        }
+        return buckets;
+    }
+
+    // ============================================
+    // HELPER - Bucket
+    // ============================================
+
+    // Bucket i copre (gamma^(i-1), gamma^i]
+    private static int index(long magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    // Valore rappresentativo del bucket (errore relativo <= RELATIVE_ACCURACY),
+    // arrotondato al minuto quando il bucket e' piu' stretto di un minuto
+    private static double value(int index) {
+        double estimate = 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+        double width = Math.pow(GAMMA, index) - Math.pow(GAMMA, index - 1);
+        return width < 1 ? Math.round(estimate) : estimate;
+    }
+
+    private static int histogramBucket(long delayMinutes) {
+        int position = Arrays.binarySearch(EDGES_MINUTES, delayMinutes);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * Contatori per indice di bucket, in un array che cresce in entrambe le direzioni.
+     */
+    private static final class LogBuckets {
+
+        private long[] counts = new long[0];
+        private int offset = 0;
+
+        void add(int index, long delta) {
+            ensure(index);
+            counts[index - offset] += delta;
+        }
+
+        void merge(LogBuckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(i + other.offset, other.counts[i]);
+                }
+            }
+        }
+
+        long count(int index) {
+            return index < offset || index >= offset + counts.length ? 0 : counts[index - offset];
+        }
+
+        int minIndex() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    return i + offset;
+                }
+            }
+            return Integer.MAX_VALUE;
+        }
+
+        int maxIndex() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return i + offset;
+                }
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        private void ensure(int index) {
+            if (counts.length == 0) {
+                counts = new long[16];
+                offset = index;
+            } else if (index < offset) {
+                int grow = Math.max(offset - index, counts.length);
+                long[] grown = new long[counts.length + grow];
+                System.arraycopy(counts, 0, grown, grow, counts.length);
+                counts = grown;
+                offset -= grow;
+            } else if (index >= offset + counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(index - offset + 1, counts.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.ApiSource;
+import it.polimi.nasa.nasabackend.repository.*;
+import it.polimi.nasa.nasabackend.service.DataSyncService.SourceProgress;
+import it.polimi.nasa.nasabackend.service.DataSyncService.SyncTask;
+import it.polimi.nasa.nasabackend.service.DonkiBackfill.BackfillReport;
+import it.polimi.nasa.nasabackend.service.DonkiBackfill.WindowFetch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Sync delta delle sorgenti NASA a partire dal watermark salvato in ApiSource.
+ *
+ * Il watermark e' il punto fino a cui una sorgente e' completa: ogni run scarica solo
+ * l'intervallo [watermark - lookback, oggi] e lo sposta in avanti solo fin dove la fetch e'
+ * andata a buon fine (i servizi di fetch propagano gli errori; per DONKI fino alla prima
+ * finestra mensile fallita). Gli stessi task sono
+ * usati dalla sync all'avvio e dal polling periodico (SyncScheduleConfig), ognuno con
+ * la propria cadenza nasa.sync.interval.<sorgente>. Dopo ogni run viene pubblicato un
+ * SourceSyncedEvent.
+ */
+@Service
+public class DeltaSyncService {
+
+    /**
+     * Scarica la sorgente dal watermark (o dal watermark iniziale) fino a until.
+     */
+    @FunctionalInterface
+    private interface DeltaFetch {
+        Delta fetch(LocalDateTime since, LocalDate until, SourceProgress progress) throws Exception;
+    }
+
+    // watermark null = la sorgente non e' avanzata (resta quello precedente)
+    private record Delta(int records, LocalDateTime watermark) {
+    }
+
+    private record Source(String name, String apiName, Duration defaultInterval,
+                          Supplier<LocalDateTime> initialWatermark, DeltaFetch fetch) {
+    }
+
+    // apiSource: crea la riga ApiSource prima che le finestre partano in parallelo
+    private record DonkiSource(Supplier<ApiSource> apiSource, WindowFetch fetch) {
+    }
+
+    // Services
+    @Autowired private SolarFlareService solarFlareService;
+    @Autowired private CoronalMassEjectionService cmeService;
+    @Autowired private GeomagneticStormService stormService;
+    @Autowired private InterplanetaryShockService ipsService;
+    @Autowired private FireballService fireballService;
+    @Autowired private NeoService neoService;
+    @Autowired private ApiSourceService apiSourceService;
+    @Autowired private DonkiBackfill donkiBackfill;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private Environment environment;
+
+    // Repositories (watermark iniziale dei DB gia' popolati prima dei watermark)
+    @Autowired private SolarFlareRepository flareRepository;
+    @Autowired private CoronalMassEjectionRepository cmeRepository;
+    @Autowired private GeomagneticStormRepository stormRepository;
+    @Autowired private InterplanetaryShockRepository ipsRepository;
+    @Autowired private FireballRepository fireballRepository;
+    @Autowired private NeoCloseApproachRepository neoCloseApproachRepository;
+    @Autowired private NeoFetchWindowRepository neoFetchWindowRepository;
+
+    // Giorni riscaricati prima del watermark (eventi DONKI pubblicati o rivisti in ritardo)
+    @Value("${nasa.sync.lookback-days:1}")
+    private int lookbackDays;
+
+    // Storico scaricato dalla prima sync degli eventi solari (a finestre mensili, anche 10+ anni)
+    @Value("${nasa.sync.donki-years-back:3}")
+    private int donkiYearsBack;
+
+    // Configurazione finestra temporale della prima sync degli asteroidi (più pesante)
+    private static final int DEFAULT_WEEKS_BACK_NEO = 4;
+
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+    private final Map<String, DonkiSource> donkiSources = new LinkedHashMap<>();
+
+    public DeltaSyncService() {
+        // DONKI: [watermark - lookback, oggi] a finestre mensili (DonkiBackfill)
+        donki("solar-flares", "NASA_DONKI_Flare", "☀️ Checking Solar Flares",
+                () -> flareRepository.findLastEventDate(),
+                () -> solarFlareService.getApiSource(),
+                (startDate, endDate) -> solarFlareService.fetchAndSaveFlares(startDate, endDate));
+        donki("cme", "NASA_DONKI_CME", "🌊 Checking CMEs",
+                () -> cmeRepository.findLastEventDate(),
+                () -> cmeService.getApiSource(),
+                (startDate, endDate) -> cmeService.fetchAndSaveCme(startDate, endDate));
+        donki("interplanetary-shocks", "NASA_DONKI_IPS", "💥 Checking IP Shocks",
+                () -> ipsRepository.findLastEventDate(),
+                () -> ipsService.getApiSource(),
+                (startDate, endDate) -> ipsService.fetchAndSaveIps(startDate, endDate));
+        donki("geomagnetic-storms", "NASA_DONKI_GST", "🌍 Checking Geomagnetic Storms",
+                () -> stormRepository.findLastEventDate(),
+                () -> stormService.getApiSource(),
+                (startDate, endDate) -> stormService.fetchAndSaveStorms(startDate, endDate));
+
+        // Fireball: il watermark e' l'ultimo evento salvato (date-min della API JPL), senza lookback
+        sources.put("fireballs", new Source("fireballs", "NASA_Fireball", Duration.ofHours(6),
+                () -> fireballRepository.findLastEventDate(),
+                (since, until, progress) -> {
+                    System.out.println("☄️ Checking Fireball Events...");
+                    int saved = fireballService.fetchAndSaveFireballs(since).get("fireballs");
+                    return new Delta(saved, fireballRepository.findLastEventDate());
+                }));
+
+        // NEO: finestre da 8 giorni in parallelo; avanza solo se nessuna finestra e' rimasta indietro
+        sources.put("neo", new Source("neo", "NASA_NeoWs", Duration.ofHours(6),
+                () -> initialWatermark(neoCloseApproachRepository.findLastEventDate(), LocalDate.now().minusWeeks(DEFAULT_WEEKS_BACK_NEO)),
+                (since, until, progress) -> {
+                    // Le finestre parallele non finiscono in ordine: si riparte dalla prima
+                    // rimasta PENDING/FAILED (le completate vengono saltate)
+                    LocalDate neoStart = start(since);
+                    LocalDate firstPending = neoFetchWindowRepository.findFirstPendingStart();
+                    if (firstPending != null && firstPending.isBefore(neoStart)) {
+                        neoStart = firstPending;
+                    }
+                    System.out.println("🪐 Checking NEO Asteroids (" + neoStart + " -> " + until + ")...");
+                    Map<String, Integer> result = neoService.fetchAndSaveNeo(neoStart.toString(), until.toString(), progress::steps);
+                    return new Delta(result.get("approaches"), result.get("pending") == 0 ? until.atStartOfDay() : null);
+                }));
+    }
+
+    /**
+     * Sorgente DONKI: il watermark avanza fino all'inizio della prima finestra fallita
+     * (le successive completate vengono riscaricate al run dopo, senza duplicati).
+     */
+    private void donki(String name, String apiName, String label,
+                       Supplier<LocalDateTime> lastEventDate, Supplier<ApiSource> apiSource, WindowFetch fetch) {
+        donkiSources.put(name, new DonkiSource(apiSource, fetch));
+        sources.put(name, new Source(name, apiName, Duration.ofHours(1),
+                () -> initialWatermark(lastEventDate.get(), LocalDate.now().minusYears(donkiYearsBack)),
+                (since, until, progress) -> {
+                    System.out.println(label + " (" + start(since) + " -> " + until + ")...");
+                    apiSource.get();
+                    BackfillReport report = donkiBackfill.fetch(name, start(since), until, fetch, progress::steps);
+                    if (report.completed() == 0) {
+                        throw new IllegalStateException("All " + report.windows() + " DONKI windows failed");
+                    }
+                    return new Delta(report.records(), report.completeUntil().atStartOfDay());
+                }));
+    }
+
+    // ============================================
+    // TASK
+    // ============================================
+
+    public List<String> sourceNames() {
+        return List.copyOf(sources.keySet());
+    }
+
+    /**
+     * Task di sync delta di tutte le sorgenti, indipendenti tra loro.
+     */
+    public List<SyncTask> tasks() {
+        return sources.keySet().stream().map(this::task).toList();
+    }
+
+    public SyncTask task(String name) {
+        Source source = sources.get(name);
+        if (source == null) {
+            throw new IllegalArgumentException("Unknown sync source: " + name);
+        }
+        return SyncTask.of(name, progress -> sync(source, progress));
+    }
+
+    /**
+     * Download di un intervallo arbitrario di una sorgente DONKI (es. storico oltre
+     * nasa.sync.donki-years-back). Non sposta il watermark: le finestre fallite sono
+     * riportate nello status e basta rilanciare lo stesso intervallo. Puo' girare insieme
+     * alla sync della stessa sorgente: statistiche e watermark sono UPDATE atomici.
+     */
+    public SyncTask backfillTask(String name, LocalDate startDate, LocalDate endDate) {
+        DonkiSource donki = donkiSources.get(name);
+        if (donki == null) {
+            throw new IllegalArgumentException("Backfill is only available for DONKI sources: " + donkiSources.keySet());
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("startDate must not be after endDate");
+        }
+        return SyncTask.of("backfill:" + name, progress -> {
+            System.out.println("📦 Backfill " + name + " (" + startDate + " -> " + endDate + ")...");
+            donki.apiSource().get();
+            BackfillReport report = donkiBackfill.fetch(name, startDate, endDate, donki.fetch(), progress::steps);
+            LocalDateTime watermark = apiSourceService.getWatermark(sources.get(name).apiName());
+            eventPublisher.publishEvent(new SourceSyncedEvent(name, report.records(), watermark, watermark));
+            if (report.failed() > 0) {
+                throw new IllegalStateException(report.failed() + " of " + report.windows()
+                        + " windows failed, complete until " + report.completeUntil());
+            }
+            progress.message(report.windows() + " windows");
+            return report.records();
+        });
+    }
+
+    // Cadenza del polling: nasa.sync.interval.<sorgente>, es. PT1H o 30m
+    public Duration interval(String name) {
+        return environment.getProperty("nasa.sync.interval." + name, Duration.class, sources.get(name).defaultInterval());
+    }
+
+    private int sync(Source source, SourceProgress progress) throws Exception {
+        LocalDateTime previous = apiSourceService.getWatermark(source.apiName());
+        LocalDateTime since = previous != null ? previous : source.initialWatermark().get();
+        Delta delta = source.fetch().fetch(since, LocalDate.now(), progress);
+
+        LocalDateTime watermark = previous;
+        if (delta.watermark() != null) {
+            watermark = apiSourceService.advanceWatermark(source.apiName(), delta.watermark());
+        }
+        progress.message(watermark == null ? "no watermark yet" : "watermark " + watermark);
+        eventPublisher.publishEvent(new SourceSyncedEvent(source.name(), delta.records(), previous, watermark));
+        return delta.records();
+    }
+
+    // Primo giorno scaricato dalle sorgenti a intervalli di date
+    private LocalDate start(LocalDateTime watermark) {
+        return watermark.toLocalDate().minusDays(lookbackDays);
+    }
+
+    /**
+     * Primo watermark di una sorgente: l'ultimo evento gia' nel DB (installazioni
+     * precedenti ai watermark) o la data di default della prima sync.
+     */
+    private static LocalDateTime initialWatermark(LocalDateTime lastEventDate, LocalDate defaultStart) {
+        return lastEventDate != null ? lastEventDate : defaultStart.atStartOfDay();
+    }
+
+    // ============================================
+    // STATUS
+    // ============================================
+
+    public Map<String, Object> watermarks() {
+        Map<String, Object> watermarks = new LinkedHashMap<>();
+        for (Source source : sources.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("apiSource", source.apiName());
+            entry.put("watermark", apiSourceService.getWatermark(source.apiName()));
+            entry.put("interval", interval(source.name()).toString());
+            watermarks.put(source.name(), entry);
+        }
+        return watermarks;
+    }
+}
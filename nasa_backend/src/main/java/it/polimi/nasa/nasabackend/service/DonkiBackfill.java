@@ -0,0 +1,159 @@
+package it.polimi.nasa.nasabackend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Download a finestre mensili degli intervalli DONKI (FLR, CME, IPS, GST).
+ *
+ * [start, end] viene diviso in mesi di calendario, scaricati in parallelo (al massimo
+ * nasa.donki.concurrency insieme); ogni finestra e' una chiamata fetchAndSave del
+ * servizio, quindi una transazione. Una finestra fallita viene ritentata da sola con
+ * backoff esponenziale fino a nasa.donki.max-attempts (i 4xx diversi da 429 falliscono
+ * subito). Un intervallo di 10 anni sono 120 finestre indipendenti, non una chiamata
+ * da minuti che va ripetuta per intero.
+ */
+@Service
+public class DonkiBackfill {
+
+    /**
+     * fetchAndSave del servizio DONKI: (startDate, endDate) -> nuovi record salvati.
+     */
+    @FunctionalInterface
+    public interface WindowFetch {
+        int fetch(String startDate, String endDate);
+    }
+
+    /**
+     * completeUntil: primo giorno non ancora scaricato di sicuro (inizio della prima
+     * finestra fallita), oppure end se tutte le finestre sono andate a buon fine.
+     */
+    public record BackfillReport(int windows, int completed, int failed, int records, LocalDate completeUntil) {
+    }
+
+    private record Window(LocalDate start, LocalDate end) {
+    }
+
+    @Autowired
+    private ExecutorService virtualThreadExecutor;
+
+    @Value("${nasa.donki.concurrency:3}")
+    private int concurrency;
+
+    @Value("${nasa.donki.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${nasa.donki.backoff-ms:2000}")
+    private long backoffMs;
+
+    /**
+     * Scarica [start, end]; onWindow riceve (finestre concluse, finestre totali).
+     */
+    public BackfillReport fetch(String source, LocalDate start, LocalDate end, WindowFetch fetch,
+                                BiConsumer<Integer, Integer> onWindow) throws InterruptedException {
+        List<Window> windows = monthlyWindows(start, end);
+        if (windows.size() > 1) {
+            System.out.println("   📆 " + source + ": " + windows.size() + " monthly windows");
+        }
+
+        AtomicInteger done = new AtomicInteger();
+        Semaphore slots = new Semaphore(Math.max(1, concurrency));
+        List<Future<Integer>> running = new ArrayList<>();
+        try {
+            for (Window window : windows) {
+                slots.acquire();
+                running.add(virtualThreadExecutor.submit(() -> {
+                    try {
+                        return fetchWindow(source, window, fetch);
+                    } finally {
+                        slots.release();
+                        onWindow.accept(done.incrementAndGet(), windows.size());
+                    }
+                }));
+            }
+
+            int completed = 0;
+            int records = 0;
+            LocalDate completeUntil = end;
+            for (int i = 0; i < running.size(); i++) {
+                Integer saved = running.get(i).get();
+                if (saved == null) {
+                    // Le finestre sono in ordine: la prima fallita limita il watermark
+                    if (completeUntil.equals(end)) {
+                        completeUntil = windows.get(i).start();
+                    }
+                } else {
+                    completed++;
+                    records += saved;
+                }
+            }
+            return new BackfillReport(windows.size(), completed, windows.size() - completed, records, completeUntil);
+
+        } catch (InterruptedException e) {
+            running.forEach(future -> future.cancel(true));
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("DONKI window task failed", e.getCause());
+        }
+    }
+
+    // Mesi di calendario che coprono [start, end], il primo e l'ultimo tagliati all'intervallo
+    private static List<Window> monthlyWindows(LocalDate start, LocalDate end) {
+        List<Window> windows = new ArrayList<>();
+        for (LocalDate windowStart = start; !windowStart.isAfter(end);
+             windowStart = windowStart.withDayOfMonth(1).plusMonths(1)) {
+            LocalDate monthEnd = windowStart.withDayOfMonth(windowStart.lengthOfMonth());
+            windows.add(new Window(windowStart, monthEnd.isAfter(end) ? end : monthEnd));
+        }
+        return windows;
+    }
+
+    // ============================================
+    // HELPER - Singola finestra con retry
+    // ============================================
+
+    // null = finestra fallita dopo tutti i tentativi
+    private Integer fetchWindow(String source, Window window, WindowFetch fetch) throws InterruptedException {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                return fetch.fetch(window.start().toString(), window.end().toString());
+            } catch (RuntimeException e) {
+                if (!retryable(e) || attempt == maxAttempts) {
+                    System.err.println("   ❌ " + source + " window " + window.start() + " -> " + window.end()
+                            + " failed after " + attempt + " attempt(s): " + e.getMessage());
+                    return null;
+                }
+                Duration retryIn = backoff(attempt);
+                System.err.println("   ⚠️ " + source + " window " + window.start() + " attempt " + attempt
+                        + " failed, retrying in " + retryIn.toMillis() + " ms");
+                Thread.sleep(retryIn);
+            }
+        }
+        return null;
+    }
+
+    // Richiesta sbagliata o API key non valida: ritentare non cambia l'esito
+    private static boolean retryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpClientErrorException clientError) {
+                return clientError.getStatusCode().value() == 429;
+            }
+        }
+        return true;
+    }
+
+    private Duration backoff(int attempt) {
+        long delay = backoffMs << Math.min(attempt - 1, 10);
+        return Duration.ofMillis(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+}
@@ -0,0 +1,306 @@
+package it.polimi.nasa.nasabackend.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Tabella colonnare, immutabile, di un tipo di evento DONKI.
+ *
+ * Una riga per evento, ordinata per (tempo, id); ogni colonna e' un array primitivo:
+ * - ids: id del DB
+ * - times: epoch-second UTC (i tempi DONKI sono LocalDateTime senza fuso)
+ * - values: grandezza numerica del tipo (velocita' CME, Kp), NaN se assente
+ * - codes: codice del tipo (classe del flare, flag di location degli IPS)
+ * - activityIds / labels: stringhe internate (label = fullClass o location)
+ *
+ * Pochi byte per evento invece dell'entita' JPA completa (rawData, note, ...);
+ * le finestre temporali si trovano con ricerca binaria su times.
+ */
+final class EventColumns {
+
+    static final EventColumns EMPTY = new Builder(0).build();
+
+    private final long[] ids;
+    private final long[] times;
+    private final float[] values;
+    private final byte[] codes;
+    private final String[] activityIds;
+    private final String[] labels;
+
+    // Indice activityId -> riga: activityId ordinati e riga corrispondente
+    private final String[] sortedActivityIds;
+    private final int[] rowsBySortedActivityId;
+
+    private EventColumns(long[] ids, long[] times, float[] values, byte[] codes,
+                         String[] activityIds, String[] labels) {
+        this(ids, times, values, codes, activityIds, labels, sortedIndex(activityIds));
+    }
+
+    private EventColumns(long[] ids, long[] times, float[] values, byte[] codes,
+                         String[] activityIds, String[] labels, int[] rowsBySortedActivityId) {
+        this.ids = ids;
+        this.times = times;
+        this.values = values;
+        this.codes = codes;
+        this.activityIds = activityIds;
+        this.labels = labels;
+        this.rowsBySortedActivityId = rowsBySortedActivityId;
+        this.sortedActivityIds = new String[rowsBySortedActivityId.length];
+        for (int i = 0; i < rowsBySortedActivityId.length; i++) {
+            sortedActivityIds[i] = activityIds[rowsBySortedActivityId[i]];
+        }
+    }
+
+    // Righe con activityId, ordinate per activityId (caricamento completo o blocco appena ingerito)
+    private static int[] sortedIndex(String[] activityIds) {
+        return IntStream.range(0, activityIds.length)
+                .filter(row -> activityIds[row] != null)
+                .boxed()
+                .sorted(Comparator.comparing(row -> activityIds[row]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long id(int row) {
+        return ids[row];
+    }
+
+    long epochSecond(int row) {
+        return times[row];
+    }
+
+    LocalDateTime time(int row) {
+        return LocalDateTime.ofEpochSecond(times[row], 0, ZoneOffset.UTC);
+    }
+
+    float value(int row) {
+        return values[row];
+    }
+
+    byte code(int row) {
+        return codes[row];
+    }
+
+    String activityId(int row) {
+        return activityIds[row];
+    }
+
+    String label(int row) {
+        return labels[row];
+    }
+
+    /**
+     * Riga dell'evento con questo activityId, -1 se assente.
+     */
+    int rowOf(String activityId) {
+        if (activityId == null) {
+            return -1;
+        }
+        int position = Arrays.binarySearch(sortedActivityIds, activityId);
+        return position >= 0 ? rowsBySortedActivityId[position] : -1;
+    }
+
+    /**
+     * Prima riga con tempo >= time (size() se non esiste).
+     */
+    int firstNotBefore(LocalDateTime time) {
+        long target = toEpochSecond(time);
+        int lo = 0;
+        int hi = times.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < target) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Prima riga con tempo > time (size() se non esiste).
+     */
+    int firstAfter(LocalDateTime time) {
+        long target = toEpochSecond(time);
+        int lo = 0;
+        int hi = times.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= target) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Nuova tabella con le righe di entrambe (merge di due sequenze ordinate).
+     * Un id gia' presente viene sostituito dalla riga di added.
+     *
+     * Anche l'indice per activityId nasce da un merge lineare dei due indici gia'
+     * ordinati: un ingest a blocchi non riordina mai l'intera tabella.
+     */
+    EventColumns merge(EventColumns added) {
+        if (added.size() == 0) {
+            return this;
+        }
+        Builder merged = new Builder(size() + added.size());
+        long[] replaced = added.ids.clone();
+        Arrays.sort(replaced);
+
+        // Riga nella tabella unita di ogni riga di partenza (-1 = sostituita da added)
+        int[] mergedRowOfOld = new int[size()];
+        int[] mergedRowOfAdded = new int[added.size()];
+        int i = 0;
+        int j = 0;
+        while (i < size() || j < added.size()) {
+            if (i < size() && Arrays.binarySearch(replaced, ids[i]) >= 0) {
+                mergedRowOfOld[i++] = -1;
+            } else if (j >= added.size() || (i < size() && compareRows(this, i, added, j) <= 0)) {
+                mergedRowOfOld[i] = merged.size;
+                merged.copy(this, i++);
+            } else {
+                mergedRowOfAdded[j] = merged.size;
+                merged.copy(added, j++);
+            }
+        }
+        return merged.buildSorted(mergeIndex(added, mergedRowOfOld, mergedRowOfAdded));
+    }
+
+    // Merge degli indici activityId (gia' ordinati) delle due tabelle, in righe della tabella unita
+    private int[] mergeIndex(EventColumns added, int[] mergedRowOfOld, int[] mergedRowOfAdded) {
+        int[] index = new int[sortedActivityIds.length + added.sortedActivityIds.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < sortedActivityIds.length || j < added.sortedActivityIds.length) {
+            if (i < sortedActivityIds.length && mergedRowOfOld[rowsBySortedActivityId[i]] < 0) {
+                i++;
+            } else if (j >= added.sortedActivityIds.length || (i < sortedActivityIds.length
+                    && sortedActivityIds[i].compareTo(added.sortedActivityIds[j]) <= 0)) {
+                index[size++] = mergedRowOfOld[rowsBySortedActivityId[i++]];
+            } else {
+                index[size++] = mergedRowOfAdded[added.rowsBySortedActivityId[j++]];
+            }
+        }
+        return Arrays.copyOf(index, size);
+    }
+
+    private static int compareRows(EventColumns a, int i, EventColumns b, int j) {
+        int byTime = Long.compare(a.times[i], b.times[j]);
+        return byTime != 0 ? byTime : Long.compare(a.ids[i], b.ids[j]);
+    }
+
+    static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // ============================================
+    // BUILDER
+    // ============================================
+
+    static final class Builder {
+
+        private long[] ids;
+        private long[] times;
+        private float[] values;
+        private byte[] codes;
+        private String[] activityIds;
+        private String[] labels;
+        private int size = 0;
+
+        Builder(int capacity) {
+            ids = new long[capacity];
+            times = new long[capacity];
+            values = new float[capacity];
+            codes = new byte[capacity];
+            activityIds = new String[capacity];
+            labels = new String[capacity];
+        }
+
+        /**
+         * Aggiunge un evento; quelli senza id o senza tempo non entrano nella tabella.
+         */
+        Builder add(Long id, LocalDateTime time, float value, byte code, String activityId, String label) {
+            if (id == null || time == null) {
+                return this;
+            }
+            ensureCapacity();
+            ids[size] = id;
+            times[size] = toEpochSecond(time);
+            values[size] = value;
+            codes[size] = code;
+            activityIds[size] = activityId == null ? null : activityId.intern();
+            labels[size] = label == null ? null : label.intern();
+            size++;
+            return this;
+        }
+
+        private void copy(EventColumns source, int row) {
+            ensureCapacity();
+            ids[size] = source.ids[row];
+            times[size] = source.times[row];
+            values[size] = source.values[row];
+            codes[size] = source.codes[row];
+            activityIds[size] = source.activityIds[row];
+            labels[size] = source.labels[row];
+            size++;
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                int capacity = Math.max(16, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                times = Arrays.copyOf(times, capacity);
+                values = Arrays.copyOf(values, capacity);
+                codes = Arrays.copyOf(codes, capacity);
+                activityIds = Arrays.copyOf(activityIds, capacity);
+                labels = Arrays.copyOf(labels, capacity);
+            }
+        }
+
+        /**
+         * Tabella ordinata per (tempo, id).
+         */
+        EventColumns build() {
+            int[] order = IntStream.range(0, size)
+                    .boxed()
+                    .sorted(Comparator.<Integer>comparingLong(row -> times[row]).thenComparingLong(row -> ids[row]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            long[] sortedIds = new long[size];
+            long[] sortedTimes = new long[size];
+            float[] sortedValues = new float[size];
+            byte[] sortedCodes = new byte[size];
+            String[] sortedActivityIds = new String[size];
+            String[] sortedLabels = new String[size];
+            for (int i = 0; i < size; i++) {
+                int row = order[i];
+                sortedIds[i] = ids[row];
+                sortedTimes[i] = times[row];
+                sortedValues[i] = values[row];
+                sortedCodes[i] = codes[row];
+                sortedActivityIds[i] = activityIds[row];
+                sortedLabels[i] = labels[row];
+            }
+            return new EventColumns(sortedIds, sortedTimes, sortedValues, sortedCodes, sortedActivityIds, sortedLabels);
+        }
+
+        // Righe gia' aggiunte in ordine, con l'indice activityId gia' calcolato (merge)
+        private EventColumns buildSorted(int[] rowsBySortedActivityId) {
+            return new EventColumns(Arrays.copyOf(ids, size), Arrays.copyOf(times, size), Arrays.copyOf(values, size),
+                    Arrays.copyOf(codes, size), Arrays.copyOf(activityIds, size), Arrays.copyOf(labels, size),
+                    rowsBySortedActivityId);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package it.polimi.nasa.nasabackend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import it.polimi.nasa.nasabackend.dto.*;
+import it.polimi.nasa.nasabackend.repository.*;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Export completo di una tabella di eventi in NDJSON o CSV, in streaming.
+ *
+ * Le righe arrivano da uno Stream JPA (cursore JDBC con fetch size, proiezioni DTO
+ * che non entrano nel persistence context) e vengono scritte subito sulla risposta,
+ * con un flush ogni nasa.export.flush-rows righe: la memoria non dipende dal numero
+ * di righe esportate. Le colonne sono le stesse proprieta' JSON delle liste paginate.
+ */
+@Service
+public class EventExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String mediaType;
+        private final String extension;
+
+        Format(String mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public String mediaType() {
+            return mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Export validato, pronto per essere scritto sulla risposta.
+     */
+    public interface Export {
+        String filename();
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private record Column(String name, AnnotatedMember accessor) {
+    }
+
+    private record Dataset<T>(Class<T> rowType, BiFunction<LocalDateTime, LocalDateTime, Stream<T>> rows) {
+    }
+
+    // Intervallo di default: tutta la tabella (date valide sia per PostgreSQL che per H2)
+    private static final LocalDateTime MIN_TIME = LocalDate.of(1, 1, 1).atStartOfDay();
+    private static final LocalDateTime MAX_TIME = LocalDate.of(9999, 12, 31).atStartOfDay();
+
+    @Autowired private SolarFlareRepository flareRepository;
+    @Autowired private CoronalMassEjectionRepository cmeRepository;
+    @Autowired private GeomagneticStormRepository stormRepository;
+    @Autowired private InterplanetaryShockRepository ipsRepository;
+    @Autowired private FireballRepository fireballRepository;
+    @Autowired private NeoCloseApproachRepository neoCloseApproachRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private ObjectMapper objectMapper;
+
+    @Value("${nasa.export.flush-rows:1000}")
+    private int flushRows;
+
+    private final Map<String, Dataset<?>> datasets = new LinkedHashMap<>();
+    private final Map<String, List<Column>> columns = new HashMap<>();
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        datasets.put("solar-flares", new Dataset<>(SolarFlareSummary.class, flareRepository::streamSummaries));
+        datasets.put("cme", new Dataset<>(CoronalMassEjectionSummary.class, cmeRepository::streamSummaries));
+        datasets.put("storms", new Dataset<>(GeomagneticStormSummary.class, stormRepository::streamSummaries));
+        datasets.put("ips", new Dataset<>(InterplanetaryShockSummary.class, ipsRepository::streamSummaries));
+        datasets.put("fireballs", new Dataset<>(FireballDto.class, fireballRepository::streamSummaries));
+        datasets.put("approaches", new Dataset<>(NeoCloseApproachSummary.class, neoCloseApproachRepository::streamSummaries));
+
+        // Colonne = proprieta' serializzate da Jackson, nell'ordine dei campi del DTO
+        datasets.forEach((name, dataset) -> columns.put(name, objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(dataset.rowType()))
+                .findProperties().stream()
+                .filter(BeanPropertyDefinition::couldSerialize)
+                .map(property -> new Column(property.getName(), property.getAccessor()))
+                .toList()));
+
+        // Con PostgreSQL il cursore (fetch size) funziona solo dentro una transazione
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    public Set<String> datasetNames() {
+        return datasets.keySet();
+    }
+
+    public List<String> columnNames(String dataset) {
+        return columns(dataset).stream().map(Column::name).toList();
+    }
+
+    /**
+     * Valida dataset, intervallo [from, to] (giorni inclusi, null = nessun limite) e colonne
+     * (null o vuote = tutte) prima che la risposta inizi: gli errori diventano un 400.
+     */
+    public Export prepare(String dataset, Format format, LocalDate from, LocalDate to, List<String> selected) {
+        List<Column> available = columns(dataset);
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+
+        List<Column> chosen = available;
+        if (selected != null && !selected.isEmpty()) {
+            chosen = new ArrayList<>();
+            for (String name : selected) {
+                chosen.add(available.stream()
+                        .filter(column -> column.name().equals(name.trim()))
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown column '" + name.trim()
+                                + "' for " + dataset + ", available: " + columnNames(dataset))));
+            }
+        }
+
+        LocalDateTime start = from != null ? from.atStartOfDay() : MIN_TIME;
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : MAX_TIME;
+        List<Column> exported = List.copyOf(chosen);
+        Dataset<?> rows = datasets.get(dataset);
+
+        return new Export() {
+            @Override
+            public String filename() {
+                return dataset + "." + format.extension();
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                write(rows, start, end, format, exported, out);
+            }
+        };
+    }
+
+    private List<Column> columns(String dataset) {
+        List<Column> available = columns.get(dataset);
+        if (available == null) {
+            throw new IllegalArgumentException("Unknown dataset '" + dataset + "', available: " + datasets.keySet());
+        }
+        return available;
+    }
+
+    // ============================================
+    // SCRITTURA
+    // ============================================
+
+    private void write(Dataset<?> dataset, LocalDateTime start, LocalDateTime end, Format format,
+                       List<Column> exported, OutputStream out) throws IOException {
+        long started = System.currentTimeMillis();
+        try {
+            Long rows = readOnlyTransaction.execute(status -> {
+                try (Stream<?> stream = dataset.rows().apply(start, end)) {
+                    return format == Format.NDJSON
+                            ? writeNdjson(stream.iterator(), exported, out)
+                            : writeCsv(stream.iterator(), exported, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            System.out.println("📤 Exported " + rows + " rows as " + format + " in "
+                    + (System.currentTimeMillis() - started) + " ms");
+        } catch (UncheckedIOException e) {
+            // Tipicamente il client ha chiuso la connessione: il cursore e' gia' stato chiuso
+            throw e.getCause();
+        }
+    }
+
+    private long writeNdjson(Iterator<?> rows, List<Column> exported, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.createGenerator(out);
+        long count = 0;
+        while (rows.hasNext()) {
+            Object row = rows.next();
+            json.writeStartObject();
+            for (Column column : exported) {
+                json.writeFieldName(column.name());
+                json.writeObject(column.accessor().getValue(row));
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+            if (++count % flushRows == 0) {
+                json.flush();
+            }
+        }
+        json.flush();
+        return count;
+    }
+
+    private long writeCsv(Iterator<?> rows, List<Column> exported, OutputStream out) throws IOException {
+        Writer csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        csv.write(String.join(",", exported.stream().map(Column::name).toList()));
+        csv.write("\r\n");
+        long count = 0;
+        while (rows.hasNext()) {
+            Object row = rows.next();
+            for (int i = 0; i < exported.size(); i++) {
+                if (i > 0) {
+                    csv.write(',');
+                }
+                csv.write(csvValue(exported.get(i).accessor().getValue(row)));
+            }
+            csv.write("\r\n");
+            if (++count % flushRows == 0) {
+                csv.flush();
+            }
+        }
+        csv.flush();
+        return count;
+    }
+
+    // RFC 4180: virgolette solo se servono; null = campo vuoto
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = switch (value) {
+            case LocalDateTime time -> time.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            case BigDecimal number -> number.toPlainString();
+            default -> value.toString();
+        };
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
@@ -0,0 +1,216 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
+import it.polimi.nasa.nasabackend.entity.EventType;
+import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
+import it.polimi.nasa.nasabackend.entity.InterplanetaryShock;
+import it.polimi.nasa.nasabackend.entity.SolarFlare;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Vista immutabile degli eventi DONKI in forma colonnare (una EventColumns per tipo).
+ *
+ * Filtri e finestre temporali lavorano sugli array primitivi; solo le righe selezionate
+ * diventano entita' "leggere" (id, activityId, tempo e campi usati dalle analisi,
+ * senza rawData/note/linkedEvents). Uno snapshot non cambia mai: dopo un ingest
+ * ColumnarEventStore ne pubblica uno nuovo.
+ */
+public final class EventSnapshot implements EventSource {
+
+    static final EventSnapshot EMPTY = new EventSnapshot(
+            EventColumns.EMPTY, EventColumns.EMPTY, EventColumns.EMPTY, EventColumns.EMPTY);
+
+    // Scale delle colonne DB (speed_km_s NUMERIC(10,2), kp_index NUMERIC(3,1))
+    private static final int SPEED_SCALE = 2;
+    private static final int KP_SCALE = 1;
+
+    // Codice della location degli IPS: contiene "Earth" (stesso criterio di findEarthShocks)
+    private static final byte LOCATION_EARTH = 1;
+
+    private final EventColumns flares;
+    private final EventColumns cmes;
+    private final EventColumns shocks;
+    private final EventColumns storms;
+
+    EventSnapshot(EventColumns flares, EventColumns cmes, EventColumns shocks, EventColumns storms) {
+        this.flares = flares;
+        this.cmes = cmes;
+        this.shocks = shocks;
+        this.storms = storms;
+    }
+
+    EventColumns columns(EventType type) {
+        return switch (type) {
+            case FLR -> flares;
+            case CME -> cmes;
+            case IPS -> shocks;
+            case GST -> storms;
+        };
+    }
+
+    EventSnapshot with(EventType type, EventColumns columns) {
+        return new EventSnapshot(
+                type == EventType.FLR ? columns : flares,
+                type == EventType.CME ? columns : cmes,
+                type == EventType.IPS ? columns : shocks,
+                type == EventType.GST ? columns : storms);
+    }
+
+    public int size(EventType type) {
+        return columns(type).size();
+    }
+
+    // ============================================
+    // EVENT SOURCE
+    // ============================================
+
+    @Override
+    public List<SolarFlare> flaresOfClasses(Collection<String> classTypes) {
+        IntPredicate ofClass = classFilter(classTypes);
+        return select(flares, 0, flares.size(), ofClass, this::flare);
+    }
+
+    @Override
+    public List<SolarFlare> flaresBetween(Collection<String> classTypes, LocalDateTime start, LocalDateTime end) {
+        IntPredicate ofClass = classFilter(classTypes);
+        return select(flares, flares.firstNotBefore(start), flares.firstAfter(end), ofClass, this::flare);
+    }
+
+    @Override
+    public List<CoronalMassEjection> fastCmes(BigDecimal minSpeed) {
+        float threshold = minSpeed.floatValue();
+        return select(cmes, 0, cmes.size(), row -> cmes.value(row) >= threshold, this::cme);
+    }
+
+    @Override
+    public List<CoronalMassEjection> cmesBetween(LocalDateTime start, LocalDateTime end) {
+        return select(cmes, cmes.firstNotBefore(start), cmes.firstAfter(end), row -> true, this::cme);
+    }
+
+    @Override
+    public List<InterplanetaryShock> earthShocks() {
+        return select(shocks, 0, shocks.size(), row -> shocks.code(row) == LOCATION_EARTH, this::shock);
+    }
+
+    @Override
+    public List<InterplanetaryShock> shocksBetween(LocalDateTime start, LocalDateTime end) {
+        return select(shocks, shocks.firstNotBefore(start), shocks.firstAfter(end), row -> true, this::shock);
+    }
+
+    @Override
+    public List<GeomagneticStorm> stormsBetween(LocalDateTime start, LocalDateTime end) {
+        return select(storms, storms.firstNotBefore(start), storms.firstAfter(end), row -> true, this::storm);
+    }
+
+    // Lookup per activityId (attraversamento dei linkedEvents)
+
+    public Optional<SolarFlare> findFlare(String activityId) {
+        return find(flares, activityId, this::flare);
+    }
+
+    public Optional<CoronalMassEjection> findCme(String activityId) {
+        return find(cmes, activityId, this::cme);
+    }
+
+    public Optional<InterplanetaryShock> findShock(String activityId) {
+        return find(shocks, activityId, this::shock);
+    }
+
+    public Optional<GeomagneticStorm> findStorm(String activityId) {
+        return find(storms, activityId, this::storm);
+    }
+
+    // ============================================
+    // HELPER - Materializzazione delle righe
+    // ============================================
+
+    private static <T> List<T> select(EventColumns columns, int from, int to, IntPredicate filter,
+                                      IntFunction<T> materialize) {
+        List<T> selected = new ArrayList<>();
+        for (int row = from; row < to; row++) {
+            if (filter.test(row)) {
+                selected.add(materialize.apply(row));
+            }
+        }
+        return selected;
+    }
+
+    private static <T> Optional<T> find(EventColumns columns, String activityId, IntFunction<T> materialize) {
+        int row = columns.rowOf(activityId);
+        return row < 0 ? Optional.empty() : Optional.of(materialize.apply(row));
+    }
+
+    private IntPredicate classFilter(Collection<String> classTypes) {
+        boolean[] wanted = new boolean[256];
+        for (String classType : classTypes) {
+            if (classType != null && classType.length() == 1) {
+                wanted[classCode(classType) & 0xFF] = true;
+            }
+        }
+        return row -> wanted[flares.code(row) & 0xFF];
+    }
+
+    private SolarFlare flare(int row) {
+        SolarFlare flare = new SolarFlare();
+        flare.setId(flares.id(row));
+        flare.setActivityId(flares.activityId(row));
+        flare.setPeakTime(flares.time(row));
+        flare.setClassType(flares.code(row) == 0 ? null : String.valueOf((char) flares.code(row)));
+        flare.setFullClass(flares.label(row));
+        return flare;
+    }
+
+    private CoronalMassEjection cme(int row) {
+        CoronalMassEjection cme = new CoronalMassEjection();
+        cme.setId(cmes.id(row));
+        cme.setActivityId(cmes.activityId(row));
+        cme.setStartTime(cmes.time(row));
+        cme.setSpeedKmS(decimal(cmes.value(row), SPEED_SCALE));
+        return cme;
+    }
+
+    private InterplanetaryShock shock(int row) {
+        InterplanetaryShock shock = new InterplanetaryShock();
+        shock.setId(shocks.id(row));
+        shock.setActivityId(shocks.activityId(row));
+        shock.setActivityTime(shocks.time(row));
+        shock.setLocation(shocks.label(row));
+        return shock;
+    }
+
+    private GeomagneticStorm storm(int row) {
+        GeomagneticStorm storm = new GeomagneticStorm();
+        storm.setId(storms.id(row));
+        storm.setActivityId(storms.activityId(row));
+        storm.setStartTime(storms.time(row));
+        storm.setKpIndex(decimal(storms.value(row), KP_SCALE));
+        return storm;
+    }
+
+    // ============================================
+    // HELPER - Codifica delle colonne
+    // ============================================
+
+    static float floatValue(BigDecimal value) {
+        return value == null ? Float.NaN : value.floatValue();
+    }
+
+    private static BigDecimal decimal(float value, int scale) {
+        return Float.isNaN(value) ? null : new BigDecimal(Float.toString(value)).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    // Classe del flare (B, C, M, X, ...) come codice ASCII, 0 se assente
+    static byte classCode(String classType) {
+        return classType == null || classType.isEmpty() ? 0 : (byte) classType.charAt(0);
+    }
+
+    static byte locationCode(String location) {
+        return location != null && location.contains("Earth") ? LOCATION_EARTH : 0;
+    }
+}
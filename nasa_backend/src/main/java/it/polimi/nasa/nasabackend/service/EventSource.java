@@ -0,0 +1,36 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
+import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
+import it.polimi.nasa.nasabackend.entity.InterplanetaryShock;
+import it.polimi.nasa.nasabackend.entity.SolarFlare;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Accesso agli eventi DONKI usato dalle correlazioni: liste sorgente complete e
+ * porzioni di timeline ordinate per tempo (poi id), estremi inclusi.
+ *
+ * L'implementazione e' EventSnapshot, la vista colonnare mantenuta da ColumnarEventStore.
+ */
+public interface EventSource {
+
+    List<SolarFlare> flaresOfClasses(Collection<String> classTypes);
+
+    List<SolarFlare> flaresBetween(Collection<String> classTypes, LocalDateTime start, LocalDateTime end);
+
+    // speed >= minSpeed
+    List<CoronalMassEjection> fastCmes(BigDecimal minSpeed);
+
+    List<CoronalMassEjection> cmesBetween(LocalDateTime start, LocalDateTime end);
+
+    // location LIKE '%Earth%'
+    List<InterplanetaryShock> earthShocks();
+
+    List<InterplanetaryShock> shocksBetween(LocalDateTime start, LocalDateTime end);
+
+    List<GeomagneticStorm> stormsBetween(LocalDateTime start, LocalDateTime end);
+}
@@ -0,0 +1,181 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Statistiche degli endpoint /stats, calcolate nel database.
+ *
+ * Ogni entita' e' letta con una sola query di aggregazione (GROUP BY o SUM(CASE ...)):
+ * nessuna entita' viene caricata, qualunque sia la dimensione delle tabelle. I conteggi
+ * restano nella cache "event-stats" (chiave = nome della sorgente di sync) finche' un
+ * ingest non li rende vecchi: EventsIngestedEvent per DONKI, SourceSyncedEvent per ogni
+ * run della sync, evict() per le modifiche fuori dalla sync (riconciliazione fireball).
+ */
+@Service
+public class EventStatsService {
+
+    public static final String CACHE = "event-stats";
+
+    // Soglie degli endpoint /stats
+    private static final BigDecimal FAST_CME_SPEED = BigDecimal.valueOf(1000);
+    private static final BigDecimal MAJOR_STORM_KP = BigDecimal.valueOf(6);
+
+    @Autowired private SolarFlareRepository flareRepository;
+    @Autowired private CoronalMassEjectionRepository cmeRepository;
+    @Autowired private GeomagneticStormRepository stormRepository;
+    @Autowired private InterplanetaryShockRepository ipsRepository;
+    @Autowired private FireballRepository fireballRepository;
+    @Autowired private NeoAsteroidRepository neoAsteroidRepository;
+    @Autowired private NeoCloseApproachRepository neoCloseApproachRepository;
+    @Autowired private CacheManager cacheManager;
+
+    // ============================================
+    // STATISTICHE PER ENTITA'
+    // ============================================
+
+    public Map<String, Object> flareStats() {
+        return cached("solar-flares", () -> {
+            Map<String, Long> byClass = new LinkedHashMap<>();
+            long total = 0;
+            for (Object[] row : flareRepository.countGroupByClassType()) {
+                long count = toLong(row[1]);
+                total += count;
+                if (row[0] != null) {
+                    byClass.put((String) row[0], count);
+                }
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("total", total);
+            for (String classType : List.of("X", "M", "C", "B")) {
+                stats.put("class" + classType, byClass.getOrDefault(classType, 0L));
+            }
+            return stats;
+        });
+    }
+
+    public Map<String, Object> solarEventStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.putAll(cached("cme", () -> {
+            long[] counts = totalAndMatching(cmeRepository.countTotalAndFast(FAST_CME_SPEED));
+            return Map.of("totalCme", counts[0], "fastCme", counts[1]);
+        }));
+        stats.putAll(cached("geomagnetic-storms", () -> {
+            long[] counts = totalAndMatching(stormRepository.countTotalAndMajor(MAJOR_STORM_KP));
+            return Map.of("totalStorms", counts[0], "majorStorms", counts[1]);
+        }));
+        return stats;
+    }
+
+    public Map<String, Object> ipsStats() {
+        return cached("interplanetary-shocks", () -> {
+            long[] counts = totalAndMatching(ipsRepository.countTotalAndEarth());
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("totalShocks", counts[0]);
+            stats.put("earthShocks", counts[1]);
+            return stats;
+        });
+    }
+
+    public Map<String, Object> fireballStats() {
+        return cached("fireballs", () -> {
+            long[] counts = totalAndMatching(fireballRepository.countTotalAndWithLocation());
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("total", counts[0]);
+            stats.put("withLocation", counts[1]);
+            stats.put("withoutLocation", counts[0] - counts[1]);
+            return stats;
+        });
+    }
+
+    public Map<String, Object> neoStats() {
+        return cached("neo", () -> {
+            long total = 0;
+            long hazardous = 0;
+            for (Object[] row : neoAsteroidRepository.countGroupByHazardous()) {
+                long count = toLong(row[1]);
+                total += count;
+                if (Boolean.TRUE.equals(row[0])) {
+                    hazardous += count;
+                }
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("totalAsteroids", total);
+            stats.put("hazardousAsteroids", hazardous);
+            stats.put("safeAsteroids", total - hazardous);
+            stats.put("totalApproaches", neoCloseApproachRepository.count());
+            return stats;
+        });
+    }
+
+    // ============================================
+    // INVALIDAZIONE
+    // ============================================
+
+    /**
+     * Scarta le statistiche di una sorgente (nomi della sync: solar-flares, cme, ...).
+     */
+    public void evict(String source) {
+        Cache cache = cacheManager.getCache(CACHE);
+        if (cache != null) {
+            cache.evict(source);
+        }
+    }
+
+    // Batch DONKI salvato (dopo il commit, come gli altri listener dell'ingest)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsIngested(EventsIngestedEvent event) {
+        if (event.events().isEmpty()) {
+            return;
+        }
+        evict(switch (event.type()) {
+            case FLR -> "solar-flares";
+            case CME -> "cme";
+            case IPS -> "interplanetary-shocks";
+            case GST -> "geomagnetic-storms";
+        });
+    }
+
+    // Fireball e NEO non pubblicano EventsIngestedEvent; per NEO cambiano anche asteroidi gia' salvati
+    @EventListener
+    public void onSourceSynced(SourceSyncedEvent event) {
+        evict(event.source());
+    }
+
+    // ============================================
+    // HELPER
+    // ============================================
+
+    private Map<String, Object> cached(String source, Supplier<Map<String, Object>> compute) {
+        Cache cache = cacheManager.getCache(CACHE);
+        if (cache == null) {
+            return compute.get();
+        }
+        return cache.get(source, () -> Collections.unmodifiableMap(compute.get()));
+    }
+
+    // Riga unica (COUNT, SUM(CASE ...)); SUM e' null su una tabella vuota
+    private static long[] totalAndMatching(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return new long[]{0, 0};
+        }
+        Object[] row = rows.get(0);
+        return new long[]{toLong(row[0]), toLong(row[1])};
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+}
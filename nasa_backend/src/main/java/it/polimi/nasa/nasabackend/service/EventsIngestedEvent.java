@@ -0,0 +1,79 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
+import it.polimi.nasa.nasabackend.entity.EventType;
+import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
+import it.polimi.nasa.nasabackend.entity.InterplanetaryShock;
+import it.polimi.nasa.nasabackend.entity.SolarFlare;
+
+import java.util.List;
+
+/**
+ * Pubblicato dai servizi di ingest DONKI dopo il save di un batch di nuovi eventi.
+ * events contiene copie "leggere" delle entita' salvate del tipo indicato (id, activityId,
+ * tempo e campi usati dalle analisi, come quelle di EventSnapshot), senza rawData/note/linkedEvents.
+ * I listener in memoria lo ricevono dopo il commit della finestra (TransactionalEventListener):
+ * una finestra annullata e poi ritentata non lascia eventi duplicati negli indici. Fino al commit
+ * Spring trattiene ogni evento pubblicato, quindi un download lungo tiene in memoria solo le copie.
+ */
+public record EventsIngestedEvent(EventType type, List<?> events) {
+
+    /**
+     * Evento per le entita' appena salvate di un blocco.
+     */
+    public static EventsIngestedEvent of(EventType type, List<?> saved) {
+        List<?> light = switch (type) {
+            case FLR -> saved.stream().map(flare -> light((SolarFlare) flare)).toList();
+            case CME -> saved.stream().map(cme -> light((CoronalMassEjection) cme)).toList();
+            case IPS -> saved.stream().map(shock -> light((InterplanetaryShock) shock)).toList();
+            case GST -> saved.stream().map(storm -> light((GeomagneticStorm) storm)).toList();
+        };
+        return new EventsIngestedEvent(type, light);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> eventsAs(Class<T> entityClass) {
+        return (List<T>) events;
+    }
+
+    // ============================================
+    // HELPER - Copie leggere
+    // ============================================
+
+    private static SolarFlare light(SolarFlare saved) {
+        SolarFlare flare = new SolarFlare();
+        flare.setId(saved.getId());
+        flare.setActivityId(saved.getActivityId());
+        flare.setPeakTime(saved.getPeakTime());
+        flare.setClassType(saved.getClassType());
+        flare.setFullClass(saved.getFullClass());
+        return flare;
+    }
+
+    private static CoronalMassEjection light(CoronalMassEjection saved) {
+        CoronalMassEjection cme = new CoronalMassEjection();
+        cme.setId(saved.getId());
+        cme.setActivityId(saved.getActivityId());
+        cme.setStartTime(saved.getStartTime());
+        cme.setSpeedKmS(saved.getSpeedKmS());
+        return cme;
+    }
+
+    private static InterplanetaryShock light(InterplanetaryShock saved) {
+        InterplanetaryShock shock = new InterplanetaryShock();
+        shock.setId(saved.getId());
+        shock.setActivityId(saved.getActivityId());
+        shock.setActivityTime(saved.getActivityTime());
+        shock.setLocation(saved.getLocation());
+        return shock;
+    }
+
+    private static GeomagneticStorm light(GeomagneticStorm saved) {
+        GeomagneticStorm storm = new GeomagneticStorm();
+        storm.setId(saved.getId());
+        storm.setActivityId(saved.getActivityId());
+        storm.setStartTime(saved.getStartTime());
+        storm.setKpIndex(saved.getKpIndex());
+        return storm;
+    }
+}
@@ -8,12 +8,14 @@ import it.polimi.nasa.nasabackend.entity.Fireball;
 import it.polimi.nasa.nasabackend.repository.FireballRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Map;
+import java.util.*;
 
 @Service
 public class FireballService {
@@ -25,11 +27,27 @@ public class FireballService {
     private ApiSourceService apiSourceService;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private UpstreamCache upstreamCache;
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    @Autowired
+    private EventStatsService eventStatsService;
 
     private static final String FIREBALL_URL = "https://ssd-api.jpl.nasa.gov/fireball.api";
 
-    public Map<String, Integer> fetchAndSaveFireballs() {
+    private static final DateTimeFormatter EVENT_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Formato accettato da date-min
+    private static final DateTimeFormatter DATE_MIN_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * Sync incrementale: chiede a JPL solo gli eventi da since in poi (date-min; null =
+     * catalogo completo) e fa upsert sulla chiave naturale (data, lat, lon). date-min e'
+     * inclusivo, quindi l'ultimo evento gia' salvato torna indietro e viene riconosciuto dalla chiave.
+     */
+    public Map<String, Integer> fetchAndSaveFireballs(LocalDateTime since) {
         System.out.println("🔥 Fetching Fireball data from NASA...");
 
         try {
@@ -39,48 +57,159 @@ public class FireballService {
                     "NASA Fireball and Bolide Data"
             );
 
-            String response = restTemplate.getForObject(FIREBALL_URL, String.class);
+            String url = since == null
+                    ? FIREBALL_URL
+                    : FIREBALL_URL + "?date-min=" + since.format(DATE_MIN_FORMATTER);
+            if (since != null) {
+                System.out.println("   📅 Incremental sync from " + since);
+            }
+
+            // Parsing e upsert dentro il reader: il payload risulta "noto" solo se salvato
+            UpstreamCache.Result<Map<String, Integer>> fetched = upstreamCache.fetch(url, body ->
+                    saveFireballs(JsonParser.parseReader(new InputStreamReader(body, StandardCharsets.UTF_8)), apiSource));
 
-            if (response == null) {
-                System.err.println("   ❌ No response from Fireball API");
-                return Map.of("fireballs", 0);
+            // Stesso payload dell'ultimo fetch (304 o body identico): gia' nel DB
+            if (fetched.unchanged()) {
+                System.out.println("   ℹ️ Fireballs unchanged since the last fetch");
+                return Map.of("fireballs", 0, "updated", 0);
             }
 
-            JsonElement jsonElement = JsonParser.parseString(response);
-            JsonArray dataArray = jsonElement.getAsJsonObject().getAsJsonArray("data");
+            Map<String, Integer> result = fetched.value();
+            int newFireballs = result.get("fireballs");
 
-            int newFireballs = 0;
-            int skippedFireballs = 0;
+            apiSourceService.updateApiSourceStats("NASA_Fireball", newFireballs);
+            System.out.println("   ✅ Saved " + newFireballs + " fireballs (" + result.get("updated") + " updated, "
+                    + result.get("unchanged") + " already present)");
 
-            for (JsonElement element : dataArray) {
-                try {
-                    JsonArray fireballData = element.getAsJsonArray();
-                    Fireball fireball = parseFireballData(fireballData, apiSource);
-
-                    if (fireball != null) {
-                        fireballRepository.save(fireball);
-                        newFireballs++;
-                    } else {
-                        skippedFireballs++;
-                    }
-                } catch (Exception e) {
+            if (result.get("skipped") > 0) {
+                System.out.println("   ⚠️ Skipped " + result.get("skipped") + " entries with incomplete data");
+            }
+
+            return Map.of("fireballs", newFireballs, "updated", result.get("updated"));
+
+        } catch (Exception e) {
+            System.err.println("   ❌ Error fetching Fireball data: " + e.getMessage());
+            // Propagato: la sync non deve far avanzare il watermark su una fetch fallita
+            throw new IllegalStateException("Error fetching Fireball data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Riconciliazione: elimina i duplicati (stessa data, lat, lon) salvati dalle sync
+     * precedenti, tenendo la riga piu' vecchia di ogni gruppo.
+     */
+    public Map<String, Object> reconcileDuplicates() {
+        System.out.println("🧹 Removing duplicate fireballs...");
+        int removed = fireballRepository.deleteDuplicates();
+        long remaining = fireballRepository.count();
+        System.out.println("   ✅ Removed " + removed + " duplicates, " + remaining + " fireballs left");
+        if (removed > 0) {
+            eventStatsService.evict("fireballs");
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("removed", removed);
+        result.put("remaining", remaining);
+        return result;
+    }
+
+    // ============================================
+    // HELPER - Upsert sulla chiave naturale
+    // ============================================
+
+    private Map<String, Integer> saveFireballs(JsonElement jsonElement, ApiSource apiSource) {
+        if (!jsonElement.isJsonObject()) {
+            throw new IllegalStateException("No response from Fireball API");
+        }
+        JsonArray dataArray = jsonElement.getAsJsonObject().getAsJsonArray("data");
+
+        // Senza eventi nuovi JPL risponde senza il campo data
+        List<Fireball> parsed = new ArrayList<>();
+        int skippedFireballs = 0;
+
+        for (JsonElement element : dataArray == null ? new JsonArray() : dataArray) {
+            try {
+                JsonArray fireballData = element.getAsJsonArray();
+                Fireball fireball = parseFireballData(fireballData, apiSource);
+
+                if (fireball != null) {
+                    parsed.add(fireball);
+                } else {
                     skippedFireballs++;
-                    // Silently skip malformed entries
                 }
+            } catch (Exception e) {
+                skippedFireballs++;
+                // Silently skip malformed entries
             }
+        }
 
-            apiSourceService.updateApiSourceStats("NASA_Fireball", newFireballs);
-            System.out.println("   ✅ Saved " + newFireballs + " fireballs");
+        Map<String, Integer> result = new HashMap<>(upsert(parsed));
+        result.put("skipped", skippedFireballs);
+        return result;
+    }
+
+    // Nuovi eventi inseriti in batch; quelli gia' presenti aggiornati solo se JPL li ha rivisti
+    private Map<String, Integer> upsert(List<Fireball> parsed) {
+        Map<FireballKey, Fireball> incoming = new LinkedHashMap<>();
+        for (Fireball fireball : parsed) {
+            incoming.putIfAbsent(FireballKey.of(fireball), fireball);
+        }
+        if (incoming.isEmpty()) {
+            return Map.of("fireballs", 0, "updated", 0, "unchanged", 0);
+        }
+
+        LocalDateTime from = incoming.keySet().stream()
+                .map(FireballKey::eventDate)
+                .min(LocalDateTime::compareTo)
+                .orElseThrow();
+        Map<FireballKey, Fireball> stored = new HashMap<>();
+        for (Fireball fireball : fireballRepository.findByEventDateGreaterThanEqual(from)) {
+            stored.putIfAbsent(FireballKey.of(fireball), fireball);
+        }
 
-            if (skippedFireballs > 0) {
-                System.out.println("   ⚠️ Skipped " + skippedFireballs + " entries with incomplete data");
+        List<Fireball> inserts = new ArrayList<>();
+        List<Fireball> updates = new ArrayList<>();
+        int unchanged = 0;
+        for (Map.Entry<FireballKey, Fireball> entry : incoming.entrySet()) {
+            Fireball existing = stored.get(entry.getKey());
+            if (existing == null) {
+                inserts.add(entry.getValue());
+            } else if (!Objects.equals(existing.getRawData(), entry.getValue().getRawData())) {
+                copyMeasurements(entry.getValue(), existing);
+                updates.add(existing);
+            } else {
+                unchanged++;
             }
+        }
 
-            return Map.of("fireballs", newFireballs);
+        int inserted = inserts.isEmpty() ? 0 : bulkEventWriter.insertAll(Fireball.class, inserts);
+        fireballRepository.saveAll(updates);
+        return Map.of("fireballs", inserted, "updated", updates.size(), "unchanged", unchanged);
+    }
 
-        } catch (Exception e) {
-            System.err.println("   ❌ Error fetching Fireball data: " + e.getMessage());
-            return Map.of("fireballs", 0);
+    private void copyMeasurements(Fireball from, Fireball to) {
+        to.setAltitudeKm(from.getAltitudeKm());
+        to.setTotalRadiatedEnergyJ(from.getTotalRadiatedEnergyJ());
+        to.setTotalImpactEnergyKt(from.getTotalImpactEnergyKt());
+        to.setVelocityKmS(from.getVelocityKmS());
+        to.setVelocityVx(from.getVelocityVx());
+        to.setVelocityVy(from.getVelocityVy());
+        to.setVelocityVz(from.getVelocityVz());
+        to.setRawData(from.getRawData());
+    }
+
+    /**
+     * Chiave naturale di un fireball. Le coordinate sono portate alla scala della colonna
+     * (6 decimali), cosi' "10.5" dall'API e 10.500000 dal DB coincidono.
+     */
+    private record FireballKey(LocalDateTime eventDate, BigDecimal latitude, BigDecimal longitude) {
+
+        static FireballKey of(Fireball fireball) {
+            return new FireballKey(fireball.getEventDate(), scaled(fireball.getLatitude()), scaled(fireball.getLongitude()));
+        }
+
+        private static BigDecimal scaled(BigDecimal coordinate) {
+            return coordinate == null ? null : coordinate.setScale(6, RoundingMode.HALF_UP);
         }
     }
 
@@ -94,11 +223,14 @@ public class FireballService {
 
             Fireball fireball = new Fireball();
 
-            // 0. Date: "2025-11-20 12:30:00"
+            // 0. Date: "2025-11-20 12:30:00" (fa parte della chiave: senza data l'evento e' scartato)
             if (!data.get(0).isJsonNull()) {
                 String dateStr = data.get(0).getAsString();
                 fireball.setEventDate(parseDateTime(dateStr));
             }
+            if (fireball.getEventDate() == null) {
+                return null;
+            }
 
             // 1. Total Radiated Energy
             if (!data.get(1).isJsonNull()) {
@@ -203,11 +335,9 @@ public class FireballService {
     private LocalDateTime parseDateTime(String dateStr) {
         try {
             // Format: "2025-11-20 12:30:00"
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            return LocalDateTime.parse(dateStr, formatter);
+            return LocalDateTime.parse(dateStr, EVENT_DATE_FORMATTER);
         } catch (Exception e) {
-            // Fallback to current time if parsing fails
-            return LocalDateTime.now();
+            return null; // Ritorna null, NON now(): la data e' parte della chiave naturale
         }
     }
 
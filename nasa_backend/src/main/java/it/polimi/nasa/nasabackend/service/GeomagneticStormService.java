@@ -3,15 +3,18 @@ package it.polimi.nasa.nasabackend.service;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import it.polimi.nasa.nasabackend.entity.ApiSource;
+import it.polimi.nasa.nasabackend.entity.EventType;
 import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
 import it.polimi.nasa.nasabackend.repository.GeomagneticStormRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -19,6 +22,7 @@ import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class GeomagneticStormService {
@@ -30,7 +34,19 @@ public class GeomagneticStormService {
     private ApiSourceService apiSourceService;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private UpstreamCache upstreamCache;
+
+    @Autowired
+    private LinkedEventService linkedEventService;
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Value("${nasa.api.key}")
     private String apiKey;
@@ -46,60 +62,83 @@ public class GeomagneticStormService {
             .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
             .toFormatter();
 
-    public List<GeomagneticStorm> fetchAndSaveStorms(String startDate, String endDate) {
+    /**
+     * Riga ApiSource della sorgente, creata se manca. DeltaSyncService la chiama prima di
+     * lanciare le finestre mensili in parallelo, che cosi' la trovano sempre gia' salvata.
+     */
+    public ApiSource getApiSource() {
+        return apiSourceService.getOrCreateApiSource("NASA_DONKI_GST", DONKI_GST_URL, "NASA DONKI Geomagnetic Storm Events");
+    }
+
+    public int fetchAndSaveStorms(String startDate, String endDate) {
         System.out.println("🌍 Fetching Geomagnetic Storm data from NASA DONKI...");
 
         try {
-            ApiSource apiSource = apiSourceService.getOrCreateApiSource(
-                    "NASA_DONKI_GST",
-                    DONKI_GST_URL,
-                    "NASA DONKI Geomagnetic Storm Events"
-            );
+            ApiSource apiSource = getApiSource();
 
             String url = String.format("%s?startDate=%s&endDate=%s&api_key=%s",
                     DONKI_GST_URL, startDate, endDate, apiKey);
 
-            String response = restTemplate.getForObject(url, String.class);
+            // Record letti dallo stream della risposta e scritti a blocchi, tutti in una transazione:
+            // se la finestra fallisce a meta' non resta nulla di parziale e il retry riparte da zero
+            AtomicInteger newRecords = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
+            UpstreamCache.Result<Integer> fetched = upstreamCache.fetch(url, body ->
+                    transactionTemplate.execute(status -> {
+                        try {
+                            return StreamingJsonReader.readArray(body, json -> toEntity(json, apiSource), chunk -> {
+                                BulkEventWriter.BulkInsert<GeomagneticStorm> result = saveChunk(chunk);
+                                newRecords.addAndGet(result.inserted().size());
+                                skipped.addAndGet(result.skipped());
+                            });
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
 
-            if (response == null || response.equals("[]")) {
-                System.out.println("ℹ️ No geomagnetic storms found in date range");
-                return new ArrayList<>();
+            // Stesso payload dell'ultimo fetch (304 o body identico): gia' nel DB
+            if (fetched.unchanged()) {
+                System.out.println("ℹ️ Geomagnetic storms unchanged since the last fetch");
+                return 0;
             }
 
-            JsonArray jsonArray = JsonParser.parseString(response).getAsJsonArray();
-            List<GeomagneticStorm> storms = new ArrayList<>();
-            int newRecords = 0;
-
-            for (JsonElement element : jsonArray) {
-                JsonObject stormJson = element.getAsJsonObject();
-
-                try {
-                    String activityId = stormJson.get("gstID").getAsString();
-
-                    // Skip if already exists
-                    if (geomagneticStormRepository.existsByActivityId(activityId)) {
-                        continue;
-                    }
-
-                    GeomagneticStorm storm = parseStormData(stormJson, apiSource);
-                    GeomagneticStorm saved = geomagneticStormRepository.save(storm);
-                    storms.add(saved);
-                    newRecords++;
-
-                } catch (Exception e) {
-                    System.err.println("⚠️ Error parsing storm: " + e.getMessage());
-                }
+            if (fetched.value() == 0) {
+                System.out.println("ℹ️ No geomagnetic storms found in date range");
+                return 0;
             }
 
-            apiSourceService.updateApiSourceStats("NASA_DONKI_GST", newRecords);
-            System.out.println("✅ Saved " + newRecords + " geomagnetic storm records");
+            apiSourceService.updateApiSourceStats("NASA_DONKI_GST", newRecords.get());
+            System.out.println("✅ Saved " + newRecords + " geomagnetic storm records (" + skipped + " already present)");
 
-            return storms;
+            return newRecords.get();
 
         } catch (Exception e) {
             System.err.println("❌ Error fetching geomagnetic storm data: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
+            // Propagato: la sync non deve far avanzare il watermark su una fetch fallita
+            throw new IllegalStateException("Error fetching geomagnetic storm data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Skip di quelli gia' presenti con una query IN, insert dei nuovi in batch,
+     * poi linked_event ed EventsIngestedEvent per il blocco.
+     */
+    private BulkEventWriter.BulkInsert<GeomagneticStorm> saveChunk(List<GeomagneticStorm> chunk) {
+        BulkEventWriter.BulkInsert<GeomagneticStorm> result = bulkEventWriter.insertNew(GeomagneticStorm.class, chunk,
+                GeomagneticStorm::getActivityId, geomagneticStormRepository::findExistingActivityIds);
+        linkedEventService.saveLinks(EventType.GST, result.inserted(), GeomagneticStorm::getActivityId, GeomagneticStorm::getLinkedEvents);
+        eventPublisher.publishEvent(EventsIngestedEvent.of(EventType.GST, result.inserted()));
+        return result;
+    }
+
+    // null = record scartato
+    private GeomagneticStorm toEntity(JsonObject json, ApiSource apiSource) {
+        try {
+            GeomagneticStorm storm = parseStormData(json, apiSource);
+            return storm;
+        } catch (Exception e) {
+            System.err.println("⚠️ Error parsing storm: " + e.getMessage());
+            return null;
         }
     }
 
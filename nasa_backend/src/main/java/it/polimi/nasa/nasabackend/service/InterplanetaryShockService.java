@@ -3,21 +3,25 @@ package it.polimi.nasa.nasabackend.service;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import it.polimi.nasa.nasabackend.entity.ApiSource;
+import it.polimi.nasa.nasabackend.entity.EventType;
 import it.polimi.nasa.nasabackend.entity.InterplanetaryShock;
 import it.polimi.nasa.nasabackend.repository.InterplanetaryShockRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class InterplanetaryShockService {
@@ -29,7 +33,19 @@ public class InterplanetaryShockService {
     private ApiSourceService apiSourceService;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private UpstreamCache upstreamCache;
+
+    @Autowired
+    private LinkedEventService linkedEventService;
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Value("${nasa.api.key}")
     private String apiKey;
@@ -44,65 +60,87 @@ public class InterplanetaryShockService {
             .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
             .toFormatter();
 
-    public List<InterplanetaryShock> fetchAndSaveIps(String startDate, String endDate) {
+    /**
+     * Riga ApiSource della sorgente, creata se manca. DeltaSyncService la chiama prima di
+     * lanciare le finestre mensili in parallelo, che cosi' la trovano sempre gia' salvata.
+     */
+    public ApiSource getApiSource() {
+        return apiSourceService.getOrCreateApiSource("NASA_DONKI_IPS", DONKI_IPS_URL, "NASA DONKI Interplanetary Shock Events");
+    }
+
+    public int fetchAndSaveIps(String startDate, String endDate) {
         System.out.println("🌊 Fetching Interplanetary Shock data from NASA DONKI...");
 
         try {
-            ApiSource apiSource = apiSourceService.getOrCreateApiSource(
-                    "NASA_DONKI_IPS",
-                    DONKI_IPS_URL,
-                    "NASA DONKI Interplanetary Shock Events"
-            );
+            ApiSource apiSource = getApiSource();
 
             String url = String.format("%s?startDate=%s&endDate=%s&api_key=%s",
                     DONKI_IPS_URL, startDate, endDate, apiKey);
 
-            String response = restTemplate.getForObject(url, String.class);
+            // Record letti dallo stream della risposta e scritti a blocchi, tutti in una transazione:
+            // se la finestra fallisce a meta' non resta nulla di parziale e il retry riparte da zero
+            AtomicInteger newRecords = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
+            UpstreamCache.Result<Integer> fetched = upstreamCache.fetch(url, body ->
+                    transactionTemplate.execute(status -> {
+                        try {
+                            return StreamingJsonReader.readArray(body, json -> toEntity(json, apiSource), chunk -> {
+                                BulkEventWriter.BulkInsert<InterplanetaryShock> result = saveChunk(chunk);
+                                newRecords.addAndGet(result.inserted().size());
+                                skipped.addAndGet(result.skipped());
+                            });
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+
+            // Stesso payload dell'ultimo fetch (304 o body identico): gia' nel DB
+            if (fetched.unchanged()) {
+                System.out.println("ℹ️ IP shocks unchanged since the last fetch");
+                return 0;
+            }
 
-            if (response == null || response.equals("[]")) {
+            if (fetched.value() == 0) {
                 System.out.println("ℹ️ No IPS events found in date range");
-                return new ArrayList<>();
+                return 0;
             }
 
-            JsonArray jsonArray = JsonParser.parseString(response).getAsJsonArray();
-            List<InterplanetaryShock> ipsList = new ArrayList<>();
-            int newRecords = 0;
-
-            for (JsonElement element : jsonArray) {
-                JsonObject ipsJson = element.getAsJsonObject();
-
-                try {
-                    String activityId = ipsJson.get("activityID").getAsString();
+            apiSourceService.updateApiSourceStats("NASA_DONKI_IPS", newRecords.get());
+            System.out.println("✅ Saved " + newRecords + " IPS records (" + skipped + " already present)");
 
-                    if (ipsRepository.existsByActivityId(activityId)) {
-                        continue;
-                    }
+            return newRecords.get();
 
-                    InterplanetaryShock ips = parseIpsData(ipsJson, apiSource);
-
-                    if (ips.getActivityTime() == null) {
-                        System.err.println("⚠️ Skipping IPS " + activityId + " due to missing eventTime");
-                        continue;
-                    }
+        } catch (Exception e) {
+            System.err.println("❌ Error fetching IPS data: " + e.getMessage());
+            // Propagato: la sync non deve far avanzare il watermark su una fetch fallita
+            throw new IllegalStateException("Error fetching IPS data: " + e.getMessage(), e);
+        }
+    }
 
-                    InterplanetaryShock saved = ipsRepository.save(ips);
-                    ipsList.add(saved);
-                    newRecords++;
+    /**
+     * Skip di quelli gia' presenti con una query IN, insert dei nuovi in batch,
+     * poi linked_event ed EventsIngestedEvent per il blocco.
+     */
+    private BulkEventWriter.BulkInsert<InterplanetaryShock> saveChunk(List<InterplanetaryShock> chunk) {
+        BulkEventWriter.BulkInsert<InterplanetaryShock> result = bulkEventWriter.insertNew(InterplanetaryShock.class, chunk,
+                InterplanetaryShock::getActivityId, ipsRepository::findExistingActivityIds);
+        linkedEventService.saveLinks(EventType.IPS, result.inserted(), InterplanetaryShock::getActivityId, InterplanetaryShock::getLinkedEvents);
+        eventPublisher.publishEvent(EventsIngestedEvent.of(EventType.IPS, result.inserted()));
+        return result;
+    }
 
-                } catch (Exception e) {
-                    System.err.println("⚠️ Error parsing IPS: " + e.getMessage());
-                }
+    // null = record scartato
+    private InterplanetaryShock toEntity(JsonObject json, ApiSource apiSource) {
+        try {
+            InterplanetaryShock ips = parseIpsData(json, apiSource);
+            if (ips.getActivityTime() == null) {
+                System.err.println("⚠️ Skipping IPS " + ips.getActivityId() + " due to missing eventTime");
+                return null;
             }
-
-            apiSourceService.updateApiSourceStats("NASA_DONKI_IPS", newRecords);
-            System.out.println("✅ Saved " + newRecords + " IPS records");
-
-            return ipsList;
-
+            return ips;
         } catch (Exception e) {
-            System.err.println("❌ Error fetching IPS data: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
+            System.err.println("⚠️ Error parsing IPS: " + e.getMessage());
+            return null;
         }
     }
 
@@ -0,0 +1,184 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.*;
+import it.polimi.nasa.nasabackend.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grafo in memoria dei linkedEvents NASA DONKI (FLR, CME, IPS, GST).
+ *
+ * Ogni evento ha liste di adiacenza tipizzate per activityId (es. FLR -> [CME...],
+ * CME -> [IPS...]) lette dalla tabella linked_event; i nodi sono le righe di
+ * ColumnarEventStore. Il grafo viene costruito una sola volta e aggiornato ad ogni
+ * EventsIngestedEvent, cosi' le
+ * analisi "verified" attraversano i link senza query per-link sul DB.
+ * Mantiene anche i link inversi (CME -> FLR che la citano), usati per capire quali
+ * correlazioni ricalcolare quando arriva un nuovo evento target.
+ */
+@Component
+public class LinkedEventIndex {
+
+    @Autowired
+    private LinkedEventRepository linkedEventRepository;
+
+    @Autowired
+    private ColumnarEventStore columnarEventStore;
+
+    // Dimensione massima della lista IN quando si leggono gli archi di un batch
+    private static final int LINK_QUERY_BATCH = 1000;
+
+    // activityId -> (tipo evento collegato -> activityId collegati, in ordine NASA)
+    private final Map<String, Map<EventType, List<String>>> adjacency = new ConcurrentHashMap<>();
+
+    // activityId target -> (tipo sorgente -> activityId che lo citano nei propri linkedEvents)
+    private final Map<String, Map<EventType, Set<String>>> reverseAdjacency = new ConcurrentHashMap<>();
+
+    private volatile boolean built = false;
+
+    // ============================================
+    // BUILD & REFRESH
+    // ============================================
+
+    /**
+     * Ricostruisce l'intero grafo leggendo linked_event (una query).
+     */
+    public synchronized void rebuild() {
+        System.out.println("🕸️ Building linked-event graph index...");
+
+        adjacency.clear();
+        reverseAdjacency.clear();
+        putLinks(linkedEventRepository.findAll());
+
+        built = true;
+        System.out.println("✅ Graph index ready: " + adjacency.size() + " events with links");
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggiorna il grafo prima degli altri listener, che lo attraversano.
+     * Gli archi del batch sono gia' in linked_event (scritti dal servizio di ingest).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onEventsIngested(EventsIngestedEvent event) {
+        List<String> activityIds = new ArrayList<>();
+        for (Object saved : event.events()) {
+            String activityId = switch (event.type()) {
+                case FLR -> ((SolarFlare) saved).getActivityId();
+                case CME -> ((CoronalMassEjection) saved).getActivityId();
+                case IPS -> ((InterplanetaryShock) saved).getActivityId();
+                case GST -> ((GeomagneticStorm) saved).getActivityId();
+            };
+            if (activityId != null) {
+                activityIds.add(activityId);
+            }
+        }
+        for (int from = 0; from < activityIds.size(); from += LINK_QUERY_BATCH) {
+            List<String> chunk = activityIds.subList(from, Math.min(from + LINK_QUERY_BATCH, activityIds.size()));
+            putLinks(linkedEventRepository.findBySourceActivityIdIn(chunk));
+        }
+    }
+
+    /**
+     * Aggiunge gli archi letti da linked_event, raggruppati per sorgente nell'ordine NASA.
+     */
+    private void putLinks(Collection<LinkedEvent> links) {
+        Map<String, List<LinkedEvent>> bySource = new HashMap<>();
+        for (LinkedEvent link : links) {
+            bySource.computeIfAbsent(link.getSourceActivityId(), id -> new ArrayList<>()).add(link);
+        }
+        bySource.forEach((sourceId, sourceLinks) -> {
+            sourceLinks.sort(Comparator.comparing(LinkedEvent::getPosition));
+            putLinks(sourceLinks.get(0).getSourceType(), sourceId, adjacencyOf(sourceLinks));
+        });
+    }
+
+    private void putLinks(EventType sourceType, String activityId, Map<EventType, List<String>> links) {
+        adjacency.put(activityId, links);
+        for (List<String> linkedIds : links.values()) {
+            for (String linkedId : linkedIds) {
+                reverseAdjacency.computeIfAbsent(linkedId, id -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(sourceType, t -> ConcurrentHashMap.newKeySet())
+                        .add(activityId);
+            }
+        }
+    }
+
+    // ============================================
+    // TRAVERSAL
+    // ============================================
+
+    /**
+     * activityId collegati di un certo tipo, nell'ordine in cui NASA li riporta.
+     * Il grafo contiene tutti gli archi di linked_event: un evento assente non ha link.
+     */
+    public List<String> linkedIds(String activityId, EventType type) {
+        ensureBuilt();
+        if (activityId == null) {
+            return List.of();
+        }
+        return adjacency.getOrDefault(activityId, Map.of()).getOrDefault(type, List.of());
+    }
+
+    /**
+     * activityId degli eventi di tipo sourceType che citano uno dei target nei propri linkedEvents.
+     */
+    public Set<String> linkingIds(Collection<String> targetIds, EventType sourceType) {
+        ensureBuilt();
+        Set<String> linking = new LinkedHashSet<>();
+        for (String targetId : targetIds) {
+            Map<EventType, Set<String>> byType = reverseAdjacency.get(targetId);
+            if (byType != null) {
+                linking.addAll(byType.getOrDefault(sourceType, Set.of()));
+            }
+        }
+        return linking;
+    }
+
+    // Nodi del grafo: righe dello snapshot colonnare corrente
+
+    public Optional<SolarFlare> findFlare(String activityId) {
+        return columnarEventStore.snapshot().findFlare(activityId);
+    }
+
+    public Optional<CoronalMassEjection> findCme(String activityId) {
+        return columnarEventStore.snapshot().findCme(activityId);
+    }
+
+    public Optional<InterplanetaryShock> findShock(String activityId) {
+        return columnarEventStore.snapshot().findShock(activityId);
+    }
+
+    public Optional<GeomagneticStorm> findStorm(String activityId) {
+        return columnarEventStore.snapshot().findStorm(activityId);
+    }
+
+    // ============================================
+    // HELPER - Adjacency
+    // ============================================
+
+    private static Map<EventType, List<String>> adjacencyOf(List<LinkedEvent> links) {
+        Map<EventType, List<String>> byType = new EnumMap<>(EventType.class);
+        for (LinkedEvent link : links) {
+            byType.computeIfAbsent(link.getTargetType(), t -> new ArrayList<>()).add(link.getTargetActivityId());
+        }
+        byType.replaceAll((type, ids) -> List.copyOf(ids));
+        return byType;
+    }
+}
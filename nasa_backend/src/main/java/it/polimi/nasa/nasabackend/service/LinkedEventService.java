@@ -0,0 +1,103 @@
+package it.polimi.nasa.nasabackend.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import it.polimi.nasa.nasabackend.entity.*;
+import it.polimi.nasa.nasabackend.repository.*;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Scrive la tabella linked_event a partire dal JSON linkedEvents degli eventi DONKI.
+ *
+ * I servizi di ingest la chiamano dopo il save e prima di pubblicare l'EventsIngestedEvent;
+ * all'avvio vengono completati gli eventi salvati quando la tabella non esisteva ancora.
+ */
+@Service
+public class LinkedEventService {
+
+    @Autowired
+    private SolarFlareRepository solarFlareRepository;
+
+    @Autowired
+    private CoronalMassEjectionRepository cmeRepository;
+
+    @Autowired
+    private InterplanetaryShockRepository interplanetaryShockRepository;
+
+    @Autowired
+    private GeomagneticStormRepository geomagneticStormRepository;
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    /**
+     * Salva gli archi di un batch di eventi appena persistiti (INSERT in batch JDBC);
+     * ritorna il numero di righe scritte.
+     */
+    public <T> int saveLinks(EventType sourceType, Collection<T> saved,
+                             Function<T, String> activityId, Function<T, String> linkedEvents) {
+        List<LinkedEvent> links = new ArrayList<>();
+        for (T event : saved) {
+            links.addAll(parseLinks(sourceType, activityId.apply(event), linkedEvents.apply(event)));
+        }
+        if (links.isEmpty()) {
+            return 0;
+        }
+        return bulkEventWriter.insertAll(LinkedEvent.class, links);
+    }
+
+    /**
+     * Completa linked_event per gli eventi che hanno linkedEvents ma nessuna riga
+     * (DB popolato prima dell'introduzione della tabella).
+     */
+    @PostConstruct
+    public void backfillMissingLinks() {
+        int links = saveLinks(EventType.FLR, solarFlareRepository.findWithoutLinkRows(),
+                SolarFlare::getActivityId, SolarFlare::getLinkedEvents)
+                + saveLinks(EventType.CME, cmeRepository.findWithoutLinkRows(),
+                CoronalMassEjection::getActivityId, CoronalMassEjection::getLinkedEvents)
+                + saveLinks(EventType.IPS, interplanetaryShockRepository.findWithoutLinkRows(),
+                InterplanetaryShock::getActivityId, InterplanetaryShock::getLinkedEvents)
+                + saveLinks(EventType.GST, geomagneticStormRepository.findWithoutLinkRows(),
+                GeomagneticStorm::getActivityId, GeomagneticStorm::getLinkedEvents);
+        if (links > 0) {
+            System.out.println("🕸️ Backfilled " + links + " linked_event rows");
+        }
+    }
+
+    // ============================================
+    // HELPER - Parse linkedEvents JSON
+    // ============================================
+
+    /**
+     * Archi verso eventi FLR/CME/IPS/GST, nell'ordine NASA. I link verso tipi non
+     * gestiti (SEP, MPC, RBE, ...) vengono scartati.
+     */
+    public static List<LinkedEvent> parseLinks(EventType sourceType, String sourceActivityId, String linkedEventsJson) {
+        List<LinkedEvent> links = new ArrayList<>();
+        if (sourceActivityId == null || linkedEventsJson == null || linkedEventsJson.trim().isEmpty()) {
+            return links;
+        }
+        try {
+            JsonArray jsonArray = JsonParser.parseString(linkedEventsJson).getAsJsonArray();
+            for (JsonElement element : jsonArray) {
+                if (element.isJsonObject()) {
+                    String targetId = element.getAsJsonObject().get("activityID").getAsString();
+                    EventType targetType = EventType.fromActivityId(targetId);
+                    if (targetType != null) {
+                        links.add(new LinkedEvent(sourceActivityId, sourceType, targetId, targetType, links.size()));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ Error parsing linkedEvents: " + e.getMessage());
+        }
+        return links;
+    }
+}
@@ -0,0 +1,111 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.EventType;
+import it.polimi.nasa.nasabackend.service.CorrelationAggregate.Contribution;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Correlazione mantenuta in memoria.
+ *
+ * Viene costruita una volta dall'intera lista di sorgenti e poi aggiornata ad ogni
+ * EventsIngestedEvent: per ogni tipo di evento una funzione restituisce le sorgenti
+ * toccate dal batch (nuove sorgenti, o sorgenti che ora raggiungono un nuovo target),
+ * e solo quelle vengono ricalcolate.
+ *
+ * Sorgenti e target sono letti dall'EventSnapshot colonnare: la costruzione puo'
+ * ricevere uno snapshot condiviso fra piu' correlazioni, gli aggiornamenti usano
+ * quello corrente (che include gia' il batch appena ingerito).
+ */
+class MaintainedCorrelation<S> {
+
+    private final String name;
+    private final Comparator<S> order;
+    private final Function<S, Long> idOf;
+    private final Supplier<? extends EventSource> currentEvents;
+    private final Function<EventSource, List<S>> allSources;
+    private final BiFunction<EventSource, List<S>, List<Contribution<S>>> compute;
+    private final Map<EventType, Function<EventsIngestedEvent, List<S>>> affectedSources = new EnumMap<>(EventType.class);
+
+    private volatile CorrelationAggregate<S> aggregate;
+
+    MaintainedCorrelation(String name, Comparator<S> order, Function<S, Long> idOf,
+                          Supplier<? extends EventSource> currentEvents,
+                          Function<EventSource, List<S>> allSources,
+                          BiFunction<EventSource, List<S>, List<Contribution<S>>> compute) {
+        this.name = name;
+        this.order = order;
+        this.idOf = idOf;
+        this.currentEvents = currentEvents;
+        this.allSources = allSources;
+        this.compute = compute;
+    }
+
+    MaintainedCorrelation<S> on(EventType type, Function<EventsIngestedEvent, List<S>> affected) {
+        affectedSources.put(type, affected);
+        return this;
+    }
+
+    String name() {
+        return name;
+    }
+
+    boolean isBuilt() {
+        return aggregate != null;
+    }
+
+    CorrelationAggregate<S> aggregate() {
+        return aggregate(currentEvents.get());
+    }
+
+    /**
+     * Aggregato corrente; se non esiste ancora viene costruito leggendo da events.
+     */
+    CorrelationAggregate<S> aggregate(EventSource events) {
+        CorrelationAggregate<S> current = aggregate;
+        if (current == null) {
+            synchronized (this) {
+                if (aggregate == null) {
+                    aggregate = build(events);
+                }
+                current = aggregate;
+            }
+        }
+        return current;
+    }
+
+    private CorrelationAggregate<S> build(EventSource events) {
+        List<S> sources = allSources.apply(events);
+        CorrelationAggregate<S> built = new CorrelationAggregate<>(order, idOf);
+        built.putAll(compute.apply(events, sources));
+        System.out.println("📊 Correlation aggregate " + name + " built from " + sources.size() + " sources");
+        return built;
+    }
+
+    /**
+     * Scarta l'aggregato: la prossima lettura lo ricostruisce dallo snapshot corrente.
+     */
+    synchronized void reset() {
+        aggregate = null;
+    }
+
+    /**
+     * Ricalcola le sorgenti toccate dal batch. Se l'aggregato non e' ancora stato
+     * costruito non c'e' nulla da aggiornare: la prima costruzione leggera' gia' il batch.
+     */
+    synchronized void onIngest(EventsIngestedEvent event) {
+        Function<EventsIngestedEvent, List<S>> affected = affectedSources.get(event.type());
+        if (aggregate == null || affected == null || event.events().isEmpty()) {
+            return;
+        }
+        List<S> sources = affected.apply(event);
+        if (!sources.isEmpty()) {
+            aggregate.putAll(compute.apply(currentEvents.get(), sources));
+            System.out.println("📊 Correlation aggregate " + name + ": " + sources.size()
+                    + " sources updated after " + event.events().size() + " new " + event.type());
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.NeoFetchWindow;
+import it.polimi.nasa.nasabackend.repository.NeoFetchWindowRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Scheduler delle richieste al feed NeoWs, una per finestra di 8 giorni.
+ *
+ * - le finestre partono in parallelo (al massimo nasa.neo.concurrency insieme),
+ *   ognuna dopo aver preso un token dal TokenBucket (nasa.neo.requests-per-second)
+ * - X-RateLimit-Remaining: sotto nasa.neo.rate-limit-reserve non partono altre finestre,
+ *   restano PENDING per la prossima sync
+ * - 429 con Retry-After: tutto il bucket si ferma per quel tempo; Retry-After oltre
+ *   nasa.neo.max-retry-after-seconds equivale a quota esaurita
+ * - 429 senza Retry-After, 5xx ed errori di rete: retry con backoff esponenziale
+ *   fino a nasa.neo.max-attempts; gli altri 4xx falliscono subito
+ *
+ * Lo stato di ogni finestra e' salvato in neo_fetch_window, cosi' una sync interrotta
+ * riprende dalle finestre non completate. nasa.neo.feed-url permette di puntare a uno
+ * stub HTTP locale.
+ */
+@Service
+public class NeoFeedFetcher {
+
+    public static final int WINDOW_DAYS = 8;
+
+    // Griglia fissa delle finestre (startDate multipli di 8 giorni da questa data)
+    private static final LocalDate GRID_ORIGIN = LocalDate.of(1970, 1, 1);
+
+    /**
+     * Legge il body di una finestra e lo salva; ritorna {asteroidi, approcci} nuovi.
+     */
+    @FunctionalInterface
+    public interface WindowReader {
+        int[] read(LocalDate start, LocalDate end, InputStream body) throws IOException;
+    }
+
+    public record FetchReport(int windows, int alreadyCompleted, int completed, int failed,
+                              int asteroids, int approaches, boolean rateLimited) {
+    }
+
+    @Autowired
+    private UpstreamCache upstreamCache;
+
+    @Autowired
+    private ExecutorService virtualThreadExecutor;
+
+    @Autowired
+    private NeoFetchWindowRepository neoFetchWindowRepository;
+
+    @Value("${nasa.api.key}")
+    private String apiKey;
+
+    @Value("${nasa.neo.feed-url:https://api.nasa.gov/neo/rest/v1/feed}")
+    private String feedUrl;
+
+    @Value("${nasa.neo.concurrency:4}")
+    private int concurrency;
+
+    @Value("${nasa.neo.requests-per-second:1.0}")
+    private double requestsPerSecond;
+
+    @Value("${nasa.neo.burst:2}")
+    private int burst;
+
+    @Value("${nasa.neo.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${nasa.neo.backoff-ms:1000}")
+    private long backoffMs;
+
+    @Value("${nasa.neo.rate-limit-reserve:5}")
+    private int rateLimitReserve;
+
+    @Value("${nasa.neo.max-retry-after-seconds:120}")
+    private long maxRetryAfterSeconds;
+
+    private TokenBucket tokenBucket;
+
+    @PostConstruct
+    void init() {
+        tokenBucket = new TokenBucket(requestsPerSecond, burst);
+    }
+
+    /**
+     * Scarica [start, end] finestra per finestra, saltando quelle gia' completate.
+     * onWindow riceve (finestre concluse, finestre totali) dopo ogni finestra.
+     */
+    public FetchReport fetch(LocalDate start, LocalDate end, WindowReader reader,
+                             BiConsumer<Integer, Integer> onWindow) throws InterruptedException {
+        List<NeoFetchWindow> windows = plan(start, end);
+        List<NeoFetchWindow> pending = windows.stream()
+                .filter(window -> window.getStatus() != NeoFetchWindow.Status.COMPLETED)
+                .toList();
+        int alreadyCompleted = windows.size() - pending.size();
+
+        Run run = new Run(reader, onWindow, pending.size());
+        Semaphore slots = new Semaphore(Math.max(1, concurrency));
+        List<Future<?>> running = new ArrayList<>();
+        try {
+            for (NeoFetchWindow window : pending) {
+                slots.acquire();
+                if (run.exhausted) {
+                    slots.release();
+                    break;
+                }
+                running.add(virtualThreadExecutor.submit(() -> {
+                    try {
+                        fetchWindow(window, run);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            for (Future<?> future : running) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            running.forEach(future -> future.cancel(true));
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("NEO window task failed", e.getCause());
+        }
+
+        return new FetchReport(windows.size(), alreadyCompleted, run.completed.get(), run.failed.get(),
+                run.asteroids.get(), run.approaches.get(), run.exhausted);
+    }
+
+    /**
+     * Finestre della griglia che coprono [start, end]; l'ultima e' tagliata a end.
+     * Una finestra completata solo fino a un giorno precedente torna PENDING.
+     */
+    private List<NeoFetchWindow> plan(LocalDate start, LocalDate end) {
+        List<NeoFetchWindow> windows = new ArrayList<>();
+        if (end.isBefore(start)) {
+            return windows;
+        }
+        LocalDate first = gridStart(start);
+        Map<LocalDate, NeoFetchWindow> stored = new HashMap<>();
+        for (NeoFetchWindow window : neoFetchWindowRepository.findByStartDateBetween(first, end)) {
+            stored.put(window.getStartDate(), window);
+        }
+
+        for (LocalDate windowStart = first; !windowStart.isAfter(end); windowStart = windowStart.plusDays(WINDOW_DAYS)) {
+            LocalDate windowEnd = windowStart.plusDays(WINDOW_DAYS - 1);
+            if (windowEnd.isAfter(end)) {
+                windowEnd = end;
+            }
+            NeoFetchWindow window = stored.get(windowStart);
+            if (window == null) {
+                window = new NeoFetchWindow(windowStart, windowEnd);
+            } else if (window.getStatus() == NeoFetchWindow.Status.COMPLETED && !window.getEndDate().isBefore(windowEnd)) {
+                windows.add(window);
+                continue;
+            }
+            window.setEndDate(windowEnd);
+            window.setStatus(NeoFetchWindow.Status.PENDING);
+            window.setAttempts(0);
+            // Salvata prima di partire: se la sync si interrompe resta PENDING
+            windows.add(neoFetchWindowRepository.save(window));
+        }
+        return windows;
+    }
+
+    static LocalDate gridStart(LocalDate date) {
+        long offset = Math.floorMod(date.toEpochDay() - GRID_ORIGIN.toEpochDay(), WINDOW_DAYS);
+        return date.minusDays(offset);
+    }
+
+    // ============================================
+    // HELPER - Singola finestra con retry
+    // ============================================
+
+    private void fetchWindow(NeoFetchWindow window, Run run) {
+        String url = String.format("%s?start_date=%s&end_date=%s&api_key=%s",
+                feedUrl, window.getStartDate(), window.getEndDate(), apiKey);
+
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            window.setAttempts(attempt);
+            Duration retryIn;
+            try {
+                tokenBucket.acquire();
+                UpstreamCache.Result<int[]> fetched = upstreamCache.fetch(url, headers -> observe(headers, run),
+                        body -> run.reader.read(window.getStartDate(), window.getEndDate(), body));
+                // Finestra identica all'ultimo fetch: restano i conteggi di allora
+                complete(window, fetched.unchanged()
+                        ? new int[]{window.getAsteroids(), window.getApproaches()}
+                        : fetched.value(), run);
+                return;
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(window, "Interrupted", run);
+                return;
+
+            } catch (HttpStatusCodeException e) {
+                observe(e.getResponseHeaders(), run);
+                int status = e.getStatusCode().value();
+                if (status == 429) {
+                    Optional<Duration> retryAfter = retryAfter(e.getResponseHeaders());
+                    if (retryAfter.isPresent() && retryAfter.get().getSeconds() > maxRetryAfterSeconds) {
+                        // Quota oraria esaurita: le finestre rimanenti alla prossima sync
+                        run.exhausted = true;
+                        fail(window, "429, Retry-After " + retryAfter.get().getSeconds() + "s", run);
+                        return;
+                    }
+                    retryIn = retryAfter.orElse(backoff(attempt));
+                    tokenBucket.pause(retryIn);
+                } else if (e.getStatusCode().is5xxServerError()) {
+                    retryIn = backoff(attempt);
+                } else {
+                    fail(window, "HTTP " + status, run);
+                    return;
+                }
+                window.setLastError("HTTP " + status);
+
+            } catch (IOException | RuntimeException e) {
+                // Errori di rete (ResourceAccessException) o di scrittura della finestra
+                retryIn = backoff(attempt);
+                window.setLastError(e.getMessage());
+            }
+
+            if (attempt < maxAttempts) {
+                System.err.println("   ⚠️ NEO window " + window.getStartDate() + " attempt " + attempt
+                        + " failed (" + window.getLastError() + "), retrying in " + retryIn.toMillis() + " ms");
+                try {
+                    Thread.sleep(retryIn);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fail(window, "Interrupted", run);
+                    return;
+                }
+            }
+        }
+        fail(window, window.getLastError(), run);
+    }
+
+    private Duration backoff(int attempt) {
+        long delay = backoffMs << Math.min(attempt - 1, 10);
+        return Duration.ofMillis(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+    }
+
+    private void observe(HttpHeaders headers, Run run) {
+        String remaining = headers == null ? null : headers.getFirst("X-RateLimit-Remaining");
+        if (remaining == null) {
+            return;
+        }
+        try {
+            if (Integer.parseInt(remaining.trim()) <= rateLimitReserve && !run.exhausted) {
+                run.exhausted = true;
+                System.err.println("   ⚠️ NEO rate limit nearly exhausted (remaining " + remaining.trim()
+                        + "): remaining windows postponed to the next sync");
+            }
+        } catch (NumberFormatException e) { /* Header non numerico: ignorato */ }
+    }
+
+    // Retry-After in secondi o come HTTP-date
+    static Optional<Duration> retryAfter(HttpHeaders headers) {
+        String value = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim()))));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration wait = Duration.between(Instant.now(), at.toInstant());
+                return Optional.of(wait.isNegative() ? Duration.ZERO : wait);
+            } catch (DateTimeException ignored) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    private void complete(NeoFetchWindow window, int[] saved, Run run) {
+        window.setStatus(NeoFetchWindow.Status.COMPLETED);
+        window.setAsteroids(saved[0]);
+        window.setApproaches(saved[1]);
+        window.setLastError(null);
+        window.setCompletedAt(LocalDateTime.now());
+        neoFetchWindowRepository.save(window);
+
+        run.completed.incrementAndGet();
+        run.asteroids.addAndGet(saved[0]);
+        run.approaches.addAndGet(saved[1]);
+        run.windowDone();
+    }
+
+    private void fail(NeoFetchWindow window, String error, Run run) {
+        window.setStatus(NeoFetchWindow.Status.FAILED);
+        window.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), 500)));
+        neoFetchWindowRepository.save(window);
+
+        System.err.println("   ❌ NEO window " + window.getStartDate() + " -> " + window.getEndDate()
+                + " failed after " + window.getAttempts() + " attempt(s): " + error);
+        run.failed.incrementAndGet();
+        run.windowDone();
+    }
+
+    /**
+     * Stato condiviso tra le finestre di una fetch().
+     */
+    private static final class Run {
+
+        private final WindowReader reader;
+        private final BiConsumer<Integer, Integer> onWindow;
+        private final int total;
+
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger asteroids = new AtomicInteger();
+        private final AtomicInteger approaches = new AtomicInteger();
+        private volatile boolean exhausted;
+
+        private Run(WindowReader reader, BiConsumer<Integer, Integer> onWindow, int total) {
+            this.reader = reader;
+            this.onWindow = onWindow;
+            this.total = total;
+        }
+
+        private void windowDone() {
+            onWindow.accept(done.incrementAndGet(), total);
+        }
+    }
+}
@@ -3,26 +3,33 @@ package it.polimi.nasa.nasabackend.service;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import it.polimi.nasa.nasabackend.entity.ApiSource;
 import it.polimi.nasa.nasabackend.entity.NeoAsteroid;
 import it.polimi.nasa.nasabackend.entity.NeoCloseApproach;
 import it.polimi.nasa.nasabackend.repository.NeoAsteroidRepository;
 import it.polimi.nasa.nasabackend.repository.NeoCloseApproachRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Service
 public class NeoService {
@@ -37,10 +44,16 @@ public class NeoService {
     private ApiSourceService apiSourceService;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private NeoFeedFetcher neoFeedFetcher;
 
-    @Value("${nasa.api.key}")
-    private String apiKey;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    @Autowired
+    private EventStatsService eventStatsService;
 
     private static final String NEO_FEED_URL = "https://api.nasa.gov/neo/rest/v1/feed";
 
@@ -48,8 +61,16 @@ public class NeoService {
     private static final DateTimeFormatter APPROACH_DATE_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MMM-dd HH:mm", Locale.US);
 
-    @Transactional
     public Map<String, Integer> fetchAndSaveNeo(String startDateStr, String endDateStr) {
+        return fetchAndSaveNeo(startDateStr, endDateStr, (completed, total) -> { });
+    }
+
+    /**
+     * Come fetchAndSaveNeo, notificando (finestre concluse, finestre totali) dopo ogni finestra.
+     * Le finestre sono scaricate in parallelo da NeoFeedFetcher, nel rispetto del rate limit.
+     */
+    public Map<String, Integer> fetchAndSaveNeo(String startDateStr, String endDateStr,
+                                                BiConsumer<Integer, Integer> onBatch) {
         System.out.println("🪐 Fetching NEO (Asteroid) data from NASA...");
         System.out.println("   📅 Requested Range: " + startDateStr + " to " + endDateStr);
 
@@ -60,116 +81,127 @@ public class NeoService {
                 "NASA Near Earth Object Web Service"
         );
 
-        // 2. Calcolo dei blocchi di 7 giorni
-        LocalDate start = LocalDate.parse(startDateStr);
-        LocalDate end = LocalDate.parse(endDateStr);
-        LocalDate currentStart = start;
-
-        int totalAsteroids = 0;
-        int totalApproaches = 0;
-
-        // 3. Ciclo sui blocchi temporali
-        while (currentStart.isBefore(end) || currentStart.equals(end)) {
-            LocalDate currentEnd = currentStart.plusDays(7);
+        // 2. Finestre da 8 giorni, gia' completate saltate
+        NeoFeedFetcher.FetchReport report;
+        try {
+            report = neoFeedFetcher.fetch(LocalDate.parse(startDateStr), LocalDate.parse(endDateStr),
+                    (start, end, body) -> saveWindow(start, end, body, apiSource), onBatch);
+        } catch (InterruptedException e) {
+            // Shutdown durante la sync in background: le finestre non concluse restano da fare
+            Thread.currentThread().interrupt();
+            System.err.println("   ⚠️ NEO sync interrupted");
+            throw new IllegalStateException("NEO sync interrupted", e);
+        }
 
-            // Non superare la data finale richiesta
-            if (currentEnd.isAfter(end)) {
-                currentEnd = end;
-            }
+        apiSourceService.updateApiSourceStats("NASA_NeoWs", report.asteroids());
+        System.out.println("   ✅ Processed Total: " + report.asteroids() + " asteroids, " + report.approaches()
+                + " approaches (" + report.completed() + "/" + report.windows() + " windows, "
+                + report.alreadyCompleted() + " already done, " + report.failed() + " failed"
+                + (report.rateLimited() ? ", stopped by rate limit" : "") + ")");
 
-            System.out.println("   🔄 Processing batch: " + currentStart + " -> " + currentEnd);
+        // pending: finestre fallite o rimandate dal rate limit, da riprendere alla prossima sync
+        int pending = report.windows() - report.alreadyCompleted() - report.completed();
+        return Map.of("asteroids", report.asteroids(), "approaches", report.approaches(), "pending", pending);
+    }
 
+    /**
+     * Una finestra in una transazione: se fallisce a meta' il retry riparte da zero.
+     * Asteroidi letti dallo stream di near_earth_objects e salvati a blocchi.
+     */
+    private int[] saveWindow(LocalDate start, LocalDate end, InputStream body, ApiSource apiSource) {
+        System.out.println("   🔄 Processing batch: " + start + " -> " + end);
+        return transactionTemplate.execute(status -> {
+            AtomicInteger newAsteroids = new AtomicInteger();
+            AtomicInteger newApproaches = new AtomicInteger();
             try {
-                // Esegui il fetch per il blocco corrente
-                Map<String, Integer> batchResult = fetchBatch(currentStart.toString(), currentEnd.toString(), apiSource);
-                totalAsteroids += batchResult.get("asteroids");
-                totalApproaches += batchResult.get("approaches");
-
-                // Piccolo delay per evitare Rate Limiting (429) della NASA
-                Thread.sleep(500);
-
-            } catch (Exception e) {
-                System.err.println("   ⚠️ Error in batch " + currentStart + ": " + e.getMessage());
+                StreamingJsonReader.readGroupedArrays(body, "near_earth_objects", Function.identity(),
+                        chunk -> saveChunk(chunk, apiSource, newAsteroids, newApproaches));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-
-            // Passa al prossimo blocco
-            currentStart = currentEnd.plusDays(1);
-        }
-
-        apiSourceService.updateApiSourceStats("NASA_NeoWs", totalAsteroids);
-        System.out.println("   ✅ Processed Total: " + totalAsteroids + " asteroids, " + totalApproaches + " approaches");
-
-        return Map.of("asteroids", totalAsteroids, "approaches", totalApproaches);
+            return new int[]{newAsteroids.get(), newApproaches.get()};
+        });
     }
 
     /**
-     * Esegue la chiamata API per un singolo blocco di max 7 giorni
+     * Scrittura idempotente di un blocco di asteroidi del feed:
+     * - asteroidi gia' presenti letti con una query IN per neo_reference_id, i nuovi inseriti in batch
+     * - approcci confrontati sulla chiave naturale (neo, approachDate, orbitingBody) con quelli
+     *   gia' salvati per gli asteroidi del blocco (una query IN), i nuovi inseriti in batch
+     * Ripetere la sync dello stesso intervallo non scrive nulla.
      */
-    private Map<String, Integer> fetchBatch(String start, String end, ApiSource apiSource) {
-        int newAsteroids = 0;
-        int newApproaches = 0;
-
-        try {
-            String url = String.format("%s?start_date=%s&end_date=%s&api_key=%s",
-                    NEO_FEED_URL, start, end, apiKey);
-
-            String response = restTemplate.getForObject(url, String.class);
-
-            if (response == null || response.contains("\"error\"")) {
-                return Map.of("asteroids", 0, "approaches", 0);
+    private void saveChunk(List<JsonObject> chunk, ApiSource apiSource,
+                           AtomicInteger newAsteroids, AtomicInteger newApproaches) {
+        // 1. Parsing (un record malformato viene saltato)
+        Map<String, NeoAsteroid> parsed = new LinkedHashMap<>();
+        Map<String, List<NeoCloseApproach>> approachesByNeo = new HashMap<>();
+        for (JsonObject asteroidJson : chunk) {
+            try {
+                NeoAsteroid asteroid = parseAsteroidData(asteroidJson, apiSource);
+                List<NeoCloseApproach> approaches = new ArrayList<>();
+                if (asteroidJson.has("close_approach_data")) {
+                    for (JsonElement approachElement : asteroidJson.getAsJsonArray("close_approach_data")) {
+                        NeoCloseApproach approach = parseCloseApproach(approachElement.getAsJsonObject(), null);
+                        // approachDate fa parte della chiave (e' NOT NULL)
+                        if (approach.getApproachDate() != null) {
+                            approaches.add(approach);
+                        }
+                    }
+                }
+                parsed.putIfAbsent(asteroid.getNeoReferenceId(), asteroid);
+                approachesByNeo.computeIfAbsent(asteroid.getNeoReferenceId(), id -> new ArrayList<>()).addAll(approaches);
+            } catch (Exception e) {
+                // Skip single entry error
             }
+        }
+        if (parsed.isEmpty()) {
+            return;
+        }
 
-            JsonObject jsonObject = JsonParser.parseString(response).getAsJsonObject();
+        // 2. Asteroidi
+        Map<String, NeoAsteroid> asteroids = new HashMap<>();
+        neoAsteroidRepository.findByNeoReferenceIdIn(parsed.keySet())
+                .forEach(asteroid -> asteroids.put(asteroid.getNeoReferenceId(), asteroid));
+        List<NeoAsteroid> missing = parsed.values().stream()
+                .filter(asteroid -> !asteroids.containsKey(asteroid.getNeoReferenceId()))
+                .toList();
+        List<NeoAsteroid> inserted = bulkEventWriter.insertMissing(NeoAsteroid.class, missing, "neoReferenceId");
+        inserted.forEach(asteroid -> asteroids.put(asteroid.getNeoReferenceId(), asteroid));
+        newAsteroids.addAndGet(inserted.size());
+        if (inserted.size() < missing.size()) {
+            // Salvati nel frattempo da un'altra finestra (ON CONFLICT DO NOTHING)
+            List<String> concurrent = missing.stream()
+                    .map(NeoAsteroid::getNeoReferenceId)
+                    .filter(neoReferenceId -> !asteroids.containsKey(neoReferenceId))
+                    .toList();
+            neoAsteroidRepository.findByNeoReferenceIdIn(concurrent)
+                    .forEach(asteroid -> asteroids.put(asteroid.getNeoReferenceId(), asteroid));
+        }
 
-            if (!jsonObject.has("near_earth_objects")) {
-                return Map.of("asteroids", 0, "approaches", 0);
+        // 3. Close approaches, deduplicati anche dentro il blocco
+        Set<ApproachKey> known = new HashSet<>();
+        List<Long> neoIds = asteroids.values().stream().map(NeoAsteroid::getId).toList();
+        for (Object[] row : neoCloseApproachRepository.findNaturalKeysByNeoIdIn(neoIds)) {
+            known.add(new ApproachKey((Long) row[0], (LocalDateTime) row[1], (String) row[2]));
+        }
+        List<NeoCloseApproach> approaches = new ArrayList<>();
+        approachesByNeo.forEach((neoReferenceId, candidates) -> {
+            NeoAsteroid asteroid = asteroids.get(neoReferenceId);
+            if (asteroid == null) {
+                return;
             }
-
-            JsonObject nearEarthObjects = jsonObject.getAsJsonObject("near_earth_objects");
-
-            for (String date : nearEarthObjects.keySet()) {
-                JsonArray asteroids = nearEarthObjects.getAsJsonArray(date);
-
-                for (JsonElement element : asteroids) {
-                    try {
-                        JsonObject asteroidJson = element.getAsJsonObject();
-                        String neoRefId = asteroidJson.get("neo_reference_id").getAsString();
-
-                        // Gestione Asteroide
-                        NeoAsteroid asteroid;
-                        Optional<NeoAsteroid> existing = neoAsteroidRepository.findByNeoReferenceId(neoRefId);
-
-                        if (existing.isPresent()) {
-                            asteroid = existing.get();
-                        } else {
-                            asteroid = parseAsteroidData(asteroidJson, apiSource);
-                            asteroid = neoAsteroidRepository.save(asteroid);
-                            newAsteroids++;
-                        }
-
-                        // Gestione Close Approaches
-                        if (asteroidJson.has("close_approach_data")) {
-                            JsonArray closeApproaches = asteroidJson.getAsJsonArray("close_approach_data");
-                            for (JsonElement approachElement : closeApproaches) {
-                                JsonObject approachJson = approachElement.getAsJsonObject();
-                                NeoCloseApproach approach = parseCloseApproach(approachJson, asteroid);
-
-                                // Qui potresti aggiungere un check exists se necessario
-                                neoCloseApproachRepository.save(approach);
-                                newApproaches++;
-                            }
-                        }
-
-                    } catch (Exception e) {
-                        // Skip single entry error
-                    }
+            for (NeoCloseApproach approach : candidates) {
+                approach.setNeo(asteroid);
+                if (known.add(new ApproachKey(asteroid.getId(), approach.getApproachDate(), approach.getOrbitingBody()))) {
+                    approaches.add(approach);
                 }
             }
-        } catch (Exception e) {
-            System.err.println("   ❌ Batch Error: " + e.getMessage());
-        }
+        });
+        newApproaches.addAndGet(bulkEventWriter.insertAll(NeoCloseApproach.class, approaches));
+    }
 
-        return Map.of("asteroids", newAsteroids, "approaches", newApproaches);
+    // Chiave naturale di un close approach
+    private record ApproachKey(Long neoId, LocalDateTime approachDate, String orbitingBody) {
     }
 
     private NeoAsteroid parseAsteroidData(JsonObject json, ApiSource apiSource) {
@@ -272,6 +304,26 @@ public class NeoService {
         }
     }
 
+    /**
+     * Riconciliazione: elimina i passaggi duplicati (stesso asteroide, data e corpo orbitato)
+     * salvati prima del vincolo uk_approach_natural, tenendo la riga piu' vecchia di ogni gruppo.
+     * Su un database esistente va eseguita prima che ddl-auto=update aggiunga il vincolo.
+     */
+    public Map<String, Object> reconcileDuplicateApproaches() {
+        System.out.println("🧹 Removing duplicate close approaches...");
+        int removed = neoCloseApproachRepository.deleteDuplicates();
+        long remaining = neoCloseApproachRepository.count();
+        System.out.println("   ✅ Removed " + removed + " duplicates, " + remaining + " close approaches left");
+        if (removed > 0) {
+            eventStatsService.evict("neo");
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("removed", removed);
+        result.put("remaining", remaining);
+        return result;
+    }
+
     public long getAsteroidCount() { return neoAsteroidRepository.count(); }
     public long getApproachCount() { return neoCloseApproachRepository.count(); }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package it.polimi.nasa.nasabackend.service;
+
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.*;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Metriche delle chiamate HTTP in uscita (DONKI, NeoWs, JPL), per host.
+ *
+ * Il riuso delle connessioni e' misurato contando gli handshake TLS: l'HttpClient
+ * crea un SSLEngine per ogni nuova connessione, quindi
+ * reuse = 1 - connessioni aperte / richieste. La latenza e' il tempo fino agli header
+ * della risposta (il body e' letto in streaming da chi fa ingest).
+ */
+@Component
+public class OutboundHttpMetrics {
+
+    private static final class HostStats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong connectionsOpened = new AtomicLong();
+        private final AtomicLong gzipResponses = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong latencyNanos = new AtomicLong();
+        private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLong permitWaitNanos = new AtomicLong();
+
+        private Map<String, Object> toMap() {
+            long count = requests.get();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", count);
+            map.put("failures", failures.get());
+            map.put("inFlight", inFlight.get());
+            // Solo connessioni TLS: senza handshake (http in chiaro) il riuso non e' misurabile
+            long opened = connectionsOpened.get();
+            map.put("connectionsOpened", opened);
+            map.put("connectionReuse", count == 0 || opened == 0 ? null : Math.max(0, 1 - (double) opened / count));
+            map.put("gzipResponses", gzipResponses.get());
+            map.put("avgLatencyMs", count == 0 ? null : latencyNanos.get() / count / 1_000_000.0);
+            map.put("maxLatencyMs", maxLatencyNanos.get() / 1_000_000.0);
+            map.put("avgPermitWaitMs", count == 0 ? null : permitWaitNanos.get() / count / 1_000_000.0);
+            return map;
+        }
+    }
+
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    private HostStats host(String host) {
+        return hosts.computeIfAbsent(host == null ? "unknown" : host, h -> new HostStats());
+    }
+
+    // ============================================
+    // RECORDING (OutboundHttpInterceptor)
+    // ============================================
+
+    public void requestStarted(String host, long permitWaitNanos) {
+        HostStats stats = host(host);
+        stats.inFlight.incrementAndGet();
+        stats.permitWaitNanos.addAndGet(permitWaitNanos);
+    }
+
+    public void responseReceived(String host, long latencyNanos, boolean gzip) {
+        HostStats stats = host(host);
+        stats.requests.incrementAndGet();
+        stats.latencyNanos.addAndGet(latencyNanos);
+        stats.maxLatencyNanos.accumulate(latencyNanos);
+        if (gzip) {
+            stats.gzipResponses.incrementAndGet();
+        }
+    }
+
+    public void requestFailed(String host) {
+        HostStats stats = host(host);
+        stats.requests.incrementAndGet();
+        stats.failures.incrementAndGet();
+    }
+
+    public void requestFinished(String host) {
+        host(host).inFlight.decrementAndGet();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        new TreeMap<>(hosts).forEach((host, stats) -> snapshot.put(host, stats.toMap()));
+        return snapshot;
+    }
+
+    // ============================================
+    // CONNESSIONI APERTE (handshake TLS)
+    // ============================================
+
+    /**
+     * SSLContext che delega a quello indicato e conta gli SSLEngine creati per host.
+     */
+    public SSLContext countingSslContext(SSLContext delegate) {
+        return new CountingSslContext(delegate, this);
+    }
+
+    private static final class CountingSslContext extends SSLContext {
+
+        private CountingSslContext(SSLContext delegate, OutboundHttpMetrics metrics) {
+            super(new CountingSslContextSpi(delegate, metrics), delegate.getProvider(), delegate.getProtocol());
+        }
+    }
+
+    private static final class CountingSslContextSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+        private final OutboundHttpMetrics metrics;
+
+        private CountingSslContextSpi(SSLContext delegate, OutboundHttpMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) {
+            throw new UnsupportedOperationException("The delegate SSLContext is already initialized");
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            metrics.host(host).connectionsOpened.incrementAndGet();
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        // Le implementazioni di default creano un SSLEngine: delegate per non contarlo
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package it.polimi.nasa.nasabackend.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Esegue in parallelo un insieme di chiamate indipendenti, ognuna con lo stesso timeout
+ * (misurato dall'avvio comune). Le chiamate lente o fallite non bloccano le altre:
+ * il loro valore e' null e il motivo finisce in errors.
+ */
+public final class ParallelQueries {
+
+    private ParallelQueries() {
+    }
+
+    public record Result(Map<String, Object> values, Map<String, String> errors) {
+
+        public boolean isPartial() {
+            return !errors.isEmpty();
+        }
+    }
+
+    public static Result run(ExecutorService executor, Map<String, Callable<?>> calls, Duration timeout) {
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        calls.forEach((name, call) -> futures.put(name, executor.submit(call)));
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Map<String, Object> values = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            Future<?> future = entry.getValue();
+            try {
+                values.put(entry.getKey(), future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                values.put(entry.getKey(), null);
+                errors.put(entry.getKey(), "timeout after " + timeout.toMillis() + " ms");
+            } catch (ExecutionException e) {
+                values.put(entry.getKey(), null);
+                errors.put(entry.getKey(), String.valueOf(e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                values.put(entry.getKey(), null);
+                errors.put(entry.getKey(), "interrupted");
+                break;
+            }
+        }
+        return new Result(values, errors);
+    }
+}
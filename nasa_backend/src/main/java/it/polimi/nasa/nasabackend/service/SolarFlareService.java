@@ -3,15 +3,18 @@ package it.polimi.nasa.nasabackend.service;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import it.polimi.nasa.nasabackend.entity.ApiSource;
+import it.polimi.nasa.nasabackend.entity.EventType;
 import it.polimi.nasa.nasabackend.entity.SolarFlare;
 import it.polimi.nasa.nasabackend.repository.SolarFlareRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -19,6 +22,7 @@ import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class SolarFlareService {
@@ -30,7 +34,19 @@ public class SolarFlareService {
     private ApiSourceService apiSourceService;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private UpstreamCache upstreamCache;
+
+    @Autowired
+    private LinkedEventService linkedEventService;
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Value("${nasa.api.key}")
     private String apiKey;
@@ -46,67 +62,87 @@ public class SolarFlareService {
             .parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0)
             .toFormatter();
 
-    public List<SolarFlare> fetchAndSaveFlares(String startDate, String endDate) {
+    /**
+     * Riga ApiSource della sorgente, creata se manca. DeltaSyncService la chiama prima di
+     * lanciare le finestre mensili in parallelo, che cosi' la trovano sempre gia' salvata.
+     */
+    public ApiSource getApiSource() {
+        return apiSourceService.getOrCreateApiSource("NASA_DONKI_Flare", DONKI_FLARE_URL, "NASA DONKI Solar Flare Events");
+    }
+
+    public int fetchAndSaveFlares(String startDate, String endDate) {
         System.out.println("☀️ Fetching Solar Flare data from NASA DONKI...");
 
         try {
-            ApiSource apiSource = apiSourceService.getOrCreateApiSource(
-                    "NASA_DONKI_Flare",
-                    DONKI_FLARE_URL,
-                    "NASA DONKI Solar Flare Events"
-            );
+            ApiSource apiSource = getApiSource();
 
             String url = String.format("%s?startDate=%s&endDate=%s&api_key=%s",
                     DONKI_FLARE_URL, startDate, endDate, apiKey);
 
-            String response = restTemplate.getForObject(url, String.class);
+            // Record letti dallo stream della risposta e scritti a blocchi, tutti in una transazione:
+            // se la finestra fallisce a meta' non resta nulla di parziale e il retry riparte da zero
+            AtomicInteger newRecords = new AtomicInteger();
+            AtomicInteger skipped = new AtomicInteger();
+            UpstreamCache.Result<Integer> fetched = upstreamCache.fetch(url, body ->
+                    transactionTemplate.execute(status -> {
+                        try {
+                            return StreamingJsonReader.readArray(body, json -> toEntity(json, apiSource), chunk -> {
+                                BulkEventWriter.BulkInsert<SolarFlare> result = saveChunk(chunk);
+                                newRecords.addAndGet(result.inserted().size());
+                                skipped.addAndGet(result.skipped());
+                            });
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+
+            // Stesso payload dell'ultimo fetch (304 o body identico): gia' nel DB
+            if (fetched.unchanged()) {
+                System.out.println("ℹ️ Solar flares unchanged since the last fetch");
+                return 0;
+            }
 
-            if (response == null || response.equals("[]")) {
+            if (fetched.value() == 0) {
                 System.out.println("ℹ️ No solar flares found in date range");
-                return new ArrayList<>();
+                return 0;
             }
 
-            JsonArray jsonArray = JsonParser.parseString(response).getAsJsonArray();
-            List<SolarFlare> flares = new ArrayList<>();
-            int newRecords = 0;
+            apiSourceService.updateApiSourceStats("NASA_DONKI_Flare", newRecords.get());
+            System.out.println("✅ Saved " + newRecords + " solar flare records (" + skipped + " already present)");
 
-            for (JsonElement element : jsonArray) {
-                JsonObject flareJson = element.getAsJsonObject();
-
-                try {
-                    String activityId = flareJson.get("flrID").getAsString();
-
-                    // Skip if already exists
-                    if (solarFlareRepository.existsByActivityId(activityId)) {
-                        continue;
-                    }
+            return newRecords.get();
 
-                    SolarFlare flare = parseFlareData(flareJson, apiSource);
-
-                    // Controllo critico: se peakTime manca, logga e salta
-                    if (flare.getPeakTime() == null) {
-                        System.err.println("⚠️ Skipping Flare " + activityId + " due to missing peakTime");
-                        continue;
-                    }
+        } catch (Exception e) {
+            System.err.println("❌ Error fetching solar flare data: " + e.getMessage());
+            // Propagato: la sync non deve far avanzare il watermark su una fetch fallita
+            throw new IllegalStateException("Error fetching solar flare data: " + e.getMessage(), e);
+        }
+    }
 
-                    SolarFlare saved = solarFlareRepository.save(flare);
-                    flares.add(saved);
-                    newRecords++;
+    /**
+     * Skip di quelli gia' presenti con una query IN, insert dei nuovi in batch,
+     * poi linked_event ed EventsIngestedEvent per il blocco.
+     */
+    private BulkEventWriter.BulkInsert<SolarFlare> saveChunk(List<SolarFlare> chunk) {
+        BulkEventWriter.BulkInsert<SolarFlare> result = bulkEventWriter.insertNew(SolarFlare.class, chunk,
+                SolarFlare::getActivityId, solarFlareRepository::findExistingActivityIds);
+        linkedEventService.saveLinks(EventType.FLR, result.inserted(), SolarFlare::getActivityId, SolarFlare::getLinkedEvents);
+        eventPublisher.publishEvent(EventsIngestedEvent.of(EventType.FLR, result.inserted()));
+        return result;
+    }
 
-                } catch (Exception e) {
-                    System.err.println("⚠️ Error parsing flare: " + e.getMessage());
-                }
+    // null = record scartato
+    private SolarFlare toEntity(JsonObject json, ApiSource apiSource) {
+        try {
+            SolarFlare flare = parseFlareData(json, apiSource);
+            if (flare.getPeakTime() == null) {
+                System.err.println("⚠️ Skipping Flare " + flare.getActivityId() + " due to missing peakTime");
+                return null;
             }
-
-            apiSourceService.updateApiSourceStats("NASA_DONKI_Flare", newRecords);
-            System.out.println("✅ Saved " + newRecords + " solar flare records");
-
-            return flares;
-
+            return flare;
         } catch (Exception e) {
-            System.err.println("❌ Error fetching solar flare data: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
+            System.err.println("⚠️ Error parsing flare: " + e.getMessage());
+            return null;
         }
     }
 
@@ -0,0 +1,15 @@
+package it.polimi.nasa.nasabackend.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pubblicato dalla sync delta dopo ogni run di una sorgente (avvio o polling periodico).
+ * records = nuovi record salvati; watermark uguale a previousWatermark se la sorgente
+ * non e' avanzata (es. finestre NEO rimandate dal rate limit).
+ */
+public record SourceSyncedEvent(String source, int records, LocalDateTime previousWatermark, LocalDateTime watermark) {
+
+    public boolean changed() {
+        return records > 0;
+    }
+}
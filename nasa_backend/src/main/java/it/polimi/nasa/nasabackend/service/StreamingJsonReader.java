@@ -0,0 +1,139 @@
+package it.polimi.nasa.nasabackend.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Lettura in streaming delle risposte NASA, direttamente dall'InputStream HTTP.
+ *
+ * Il pull parser di Gson avanza record per record: in memoria c'e' solo l'albero del
+ * record corrente e il blocco di entita' non ancora scritto, mai il body intero come
+ * String o come JsonArray. Ogni blocco di CHUNK_SIZE entita' viene passato al writer.
+ */
+public final class StreamingJsonReader {
+
+    public static final int CHUNK_SIZE = 500;
+
+    private StreamingJsonReader() {
+    }
+
+    /**
+     * Body DONKI: array di record al primo livello. Il mapper puo' ritornare null per
+     * scartare un record. Ritorna il numero di record mappati.
+     */
+    public static <T> int readArray(InputStream body, Function<JsonObject, T> mapper,
+                                    Consumer<List<T>> onChunk) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (isEmpty(reader) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                return 0;
+            }
+            Chunker<T> chunker = new Chunker<>(onChunk);
+            drainArray(reader, mapper, chunker);
+            return chunker.flush();
+        }
+    }
+
+    /**
+     * Body NeoWs: oggetto con un campo (es. near_earth_objects) che mappa chiavi
+     * (le date) ad array di record. Gli altri campi vengono saltati senza leggerli.
+     */
+    public static <T> int readGroupedArrays(InputStream body, String field, Function<JsonObject, T> mapper,
+                                            Consumer<List<T>> onChunk) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            if (isEmpty(reader) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return 0;
+            }
+            Chunker<T> chunker = new Chunker<>(onChunk);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals(field) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        drainArray(reader, mapper, chunker);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+            return chunker.flush();
+        }
+    }
+
+    // ============================================
+    // HELPER
+    // ============================================
+
+    private static <T> void drainArray(JsonReader reader, Function<JsonObject, T> mapper, Chunker<T> chunker)
+            throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            // Albero del solo record corrente
+            JsonElement element = JsonParser.parseReader(reader);
+            if (element.isJsonObject()) {
+                chunker.add(mapper.apply(element.getAsJsonObject()));
+            }
+        }
+        reader.endArray();
+    }
+
+    // DONKI risponde con body vuoto (non "[]") quando non ci sono eventi
+    private static boolean isEmpty(JsonReader reader) throws IOException {
+        try {
+            reader.peek();
+            return false;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    private static final class Chunker<T> {
+
+        private final Consumer<List<T>> onChunk;
+        private List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        private int mapped;
+
+        private Chunker(Consumer<List<T>> onChunk) {
+            this.onChunk = onChunk;
+        }
+
+        private void add(T item) {
+            if (item == null) {
+                return;
+            }
+            chunk.add(item);
+            mapped++;
+            if (chunk.size() == CHUNK_SIZE) {
+                onChunk.accept(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+
+        private int flush() {
+            if (!chunk.isEmpty()) {
+                onChunk.accept(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+            return mapped;
+        }
+    }
+}
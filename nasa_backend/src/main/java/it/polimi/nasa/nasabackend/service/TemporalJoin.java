@@ -0,0 +1,126 @@
+package it.polimi.nasa.nasabackend.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Join temporale a finestra (sweep-line) per le correlazioni manuali.
+ *
+ * Per ogni evento sorgente con tempo t cerca gli eventi target con tempo in
+ * [t + minOffset, t + maxOffset] (estremi inclusi, come il BETWEEN SQL) che
+ * soddisfano il filtro. I target devono essere gia' ordinati per tempo: le
+ * sorgenti vengono ordinate internamente e le due finestre avanzano con due
+ * puntatori, quindi il costo e' O(N log N + M) invece di una query per sorgente.
+ *
+ * I risultati sono allineati alla lista sorgente originale (stesso indice),
+ * cosi' chi chiama conserva l'ordinamento delle proprie query.
+ */
+public final class TemporalJoin {
+
+    private TemporalJoin() {
+    }
+
+    /**
+     * Tutti i target nella finestra di ogni sorgente, in ordine di tempo crescente.
+     */
+    public static <S, T> List<List<T>> join(List<S> sources, Function<? super S, LocalDateTime> sourceTime,
+                                            List<T> targets, Function<? super T, LocalDateTime> targetTime,
+                                            Duration minOffset, Duration maxOffset,
+                                            Predicate<? super T> targetFilter) {
+        List<List<T>> matches = new ArrayList<>(Collections.nCopies(sources.size(), List.of()));
+        sweep(sources, sourceTime, targets, targetTime, minOffset, maxOffset, (sourceIndex, lo, hi) -> {
+            List<T> inWindow = new ArrayList<>();
+            for (int i = lo; i < hi; i++) {
+                T target = targets.get(i);
+                if (targetFilter.test(target)) {
+                    inWindow.add(target);
+                }
+            }
+            matches.set(sourceIndex, inWindow);
+        });
+        return matches;
+    }
+
+    /**
+     * Solo il primo target (il piu' vicino nel tempo) nella finestra di ogni sorgente,
+     * oppure null se la finestra e' vuota.
+     */
+    public static <S, T> List<T> firstMatches(List<S> sources, Function<? super S, LocalDateTime> sourceTime,
+                                              List<T> targets, Function<? super T, LocalDateTime> targetTime,
+                                              Duration minOffset, Duration maxOffset,
+                                              Predicate<? super T> targetFilter) {
+        List<T> firstMatches = new ArrayList<>(Collections.nCopies(sources.size(), null));
+        sweep(sources, sourceTime, targets, targetTime, minOffset, maxOffset, (sourceIndex, lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                T target = targets.get(i);
+                if (targetFilter.test(target)) {
+                    firstMatches.set(sourceIndex, target);
+                    return;
+                }
+            }
+        });
+        return firstMatches;
+    }
+
+    @FunctionalInterface
+    private interface WindowConsumer {
+        void accept(int sourceIndex, int fromInclusive, int toExclusive);
+    }
+
+    private static <S, T> void sweep(List<S> sources, Function<? super S, LocalDateTime> sourceTime,
+                                     List<T> targets, Function<? super T, LocalDateTime> targetTime,
+                                     Duration minOffset, Duration maxOffset, WindowConsumer consumer) {
+        if (minOffset.compareTo(maxOffset) > 0) {
+            throw new IllegalArgumentException("minOffset must not be greater than maxOffset");
+        }
+
+        long[] targetSeconds = new long[targets.size()];
+        for (int i = 0; i < targetSeconds.length; i++) {
+            targetSeconds[i] = toEpochSecond(targetTime.apply(targets.get(i)));
+        }
+
+        // Indici delle sorgenti ordinati per tempo (quelle senza tempo non hanno finestra)
+        long[] sourceSeconds = new long[sources.size()];
+        List<Integer> order = new ArrayList<>(sources.size());
+        for (int i = 0; i < sourceSeconds.length; i++) {
+            LocalDateTime time = sourceTime.apply(sources.get(i));
+            if (time != null) {
+                sourceSeconds[i] = toEpochSecond(time);
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingLong(i -> sourceSeconds[i]));
+
+        long minSeconds = minOffset.getSeconds();
+        long maxSeconds = maxOffset.getSeconds();
+        int lo = 0;
+        int hi = 0;
+
+        for (int sourceIndex : order) {
+            long windowStart = sourceSeconds[sourceIndex] + minSeconds;
+            long windowEnd = sourceSeconds[sourceIndex] + maxSeconds;
+
+            while (lo < targetSeconds.length && targetSeconds[lo] < windowStart) {
+                lo++;
+            }
+            if (hi < lo) {
+                hi = lo;
+            }
+            while (hi < targetSeconds.length && targetSeconds[hi] <= windowEnd) {
+                hi++;
+            }
+
+            if (lo < hi) {
+                consumer.accept(sourceIndex, lo, hi);
+            }
+        }
+    }
+
+    private static long toEpochSecond(LocalDateTime time) {
+        return time == null ? Long.MIN_VALUE : time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
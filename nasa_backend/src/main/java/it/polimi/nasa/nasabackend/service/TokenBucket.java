@@ -0,0 +1,62 @@
+package it.polimi.nasa.nasabackend.service;
+
+import java.time.Duration;
+
+/**
+ * Token bucket per le richieste verso le API NASA: ratePerSecond token al secondo,
+ * fino a burst token accumulati. acquire() blocca il chiamante finche' un token e'
+ * disponibile; pause() sospende tutti i chiamanti (es. Retry-After di un 429).
+ */
+public final class TokenBucket {
+
+    private final double ratePerNano;
+    private final double burst;
+
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Token bucket needs a positive rate and a burst of at least 1");
+        }
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now - pausedUntil < 0) {
+                    waitNanos = pausedUntil - now;
+                } else {
+                    tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+                    refilledAt = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) Math.ceil((1 - tokens) / ratePerNano);
+                }
+            }
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        }
+    }
+
+    /**
+     * Nessun token per la durata indicata; alla ripresa il bucket riparte vuoto.
+     */
+    public synchronized void pause(Duration duration) {
+        long until = System.nanoTime() + duration.toNanos();
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+            tokens = 0;
+            refilledAt = until;
+        }
+    }
+}
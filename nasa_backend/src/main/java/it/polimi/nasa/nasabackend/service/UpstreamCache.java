@@ -0,0 +1,207 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.UpstreamResponse;
+import it.polimi.nasa.nasabackend.repository.UpstreamResponseRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * GET condizionali verso le API NASA/JPL, davanti ai servizi di ingest.
+ *
+ * Per ogni URL (normalizzato, senza api_key) ricorda l'ultimo fetch completato in
+ * upstream_response: manda If-None-Match / If-Modified-Since quando upstream ha dato
+ * un validator e, se la risposta e' un 304 o un body byte-identico all'ultimo (SHA-256),
+ * il payload non viene parsato ne' salvato. Il body e' scritto su disco mentre se ne
+ * calcola l'hash, cosi' la connessione e' rilasciata prima del parsing e la memoria
+ * resta costante anche per intervalli grandi. Il fetch viene registrato solo dopo che
+ * il reader ha finito senza errori: un ingest fallito non rende "noto" il payload.
+ */
+@Service
+public class UpstreamCache {
+
+    /**
+     * Parsing/salvataggio del body; lo stream e' chiuso da UpstreamCache.
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    // unchanged = payload gia' ingerito (304 o stesso hash), value null
+    public record Result<T>(T value, boolean unchanged) {
+
+        static <T> Result<T> unchangedPayload() {
+            return new Result<>(null, true);
+        }
+    }
+
+    // Risposta scritta su disco, letta dopo aver chiuso la connessione
+    private record Spooled(Path file, String sha256, long bytes, String etag, String lastModified) {
+    }
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private UpstreamResponseRepository upstreamResponseRepository;
+
+    @Value("${nasa.http.cache.dir:${java.io.tmpdir}/nasa-upstream}")
+    private Path spoolDir;
+
+    // Gli URL non piu' richiesti da questo numero di giorni vengono dimenticati
+    @Value("${nasa.http.cache.max-age-days:7}")
+    private int maxAgeDays;
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(spoolDir);
+    }
+
+    public <T> Result<T> fetch(String url, BodyReader<T> reader) throws IOException {
+        return fetch(url, headers -> { }, reader);
+    }
+
+    /**
+     * GET di url; onHeaders vede gli header di ogni risposta (anche 304).
+     * Gli errori HTTP (4xx/5xx) arrivano al chiamante come da RestTemplate.
+     */
+    public <T> Result<T> fetch(String url, Consumer<HttpHeaders> onHeaders, BodyReader<T> reader) throws IOException {
+        String normalized = normalize(url);
+        String cacheKey = sha256(normalized);
+        UpstreamResponse cached = upstreamResponseRepository.findByCacheKey(cacheKey).orElse(null);
+
+        Spooled spooled = restTemplate.execute(url, HttpMethod.GET, request -> {
+            if (cached != null && cached.getEtag() != null) {
+                request.getHeaders().setIfNoneMatch(cached.getEtag());
+            }
+            if (cached != null && cached.getLastModified() != null) {
+                request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }, response -> {
+            onHeaders.accept(response.getHeaders());
+            if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                return null;
+            }
+            return spool(response.getBody(), response.getHeaders());
+        });
+
+        if (spooled == null) {
+            if (cached != null) {
+                markUnchanged(cached);
+            }
+            return Result.unchangedPayload();
+        }
+
+        try {
+            if (cached != null && cached.getBodySha256().equals(spooled.sha256())) {
+                markUnchanged(cached);
+                return Result.unchangedPayload();
+            }
+            T value;
+            try (InputStream body = new BufferedInputStream(Files.newInputStream(spooled.file()))) {
+                value = reader.read(body);
+            }
+            remember(cached, cacheKey, normalized, spooled);
+            return new Result<>(value, false);
+        } finally {
+            Files.deleteIfExists(spooled.file());
+        }
+    }
+
+    // ============================================
+    // HELPER
+    // ============================================
+
+    private Spooled spool(InputStream body, HttpHeaders headers) throws IOException {
+        Path file = Files.createTempFile(spoolDir, "response-", ".body");
+        try (DigestInputStream in = new DigestInputStream(body, sha256Digest());
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            long bytes = in.transferTo(out);
+            String sha = HexFormat.of().formatHex(in.getMessageDigest().digest());
+            return new Spooled(file, sha, bytes, headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private void markUnchanged(UpstreamResponse cached) {
+        cached.setLastCheckedAt(LocalDateTime.now());
+        cached.setUnchangedHits(cached.getUnchangedHits() + 1);
+        upstreamResponseRepository.save(cached);
+    }
+
+    private void remember(UpstreamResponse cached, String cacheKey, String normalized, Spooled spooled) {
+        UpstreamResponse entry = cached;
+        if (entry == null) {
+            // Nuovo URL (es. nuovo giorno della sync delta): si dimenticano quelli vecchi
+            upstreamResponseRepository.deleteCheckedBefore(LocalDateTime.now().minusDays(maxAgeDays));
+            entry = new UpstreamResponse();
+            entry.setCacheKey(cacheKey);
+            entry.setUrl(normalized);
+        }
+        entry.setEtag(spooled.etag());
+        entry.setLastModified(spooled.lastModified());
+        entry.setBodySha256(spooled.sha256());
+        entry.setBodyBytes(spooled.bytes());
+        entry.setFetchedAt(LocalDateTime.now());
+        entry.setLastCheckedAt(entry.getFetchedAt());
+        entry.setUnchangedHits(0);
+        try {
+            upstreamResponseRepository.save(entry);
+        } catch (RuntimeException e) {
+            // Stesso URL registrato in parallelo: al prossimo fetch il payload viene solo riparsato
+            System.err.println("⚠️ Could not record upstream response for " + normalized + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chiave di cache: schema e host minuscoli, parametri in ordine, api_key rimossa.
+     */
+    static String normalize(String url) {
+        URI uri = URI.create(url);
+        UriComponentsBuilder builder = UriComponentsBuilder.newInstance()
+                .scheme(uri.getScheme().toLowerCase(Locale.ROOT))
+                .host(uri.getHost().toLowerCase(Locale.ROOT))
+                .port(uri.getPort())
+                .path(uri.getRawPath());
+        UriComponentsBuilder.fromUri(uri).build().getQueryParams().entrySet().stream()
+                .filter(param -> !param.getKey().equalsIgnoreCase("api_key"))
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(param -> builder.queryParam(param.getKey(), param.getValue().toArray()));
+        return builder.build().toUriString();
+    }
+
+    private static String sha256(String value) {
+        return HexFormat.of().formatHex(sha256Digest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -10,7 +10,8 @@ CREATE TABLE api_source (
                             url VARCHAR(255),
                             description TEXT,
                             last_fetch_time TIMESTAMP,
-                            total_records_fetched BIGINT DEFAULT 0
+                            total_records_fetched BIGINT DEFAULT 0,
+                            watermark TIMESTAMP -- sync delta: dati completi fino a questo istante
 );
 
 -- 1. SOLAR_FLARE
@@ -45,7 +46,7 @@ CREATE TABLE solar_flare (
                              created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
-CREATE INDEX idx_flare_peak ON solar_flare(peak_time);
+CREATE INDEX idx_flare_peak_id ON solar_flare(peak_time, id); -- (tempo, id): liste paginate keyset
 CREATE INDEX idx_flare_class ON solar_flare(class_type, class_intensity);
 
 -- 2. CORONAL_MASS_EJECTION
@@ -90,7 +91,7 @@ CREATE TABLE coronal_mass_ejection (
                                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
-CREATE INDEX idx_cme_time ON coronal_mass_ejection(start_time);
+CREATE INDEX idx_cme_time_id ON coronal_mass_ejection(start_time, id);
 CREATE INDEX idx_cme_speed ON coronal_mass_ejection(speed_km_s);
 
 -- 3. GEOMAGNETIC_STORM
@@ -120,8 +121,11 @@ CREATE TABLE geomagnetic_storm (
                                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
-CREATE INDEX idx_gst_start ON geomagnetic_storm(start_time);
-CREATE INDEX idx_gst_kp ON geomagnetic_storm(kp_index);
+CREATE INDEX idx_gst_start_id ON geomagnetic_storm(start_time, id);
+-- ricerca tempeste: un indice per filtro, con l'ordine (start_time, id) delle liste
+CREATE INDEX idx_gst_kp_start ON geomagnetic_storm(kp_index, start_time, id);
+CREATE INDEX idx_gst_gscale_start ON geomagnetic_storm(g_scale, start_time, id);
+CREATE INDEX idx_gst_dst_start ON geomagnetic_storm(dst_index, start_time, id);
 
 -- 4. INTERPLANETARY_SHOCK
 CREATE TABLE interplanetary_shock (
@@ -147,7 +151,7 @@ CREATE TABLE interplanetary_shock (
                                       created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
-CREATE INDEX idx_ips_time ON interplanetary_shock(activity_time);
+CREATE INDEX idx_ips_time_id ON interplanetary_shock(activity_time, id);
 CREATE INDEX idx_ips_location ON interplanetary_shock(location);
 
 -- 5. FIREBALL
@@ -175,11 +179,16 @@ CREATE TABLE fireball (
     -- Metadata
                           raw_data TEXT,
                           api_source_id BIGINT REFERENCES api_source(id),
-                          created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                          created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    -- Chiave naturale dell'upsert (su DB esistenti prima rimuovere i duplicati: POST /api/fireballs/reconcile)
+                          CONSTRAINT uk_fireball_natural UNIQUE (event_date, latitude, longitude)
 );
 
-CREATE INDEX idx_fireball_date ON fireball(event_date);
+CREATE INDEX idx_fireball_date_id ON fireball(event_date, id);
 CREATE INDEX idx_fireball_location ON fireball(latitude, longitude);
+-- classifiche top-N: ordine dell'indice + LIMIT, id per i pari merito
+CREATE INDEX idx_fireball_energy_id ON fireball(total_impact_energy_kt, id);
 
 -- 6. NEO_ASTEROID (Parent Table)
 CREATE TABLE neo_asteroid (
@@ -213,8 +222,8 @@ CREATE TABLE neo_asteroid (
                               created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
-CREATE INDEX idx_neo_hazardous ON neo_asteroid(is_potentially_hazardous);
-CREATE INDEX idx_neo_magnitude ON neo_asteroid(absolute_magnitude_h);
+CREATE INDEX idx_neo_hazardous_size ON neo_asteroid(is_potentially_hazardous, estimated_diameter_km_max, id);
+CREATE INDEX idx_neo_magnitude_id ON neo_asteroid(absolute_magnitude_h, id);
 
 -- 7. NEO_CLOSE_APPROACH (Child Table - One Asteroid has Many Approaches)
 CREATE TABLE neo_close_approach (
@@ -236,8 +245,73 @@ CREATE TABLE neo_close_approach (
                                     relative_velocity_km_h DECIMAL(12, 2),
 
                                     orbiting_body VARCHAR(20) DEFAULT 'Earth',
-                                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    -- Natural key: re-fetching a range must not duplicate approaches
+    -- (databases filled before this constraint: POST /api/neo/reconcile first, keeps MIN(id) per key)
+                                    CONSTRAINT uk_approach_natural UNIQUE (neo_id, approach_date, orbiting_body)
 );
 
-CREATE INDEX idx_approach_date ON neo_close_approach(approach_date);
+CREATE INDEX idx_approach_date_id ON neo_close_approach(approach_date, id);
 CREATE INDEX idx_approach_neo ON neo_close_approach(neo_id);
+CREATE INDEX idx_approach_miss_id ON neo_close_approach(miss_distance_km, id);
+
+-- 8. LINKED_EVENT (Edges of the DONKI linkedEvents graph, written at ingest time)
+CREATE TABLE linked_event (
+                              id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+
+    -- Source event (the one whose linkedEvents lists the target)
+                              source_activity_id VARCHAR(100) NOT NULL,
+                              source_type VARCHAR(3) NOT NULL,  -- 'FLR', 'CME', 'IPS', 'GST'
+
+    -- Target event
+                              target_activity_id VARCHAR(100) NOT NULL,
+                              target_type VARCHAR(3) NOT NULL,
+
+    -- Order of the link in the NASA linkedEvents array
+                              position INTEGER NOT NULL,
+
+                              CONSTRAINT uk_linked_source_position UNIQUE (source_activity_id, position)
+);
+
+CREATE INDEX idx_linked_target ON linked_event(target_activity_id, source_type);
+
+-- 9. NEO_FETCH_WINDOW (Download state of the 8-day NeoWs feed windows, for resumable backfills)
+CREATE TABLE neo_fetch_window (
+                                  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+
+    -- Window on a fixed 8-day grid; end_date is the last day already covered
+                                  start_date DATE UNIQUE NOT NULL,
+                                  end_date DATE NOT NULL,
+
+                                  status VARCHAR(10) NOT NULL,      -- 'PENDING', 'COMPLETED', 'FAILED'
+                                  attempts INTEGER DEFAULT 0,
+                                  asteroids INTEGER DEFAULT 0,
+                                  approaches INTEGER DEFAULT 0,
+                                  last_error VARCHAR(500),
+                                  completed_at TIMESTAMP
+);
+
+CREATE INDEX idx_neo_window_status ON neo_fetch_window(status);
+
+-- 10. UPSTREAM_RESPONSE (Last completed fetch of each upstream URL, for conditional requests)
+CREATE TABLE upstream_response (
+                                   id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+
+    -- SHA-256 of the normalised URL (sorted query, no api_key)
+                                   cache_key VARCHAR(64) UNIQUE NOT NULL,
+                                   url TEXT NOT NULL,
+
+    -- HTTP validators sent back as If-None-Match / If-Modified-Since
+                                   etag VARCHAR(255),
+                                   last_modified VARCHAR(100),
+
+    -- Hash of the last ingested body: identical payloads are not parsed again
+                                   body_sha256 VARCHAR(64) NOT NULL,
+                                   body_bytes BIGINT,
+                                   fetched_at TIMESTAMP,
+                                   last_checked_at TIMESTAMP,
+                                   unchanged_hits INTEGER DEFAULT 0
+);
+
+CREATE INDEX idx_upstream_checked ON upstream_response(last_checked_at);
@@ -0,0 +1,56 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.dto.CorrelationParams;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Il batch passa dal proxy di AnalysisService: legge e popola le stesse cache degli endpoint singoli.
+ */
+@SpringBootTest(properties = {"nasa.data-loader.enabled=false", "nasa.sync.schedule.enabled=false"})
+class AnalysisBatchCacheTest {
+
+    @Autowired
+    private AnalysisService analysisService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchFillsTheEndpointCaches() {
+        Map<String, Object> response = analysisService.analyzeBatch(List.of("flare-cme", "manual/cme-ips", "dashboard"));
+
+        assertEquals(false, response.get("partial"));
+        Map<String, Object> results = (Map<String, Object>) response.get("results");
+
+        Cache.ValueWrapper verified = cacheManager.getCache("flare-cme-verified").get("all");
+        Cache.ValueWrapper manual = cacheManager.getCache("cme-ips-manual").get(CorrelationParams.CME_IPS_DEFAULTS);
+        Cache.ValueWrapper dashboard = cacheManager.getCache(AnalysisService.DASHBOARD_CACHE).get("all");
+        assertNotNull(verified);
+        assertNotNull(manual);
+        assertNotNull(dashboard);
+        assertSame(verified.get(), results.get("flare-cme"));
+        assertSame(manual.get(), results.get("manual/cme-ips"));
+        assertSame(dashboard.get(), results.get("dashboard"));
+
+        // Una seconda richiesta (batch o endpoint singolo) riusa le stesse entry
+        assertSame(dashboard.get(), analysisService.getDashboardOverview());
+        Map<String, Object> again = (Map<String, Object>) analysisService.analyzeBatch(List.of("flare-cme")).get("results");
+        assertSame(verified.get(), again.get("flare-cme"));
+    }
+}
@@ -0,0 +1,76 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.ApiSource;
+import it.polimi.nasa.nasabackend.repository.ApiSourceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ApiSource aggiornata da finestre DONKI in parallelo e da sync/backfill sovrapposti.
+ */
+@SpringBootTest(properties = {"nasa.data-loader.enabled=false", "nasa.sync.schedule.enabled=false"})
+class ApiSourceServiceTest {
+
+    private static final String API_NAME = "TEST_DONKI";
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    @Autowired
+    private ApiSourceService apiSourceService;
+
+    @Autowired
+    private ApiSourceRepository apiSourceRepository;
+
+    @AfterEach
+    void clean() {
+        apiSourceRepository.findByApiName(API_NAME).ifPresent(apiSourceRepository::delete);
+    }
+
+    @Test
+    void concurrentCreationAndStatsKeepOneRowAndEveryIncrement() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<ApiSource>> created = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                created.add(executor.submit(() -> {
+                    ApiSource source = apiSourceService.getOrCreateApiSource(API_NAME, "http://localhost", "test");
+                    for (int j = 0; j < 25; j++) {
+                        apiSourceService.updateApiSourceStats(API_NAME, 2);
+                    }
+                    return source;
+                }));
+            }
+            Long id = created.get(0).get().getId();
+            for (Future<ApiSource> future : created) {
+                assertEquals(id, future.get().getId());
+            }
+        }
+
+        assertEquals(8 * 25 * 2, apiSourceRepository.findByApiName(API_NAME).orElseThrow().getTotalRecords());
+    }
+
+    @Test
+    void watermarkNeverMovesBack() {
+        ApiSource stale = apiSourceService.getOrCreateApiSource(API_NAME, "http://localhost", "test");
+
+        assertEquals(T0, apiSourceService.advanceWatermark(API_NAME, T0));
+        assertEquals(T0, apiSourceService.advanceWatermark(API_NAME, T0.minusDays(3)));
+        assertEquals(T0.plusDays(1), apiSourceService.advanceWatermark(API_NAME, T0.plusDays(1)));
+
+        // Le statistiche non toccano il watermark anche se l'entity del chiamante e' vecchia
+        apiSourceService.updateApiSourceStats(API_NAME, 5);
+        assertNull(stale.getWatermark());
+        ApiSource current = apiSourceRepository.findByApiName(API_NAME).orElseThrow();
+        assertEquals(T0.plusDays(1), current.getWatermark());
+        assertEquals(5, current.getTotalRecords());
+    }
+}
@@ -0,0 +1,102 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.Fireball;
+import it.polimi.nasa.nasabackend.entity.SolarFlare;
+import it.polimi.nasa.nasabackend.repository.FireballRepository;
+import it.polimi.nasa.nasabackend.repository.SolarFlareRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Id generati dai batch JDBC di BulkEventWriter (H2): abbinamento per chiave naturale e posizionale,
+ * su piu' blocchi da BATCH_SIZE righe.
+ */
+@SpringBootTest(properties = {"nasa.data-loader.enabled=false", "nasa.sync.schedule.enabled=false"})
+class BulkEventWriterTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private BulkEventWriter bulkEventWriter;
+
+    @Autowired
+    private SolarFlareRepository solarFlareRepository;
+
+    @Autowired
+    private FireballRepository fireballRepository;
+
+    @BeforeEach
+    void clean() {
+        solarFlareRepository.deleteAll();
+        fireballRepository.deleteAll();
+    }
+
+    @Test
+    void insertNewAssignsIdsByNaturalKey() {
+        solarFlareRepository.save(flare(7));
+
+        List<SolarFlare> events = new ArrayList<>();
+        for (int i = 0; i < 1203; i++) {
+            events.add(flare(i));
+        }
+        events.add(flare(42));                  // ripetuto nello stesso batch
+        Collections.shuffle(events);
+
+        BulkEventWriter.BulkInsert<SolarFlare> result = bulkEventWriter.insertNew(SolarFlare.class, events,
+                SolarFlare::getActivityId, solarFlareRepository::findExistingActivityIds);
+
+        assertEquals(1202, result.inserted().size());
+        assertEquals(2, result.skipped());
+        assertEquals(1203, solarFlareRepository.count());
+        for (SolarFlare inserted : result.inserted()) {
+            assertNotNull(inserted.getId(), inserted.getActivityId());
+            assertEquals(inserted.getActivityId(), solarFlareRepository.findById(inserted.getId()).orElseThrow().getActivityId());
+        }
+        assertEquals(1202, result.inserted().stream().map(SolarFlare::getId).distinct().count());
+    }
+
+    @Test
+    void insertAllAssignsIdsByPosition() {
+        List<Fireball> rows = new ArrayList<>();
+        for (int i = 0; i < 1100; i++) {
+            Fireball fireball = new Fireball();
+            fireball.setEventDate(T0.plusHours(i));
+            fireball.setTotalImpactEnergyKt(BigDecimal.valueOf(i));
+            rows.add(fireball);
+        }
+
+        assertEquals(1100, bulkEventWriter.insertAll(Fireball.class, rows));
+
+        assertEquals(1100, fireballRepository.count());
+        for (Fireball row : rows) {
+            assertNotNull(row.getId());
+            Fireball stored = fireballRepository.findById(row.getId()).orElseThrow();
+            assertEquals(row.getEventDate(), stored.getEventDate());
+            assertEquals(0, row.getTotalImpactEnergyKt().compareTo(stored.getTotalImpactEnergyKt()));
+        }
+    }
+
+    @Test
+    void insertAllOfNothingWritesNothing() {
+        assertEquals(0, bulkEventWriter.insertAll(Fireball.class, List.of()));
+        assertEquals(0, fireballRepository.count());
+    }
+
+    private static SolarFlare flare(int i) {
+        SolarFlare flare = new SolarFlare();
+        flare.setActivityId("2024-01-01T00:00:00-FLR-" + i);
+        flare.setPeakTime(T0.plusMinutes(i));
+        flare.setClassType("C");
+        return flare;
+    }
+}
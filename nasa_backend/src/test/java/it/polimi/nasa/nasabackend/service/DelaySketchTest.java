@@ -0,0 +1,156 @@
+package it.polimi.nasa.nasabackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DelaySketch: errore relativo dei quantili, rimozione dei valori e merge.
+ */
+class DelaySketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1};
+
+    @Test
+    void quantilesAreWithinRelativeAccuracy() {
+        Random random = new Random(11);
+        long[] delays = new long[20_000];
+        for (int i = 0; i < delays.length; i++) {
+            // Ritardi da pochi minuti a ~10 giorni, qualche zero e qualche negativo
+            delays[i] = switch (i % 20) {
+                case 0 -> 0;
+                case 1 -> -1 - random.nextInt(600);
+                default -> 1 + (long) Math.exp(random.nextDouble() * Math.log(14_400));
+            };
+        }
+
+        DelaySketch sketch = sketchOf(delays);
+        long[] sorted = delays.clone();
+        Arrays.sort(sorted);
+
+        for (double q = 0; q <= 1.0; q += 0.005) {
+            long exact = sorted[(int) Math.floor(q * (sorted.length - 1))];
+            double estimate = sketch.quantile(q);
+            assertTrue(Math.abs(estimate - exact) <= DelaySketch.RELATIVE_ACCURACY * Math.abs(exact),
+                    "q=" + q + ": exact " + exact + ", estimate " + estimate);
+        }
+        assertEquals(sorted[0], sketch.min(), DelaySketch.RELATIVE_ACCURACY * Math.abs(sorted[0]));
+        assertEquals(sorted[sorted.length - 1], sketch.max(), DelaySketch.RELATIVE_ACCURACY * sorted[sorted.length - 1]);
+    }
+
+    @Test
+    void smallIntegerDelaysAreExact() {
+        // Bucket piu' stretti di un minuto fino a 1 / (gamma - 1) ~ 49.5 minuti
+        for (long minutes = -49; minutes <= 49; minutes++) {
+            DelaySketch sketch = sketchOf(minutes);
+            assertEquals(minutes, sketch.quantile(0.5), "delay " + minutes);
+        }
+    }
+
+    @Test
+    void countMeanAndDeviationAreExact() {
+        DelaySketch sketch = sketchOf(30, 60, 90, 120);
+
+        assertEquals(4, sketch.count());
+        assertEquals(75.0, sketch.mean());
+        assertEquals(Math.sqrt(1125), sketch.standardDeviation(), 1e-9);
+        assertEquals(0, new DelaySketch().quantile(0.5));
+    }
+
+    @Test
+    void histogramEdgesAreLowerInclusive() {
+        DelaySketch sketch = sketchOf(-5, 0, 14, 15, 7199, 7200, 100_000);
+        List<DelaySketch.Bucket> histogram = sketch.histogram();
+
+        assertEquals(DelaySketch.EDGES_MINUTES.length + 1, histogram.size());
+        assertEquals(new DelaySketch.Bucket(null, 0L, 1), histogram.get(0));
+        assertEquals(new DelaySketch.Bucket(0L, 15L, 2), histogram.get(1));
+        assertEquals(new DelaySketch.Bucket(15L, 30L, 1), histogram.get(2));
+        assertEquals(new DelaySketch.Bucket(5760L, 7200L, 1), histogram.get(histogram.size() - 2));
+        assertEquals(new DelaySketch.Bucket(7200L, null, 2), histogram.get(histogram.size() - 1));
+    }
+
+    @Test
+    void addThenRemoveRestoresTheSketch() {
+        Random random = new Random(3);
+        long[] base = randomDelays(random, 500);
+        long[] extra = randomDelays(random, 300);
+
+        DelaySketch sketch = sketchOf(base);
+        for (long delay : extra) {
+            sketch.add(delay);
+        }
+        for (long delay : extra) {
+            sketch.remove(delay);
+        }
+
+        assertSameDistribution(sketchOf(base), sketch);
+    }
+
+    @Test
+    void removingEverythingLeavesAnEmptySketch() {
+        long[] delays = {-30, 0, 45, 45, 2000};
+        DelaySketch sketch = sketchOf(delays);
+        for (long delay : delays) {
+            sketch.remove(delay);
+        }
+
+        assertSameDistribution(new DelaySketch(), sketch);
+    }
+
+    @Test
+    void mergeEqualsOneSketchOfAllValues() {
+        Random random = new Random(5);
+        long[] first = randomDelays(random, 1000);
+        long[] second = randomDelays(random, 700);
+
+        List<Long> all = new ArrayList<>();
+        Arrays.stream(first).forEach(all::add);
+        Arrays.stream(second).forEach(all::add);
+        DelaySketch whole = sketchOf(all.stream().mapToLong(Long::longValue).toArray());
+
+        DelaySketch merged = sketchOf(first).merge(sketchOf(second));
+        assertSameDistribution(whole, merged);
+
+        // L'ordine del merge non conta e copy() non condivide i contatori
+        DelaySketch left = sketchOf(second);
+        DelaySketch copy = left.copy();
+        assertSameDistribution(whole, left.merge(sketchOf(first)));
+        assertSameDistribution(sketchOf(second), copy);
+    }
+
+    // ============================================
+    // HELPER
+    // ============================================
+
+    private static DelaySketch sketchOf(long... delays) {
+        DelaySketch sketch = new DelaySketch();
+        for (long delay : delays) {
+            sketch.add(delay);
+        }
+        return sketch;
+    }
+
+    private static long[] randomDelays(Random random, int size) {
+        long[] delays = new long[size];
+        for (int i = 0; i < size; i++) {
+            delays[i] = random.nextInt(10_000) - 500;
+        }
+        return delays;
+    }
+
+    private static void assertSameDistribution(DelaySketch expected, DelaySketch actual) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.mean(), actual.mean(), 1e-9);
+        assertEquals(expected.standardDeviation(), actual.standardDeviation(), 1e-6);
+        assertEquals(expected.histogram(), actual.histogram());
+        for (double q : QUANTILES) {
+            assertEquals(expected.quantile(q), actual.quantile(q), "q=" + q);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package it.polimi.nasa.nasabackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Merge a blocchi di EventColumns confrontato con una tabella costruita da zero.
+ */
+class EventColumnsTest {
+
+    private record Row(long id, LocalDateTime time, String activityId) {
+    }
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    @Test
+    void chunkedMergeMatchesFullBuild() {
+        Random random = new Random(13);
+        Map<Long, Row> all = new LinkedHashMap<>();
+        EventColumns merged = EventColumns.EMPTY;
+        long nextId = 1;
+
+        for (int chunk = 0; chunk < 20; chunk++) {
+            List<Row> rows = new ArrayList<>();
+            for (int k = 0; k < 50; k++) {
+                // Qualche riga senza activityId e, dal secondo blocco, qualche id gia' presente da sostituire
+                long id = chunk > 0 && k % 10 == 0 ? 1 + random.nextInt((int) nextId - 1) : nextId++;
+                String activityId = k % 17 == 0 ? null : "EV-" + Long.toString(random.nextLong() & 0xFFFFFF, 36) + "-" + id;
+                rows.add(new Row(id, T0.plusMinutes(random.nextInt(500_000)), activityId));
+            }
+            // Un id ripetuto nello stesso blocco resta una sola riga: vince l'ultima
+            Map<Long, Row> chunkRows = new LinkedHashMap<>();
+            rows.forEach(row -> chunkRows.put(row.id(), row));
+            chunkRows.values().forEach(row -> all.put(row.id(), row));
+            merged = merged.merge(columnsOf(chunkRows.values()));
+        }
+
+        EventColumns full = columnsOf(all.values());
+        assertEquals(full.size(), merged.size());
+        for (int row = 0; row < full.size(); row++) {
+            assertEquals(full.id(row), merged.id(row));
+            assertEquals(full.epochSecond(row), merged.epochSecond(row));
+            assertEquals(full.activityId(row), merged.activityId(row));
+        }
+        for (Row row : all.values()) {
+            if (row.activityId() != null) {
+                int position = merged.rowOf(row.activityId());
+                assertTrue(position >= 0, row.activityId());
+                assertEquals(row.id(), merged.id(position));
+            }
+        }
+        assertEquals(-1, merged.rowOf("EV-missing"));
+        assertEquals(-1, merged.rowOf(null));
+    }
+
+    @Test
+    void replacedRowLeavesTheIndex() {
+        EventColumns before = columnsOf(List.of(new Row(1, T0, "OLD-1"), new Row(2, T0.plusHours(1), "KEEP-2")));
+        EventColumns after = before.merge(columnsOf(List.of(new Row(1, T0.plusHours(2), "NEW-1"))));
+
+        assertEquals(-1, after.rowOf("OLD-1"));
+        assertEquals(1L, after.id(after.rowOf("NEW-1")));
+        assertEquals(2L, after.id(after.rowOf("KEEP-2")));
+        assertSame(after, after.merge(EventColumns.EMPTY));
+    }
+
+    private static EventColumns columnsOf(Iterable<Row> rows) {
+        EventColumns.Builder builder = new EventColumns.Builder(0);
+        for (Row row : rows) {
+            builder.add(row.id(), row.time(), Float.NaN, (byte) 0, row.activityId(), null);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,62 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
+import it.polimi.nasa.nasabackend.entity.EventType;
+import it.polimi.nasa.nasabackend.entity.SolarFlare;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * L'evento di ingest trattenuto fino al commit porta solo le colonne usate dai listener.
+ */
+class EventsIngestedEventTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 2, 1, 10, 30);
+
+    @Test
+    void keepsAnalyticsFieldsAndDropsPayload() {
+        SolarFlare flare = new SolarFlare();
+        flare.setId(1L);
+        flare.setActivityId("2024-02-01T10:30:00-FLR-001");
+        flare.setPeakTime(T0);
+        flare.setClassType("X");
+        flare.setFullClass("X1.2");
+        flare.setNote("note");
+        flare.setLinkedEvents("[{\"activityID\":\"2024-02-01T11:00:00-CME-001\"}]");
+        flare.setRawData("{\"flrID\":\"2024-02-01T10:30:00-FLR-001\"}");
+
+        SolarFlare light = EventsIngestedEvent.of(EventType.FLR, List.of(flare)).eventsAs(SolarFlare.class).get(0);
+
+        assertNotSame(flare, light);
+        assertEquals(1L, light.getId());
+        assertEquals(flare.getActivityId(), light.getActivityId());
+        assertEquals(T0, light.getPeakTime());
+        assertEquals("X", light.getClassType());
+        assertEquals("X1.2", light.getFullClass());
+        assertNull(light.getRawData());
+        assertNull(light.getNote());
+        assertNull(light.getLinkedEvents());
+    }
+
+    @Test
+    void eventsWithoutTimeAreStillPublished() {
+        CoronalMassEjection cme = new CoronalMassEjection();
+        cme.setId(2L);
+        cme.setActivityId("2024-02-01T11:00:00-CME-001");
+        cme.setSpeedKmS(new BigDecimal("1200.00"));
+        cme.setRawData("{}");
+
+        List<CoronalMassEjection> events = EventsIngestedEvent.of(EventType.CME, List.of(cme))
+                .eventsAs(CoronalMassEjection.class);
+
+        assertEquals(1, events.size());
+        assertNull(events.get(0).getStartTime());
+        assertEquals(new BigDecimal("1200.00"), events.get(0).getSpeedKmS());
+        assertNull(events.get(0).getRawData());
+    }
+}
@@ -0,0 +1,597 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.dto.CorrelationParams;
+import it.polimi.nasa.nasabackend.dto.CorrelationParams.DelayWindow;
+import it.polimi.nasa.nasabackend.entity.CoronalMassEjection;
+import it.polimi.nasa.nasabackend.entity.GeomagneticStorm;
+import it.polimi.nasa.nasabackend.entity.InterplanetaryShock;
+import it.polimi.nasa.nasabackend.entity.SolarFlare;
+import it.polimi.nasa.nasabackend.repository.CoronalMassEjectionRepository;
+import it.polimi.nasa.nasabackend.repository.GeomagneticStormRepository;
+import it.polimi.nasa.nasabackend.repository.InterplanetaryShockRepository;
+import it.polimi.nasa.nasabackend.repository.SolarFlareRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Le correlazioni manuali e legacy calcolate con TemporalJoin devono restituire le
+ * stesse mappe dell'implementazione originale, che faceva una query BETWEEN per evento.
+ *
+ * Il riferimento qui sotto e' quel codice (stesse query dei repository), con due sole
+ * precisazioni: le finestre e le etichette vengono da CorrelationParams, e gli ordinamenti
+ * che le query originali lasciavano al database (parita' di tempo, BETWEEN senza ORDER BY)
+ * sono fissati a (tempo, id), come nello store colonnare.
+ *
+ * Le fixture coprono gli estremi t+min e t+max, tempi uguali, inserimento non ordinato,
+ * i filtri di velocita' CME (>= e >) e di direzione verso la Terra ("Earth" / "earth").
+ */
+@SpringBootTest(properties = {"nasa.data-loader.enabled=false", "nasa.sync.schedule.enabled=false"})
+class ManualCorrelationEquivalenceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    private static final List<String> CORRELATIONS = List.of(
+            "flare-cme-manual", "cme-ips-manual", "ips-storm-manual", "complete-chain-manual",
+            "cme-storm-verified", "complete-chain-legacy");
+
+    @Autowired
+    private AnalysisService analysisService;
+
+    @Autowired
+    private ColumnarEventStore columnarEventStore;
+
+    @Autowired
+    private SolarFlareRepository solarFlareRepository;
+
+    @Autowired
+    private CoronalMassEjectionRepository cmeRepository;
+
+    @Autowired
+    private InterplanetaryShockRepository interplanetaryShockRepository;
+
+    @Autowired
+    private GeomagneticStormRepository geomagneticStormRepository;
+
+    @BeforeEach
+    void loadFixtures() {
+        solarFlareRepository.deleteAll();
+        cmeRepository.deleteAll();
+        interplanetaryShockRepository.deleteAll();
+        geomagneticStormRepository.deleteAll();
+
+        LocalDateTime cmeA = T0.plusMinutes(24);
+        LocalDateTime cmeE = T0.plusHours(72);
+        LocalDateTime cmeG = T0.plusMinutes(70);
+        LocalDateTime cmeH = T0.plusDays(20);
+        LocalDateTime ips1 = cmeA.plusHours(15);
+        LocalDateTime ips3 = cmeA.plusHours(120);
+        LocalDateTime ips4 = cmeG.plusHours(120);
+
+        List<Object> fixtures = new ArrayList<>(List.of(
+                // Flare: FLR-2 e FLR-3 hanno lo stesso picco, FLR-4 e' di classe C
+                flare("FLR-1", "X", "X1.2", T0),
+                flare("FLR-2", "M", "M5.0", T0.plusMinutes(10)),
+                flare("FLR-3", "X", "X2.0", T0.plusMinutes(10)),
+                flare("FLR-4", "C", "C3.0", T0),
+                flare("FLR-5", "X", "X1.0", T0.plusDays(5)),
+                flare("FLR-6", "M", "M1.0", T0.plusDays(2)),
+
+                // CME: A e C sugli estremi 24 e 120 min di FLR-1, B a 60 min (estremo della catena)
+                // con velocita' esattamente 500, E a 72 h (estremo legacy), F appena prima di FLR-6 + 24 min
+                cme("CME-A", cmeA, "800.00"),
+                cme("CME-B", T0.plusMinutes(60), "500.00"),
+                cme("CME-NULL", T0.plusMinutes(40), null),
+                cme("CME-G", cmeG, "900.00"),
+                cme("CME-C", T0.plusMinutes(120), "450.00"),
+                cme("CME-D", T0.plusMinutes(121), "1200.00"),
+                cme("CME-E", cmeE, "1500.00"),
+                cme("CME-F", T0.plusDays(2).plusMinutes(23).plusSeconds(59), "700.00"),
+                cme("CME-H", cmeH, "1000.00"),
+
+                // IPS: 1 e 2 allo stesso istante (solo 1 verso la Terra), 3 "earth" minuscolo
+                // (verso la Terra per CME→IPS, non per findEarthShocks), 4 sull'estremo 120 h,
+                // 5 e 6 appena fuori dalla finestra di CME-H
+                shock("IPS-1", ips1, "Earth"),
+                shock("IPS-2", ips1, "STEREO A"),
+                shock("IPS-3", ips3, "L1 (earth)"),
+                shock("IPS-4", ips4, "Earth"),
+                shock("IPS-5", cmeH.plusHours(14).plusMinutes(59), "Earth"),
+                shock("IPS-6", cmeH.plusHours(120).plusMinutes(1), "Earth"),
+
+                // Tempeste: estremi 15/60/120 min di IPS-1, due tempeste alla stessa ora
+                storm("GST-1", ips1.plusMinutes(15), "6.3"),
+                storm("GST-2", ips1.plusMinutes(60), "7.0"),
+                storm("GST-2B", ips1.plusMinutes(60), "5.7"),
+                storm("GST-3", ips1.plusMinutes(120), "8.0"),
+                storm("GST-4", ips1.plusMinutes(121), "5.0"),
+                storm("GST-5", ips4.plusMinutes(15), "6.0"),
+                storm("GST-6", ips3.plusMinutes(30), "5.3")));
+
+        // Inserimento in ordine sparso: id e tempi non hanno lo stesso ordine
+        Collections.shuffle(fixtures, new Random(42));
+        for (Object fixture : fixtures) {
+            if (fixture instanceof SolarFlare flare) {
+                solarFlareRepository.save(flare);
+            } else if (fixture instanceof CoronalMassEjection cme) {
+                cmeRepository.save(cme);
+            } else if (fixture instanceof InterplanetaryShock shock) {
+                interplanetaryShockRepository.save(shock);
+            } else {
+                geomagneticStormRepository.save((GeomagneticStorm) fixture);
+            }
+        }
+
+        columnarEventStore.rebuild();
+        CORRELATIONS.forEach(analysisService::invalidateCorrelation);
+    }
+
+    // ============================================
+    // DEFAULT (aggregati mantenuti)
+    // ============================================
+
+    @Test
+    void flareToCmeMatchesPerEventQueries() {
+        CorrelationParams params = CorrelationParams.FLARE_CME_DEFAULTS;
+        Map<String, Object> actual = analysisService.analyzeFlareToCorrelationManual(params);
+
+        assertEquals(expectedFlareToCme(params), withoutDistribution(actual));
+        assertEquals(5, actual.get("totalMajorFlares"));
+        assertEquals(3, actual.get("flaresWithCme"));
+    }
+
+    @Test
+    void cmeToIpsMatchesPerEventQueries() {
+        CorrelationParams params = CorrelationParams.CME_IPS_DEFAULTS;
+        Map<String, Object> actual = analysisService.analyzeCmeToIpsCorrelationManual(params);
+
+        assertEquals(expectedCmeToIps(params), withoutDistribution(actual));
+        // Tutte tranne C e NULL (500 = soglia inclusa); H ha IPS solo appena fuori finestra
+        assertEquals(7, actual.get("totalFastCmes"));
+        assertEquals(6, actual.get("cmesWithIps"));
+    }
+
+    @Test
+    void ipsToStormMatchesPerEventQueries() {
+        CorrelationParams params = CorrelationParams.IPS_STORM_DEFAULTS;
+        Map<String, Object> actual = analysisService.analyzeIpsToStormCorrelationManual(params);
+
+        assertEquals(expectedIpsToStorm(params), withoutDistribution(actual));
+        assertEquals(4, actual.get("totalEarthShocks"));
+        assertEquals(2, actual.get("shocksWithStorm"));
+    }
+
+    @Test
+    void completeChainMatchesPerEventQueries() {
+        CorrelationParams params = CorrelationParams.COMPLETE_CHAIN_DEFAULTS;
+        Map<String, Object> actual = analysisService.analyzeCompleteChainManual(params);
+
+        assertEquals(expectedCompleteChain(params), actual);
+        assertTrue((Integer) actual.get("completeChains") > 0);
+    }
+
+    @Test
+    void legacyAnalysesMatchPerEventQueries() {
+        assertEquals(expectedLegacyCmeToStorm(), withoutDistribution(analysisService.analyzeCmeToStormCorrelation()));
+        assertEquals(expectedLegacyChain(), analysisService.analyzeCompleteChain());
+    }
+
+    // ============================================
+    // PARAMETRI PERSONALIZZATI (aggregato temporaneo)
+    // ============================================
+
+    @Test
+    void customParametersMatchPerEventQueries() {
+        CorrelationParams xOnly = CorrelationParams.FLARE_CME_DEFAULTS
+                .withFlareClasses(List.of("X"))
+                .withFlareToCme(30L, 70L);
+        assertEquals(expectedFlareToCme(xOnly), withoutDistribution(analysisService.analyzeFlareToCorrelationManual(xOnly)));
+
+        CorrelationParams fastOnly = CorrelationParams.CME_IPS_DEFAULTS.withMinCmeSpeed(new BigDecimal("900"));
+        assertEquals(expectedCmeToIps(fastOnly), withoutDistribution(analysisService.analyzeCmeToIpsCorrelationManual(fastOnly)));
+
+        CorrelationParams dated = CorrelationParams.IPS_STORM_DEFAULTS
+                .withDateRange(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 3));
+        assertEquals(expectedIpsToStorm(dated), withoutDistribution(analysisService.analyzeIpsToStormCorrelationManual(dated)));
+
+        CorrelationParams wideChain = CorrelationParams.COMPLETE_CHAIN_DEFAULTS
+                .withFlareClasses(List.of("M", "X"))
+                .withIpsToStorm(15L, 120L);
+        assertEquals(expectedCompleteChain(wideChain), analysisService.analyzeCompleteChainManual(wideChain));
+    }
+
+    // ============================================
+    // RIFERIMENTO - Una query per evento
+    // ============================================
+
+    private Map<String, Object> expectedFlareToCme(CorrelationParams params) {
+        DelayWindow window = params.flareToCme();
+        List<SolarFlare> majorFlares = solarFlareRepository.findMajorFlares().stream()
+                .filter(flare -> params.flareClasses().contains(flare.getClassType()))
+                .filter(flare -> params.inDateRange(flare.getPeakTime()))
+                .sorted(Comparator.comparing(SolarFlare::getPeakTime).reversed().thenComparing(SolarFlare::getId))
+                .toList();
+        int flaresWithCme = 0;
+        List<Double> delays = new ArrayList<>();
+        List<Map<String, Object>> correlations = new ArrayList<>();
+
+        for (SolarFlare flare : majorFlares) {
+            List<CoronalMassEjection> cmes = byTime(cmeRepository.findCmeAfterFlare(
+                    flare.getPeakTime().plus(window.min()), flare.getPeakTime().plus(window.max())),
+                    CoronalMassEjection::getStartTime, CoronalMassEjection::getId);
+            if (cmes.isEmpty()) {
+                continue;
+            }
+            flaresWithCme++;
+            CoronalMassEjection closestCme = cmes.get(0);
+            Duration delay = Duration.between(flare.getPeakTime(), closestCme.getStartTime());
+            double delayHours = delay.toMinutes() / 60.0;
+            delays.add(delayHours);
+
+            Map<String, Object> correlation = new HashMap<>();
+            correlation.put("flareId", flare.getActivityId());
+            correlation.put("flareClass", flare.getFullClass());
+            correlation.put("flareTime", flare.getPeakTime());
+            correlation.put("cmeId", closestCme.getActivityId());
+            correlation.put("cmeTime", closestCme.getStartTime());
+            correlation.put("cmeSpeed", closestCme.getSpeedKmS());
+            correlation.put("delayMinutes", delay.toMinutes());
+            correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+            correlation.put("linkSource", "Temporal_Analysis");
+            correlations.add(correlation);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalMajorFlares", majorFlares.size());
+        result.put("flaresWithCme", flaresWithCme);
+        result.put("correlationPercentage", percentage(flaresWithCme, majorFlares.size()));
+        result.put("averageDelayHours", average(delays));
+        result.put("correlations", top(correlations));
+        result.put("dataSource", "Temporal window analysis (" + window.minutesLabel() + " min)");
+        result.put("method", "Manual temporal correlation");
+        result.put("windowMinutes", window.minutesLabel());
+        result.put("parameters", params);
+        return result;
+    }
+
+    private Map<String, Object> expectedCmeToIps(CorrelationParams params) {
+        DelayWindow window = params.cmeToIps();
+        List<CoronalMassEjection> fastCmes = cmeRepository.findFastCme(params.minCmeSpeed()).stream()
+                .filter(cme -> params.inDateRange(cme.getStartTime()))
+                .sorted(Comparator.comparing(CoronalMassEjection::getSpeedKmS).reversed()
+                        .thenComparing(CoronalMassEjection::getId))
+                .toList();
+        int cmesWithIps = 0;
+        List<Double> delays = new ArrayList<>();
+        List<Map<String, Object>> correlations = new ArrayList<>();
+
+        for (CoronalMassEjection cme : fastCmes) {
+            List<InterplanetaryShock> earthShocks = earthDirected(interplanetaryShockRepository.findShockAfterCme(
+                    cme.getStartTime().plus(window.min()), cme.getStartTime().plus(window.max())));
+            if (earthShocks.isEmpty()) {
+                continue;
+            }
+            cmesWithIps++;
+            InterplanetaryShock closestShock = earthShocks.get(0);
+            Duration delay = Duration.between(cme.getStartTime(), closestShock.getActivityTime());
+            double delayHours = delay.toMinutes() / 60.0;
+            delays.add(delayHours);
+
+            Map<String, Object> correlation = new HashMap<>();
+            correlation.put("cmeId", cme.getActivityId());
+            correlation.put("cmeTime", cme.getStartTime());
+            correlation.put("cmeSpeed", cme.getSpeedKmS());
+            correlation.put("ipsId", closestShock.getActivityId());
+            correlation.put("ipsTime", closestShock.getActivityTime());
+            correlation.put("ipsLocation", closestShock.getLocation());
+            correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+            correlation.put("linkSource", "Temporal_Analysis");
+            correlations.add(correlation);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalFastCmes", fastCmes.size());
+        result.put("cmesWithIps", cmesWithIps);
+        result.put("correlationPercentage", percentage(cmesWithIps, fastCmes.size()));
+        result.put("averageDelayHours", average(delays));
+        result.put("correlations", top(correlations));
+        result.put("dataSource", "Temporal window analysis (" + window.hoursLabel().replace("-", "h-") + "h)");
+        result.put("method", "Manual temporal correlation");
+        result.put("windowHours", window.hoursLabel());
+        result.put("speedFilter", ">" + params.minCmeSpeed().toPlainString() + " km/s");
+        result.put("parameters", params);
+        return result;
+    }
+
+    private Map<String, Object> expectedIpsToStorm(CorrelationParams params) {
+        DelayWindow window = params.ipsToStorm();
+        List<InterplanetaryShock> earthShocks = interplanetaryShockRepository.findEarthShocks().stream()
+                .filter(shock -> params.inDateRange(shock.getActivityTime()))
+                .sorted(Comparator.comparing(InterplanetaryShock::getActivityTime).reversed()
+                        .thenComparing(InterplanetaryShock::getId))
+                .toList();
+        int shocksWithStorm = 0;
+        List<Double> delays = new ArrayList<>();
+        List<Map<String, Object>> correlations = new ArrayList<>();
+
+        for (InterplanetaryShock shock : earthShocks) {
+            List<GeomagneticStorm> storms = stormsAfter(shock.getActivityTime(), window);
+            if (storms.isEmpty()) {
+                continue;
+            }
+            shocksWithStorm++;
+            GeomagneticStorm closestStorm = storms.get(0);
+            Duration delay = Duration.between(shock.getActivityTime(), closestStorm.getStartTime());
+            double delayHours = delay.toMinutes() / 60.0;
+            delays.add(delayHours);
+
+            Map<String, Object> correlation = new HashMap<>();
+            correlation.put("ipsId", shock.getActivityId());
+            correlation.put("ipsTime", shock.getActivityTime());
+            correlation.put("ipsLocation", shock.getLocation());
+            correlation.put("stormId", closestStorm.getActivityId());
+            correlation.put("stormTime", closestStorm.getStartTime());
+            correlation.put("stormKpIndex", closestStorm.getKpIndex());
+            correlation.put("delayMinutes", delay.toMinutes());
+            correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+            correlation.put("linkSource", "Temporal_Analysis");
+            correlations.add(correlation);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalEarthShocks", earthShocks.size());
+        result.put("shocksWithStorm", shocksWithStorm);
+        result.put("correlationPercentage", percentage(shocksWithStorm, earthShocks.size()));
+        result.put("averageDelayHours", average(delays));
+        result.put("correlations", top(correlations));
+        result.put("dataSource", "Temporal window analysis (" + window.minutesLabel() + " min)");
+        result.put("method", "Manual temporal correlation");
+        result.put("windowMinutes", window.minutesLabel());
+        result.put("parameters", params);
+        return result;
+    }
+
+    private Map<String, Object> expectedCompleteChain(CorrelationParams params) {
+        List<SolarFlare> xFlares = flaresById(params);
+        List<Map<String, Object>> completeChains = new ArrayList<>();
+
+        for (SolarFlare flare : xFlares) {
+            List<CoronalMassEjection> fastCmes = cmesAfter(flare.getPeakTime(), params.flareToCme()).stream()
+                    .filter(cme -> cme.getSpeedKmS() != null && cme.getSpeedKmS().compareTo(params.minCmeSpeed()) > 0)
+                    .toList();
+
+            for (CoronalMassEjection cme : fastCmes) {
+                List<InterplanetaryShock> earthShocks = earthDirected(interplanetaryShockRepository.findShockAfterCme(
+                        cme.getStartTime().plus(params.cmeToIps().min()),
+                        cme.getStartTime().plus(params.cmeToIps().max())));
+
+                for (InterplanetaryShock shock : earthShocks) {
+                    for (GeomagneticStorm storm : stormsAfter(shock.getActivityTime(), params.ipsToStorm())) {
+                        Duration flareToStorm = Duration.between(flare.getPeakTime(), storm.getStartTime());
+
+                        Map<String, Object> chain = new HashMap<>();
+                        chain.put("flareId", flare.getActivityId());
+                        chain.put("flareClass", flare.getFullClass());
+                        chain.put("flareTime", flare.getPeakTime());
+                        chain.put("cmeId", cme.getActivityId());
+                        chain.put("cmeTime", cme.getStartTime());
+                        chain.put("cmeSpeed", cme.getSpeedKmS());
+                        chain.put("ipsId", shock.getActivityId());
+                        chain.put("ipsTime", shock.getActivityTime());
+                        chain.put("ipsLocation", shock.getLocation());
+                        chain.put("stormId", storm.getActivityId());
+                        chain.put("stormTime", storm.getStartTime());
+                        chain.put("stormKpIndex", storm.getKpIndex());
+                        chain.put("totalDelayHours", flareToStorm.toHours());
+                        chain.put("linkSource", "Temporal_Analysis");
+                        completeChains.add(chain);
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalXFlares", xFlares.size());
+        result.put("completeChains", completeChains.size());
+        result.put("chainPercentage", xFlares.size() > 0 ? percentage(completeChains.size(), xFlares.size()) : 0);
+        result.put("chains", top(completeChains));
+        result.put("dataSource", "Manual temporal correlation");
+        result.put("method", "Temporal window analysis");
+        result.put("windows", Map.of(
+                "flareToCme", params.flareToCme().minutesLabel() + " min",
+                "cmeToIps", params.cmeToIps().hoursLabel() + " hours",
+                "ipsToStorm", params.ipsToStorm().minutesLabel() + " min"
+        ));
+        result.put("parameters", params);
+        return result;
+    }
+
+    private Map<String, Object> expectedLegacyCmeToStorm() {
+        DelayWindow window = DelayWindow.ofHours(0, 96);
+        List<CoronalMassEjection> fastCmes = cmeRepository.findFastCme(new BigDecimal(500)).stream()
+                .sorted(Comparator.comparing(CoronalMassEjection::getSpeedKmS).reversed()
+                        .thenComparing(CoronalMassEjection::getId))
+                .toList();
+        int cmesWithStorm = 0;
+        List<Double> delays = new ArrayList<>();
+        List<Map<String, Object>> correlations = new ArrayList<>();
+
+        for (CoronalMassEjection cme : fastCmes) {
+            List<GeomagneticStorm> storms = stormsAfter(cme.getStartTime(), window);
+            if (storms.isEmpty()) {
+                continue;
+            }
+            cmesWithStorm++;
+            GeomagneticStorm closestStorm = storms.get(0);
+            Duration delay = Duration.between(cme.getStartTime(), closestStorm.getStartTime());
+            double delayHours = delay.toMinutes() / 60.0;
+            delays.add(delayHours);
+
+            Map<String, Object> correlation = new HashMap<>();
+            correlation.put("cmeId", cme.getActivityId());
+            correlation.put("cmeTime", cme.getStartTime());
+            correlation.put("cmeSpeed", cme.getSpeedKmS());
+            correlation.put("stormId", closestStorm.getActivityId());
+            correlation.put("stormTime", closestStorm.getStartTime());
+            correlation.put("stormKpIndex", closestStorm.getKpIndex());
+            correlation.put("delayHours", Math.round(delayHours * 100.0) / 100.0);
+            correlations.add(correlation);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalFastCmes", fastCmes.size());
+        result.put("cmesWithStorm", cmesWithStorm);
+        result.put("correlationPercentage", percentage(cmesWithStorm, fastCmes.size()));
+        result.put("averageDelayHours", average(delays));
+        result.put("correlations", top(correlations));
+        return result;
+    }
+
+    private Map<String, Object> expectedLegacyChain() {
+        List<SolarFlare> xFlares = solarFlareRepository.findByClassType("X").stream()
+                .sorted(Comparator.comparing(SolarFlare::getId))
+                .toList();
+        List<Map<String, Object>> completeChains = new ArrayList<>();
+
+        for (SolarFlare flare : xFlares) {
+            LocalDateTime flareTime = flare.getPeakTime();
+            for (CoronalMassEjection cme : cmesAfter(flareTime, DelayWindow.ofHours(0, 72))) {
+                for (GeomagneticStorm storm : stormsAfter(cme.getStartTime(), DelayWindow.ofHours(0, 96))) {
+                    Duration flareToStorm = Duration.between(flareTime, storm.getStartTime());
+
+                    Map<String, Object> chain = new HashMap<>();
+                    chain.put("flareId", flare.getActivityId());
+                    chain.put("flareClass", flare.getFullClass());
+                    chain.put("flareTime", flare.getPeakTime());
+                    chain.put("cmeId", cme.getActivityId());
+                    chain.put("cmeTime", cme.getStartTime());
+                    chain.put("cmeSpeed", cme.getSpeedKmS());
+                    chain.put("stormId", storm.getActivityId());
+                    chain.put("stormTime", storm.getStartTime());
+                    chain.put("stormKpIndex", storm.getKpIndex());
+                    chain.put("totalDelayHours", flareToStorm.toHours());
+                    completeChains.add(chain);
+                }
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("totalXFlares", xFlares.size());
+        result.put("completeChains", completeChains.size());
+        result.put("chainPercentage", xFlares.size() > 0 ? percentage(completeChains.size(), xFlares.size()) : 0);
+        result.put("chains", top(completeChains));
+        return result;
+    }
+
+    // ============================================
+    // HELPER
+    // ============================================
+
+    // Le flare della catena manuale, nell'ordine di findByClassType (per id)
+    private List<SolarFlare> flaresById(CorrelationParams params) {
+        List<SolarFlare> flares = new ArrayList<>();
+        for (String classType : params.flareClasses()) {
+            flares.addAll(solarFlareRepository.findByClassType(classType));
+        }
+        return flares.stream()
+                .filter(flare -> params.inDateRange(flare.getPeakTime()))
+                .sorted(Comparator.comparing(SolarFlare::getId))
+                .toList();
+    }
+
+    private List<CoronalMassEjection> cmesAfter(LocalDateTime time, DelayWindow window) {
+        return byTime(cmeRepository.findCmeAfterFlare(time.plus(window.min()), time.plus(window.max())),
+                CoronalMassEjection::getStartTime, CoronalMassEjection::getId);
+    }
+
+    private List<GeomagneticStorm> stormsAfter(LocalDateTime time, DelayWindow window) {
+        return byTime(geomagneticStormRepository.findStormAfterCme(time.plus(window.min()), time.plus(window.max())),
+                GeomagneticStorm::getStartTime, GeomagneticStorm::getId);
+    }
+
+    private static List<InterplanetaryShock> earthDirected(List<InterplanetaryShock> shocks) {
+        return byTime(shocks, InterplanetaryShock::getActivityTime, InterplanetaryShock::getId).stream()
+                .filter(ips -> ips.getLocation() != null && ips.getLocation().toLowerCase().contains("earth"))
+                .collect(Collectors.toList());
+    }
+
+    // Le query BETWEEN non hanno ORDER BY: ordine (tempo, id) come lo store colonnare
+    private static <T> List<T> byTime(List<T> events, Function<T, LocalDateTime> time,
+                                      Function<T, Long> id) {
+        return events.stream()
+                .sorted(Comparator.comparing(time, Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(id))
+                .toList();
+    }
+
+    private static double percentage(int matched, int total) {
+        double percentage = total > 0 ? (matched * 100.0 / total) : 0;
+        return Math.round(percentage * 100.0) / 100.0;
+    }
+
+    private static double average(List<Double> delays) {
+        double avgDelay = delays.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        return Math.round(avgDelay * 100.0) / 100.0;
+    }
+
+    private static List<Map<String, Object>> top(List<Map<String, Object>> rows) {
+        return rows.stream().limit(10).collect(Collectors.toList());
+    }
+
+    // delayDistribution e' un campo aggiunto (sketch), non presente nel codice originale
+    private static Map<String, Object> withoutDistribution(Map<String, Object> result) {
+        assertTrue(result.containsKey("delayDistribution"));
+        Map<String, Object> copy = new HashMap<>(result);
+        copy.remove("delayDistribution");
+        return copy;
+    }
+
+    private static SolarFlare flare(String id, String classType, String fullClass, LocalDateTime peakTime) {
+        SolarFlare flare = new SolarFlare();
+        flare.setActivityId("2024-03-01T00:00:00-FLR-" + id);
+        flare.setClassType(classType);
+        flare.setFullClass(fullClass);
+        flare.setPeakTime(peakTime);
+        return flare;
+    }
+
+    private static CoronalMassEjection cme(String id, LocalDateTime startTime, String speed) {
+        CoronalMassEjection cme = new CoronalMassEjection();
+        cme.setActivityId("2024-03-01T00:00:00-CME-" + id);
+        cme.setStartTime(startTime);
+        cme.setSpeedKmS(speed == null ? null : new BigDecimal(speed));
+        return cme;
+    }
+
+    private static InterplanetaryShock shock(String id, LocalDateTime activityTime, String location) {
+        InterplanetaryShock shock = new InterplanetaryShock();
+        shock.setActivityId("2024-03-01T00:00:00-IPS-" + id);
+        shock.setActivityTime(activityTime);
+        shock.setLocation(location);
+        return shock;
+    }
+
+    private static GeomagneticStorm storm(String id, LocalDateTime startTime, String kpIndex) {
+        GeomagneticStorm storm = new GeomagneticStorm();
+        storm.setActivityId("2024-03-01T00:00:00-GST-" + id);
+        storm.setStartTime(startTime);
+        storm.setKpIndex(new BigDecimal(kpIndex));
+        return storm;
+    }
+}
@@ -0,0 +1,95 @@
+package it.polimi.nasa.nasabackend.service;
+
+import it.polimi.nasa.nasabackend.entity.NeoAsteroid;
+import it.polimi.nasa.nasabackend.entity.NeoCloseApproach;
+import it.polimi.nasa.nasabackend.repository.NeoAsteroidRepository;
+import it.polimi.nasa.nasabackend.repository.NeoCloseApproachRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Riconciliazione dei passaggi duplicati su un database popolato prima di uk_approach_natural:
+ * il vincolo viene tolto, i duplicati inseriti, e dopo la riconciliazione il vincolo si riaggiunge.
+ */
+@SpringBootTest(properties = {"nasa.data-loader.enabled=false", "nasa.sync.schedule.enabled=false"})
+class NeoApproachReconcileTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Autowired
+    private NeoService neoService;
+
+    @Autowired
+    private NeoAsteroidRepository neoAsteroidRepository;
+
+    @Autowired
+    private NeoCloseApproachRepository neoCloseApproachRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void dropNaturalKey() {
+        neoCloseApproachRepository.deleteAll();
+        neoAsteroidRepository.deleteAll();
+        jdbcTemplate.execute("ALTER TABLE neo_close_approach DROP CONSTRAINT uk_approach_natural");
+    }
+
+    @AfterEach
+    void restoreNaturalKey() {
+        neoCloseApproachRepository.deleteAll();
+        neoAsteroidRepository.deleteAll();
+        jdbcTemplate.execute("ALTER TABLE neo_close_approach ADD CONSTRAINT uk_approach_natural "
+                + "UNIQUE (neo_id, approach_date, orbiting_body)");
+    }
+
+    @Test
+    void keepsTheOldestRowOfEachNaturalKey() {
+        NeoAsteroid first = neoAsteroidRepository.save(asteroid("2000433"));
+        NeoAsteroid second = neoAsteroidRepository.save(asteroid("3542519"));
+
+        NeoCloseApproach kept = neoCloseApproachRepository.save(approach(first, T0, "Earth"));
+        neoCloseApproachRepository.save(approach(first, T0, "Earth"));
+        neoCloseApproachRepository.save(approach(first, T0, "Earth"));
+        // Stessa data ma altro corpo, altro asteroide o altra data: non sono duplicati
+        NeoCloseApproach mars = neoCloseApproachRepository.save(approach(first, T0, "Mars"));
+        NeoCloseApproach other = neoCloseApproachRepository.save(approach(second, T0, "Earth"));
+        NeoCloseApproach later = neoCloseApproachRepository.save(approach(first, T0.plusDays(1), "Earth"));
+        neoCloseApproachRepository.save(approach(second, T0, "Earth"));
+
+        Map<String, Object> result = neoService.reconcileDuplicateApproaches();
+
+        assertEquals(3, result.get("removed"));
+        assertEquals(4L, result.get("remaining"));
+        List<Long> ids = neoCloseApproachRepository.findAll().stream().map(NeoCloseApproach::getId).sorted().toList();
+        assertEquals(List.of(kept.getId(), mars.getId(), other.getId(), later.getId()), ids);
+
+        // Senza duplicati rimasti, una seconda passata non tocca nulla
+        assertEquals(0, neoService.reconcileDuplicateApproaches().get("removed"));
+    }
+
+    private static NeoAsteroid asteroid(String referenceId) {
+        NeoAsteroid asteroid = new NeoAsteroid();
+        asteroid.setNeoReferenceId(referenceId);
+        asteroid.setName("(" + referenceId + ")");
+        return asteroid;
+    }
+
+    private static NeoCloseApproach approach(NeoAsteroid neo, LocalDateTime date, String orbitingBody) {
+        NeoCloseApproach approach = new NeoCloseApproach();
+        approach.setNeo(neo);
+        approach.setApproachDate(date);
+        approach.setOrbitingBody(orbitingBody);
+        return approach;
+    }
+}
@@ -0,0 +1,268 @@
+package it.polimi.nasa.nasabackend.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import it.polimi.nasa.nasabackend.entity.NeoFetchWindow;
+import it.polimi.nasa.nasabackend.repository.NeoFetchWindowRepository;
+import it.polimi.nasa.nasabackend.repository.UpstreamResponseRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NeoFeedFetcher contro uno stub HTTP locale (nasa.neo.feed-url): rate limit, retry e ripresa.
+ */
+@SpringBootTest(properties = {
+        "nasa.data-loader.enabled=false",
+        "nasa.sync.schedule.enabled=false",
+        "nasa.neo.concurrency=1",
+        "nasa.neo.requests-per-second=100",
+        "nasa.neo.burst=10",
+        "nasa.neo.max-attempts=3",
+        "nasa.neo.backoff-ms=50",
+        "nasa.neo.rate-limit-reserve=5",
+        "nasa.neo.max-retry-after-seconds=120"
+})
+class NeoFeedFetcherTest {
+
+    private record StubResponse(int status, Map<String, String> headers, long delayMs) {
+    }
+
+    private record Received(String startDate, long atNanos) {
+    }
+
+    private static final HttpServer SERVER;
+
+    // Risposte programmate per start_date; senza risposte programmate lo stub risponde 200
+    private static final Map<String, Deque<StubResponse>> SCRIPT = new ConcurrentHashMap<>();
+    private static final List<Received> REQUESTS = Collections.synchronizedList(new ArrayList<>());
+
+    static {
+        try {
+            SERVER = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SERVER.createContext("/feed", NeoFeedFetcherTest::handle);
+        SERVER.setExecutor(Executors.newCachedThreadPool());
+        SERVER.start();
+    }
+
+    @DynamicPropertySource
+    static void feedUrl(DynamicPropertyRegistry registry) {
+        registry.add("nasa.neo.feed-url", () -> "http://127.0.0.1:" + SERVER.getAddress().getPort() + "/feed");
+    }
+
+    @AfterAll
+    static void stopServer() {
+        SERVER.stop(0);
+    }
+
+    @Autowired
+    private NeoFeedFetcher neoFeedFetcher;
+
+    @Autowired
+    private NeoFetchWindowRepository neoFetchWindowRepository;
+
+    @Autowired
+    private UpstreamResponseRepository upstreamResponseRepository;
+
+    @BeforeEach
+    void reset() {
+        SCRIPT.clear();
+        REQUESTS.clear();
+        neoFetchWindowRepository.deleteAll();
+        upstreamResponseRepository.deleteAll();
+    }
+
+    @Test
+    void retryAfterPausesTheWholeBucket() throws Exception {
+        LocalDate first = NeoFeedFetcher.gridStart(LocalDate.of(2024, 3, 1));
+        LocalDate second = first.plusDays(NeoFeedFetcher.WINDOW_DAYS);
+        // Il 429 arriva dopo 200 ms: la richiesta della seconda finestra e' gia' partita
+        script(first, new StubResponse(429, Map.of("Retry-After", "1"), 200));
+
+        NeoFeedFetcher.FetchReport report = withConcurrency(2,
+                () -> neoFeedFetcher.fetch(first, second.plusDays(NeoFeedFetcher.WINDOW_DAYS - 1), reader(), (done, total) -> { }));
+
+        assertEquals(2, report.completed());
+        assertEquals(0, report.failed());
+        List<Received> retries = requestsFor(first);
+        assertEquals(2, retries.size());
+        long pauseNanos = retries.get(1).atNanos() - retries.get(0).atNanos();
+        assertTrue(pauseNanos >= 1_000_000_000L, "retry after " + pauseNanos / 1_000_000 + " ms");
+
+        // Nessuna richiesta (di nessuna finestra) durante il Retry-After
+        long answeredAt = retries.get(0).atNanos() + 200_000_000L;
+        for (Received received : snapshot()) {
+            assertFalse(received.atNanos() > answeredAt && received.atNanos() < answeredAt + 800_000_000L,
+                    "request for " + received.startDate() + " sent while the bucket was paused");
+        }
+    }
+
+    @Test
+    void serverErrorsAreRetriedWithBackoff() throws Exception {
+        LocalDate start = NeoFeedFetcher.gridStart(LocalDate.of(2024, 4, 1));
+        script(start, new StubResponse(503, Map.of(), 0), new StubResponse(503, Map.of(), 0));
+
+        NeoFeedFetcher.FetchReport report = neoFeedFetcher.fetch(start, start.plusDays(NeoFeedFetcher.WINDOW_DAYS - 1),
+                reader(), (done, total) -> { });
+
+        assertEquals(1, report.completed());
+        List<Received> attempts = requestsFor(start);
+        assertEquals(3, attempts.size());
+        // backoff-ms=50: almeno 50 ms e poi 100 ms tra i tentativi
+        assertTrue(attempts.get(1).atNanos() - attempts.get(0).atNanos() >= 50_000_000L);
+        assertTrue(attempts.get(2).atNanos() - attempts.get(1).atNanos() >= 100_000_000L);
+
+        NeoFetchWindow window = neoFetchWindowRepository.findByStartDateBetween(start, start).get(0);
+        assertEquals(NeoFetchWindow.Status.COMPLETED, window.getStatus());
+        assertEquals(3, window.getAttempts());
+    }
+
+    @Test
+    void clientErrorFailsTheWindowImmediately() throws Exception {
+        LocalDate start = NeoFeedFetcher.gridStart(LocalDate.of(2024, 5, 1));
+        script(start, new StubResponse(403, Map.of(), 0));
+
+        NeoFeedFetcher.FetchReport report = neoFeedFetcher.fetch(start, start.plusDays(NeoFeedFetcher.WINDOW_DAYS - 1),
+                reader(), (done, total) -> { });
+
+        assertEquals(0, report.completed());
+        assertEquals(1, report.failed());
+        assertEquals(1, requestsFor(start).size());
+        NeoFetchWindow window = neoFetchWindowRepository.findByStartDateBetween(start, start).get(0);
+        assertEquals(NeoFetchWindow.Status.FAILED, window.getStatus());
+        assertEquals("HTTP 403", window.getLastError());
+    }
+
+    @Test
+    void lowRateLimitRemainingLeavesWindowsPending() throws Exception {
+        LocalDate start = NeoFeedFetcher.gridStart(LocalDate.of(2024, 6, 1));
+        LocalDate end = start.plusDays(3 * NeoFeedFetcher.WINDOW_DAYS - 1);
+        script(start, new StubResponse(200, Map.of("X-RateLimit-Remaining", "2"), 0));
+
+        NeoFeedFetcher.FetchReport report = neoFeedFetcher.fetch(start, end, reader(), (done, total) -> { });
+
+        assertTrue(report.rateLimited());
+        assertEquals(3, report.windows());
+        assertEquals(1, report.completed());
+        assertEquals(1, snapshot().size());
+        List<NeoFetchWindow> pending = neoFetchWindowRepository.findByStartDateBetween(start, end).stream()
+                .filter(window -> window.getStatus() == NeoFetchWindow.Status.PENDING)
+                .toList();
+        assertEquals(2, pending.size());
+        assertEquals(start.plusDays(NeoFeedFetcher.WINDOW_DAYS), neoFetchWindowRepository.findFirstPendingStart());
+    }
+
+    @Test
+    void rerunSkipsCompletedWindows() throws Exception {
+        LocalDate start = NeoFeedFetcher.gridStart(LocalDate.of(2024, 7, 1));
+        LocalDate end = start.plusDays(2 * NeoFeedFetcher.WINDOW_DAYS - 1);
+
+        NeoFeedFetcher.FetchReport first = neoFeedFetcher.fetch(start, end, reader(), (done, total) -> { });
+        assertEquals(2, first.completed());
+        assertEquals(2, snapshot().size());
+
+        REQUESTS.clear();
+        NeoFeedFetcher.FetchReport rerun = neoFeedFetcher.fetch(start, end, reader(), (done, total) -> { });
+        assertEquals(2, rerun.windows());
+        assertEquals(2, rerun.alreadyCompleted());
+        assertEquals(0, rerun.completed());
+        assertTrue(snapshot().isEmpty());
+    }
+
+    // ============================================
+    // HELPER
+    // ============================================
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        String startDate = queryParam(exchange.getRequestURI().getQuery(), "start_date");
+        REQUESTS.add(new Received(startDate, System.nanoTime()));
+        Deque<StubResponse> scripted = SCRIPT.get(startDate);
+        StubResponse response = scripted == null ? null : scripted.pollFirst();
+        if (response == null) {
+            response = new StubResponse(200, Map.of(), 0);
+        }
+        try {
+            Thread.sleep(response.delayMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = ("{\"element_count\":0,\"near_earth_objects\":{},\"window\":\"" + startDate + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        response.headers().forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static String queryParam(String query, String name) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    private static void script(LocalDate start, StubResponse... responses) {
+        SCRIPT.put(start.toString(), new ConcurrentLinkedDeque<>(List.of(responses)));
+    }
+
+    private static List<Received> snapshot() {
+        synchronized (REQUESTS) {
+            return new ArrayList<>(REQUESTS);
+        }
+    }
+
+    private static List<Received> requestsFor(LocalDate start) {
+        return snapshot().stream().filter(received -> received.startDate().equals(start.toString())).toList();
+    }
+
+    // Un asteroide e due passaggi per finestra
+    private static NeoFeedFetcher.WindowReader reader() {
+        return (start, end, body) -> {
+            body.readAllBytes();
+            return new int[]{1, 2};
+        };
+    }
+
+    @FunctionalInterface
+    private interface Fetch {
+        NeoFeedFetcher.FetchReport run() throws Exception;
+    }
+
+    private NeoFeedFetcher.FetchReport withConcurrency(int concurrency, Fetch fetch) throws Exception {
+        Object previous = ReflectionTestUtils.getField(neoFeedFetcher, "concurrency");
+        ReflectionTestUtils.setField(neoFeedFetcher, "concurrency", concurrency);
+        try {
+            return fetch.run();
+        } finally {
+            ReflectionTestUtils.setField(neoFeedFetcher, "concurrency", previous);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package it.polimi.nasa.nasabackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TemporalJoin confrontato con la ricerca per singola sorgente (BETWEEN inclusivo)
+ * che sostituisce.
+ */
+class TemporalJoinTest {
+
+    private record Event(String id, LocalDateTime time, boolean accepted) {
+    }
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final Duration MIN = Duration.ofMinutes(24);
+    private static final Duration MAX = Duration.ofMinutes(120);
+
+    @Test
+    void windowBoundsAreInclusive() {
+        List<Event> sources = List.of(event("S", T0));
+        List<Event> targets = List.of(
+                event("before-min", T0.plus(MIN).minusSeconds(1)),
+                event("at-min", T0.plus(MIN)),
+                event("at-max", T0.plus(MAX)),
+                event("after-max", T0.plus(MAX).plusSeconds(1)));
+
+        List<List<Event>> matches = TemporalJoin.join(sources, Event::time, targets, Event::time, MIN, MAX, e -> true);
+
+        assertEquals(List.of("at-min", "at-max"), ids(matches.get(0)));
+        assertEquals("at-min", TemporalJoin.firstMatches(sources, Event::time, targets, Event::time, MIN, MAX, e -> true)
+                .get(0).id());
+    }
+
+    @Test
+    void equalTimestampsAreAllMatched() {
+        List<Event> sources = List.of(event("S1", T0), event("S2", T0));
+        List<Event> targets = List.of(
+                event("T1", T0.plus(MIN)),
+                event("T2", T0.plus(MIN)),
+                event("T3", T0.plusHours(1)),
+                event("T4", T0.plusHours(1)));
+
+        List<List<Event>> matches = TemporalJoin.join(sources, Event::time, targets, Event::time, MIN, MAX, e -> true);
+
+        assertEquals(List.of("T1", "T2", "T3", "T4"), ids(matches.get(0)));
+        assertEquals(List.of("T1", "T2", "T3", "T4"), ids(matches.get(1)));
+    }
+
+    @Test
+    void unsortedSourcesMatchPerSourceReference() {
+        Random random = new Random(7);
+        List<Event> sources = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            sources.add(event("S" + i, T0.plusMinutes(random.nextInt(20_000))));
+        }
+        // Qualche sorgente con lo stesso tempo e una senza tempo
+        sources.add(event("S-dup", sources.get(0).time()));
+        sources.add(event("S-null", null));
+
+        List<Event> targets = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            targets.add(new Event("T" + i, T0.plusMinutes(random.nextInt(20_200)), random.nextBoolean()));
+        }
+        // Target esattamente sugli estremi di alcune finestre
+        targets.add(event("T-min", sources.get(1).time().plus(MIN)));
+        targets.add(event("T-max", sources.get(2).time().plus(MAX)));
+        targets.sort(Comparator.comparing(Event::time));
+
+        Predicate<Event> filter = Event::accepted;
+        List<List<Event>> matches = TemporalJoin.join(sources, Event::time, targets, Event::time, MIN, MAX, filter);
+        List<Event> firsts = TemporalJoin.firstMatches(sources, Event::time, targets, Event::time, MIN, MAX, filter);
+
+        assertEquals(sources.size(), matches.size());
+        for (int i = 0; i < sources.size(); i++) {
+            List<Event> expected = between(targets, sources.get(i), filter);
+            assertEquals(expected, matches.get(i), sources.get(i).id());
+            assertEquals(expected.isEmpty() ? null : expected.get(0), firsts.get(i), sources.get(i).id());
+        }
+        assertTrue(matches.get(sources.size() - 1).isEmpty());
+    }
+
+    @Test
+    void filterSkipsRejectedTargetsForFirstMatch() {
+        List<Event> sources = List.of(event("S", T0));
+        List<Event> targets = List.of(
+                new Event("slow", T0.plus(MIN), false),
+                new Event("fast", T0.plusHours(1), true));
+
+        assertEquals("fast", TemporalJoin.firstMatches(sources, Event::time, targets, Event::time, MIN, MAX,
+                Event::accepted).get(0).id());
+        assertNull(TemporalJoin.firstMatches(sources, Event::time, targets, Event::time, MIN, MAX, e -> false).get(0));
+    }
+
+    @Test
+    void invertedWindowIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TemporalJoin.join(List.of(event("S", T0)), Event::time,
+                List.<Event>of(), Event::time, MAX, MIN, e -> true));
+    }
+
+    // Riferimento: i target di "startTime BETWEEN t+min AND t+max", nell'ordine della timeline
+    private static List<Event> between(List<Event> targets, Event source, Predicate<Event> filter) {
+        if (source.time() == null) {
+            return List.of();
+        }
+        LocalDateTime start = source.time().plus(MIN);
+        LocalDateTime end = source.time().plus(MAX);
+        return targets.stream()
+                .filter(target -> !target.time().isBefore(start) && !target.time().isAfter(end))
+                .filter(filter)
+                .toList();
+    }
+
+    private static Event event(String id, LocalDateTime time) {
+        return new Event(id, time, true);
+    }
+
+    private static List<String> ids(List<Event> events) {
+        return events.stream().map(Event::id).toList();
+    }
+}
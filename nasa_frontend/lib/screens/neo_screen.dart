@@ -49,7 +49,7 @@ class _NeoScreenState extends State<NeoScreen> with SingleTickerProviderStateMix
 
     try {
       final hazardous = await ApiService.getList('${ApiConfig.neoAsteroids}/hazardous');
-      final all = await ApiService.getList(ApiConfig.neoAsteroids);
+      final all = await ApiService.getAllPages(ApiConfig.neoAsteroids);
       final stats = await ApiService.getMap('${ApiConfig.neoAsteroids}/../stats');
 
       setState(() {
@@ -82,16 +82,24 @@ class _SolarActivityScreenState extends State<SolarActivityScreen> with SingleTi
     });
 
     try {
-      // Assuming ApiConfig has these constants. If not, replace with string paths.
-      final cme = await ApiService.getList('${ApiConfig.cme}?limit=50');
-      final storms = await ApiService.getList('${ApiConfig.storms}?limit=50');
+      // Liste complete (tutte le pagine): grafici mensili e distribuzioni su tutta la tabella
+      final cme = await ApiService.getAllPages(ApiConfig.cme);
+      final storms = await ApiService.getAllPages(ApiConfig.storms);
+      final flares = await ApiService.getAllPages(ApiConfig.solarFlares);
+      final ips = await ApiService.getAllPages(ApiConfig.ips);
 
-      // New Endpoints based on your backend structure
-      // Note: Backend service uses logic to fetch range, assuming here we fetch a list
-      final flares = await ApiService.getList('${ApiConfig.solarFlares}?limit=50');
-      final ips = await ApiService.getList('${ApiConfig.ips}?limit=50');
+      // Totali dagli endpoint /stats (conteggi calcolati sul DB)
+      final solarStats = await ApiService.getMap('${ApiConfig.baseUrl}/solar-events/stats');
+      final flareStats = await ApiService.getMap('${ApiConfig.solarFlares}/stats');
+      final ipsStats = await ApiService.getMap('${ApiConfig.ips}/stats');
 
       _calculateStatistics(cme, storms, flares, ips);
+      _totalCme = (solarStats['totalCme'] as num).toInt();
+      _fastCme = (solarStats['fastCme'] as num).toInt();
+      _totalStorms = (solarStats['totalStorms'] as num).toInt();
+      _totalFlares = (flareStats['total'] as num).toInt();
+      _xClassFlares = (flareStats['classX'] as num).toInt();
+      _totalIps = (ipsStats['totalShocks'] as num).toInt();
 
       setState(() {
         _cmeEvents = cme;
@@ -109,23 +117,14 @@ class _SolarActivityScreenState extends State<SolarActivityScreen> with SingleTi
   }
 
   void _calculateStatistics(List<dynamic> cme, List<dynamic> storms, List<dynamic> flares, List<dynamic> ips) {
-    // Existing Stats
-    _totalCme = cme.length;
-    _fastCme = cme.where((e) => ((e['speedKmS'] ?? 0) as num) > 1000).length;
-    _totalStorms = storms.length;
+    // Gli altri totali arrivano da /stats; Kp >= 7 non ha un contatore lato backend
     _severeStorms = storms.where((e) => ((e['kpIndex'] ?? 0) as num) >= 7).length;
 
-    // New Stats - Flares
-    _totalFlares = flares.length;
-    _xClassFlares = flares.where((e) => (e['classType'] ?? '').toString().startsWith('X')).length;
-
-    // New Stats - IPS
-    _totalIps = ips.length;
-
     // Monthly Distribution initialization
     _cmeByMonth = {};
     _stormsByMonth = {};
     _flaresByMonth = {};
+    _ipsByMonth = {};
 
     // Helper to populate months
     void populateMonthMap(List<dynamic> list, Map<int, int> map, String dateField) {
@@ -4,16 +4,21 @@ import '../config/api_config.dart';
 
 class ApiService {
   static Future<dynamic> get(String endpoint) async {
+    final response = await _fetch(Uri.parse(endpoint));
+    return json.decode(response.body);
+  }
+
+  static Future<http.Response> _fetch(Uri uri) async {
     try {
       final response = await http
           .get(
-        Uri.parse(endpoint),
+        uri,
         headers: {'Content-Type': 'application/json'},
       )
           .timeout(ApiConfig.timeout);
 
       if (response.statusCode == 200) {
-        return json.decode(response.body);
+        return response;
       } else {
         throw Exception('Failed to load data: ${response.statusCode}');
       }
@@ -27,6 +32,23 @@ class ApiService {
     return data as List<dynamic>;
   }
 
+  // Liste paginate a cursore (fireballs, asteroidi, ...): segue X-Next-Cursor fino all'ultima pagina
+  static Future<List<dynamic>> getAllPages(String endpoint, {int pageSize = 1000}) async {
+    final uri = Uri.parse(endpoint);
+    final all = <dynamic>[];
+    String? cursor;
+    do {
+      final response = await _fetch(uri.replace(queryParameters: {
+        ...uri.queryParameters,
+        'limit': '$pageSize',
+        if (cursor != null) 'cursor': cursor,
+      }));
+      all.addAll(json.decode(response.body) as List<dynamic>);
+      cursor = response.headers['x-next-cursor'];
+    } while (cursor != null && cursor.isNotEmpty);
+    return all;
+  }
+
   static Future<Map<String, dynamic>> getMap(String endpoint) async {
     final data = await get(endpoint);
     return data as Map<String, dynamic>;
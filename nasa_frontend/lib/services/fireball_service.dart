@@ -3,8 +3,9 @@ import '../config/api_config.dart';
 import 'api_service.dart';
 
 class FireballService {
+  // Tutti i fireball (tutte le pagine): servono per le distribuzioni mensile e di energia
   static Future<List<Fireball>> getAll() async {
-    final data = await ApiService.getList(ApiConfig.fireballs);
+    final data = await ApiService.getAllPages(ApiConfig.fireballs);
     return data.map((json) => Fireball.fromJson(json)).toList();
   }
 